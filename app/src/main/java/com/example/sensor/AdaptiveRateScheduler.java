@@ -0,0 +1,94 @@
+package com.example.sensor;
+
+import com.example.sensor.core.AdaptiveRatePolicy;
+import com.example.sensor.core.BusConsumerThread;
+import com.example.sensor.core.CaptureConfig;
+import com.example.sensor.core.LatestValueSlot;
+import com.example.sensor.core.SampleBus;
+import com.example.sensor.core.SensorTypes;
+
+/**
+ * The main screen's request to {@link SensorHub}, re-issued whenever an
+ * {@link AdaptiveRatePolicy} fed from the bus moves a sensor between its still and
+ * moving rates. Other clients, such as the recorder, keep their own requests, and the
+ * hub still registers each sensor at the fastest rate anyone needs.
+ */
+final class AdaptiveRateScheduler {
+    /** SENSOR_DELAY_GAME */
+    private static final int GAME_PERIOD_US = 20_000;
+    private static final long JOIN_MILLIS = 200L;
+
+    private final SensorHub hub;
+    private final AdaptiveRatePolicy policy = new AdaptiveRatePolicy(4);
+    private BusConsumerThread consumer;
+    // Guarded by this; set while no request should be live
+    private boolean stopped = true;
+
+    AdaptiveRateScheduler(SensorHub hub) {
+        this.hub = hub;
+        // Barometer: 5 Hz while the altitude holds, 50 Hz while it changes by more than noise
+        policy.track(SensorTypes.PRESSURE, 200_000, GAME_PERIOD_US, 0.04, 0.02, 2_000_000_000L);
+        policy.track(SensorTypes.ROTATION_VECTOR, 100_000, GAME_PERIOD_US, 0.01, 0.004, 1_000_000_000L);
+        // Full rate feeds the orientation filter and the vibration spectrum while moving
+        policy.track(SensorTypes.GYROSCOPE, GAME_PERIOD_US, CaptureConfig.SAMPLING_PERIOD_FASTEST,
+                0.1, 0.04, 1_000_000_000L);
+        policy.track(SensorTypes.ACCELEROMETER, GAME_PERIOD_US, CaptureConfig.SAMPLING_PERIOD_FASTEST,
+                0.5, 0.2, 1_000_000_000L);
+    }
+
+    void start() {
+        // The policy takes one thread at a time: a consumer that outlived stop()'s wait goes first
+        if (consumer != null) {
+            while (!consumer.shutdownAndJoin(JOIN_MILLIS) && !Thread.currentThread().isInterrupted()) {
+                // Still draining; its queue is bounded, so this ends
+            }
+            consumer = null;
+        }
+        synchronized (this) {
+            stopped = false;
+            hub.setRequest(this, policy.writeConfig(new CaptureConfig()));
+        }
+        consumer = new BusConsumerThread("AdaptiveRate", hub.bus(), SampleBus.Policy.DROP_OLDEST, policy) {
+            @Override
+            protected void afterPoll(int delivered) {
+                if (policy.takeChanged()) {
+                    synchronized (AdaptiveRateScheduler.this) {
+                        // After stop() a draining consumer must not bring the request back
+                        if (!stopped) {
+                            hub.setRequest(AdaptiveRateScheduler.this, policy.writeConfig(new CaptureConfig()));
+                        }
+                    }
+                }
+            }
+        };
+        hub.metrics().watch("adaptive", consumer.subscription());
+        consumer.start();
+    }
+
+    void stop() {
+        synchronized (this) {
+            stopped = true;
+            hub.clearRequest(this);
+        }
+        if (consumer != null && consumer.shutdownAndJoin(JOIN_MILLIS)) {
+            consumer = null;
+        }
+    }
+
+    /** Whether the views showing the tracked sensors are on screen. */
+    void setVisible(boolean visible) {
+        policy.setVisible(SensorTypes.PRESSURE, visible);
+        policy.setVisible(SensorTypes.ROTATION_VECTOR, visible);
+        policy.setVisible(SensorTypes.GYROSCOPE, visible);
+        policy.setVisible(SensorTypes.ACCELEROMETER, visible);
+    }
+
+    /** See {@link AdaptiveRatePolicy#reportSlot()}. */
+    LatestValueSlot reportSlot() {
+        return policy.reportSlot();
+    }
+
+    int channelCount() {
+        return 4;
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.sensor;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.example.sensor.core.BatchAccumulator;
+import com.example.sensor.core.BatchSink;
+import com.example.sensor.core.BusConsumerThread;
+import com.example.sensor.core.CaptureConfig;
+import com.example.sensor.core.GpsFix;
+import com.example.sensor.core.PipelineMetrics;
+import com.example.sensor.core.SampleBatch;
+import com.example.sensor.core.SampleBus;
+import com.example.sensor.core.SampleSink;
+import com.example.sensor.core.SessionRecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Long-running background capture. The service asks {@link SensorHub} for its sensors
+ * with a max report latency, so the sensor hub buffers samples in its FIFO and delivers
+ * them in bursts. A {@link SampleBus.Policy#DROP_OLDEST} subscriber collects each burst
+ * into one {@link SampleBatch} and appends it, together with GPS fixes, to a
+ * {@link SessionRecorder} session. The bus is shared with the screen, so a stalled disk
+ * loses recorded samples, counted as "recorder" in {@link PipelineMetrics}, rather than
+ * holding up every other consumer. Runs independently of MainActivity.
+ */
+public class CaptureService extends Service {
+
+    public static final String ACTION_START = "com.example.sensor.action.START_CAPTURE";
+    public static final String ACTION_STOP = "com.example.sensor.action.STOP_CAPTURE";
+    public static final String ACTION_FLUSH = "com.example.sensor.action.FLUSH_CAPTURE";
+    /** Optional int extra overriding the max report latency of every sensor. */
+    public static final String EXTRA_MAX_REPORT_LATENCY_US = "maxReportLatencyUs";
+
+    private static final String CHANNEL_ID = "capture";
+    private static final int NOTIFICATION_ID = 1;
+    private static final int BATCH_CAPACITY = 4096;
+    private static final long NOTIFICATION_INTERVAL_MS = 5000L;
+    private static final long GPS_INTERVAL_MS = 1000L;
+
+    private static volatile boolean running = false;
+
+    private SensorHub sensorHub;
+    private LocationManager locationManager;
+    private NotificationManager notificationManager;
+    private Handler mainHandler;
+    private CaptureConfig config;
+    private BusConsumerThread consumer;
+    private boolean stopping = false;
+    // SensorHub thread only
+    private final GpsFix gpsFix = new GpsFix();
+
+    private final LocationListener locationListener = new LocationListener() {
+        @Override
+        public void onLocationChanged(Location location) {
+            sensorHub.publishLocation(GpsFixes.copy(location, gpsFix));
+        }
+
+        @Override
+        public void onProviderEnabled(String provider) {
+        }
+
+        @Override
+        public void onProviderDisabled(String provider) {
+        }
+
+        @Override
+        public void onStatusChanged(String provider, int status, Bundle extras) {
+        }
+    };
+
+    public static boolean isRunning() {
+        return running;
+    }
+
+    public static void start(Context context) {
+        Intent intent = new Intent(context, CaptureService.class).setAction(ACTION_START);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(intent);
+        } else {
+            context.startService(intent);
+        }
+    }
+
+    public static void stop(Context context) {
+        context.startService(new Intent(context, CaptureService.class).setAction(ACTION_STOP));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        sensorHub = SensorHub.get(this);
+        locationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
+        notificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        mainHandler = new Handler(Looper.getMainLooper());
+        config = CaptureConfig.defaults();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String action = intent != null ? intent.getAction() : ACTION_START;
+        if (ACTION_STOP.equals(action)) {
+            beginStop();
+            return START_NOT_STICKY;
+        }
+        if (ACTION_FLUSH.equals(action)) {
+            sensorHub.flush(null);
+            return START_STICKY;
+        }
+
+        startInForeground();
+        if (intent != null && intent.hasExtra(EXTRA_MAX_REPORT_LATENCY_US)) {
+            config.setMaxReportLatencyUs(intent.getIntExtra(EXTRA_MAX_REPORT_LATENCY_US, 0));
+        }
+        if (consumer == null) {
+            SessionRecorder recorder = openRecorder();
+            if (recorder != null) {
+                final RecorderSink sink = new RecorderSink(recorder);
+                consumer = new BusConsumerThread("CaptureRecorder", sensorHub.bus(), SampleBus.Policy.DROP_OLDEST, sink) {
+                    @Override
+                    protected void afterPoll(int delivered) {
+                        sink.endBurst();
+                    }
+
+                    @Override
+                    protected void onShutdown() {
+                        sink.close();
+                    }
+                };
+                sink.subscription = consumer.subscription();
+                sensorHub.metrics().watch("recorder", consumer.subscription());
+                consumer.start();
+            }
+            subscribeLocation();
+        }
+        sensorHub.setRequest(this, config);
+        stopping = false;
+        running = true;
+        return START_STICKY;
+    }
+
+    private void startInForeground() {
+        Notification notification = buildNotification("センサー記録中");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            int type = ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC;
+            if (hasLocationPermission()) {
+                type |= ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION;
+            }
+            startForeground(NOTIFICATION_ID, notification, type);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+    }
+
+    private Notification buildNotification(String text) {
+        Notification.Builder builder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            if (notificationManager.getNotificationChannel(CHANNEL_ID) == null) {
+                notificationManager.createNotificationChannel(new NotificationChannel(
+                        CHANNEL_ID, "センサー記録", NotificationManager.IMPORTANCE_LOW));
+            }
+            builder = new Notification.Builder(this, CHANNEL_ID);
+        } else {
+            builder = new Notification.Builder(this);
+        }
+        PendingIntent openApp = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        return builder
+                .setSmallIcon(android.R.drawable.ic_menu_save)
+                .setContentTitle("センサーモニター")
+                .setContentText(text)
+                .setContentIntent(openApp)
+                .setOngoing(true)
+                .build();
+    }
+
+    private boolean hasLocationPermission() {
+        return checkSelfPermission(Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private SessionRecorder openRecorder() {
+        File root = getExternalFilesDir("sessions");
+        if (root == null) {
+            root = new File(getFilesDir(), "sessions");
+        }
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date());
+        try {
+            return SessionRecorder.create(root, name);
+        } catch (IOException e) {
+            notificationManager.notify(NOTIFICATION_ID, buildNotification("記録ファイルを作成できません"));
+            return null;
+        }
+    }
+
+    private void subscribeLocation() {
+        if (locationManager == null || !hasLocationPermission()) {
+            return;
+        }
+        try {
+            // Delivered on the hub thread, the bus's single producer
+            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER,
+                    GPS_INTERVAL_MS, 0f, locationListener, sensorHub.looper());
+        } catch (SecurityException | IllegalArgumentException e) {
+            // No GPS provider on this device; sensors are still captured
+        }
+    }
+
+    private void beginStop() {
+        if (!running) {
+            stopSelf();
+            return;
+        }
+        if (stopping) {
+            return;
+        }
+        stopping = true;
+        // Pull what is still buffered in the sensor FIFOs onto the bus before letting go
+        sensorHub.flush(new Runnable() {
+            @Override
+            public void run() {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        finishStop();
+                    }
+                });
+            }
+        });
+    }
+
+    private void finishStop() {
+        if (!running) {
+            return;
+        }
+        sensorHub.clearRequest(this);
+        if (locationManager != null) {
+            locationManager.removeUpdates(locationListener);
+        }
+        if (consumer != null) {
+            // Drains the rest of the bus into the recorder, then closes it
+            consumer.shutdown();
+            consumer = null;
+        }
+        running = false;
+        stopping = false;
+        stopForeground(STOP_FOREGROUND_REMOVE);
+        stopSelf();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        finishStop();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    /** Collects bus samples into bursts for the recorder; used only on the consumer thread. */
+    private final class RecorderSink implements SampleSink, BatchSink {
+        private final SessionRecorder recorder;
+        private final BatchAccumulator accumulator = new BatchAccumulator(BATCH_CAPACITY, this);
+        // Set before the consumer starts
+        SampleBus.Subscription subscription;
+        private boolean failed = false;
+        private long lastNotificationMs = 0L;
+
+        RecorderSink(SessionRecorder recorder) {
+            this.recorder = recorder;
+        }
+
+        @Override
+        public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+            accumulator.add(type, timestampNanos, accuracy, values, count);
+        }
+
+        @Override
+        public void onLocation(GpsFix fix) {
+            // Keep file order equal to bus order
+            accumulator.drain();
+            if (failed) {
+                return;
+            }
+            try {
+                recorder.append(fix);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        void endBurst() {
+            accumulator.drain();
+        }
+
+        @Override
+        public void onBatch(SampleBatch batch) {
+            if (failed) {
+                return;
+            }
+            try {
+                recorder.append(batch);
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastNotificationMs >= NOTIFICATION_INTERVAL_MS) {
+                lastNotificationMs = now;
+                notificationManager.notify(NOTIFICATION_ID, buildNotification(String.format(Locale.getDefault(),
+                        "サンプル: %d / バッチ: %d (最大 %d) / 欠落: %d",
+                        accumulator.samples(), accumulator.batches(), accumulator.maxBatchSize(),
+                        subscription.dropped())));
+            }
+        }
+
+        private void fail(IOException e) {
+            failed = true;
+            notificationManager.notify(NOTIFICATION_ID, buildNotification("記録エラー: " + e.getMessage()));
+        }
+
+        void close() {
+            accumulator.drain();
+            try {
+                recorder.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.sensor;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -8,10 +9,21 @@ import android.graphics.Path;
 import android.util.AttributeSet;
 import android.view.View;
 
+import com.example.sensor.core.PipelineMetrics;
+
 public class CompassView extends View {
+    private static final float DEFAULT_MIN_AZIMUTH_DELTA = 0.5f;
+
     private Paint circlePaint;
     private Paint needlePaint;
+    private Paint bitmapPaint;
+    private final Path needlePath = new Path();
+    private Bitmap dialBitmap;
     private float azimuth = 0f;
+    private float drawnAzimuth = Float.NaN;
+    private float minAzimuthDelta = DEFAULT_MIN_AZIMUTH_DELTA;
+    private boolean invalidatePending = false;
+    private PipelineMetrics metrics;
 
     public CompassView(Context context) {
         super(context);
@@ -31,34 +43,85 @@ public class CompassView extends View {
         needlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         needlePaint.setColor(Color.RED);
         needlePaint.setStyle(Paint.Style.FILL);
+
+        bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    }
+
+    /** Changes smaller than this many degrees since the last drawn frame do not redraw. */
+    public void setMinAzimuthDelta(float degrees) {
+        this.minAzimuthDelta = Math.max(0f, degrees);
+    }
+
+    /** Records the time spent in onDraw while {@code metrics} are enabled; null to stop. */
+    public void setMetrics(PipelineMetrics metrics) {
+        this.metrics = metrics;
     }
 
     public void setAzimuth(float azimuth) {
         this.azimuth = azimuth;
-        invalidate();
+        if (invalidatePending || !Float.isNaN(drawnAzimuth) && angularDistance(azimuth, drawnAzimuth) < minAzimuthDelta) {
+            return;
+        }
+        // At most one redraw per vsync, however often the azimuth is updated
+        invalidatePending = true;
+        postInvalidateOnAnimation();
+    }
+
+    private static float angularDistance(float a, float b) {
+        float d = Math.abs(a - b) % 360f;
+        return d > 180f ? 360f - d : d;
     }
 
     @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
-        int w = getWidth();
-        int h = getHeight();
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (dialBitmap != null) {
+            dialBitmap.recycle();
+            dialBitmap = null;
+        }
+        needlePath.reset();
+        if (w <= 0 || h <= 0) {
+            return;
+        }
         float cx = w / 2f;
         float cy = h / 2f;
         float r = Math.min(cx, cy) - 8f;
 
-        // Background circle
-        canvas.drawCircle(cx, cy, r, circlePaint);
+        // Background circle, rendered once per size
+        dialBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        new Canvas(dialBitmap).drawCircle(cx, cy, r, circlePaint);
+
+        // Needle (pointing up when azimuth == 0), only rotated in onDraw
+        needlePath.moveTo(cx, cy - r * 0.85f);
+        needlePath.lineTo(cx - r * 0.15f, cy + r * 0.5f);
+        needlePath.lineTo(cx + r * 0.15f, cy + r * 0.5f);
+        needlePath.close();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        invalidatePending = false;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        PipelineMetrics m = metrics;
+        boolean timed = m != null && m.isEnabled();
+        long start = timed ? System.nanoTime() : 0L;
+        super.onDraw(canvas);
+        invalidatePending = false;
+        drawnAzimuth = azimuth;
+        if (dialBitmap != null) {
+            canvas.drawBitmap(dialBitmap, 0f, 0f, bitmapPaint);
+        }
 
-        // Needle (pointing up when azimuth == 0)
         canvas.save();
-        canvas.rotate(-azimuth, cx, cy);
-        Path path = new Path();
-        path.moveTo(cx, cy - r * 0.85f);
-        path.lineTo(cx - r * 0.15f, cy + r * 0.5f);
-        path.lineTo(cx + r * 0.15f, cy + r * 0.5f);
-        path.close();
-        canvas.drawPath(path, needlePaint);
+        canvas.rotate(-azimuth, getWidth() / 2f, getHeight() / 2f);
+        canvas.drawPath(needlePath, needlePaint);
         canvas.restore();
+        if (timed) {
+            m.drawTime().record(System.nanoTime() - start);
+        }
     }
 }
@@ -0,0 +1,31 @@
+package com.example.sensor;
+
+import android.location.Location;
+import android.os.Build;
+
+import com.example.sensor.core.GpsFix;
+
+final class GpsFixes {
+    private GpsFixes() {
+    }
+
+    static GpsFix copy(Location location, GpsFix fix) {
+        fix.provider = location.getProvider();
+        fix.latitude = location.getLatitude();
+        fix.longitude = location.getLongitude();
+        fix.hasAltitude = location.hasAltitude();
+        fix.altitude = location.getAltitude();
+        fix.hasMslAltitude = Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE
+                && location.hasMslAltitude();
+        fix.mslAltitude = fix.hasMslAltitude ? location.getMslAltitudeMeters() : 0.0;
+        fix.hasAccuracy = location.hasAccuracy();
+        fix.accuracy = location.getAccuracy();
+        fix.hasSpeed = location.hasSpeed();
+        fix.speed = location.getSpeed();
+        fix.hasBearing = location.hasBearing();
+        fix.bearing = location.getBearing();
+        fix.time = location.getTime();
+        fix.elapsedRealtimeNanos = location.getElapsedRealtimeNanos();
+        return fix;
+    }
+}
@@ -5,50 +5,169 @@ import android.app.Activity;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.graphics.Typeface;
+import android.graphics.drawable.ColorDrawable;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.Choreographer;
 import android.view.Gravity;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.FrameLayout;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.LinearLayout;
-import android.widget.ScrollView;
+import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import com.example.sensor.core.AdaptiveRatePolicy;
+import com.example.sensor.core.BusConsumerThread;
+import com.example.sensor.core.DecimalText;
+import com.example.sensor.core.DisplayPipeline;
+import com.example.sensor.core.GpsFix;
+import com.example.sensor.core.GpsText;
+import com.example.sensor.core.HistoryWindow;
+import com.example.sensor.core.LatestValueSlot;
+import com.example.sensor.core.OrientationFilter;
+import com.example.sensor.core.PipelineMetrics;
+import com.example.sensor.core.SampleBus;
+import com.example.sensor.core.SampleSink;
+import com.example.sensor.core.SensorCatalog;
+import com.example.sensor.core.SeriesHistory;
+import com.example.sensor.core.SensorTypes;
+import com.example.sensor.core.SpectrumAnalyzer;
+import com.example.sensor.core.TelemetryStreamer;
+import com.example.sensor.core.TrackStore;
+import com.example.sensor.core.VibrationMonitor;
+import com.example.sensor.core.WindowStats;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class MainActivity extends Activity implements SensorEventListener {
+public class MainActivity extends Activity {
 
     private static final int REQUEST_LOCATION_PERMISSION = 1001;
+    private static final int REQUEST_NOTIFICATION_PERMISSION = 1002;
+    /** Chart spans cycled by tapping it: 30 s, 10 min, 1 h. */
+    private static final long[] CHART_WINDOWS_NANOS = {30_000_000_000L, 600_000_000_000L, 3_600_000_000_000L};
+    /** The metrics overlay walks every histogram, so it is refreshed at most this often. */
+    private static final long METRICS_REFRESH_NANOS = 500_000_000L;
+    private static final long TELEMETRY_REFRESH_NANOS = 1_000_000_000L;
+    /** How long onPause waits for a consumer to drain the bus into its sink. */
+    private static final long CONSUMER_JOIN_MILLIS = 200L;
 
     private SensorManager sensorManager;
     private final Map<Integer, TextView> sensorValueViews = new HashMap<>();
-    private Sensor pressureSensor;
-    private Sensor rotationSensor;
-    private Sensor gyroSensor;
     private LocationManager locationManager;
+    // Sensor enumeration and GPS setup, kept off the UI thread; one thread keeps them in order
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+    private SensorCatalog catalog;
+    private TextView sensorCountView;
+    private LinearLayout pressureContainer;
+    private boolean resumed = false;
+    private boolean firstSampleShown = false;
     private TextView altitudeView;
     private TextView azimuthView;
     private TextView gyroView;
+    private TextView vibrationView;
     private TextView gpsView;
     private CompassView compassView;
-    private boolean initialPressureSet = false;
+    private StripChartView chartView;
+    private int chartWindowIndex = 0;
+    private final HistoryWindow historyWindow = new HistoryWindow(1024);
+    private Button captureButton;
+    private EditText telemetryAddress;
+    private CheckBox telemetryUdp;
+    private Button telemetryButton;
+    private TextView telemetryView;
+    private long telemetryShownNanos = Long.MIN_VALUE / 2;
+    private SensorHub sensorHub;
+    private BusConsumerThread displayConsumer;
+    private BusConsumerThread vibrationConsumer;
+    private SensorDashboard dashboard;
+    private AdaptiveRateScheduler rateScheduler;
+    private ListView listView;
+    private TextView rateView;
+    private TextView metricsView;
+    private PipelineMetrics metrics;
+    private long metricsShownNanos = Long.MIN_VALUE / 2;
+    private boolean headerVisible = true;
+    private Choreographer choreographer;
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+    private long vsyncPeriodNanos = 16_666_667L;
+    // Fed by displayConsumer, read on the UI thread once per frame
+    private final DisplayPipeline pipeline = new DisplayPipeline();
+    // Fed by vibrationConsumer, so its FFTs never hold up the display consumer
+    private final VibrationMonitor vibration = new VibrationMonitor();
+    // Bus samples without the fixes: the GPS listener feeds those on the UI thread,
+    // which stays the pipeline's only onLocation thread
+    private final SampleSink displaySink = new SampleSink() {
+        @Override
+        public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+            pipeline.onSample(type, timestampNanos, accuracy, values, count);
+        }
+
+        @Override
+        public void onLocation(GpsFix fix) {
+        }
+    };
+    private final DecimalText pressureText = new DecimalText(128);
+    private final DecimalText azimuthText = new DecimalText(16);
+    private final DecimalText gyroText = new DecimalText(128);
+    private final DecimalText vibrationText = new DecimalText(128);
+    private final DecimalText rateText = new DecimalText(128);
+    private final DecimalText metricsText = new DecimalText(1024);
+    private final DecimalText telemetryText = new DecimalText(128);
+    private final GpsFix gpsFix = new GpsFix();
+    private boolean gpsFromCache = false;
+    private final DecimalText gpsText = new DecimalText(192);
+    private final Choreographer.FrameCallback displayFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameScheduled.set(false);
+            updateSensorViews(frameTimeNanos);
+        }
+    };
     private boolean gpsFixAcquired = false;
-    private double initialAltitude = 0.0;
     private final LocationListener gpsLocationListener = new LocationListener() {
         @Override
         public void onLocationChanged(Location location) {
+            if (metrics.isEnabled()) {
+                metrics.onLocation(location.getElapsedRealtimeNanos());
+            }
             if (!gpsFixAcquired && LocationManager.GPS_PROVIDER.equals(location.getProvider())) {
                 gpsFixAcquired = true;
             }
             updateGpsDisplay(location, false);
+            // The same fix also reaches the track through the hub while capturing; duplicates are ignored
+            sensorHub.track().onLocation(gpsFix);
+            TelemetryStreamer telemetry = sensorHub.telemetry();
+            if (telemetry != null) {
+                telemetry.offerLocation(gpsFix);
+            }
         }
 
         @Override
@@ -73,18 +192,22 @@ public class MainActivity extends Activity implements SensorEventListener {
 
         sensorManager = (SensorManager) getSystemService(SENSOR_SERVICE);
         locationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
-        if (sensorManager != null) {
-            pressureSensor = sensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE);
-            rotationSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
-            gyroSensor = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
-        }
+        choreographer = Choreographer.getInstance();
+        sensorHub = SensorHub.get(this);
+        metrics = sensorHub.metrics();
+        metrics.onProcessStart(Process.getStartElapsedRealtime() * 1_000_000L);
+        rateScheduler = new AdaptiveRateScheduler(sensorHub);
 
-        ScrollView scrollView = new ScrollView(this);
-        scrollView.setBackgroundColor(Color.parseColor("#121212"));
+        listView = new ListView(this);
+        listView.setBackgroundColor(Color.parseColor("#121212"));
+        listView.setPadding(32, 32, 32, 32);
+        listView.setClipToPadding(false);
+        listView.setDivider(new ColorDrawable(Color.TRANSPARENT));
+        listView.setDividerHeight(16);
 
+        // Everything above the sensor list scrolls with it as the list header
         LinearLayout mainLayout = new LinearLayout(this);
         mainLayout.setOrientation(LinearLayout.VERTICAL);
-        mainLayout.setPadding(32, 32, 32, 32);
 
         // Title
         TextView title = new TextView(this);
@@ -94,19 +217,22 @@ public class MainActivity extends Activity implements SensorEventListener {
         title.setTypeface(null, Typeface.BOLD);
         title.setGravity(Gravity.CENTER);
         title.setPadding(0, 0, 0, 32);
+        // Tapping the title toggles the pipeline metrics overlay
+        title.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                setMetricsEnabled(!metrics.isEnabled());
+            }
+        });
         mainLayout.addView(title);
 
-        // Sensor count
-        TextView countView = new TextView(this);
-        int detected = 0;
-        if (sensorManager != null) {
-            detected = sensorManager.getSensorList(Sensor.TYPE_ALL).size();
-        }
-        countView.setText("検出センサー数: " + detected);
-        countView.setTextSize(16);
-        countView.setTextColor(Color.parseColor("#AAAAAA"));
-        countView.setPadding(0, 0, 0, 32);
-        mainLayout.addView(countView);
+        // Sensor count, filled in once the catalog is known
+        sensorCountView = new TextView(this);
+        sensorCountView.setText("検出センサー数: 検索中...");
+        sensorCountView.setTextSize(16);
+        sensorCountView.setTextColor(Color.parseColor("#AAAAAA"));
+        sensorCountView.setPadding(0, 0, 0, 32);
+        mainLayout.addView(sensorCountView);
 
         // Compass header
         LinearLayout header = new LinearLayout(this);
@@ -118,6 +244,7 @@ public class MainActivity extends Activity implements SensorEventListener {
         LinearLayout.LayoutParams compParams = new LinearLayout.LayoutParams(300, 300);
         compParams.setMargins(0, 0, 24, 0);
         compassView.setLayoutParams(compParams);
+        compassView.setMetrics(metrics);
         header.addView(compassView);
 
         LinearLayout infoCol = new LinearLayout(this);
@@ -136,29 +263,203 @@ public class MainActivity extends Activity implements SensorEventListener {
         gyroView.setPadding(0, 8, 0, 0);
         infoCol.addView(gyroView);
 
+        vibrationView = new TextView(this);
+        vibrationView.setText("振動: --");
+        vibrationView.setTextSize(14);
+        vibrationView.setTextColor(Color.WHITE);
+        vibrationView.setPadding(0, 8, 0, 0);
+        infoCol.addView(vibrationView);
+
         header.addView(infoCol);
         mainLayout.addView(header);
+
+        chartView = new StripChartView(this, DisplayPipeline.CHART_CHANNELS, 3);
+        chartView.setBackgroundColor(Color.parseColor("#1E1E1E"));
+        chartView.setLane(0, "気圧 (hPa)", 0.05f);
+        chartView.setLane(1, "起動時との差 (m)", 1f);
+        chartView.setLane(2, "ジャイロ (rad/s)", 0.2f);
+        chartView.setChannel(DisplayPipeline.CHART_PRESSURE, 0, Color.parseColor("#4FC3F7"));
+        chartView.setChannel(DisplayPipeline.CHART_ALTITUDE_DELTA, 1, Color.parseColor("#76FF03"));
+        chartView.setChannel(DisplayPipeline.CHART_GYRO_X, 2, Color.parseColor("#FF5252"));
+        chartView.setChannel(DisplayPipeline.CHART_GYRO_Y, 2, Color.parseColor("#69F0AE"));
+        chartView.setChannel(DisplayPipeline.CHART_GYRO_Z, 2, Color.parseColor("#448AFF"));
+        LinearLayout.LayoutParams chartParams = new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, 480);
+        chartParams.setMargins(0, 0, 0, 16);
+        chartView.setLayoutParams(chartParams);
+        chartView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                chartWindowIndex = (chartWindowIndex + 1) % CHART_WINDOWS_NANOS.length;
+                showChartWindow(CHART_WINDOWS_NANOS[chartWindowIndex]);
+            }
+        });
+        mainLayout.addView(chartView);
+
+        rateView = new TextView(this);
+        rateView.setText("適応サンプリング: 計測中...");
+        rateView.setTextSize(12);
+        rateView.setTextColor(Color.parseColor("#888888"));
+        rateView.setPadding(0, 0, 0, 16);
+        mainLayout.addView(rateView);
+        pipeline.setChart(chartView.buffer());
+
+        captureButton = new Button(this);
+        captureButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                toggleCapture();
+            }
+        });
+        LinearLayout.LayoutParams captureParams = new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT,
+                LinearLayout.LayoutParams.WRAP_CONTENT);
+        captureParams.setMargins(0, 0, 0, 16);
+        captureButton.setLayoutParams(captureParams);
+        mainLayout.addView(captureButton);
+        mainLayout.addView(createTelemetryCard());
         mainLayout.addView(createGpsCard());
 
-        // Create view for pressure sensor only
-        if (pressureSensor != null) {
-            LinearLayout sensorCard = createSensorCard(pressureSensor);
-            mainLayout.addView(sensorCard);
+        // Holds the pressure sensor's card once the catalog says whether there is one
+        pressureContainer = new LinearLayout(this);
+        pressureContainer.setOrientation(LinearLayout.VERTICAL);
+        mainLayout.addView(pressureContainer);
+
+        TextView listTitle = new TextView(this);
+        listTitle.setText("全センサー");
+        listTitle.setTextSize(18);
+        listTitle.setTextColor(Color.WHITE);
+        listTitle.setTypeface(null, Typeface.BOLD);
+        listTitle.setPadding(0, 16, 0, 0);
+        mainLayout.addView(listTitle);
+
+        listView.addHeaderView(mainLayout, null, false);
+
+        // Stays on screen while the list scrolls; tapping it exports a snapshot
+        metricsView = new TextView(this);
+        metricsView.setTextSize(10);
+        metricsView.setTextColor(Color.parseColor("#FFEB3B"));
+        metricsView.setTypeface(Typeface.MONOSPACE);
+        metricsView.setBackgroundColor(Color.parseColor("#CC000000"));
+        metricsView.setPadding(16, 16, 16, 16);
+        metricsView.setVisibility(metrics.isEnabled() ? View.VISIBLE : View.GONE);
+        metricsView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                exportMetrics();
+            }
+        });
+        FrameLayout root = new FrameLayout(this);
+        root.addView(listView);
+        root.addView(metricsView, new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.WRAP_CONTENT, Gravity.BOTTOM));
+        setContentView(root);
+        updateGpsStatusText("GPS状態: 初期化完了\n権限確認待ち...");
+
+        final View decor = getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                metrics.onFirstFrame(SystemClock.elapsedRealtimeNanos());
+                return true;
+            }
+        });
+        // The first frame does not wait for the platform's sensor list
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadSensors();
+            }
+        });
+    }
+
+    /**
+     * Background thread. Shows the saved catalog at once when this build wrote one, then
+     * enumerates the sensors, which registering needs anyway, and saves the catalog if it
+     * changed.
+     */
+    private void loadSensors() {
+        String fingerprint = SensorCatalogs.fingerprint();
+        File file = SensorCatalogs.file(this);
+        long start = SystemClock.elapsedRealtimeNanos();
+        final SensorCatalog saved = SensorCatalog.load(file, fingerprint);
+        if (saved != null) {
+            metrics.onCatalogLoaded(true, SystemClock.elapsedRealtimeNanos() - start);
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    showCatalog(saved);
+                }
+            });
+        }
+        long enumerationStart = SystemClock.elapsedRealtimeNanos();
+        final List<Sensor> sensors = sensorManager != null
+                ? sensorManager.getSensorList(Sensor.TYPE_ALL) : Collections.<Sensor>emptyList();
+        final SensorCatalog enumerated = SensorCatalogs.describe(sensors, fingerprint);
+        long end = SystemClock.elapsedRealtimeNanos();
+        metrics.onSensorsEnumerated(end - enumerationStart);
+        if (saved == null) {
+            metrics.onCatalogLoaded(false, end - start);
+        }
+        if (!enumerated.sameSensors(saved)) {
+            try {
+                enumerated.save(file);
+            } catch (IOException e) {
+                // Enumerated again on the next launch
+            }
+        }
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                showCatalog(enumerated);
+                if (dashboard != null) {
+                    dashboard.setSensors(sensors);
+                }
+            }
+        });
+    }
+
+    /** Builds the catalog-dependent views; a catalog matching the one shown changes nothing. */
+    private void showCatalog(SensorCatalog next) {
+        if (isDestroyed() || next.sameSensors(catalog)) {
+            return;
+        }
+        catalog = next;
+        sensorCountView.setText("検出センサー数: " + next.size());
+
+        pressureContainer.removeAllViews();
+        sensorValueViews.clear();
+        pressureText.invalidate();
+        int pressure = next.indexOf(Sensor.TYPE_PRESSURE);
+        if (pressure >= 0) {
+            pressureContainer.addView(createSensorCard(next.get(pressure)));
             altitudeView = sensorValueViews.get(Sensor.TYPE_PRESSURE);
         } else {
+            altitudeView = null;
             TextView noPressure = new TextView(this);
             noPressure.setText("気圧センサーが見つかりません");
             noPressure.setTextColor(Color.RED);
             noPressure.setPadding(0, 8, 0, 8);
-            mainLayout.addView(noPressure);
+            pressureContainer.addView(noPressure);
         }
 
-        scrollView.addView(mainLayout);
-        setContentView(scrollView);
-        updateGpsStatusText("GPS状態: 初期化完了\n権限確認待ち...");
+        if (dashboard != null) {
+            dashboard.stop();
+        }
+        dashboard = new SensorDashboard(this, sensorManager, sensorHub, next, new Runnable() {
+            @Override
+            public void run() {
+                scheduleFrame();
+            }
+        });
+        dashboard.attach(listView);
+        if (resumed) {
+            dashboard.start();
+        }
     }
 
-    private LinearLayout createSensorCard(Sensor sensor) {
+    private LinearLayout createSensorCard(SensorCatalog.Entry sensor) {
         LinearLayout card = new LinearLayout(this);
         card.setOrientation(LinearLayout.VERTICAL);
         card.setBackgroundColor(Color.parseColor("#1E1E1E"));
@@ -172,7 +473,7 @@ public class MainActivity extends Activity implements SensorEventListener {
 
         // Sensor name
         TextView nameView = new TextView(this);
-        nameView.setText(sensor.getName());
+        nameView.setText(sensor.name);
         nameView.setTextSize(16);
         nameView.setTextColor(Color.parseColor("#4FC3F7"));
         nameView.setTypeface(null, Typeface.BOLD);
@@ -180,7 +481,7 @@ public class MainActivity extends Activity implements SensorEventListener {
 
         // Sensor type
         TextView typeView = new TextView(this);
-        typeView.setText("タイプ: " + getSensorTypeName(sensor.getType()));
+        typeView.setText("タイプ: " + SensorDashboard.typeName(sensor.type));
         typeView.setTextSize(12);
         typeView.setTextColor(Color.parseColor("#888888"));
         typeView.setPadding(0, 4, 0, 8);
@@ -188,7 +489,7 @@ public class MainActivity extends Activity implements SensorEventListener {
 
         // Vendor info
         TextView vendorView = new TextView(this);
-        vendorView.setText("ベンダー: " + sensor.getVendor() + " | 範囲: " + sensor.getMaximumRange());
+        vendorView.setText("ベンダー: " + sensor.vendor + " | 範囲: " + sensor.maximumRange);
         vendorView.setTextSize(11);
         vendorView.setTextColor(Color.parseColor("#666666"));
         vendorView.setPadding(0, 0, 0, 8);
@@ -202,7 +503,7 @@ public class MainActivity extends Activity implements SensorEventListener {
         valueView.setTypeface(Typeface.MONOSPACE);
         card.addView(valueView);
 
-        sensorValueViews.put(sensor.getType(), valueView);
+        sensorValueViews.put(sensor.type, valueView);
 
         return card;
     }
@@ -245,7 +546,194 @@ public class MainActivity extends Activity implements SensorEventListener {
 
 
 
+    private LinearLayout createTelemetryCard() {
+        LinearLayout card = new LinearLayout(this);
+        card.setOrientation(LinearLayout.VERTICAL);
+        card.setBackgroundColor(Color.parseColor("#1E1E1E"));
+        card.setPadding(24, 24, 24, 24);
+
+        LinearLayout.LayoutParams cardParams = new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT,
+                LinearLayout.LayoutParams.WRAP_CONTENT);
+        cardParams.setMargins(0, 0, 0, 16);
+        card.setLayoutParams(cardParams);
+
+        TextView titleView = new TextView(this);
+        titleView.setText("テレメトリ送信");
+        titleView.setTextSize(16);
+        titleView.setTextColor(Color.parseColor("#4FC3F7"));
+        titleView.setTypeface(null, Typeface.BOLD);
+        card.addView(titleView);
+
+        LinearLayout row = new LinearLayout(this);
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        row.setGravity(Gravity.CENTER_VERTICAL);
+
+        telemetryAddress = new EditText(this);
+        telemetryAddress.setHint("192.168.0.10:9000");
+        telemetryAddress.setSingleLine(true);
+        telemetryAddress.setTextColor(Color.WHITE);
+        telemetryAddress.setHintTextColor(Color.parseColor("#666666"));
+        row.addView(telemetryAddress, new LinearLayout.LayoutParams(0,
+                LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
+
+        telemetryUdp = new CheckBox(this);
+        telemetryUdp.setText("UDP");
+        telemetryUdp.setTextColor(Color.WHITE);
+        row.addView(telemetryUdp);
+        card.addView(row);
+
+        telemetryButton = new Button(this);
+        telemetryButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                toggleTelemetry();
+            }
+        });
+        card.addView(telemetryButton);
+
+        telemetryView = new TextView(this);
+        telemetryView.setTextSize(12);
+        telemetryView.setTextColor(Color.parseColor("#888888"));
+        telemetryView.setTypeface(Typeface.MONOSPACE);
+        card.addView(telemetryView);
+
+        updateTelemetryButton(sensorHub.telemetry() != null);
+        return card;
+    }
+
+    /** Switches the chart span and refills it from the hub's history, which outlives the chart. */
+    private void showChartWindow(long windowNanos) {
+        chartView.setWindowNanos(windowNanos);
+        long now = SystemClock.elapsedRealtimeNanos();
+        backfillChart(DisplayPipeline.CHART_PRESSURE, SensorTypes.PRESSURE, 0, now - windowNanos, now);
+        backfillChart(DisplayPipeline.CHART_GYRO_X, SensorTypes.GYROSCOPE, 0, now - windowNanos, now);
+        backfillChart(DisplayPipeline.CHART_GYRO_Y, SensorTypes.GYROSCOPE, 1, now - windowNanos, now);
+        backfillChart(DisplayPipeline.CHART_GYRO_Z, SensorTypes.GYROSCOPE, 2, now - windowNanos, now);
+        chartView.invalidate();
+    }
+
+    private void backfillChart(int channel, int type, int axis, long from, long to) {
+        SeriesHistory series = sensorHub.history().series(type, axis);
+        if (series == null) {
+            return;
+        }
+        // Up to a few points per pixel; the chart folds them into per-pixel min/max
+        int tier = series.query(from, to, Math.max(1, chartView.getWidth()) * 4, historyWindow);
+        long width = series.bucketNanos(tier);
+        for (int i = 0; i < historyWindow.size(); i++) {
+            chartView.buffer().addBucket(channel, historyWindow.timestamp(i), width,
+                    historyWindow.min(i), historyWindow.max(i), historyWindow.mean(i));
+        }
+    }
+
+    private void setMetricsEnabled(boolean enabled) {
+        metrics.setEnabled(enabled);
+        metricsText.invalidate();
+        metricsShownNanos = Long.MIN_VALUE / 2;
+        metricsView.setText("計測中...");
+        metricsView.setVisibility(enabled ? View.VISIBLE : View.GONE);
+    }
+
+    private void exportMetrics() {
+        File root = getExternalFilesDir("metrics");
+        if (root == null) {
+            root = new File(getFilesDir(), "metrics");
+        }
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date()) + ".json";
+        File file = new File(root, name);
+        try {
+            if (!root.isDirectory() && !root.mkdirs()) {
+                throw new IOException("cannot create " + root);
+            }
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(metrics.toJson().getBytes(StandardCharsets.UTF_8));
+            }
+            Toast.makeText(this, "計測値を保存しました: " + file.getPath(), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Toast.makeText(this, "計測値を保存できません", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void toggleTelemetry() {
+        if (sensorHub.telemetry() != null) {
+            sensorHub.stopTelemetry();
+            updateTelemetryButton(false);
+            return;
+        }
+        String address = telemetryAddress.getText().toString().trim();
+        int colon = address.lastIndexOf(':');
+        int port = -1;
+        if (colon > 0) {
+            try {
+                port = Integer.parseInt(address.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+        }
+        if (port <= 0 || port > 65535) {
+            Toast.makeText(this, "送信先を ホスト:ポート で入力してください", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        sensorHub.startTelemetry(address.substring(0, colon), port,
+                telemetryUdp.isChecked() ? TelemetryStreamer.Transport.UDP : TelemetryStreamer.Transport.TCP);
+        updateTelemetryButton(true);
+    }
+
+    private void updateTelemetryButton(boolean running) {
+        telemetryButton.setText(running ? "テレメトリ送信を停止" : "テレメトリ送信を開始");
+        telemetryAddress.setEnabled(!running);
+        telemetryUdp.setEnabled(!running);
+        telemetryText.invalidate();
+        telemetryShownNanos = Long.MIN_VALUE / 2;
+        telemetryView.setText(running ? "接続中..." : "停止中");
+    }
+
+    private void updateTelemetryView(long frameTimeNanos) {
+        TelemetryStreamer telemetry = sensorHub.telemetry();
+        if (telemetry == null || frameTimeNanos - telemetryShownNanos < TELEMETRY_REFRESH_NANOS) {
+            return;
+        }
+        telemetryShownNanos = frameTimeNanos;
+        long sent = telemetry.samplesSent();
+        telemetryText.clear()
+                .append(telemetry.isConnected() ? "接続済み" : "未接続")
+                .append("  送信 ").append(sent).append(" サンプル");
+        if (sent > 0) {
+            telemetryText.append(" (").append((double) telemetry.bytesSent() / sent, 1).append(" B/サンプル)");
+        }
+        telemetryText.append("\n破棄 ").append(telemetry.samplesDropped())
+                .append("  再接続 ").append(telemetry.reconnects());
+        if (telemetryText.commit()) {
+            telemetryView.setText(telemetryText.chars(), 0, telemetryText.length());
+        }
+    }
+
+    private void toggleCapture() {
+        // The service updates its running flag asynchronously, so show the requested state
+        boolean start = !CaptureService.isRunning();
+        if (!start) {
+            CaptureService.stop(this);
+        } else {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                    && checkSelfPermission(Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+                // Capture runs either way; the permission only makes its notification visible
+                requestPermissions(new String[]{Manifest.permission.POST_NOTIFICATIONS},
+                        REQUEST_NOTIFICATION_PERMISSION);
+            }
+            CaptureService.start(this);
+        }
+        updateCaptureButton(start);
+    }
+
+    private void updateCaptureButton(boolean running) {
+        if (captureButton != null) {
+            captureButton.setText(running ? "バックグラウンド記録を停止" : "バックグラウンド記録を開始");
+        }
+    }
+
     private void updateGpsStatusText(String text) {
+        gpsText.invalidate();
         if (gpsView != null) {
             gpsView.setText(text);
         }
@@ -257,31 +745,9 @@ public class MainActivity extends Activity implements SensorEventListener {
         if (location == null) {
             return;
         }
-        String altitudeText = location.hasAltitude()
-                ? String.format(Locale.getDefault(), "%.2f m", location.getAltitude())
-                : "--";
-        String accuracyText = location.hasAccuracy()
-                ? String.format(Locale.getDefault(), "%.2f m", location.getAccuracy())
-                : "--";
-        String speedText = location.hasSpeed()
-                ? String.format(Locale.getDefault(), "%.2f m/s", location.getSpeed())
-                : "--";
-        String bearingText = location.hasBearing()
-                ? String.format(Locale.getDefault(), "%.2f°", location.getBearing())
-                : "--";
-        String source = fromCache ? "キャッシュ" : "リアルタイム";
-        String text = String.format(Locale.getDefault(),
-                "GPS状態: %s\nプロバイダ: %s\n緯度: %.6f\n経度: %.6f\n高度: %s\n精度: %s\n速度: %s\n方位: %s\n時刻: %s",
-                source,
-                location.getProvider(),
-                location.getLatitude(),
-                location.getLongitude(),
-                altitudeText,
-                accuracyText,
-                speedText,
-                bearingText,
-                String.valueOf(location.getTime()));
-        updateGpsStatusText(text);
+        gpsFromCache = fromCache;
+        pipeline.onLocation(GpsFixes.copy(location, gpsFix));
+        scheduleFrame();
     }
 
     private void startGpsAcquisitionFlow() {
@@ -301,32 +767,52 @@ public class MainActivity extends Activity implements SensorEventListener {
         subscribeGpsUpdates();
     }
 
+    /** Provider queries are binder calls, so they run on the background thread; fixes arrive on the UI thread. */
     private void subscribeGpsUpdates() {
         if (locationManager == null) {
             return;
         }
-        try {
-            boolean gpsEnabled = locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER);
-            boolean networkEnabled = locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER);
-            if (!gpsEnabled) {
-                updateGpsStatusText("GPS状態: GPSプロバイダが無効です\n位置情報設定を有効化してください");
-                return;
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    boolean gpsEnabled = locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER);
+                    if (!gpsEnabled) {
+                        postGpsStatusText("GPS状態: GPSプロバイダが無効です\n位置情報設定を有効化してください");
+                        return;
+                    }
+                    locationManager.requestLocationUpdates(
+                            LocationManager.GPS_PROVIDER,
+                            1000L,
+                            0f,
+                            gpsLocationListener,
+                            Looper.getMainLooper());
+
+                    final Location lastKnownGps = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
+                    if (lastKnownGps != null) {
+                        runOnUiThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                updateGpsDisplay(lastKnownGps, true);
+                            }
+                        });
+                    } else {
+                        postGpsStatusText("GPS状態: 測位待機中...");
+                    }
+                } catch (SecurityException e) {
+                    postGpsStatusText("GPS状態: 位置情報アクセスエラー");
+                }
             }
-            locationManager.requestLocationUpdates(
-                    LocationManager.GPS_PROVIDER,
-                    1000L,
-                    0f,
-                    gpsLocationListener);
-
-            Location lastKnownGps = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
-            if (lastKnownGps != null) {
-                updateGpsDisplay(lastKnownGps, true);
-            } else {
-                updateGpsStatusText("GPS状態: 測位待機中...");
+        });
+    }
+
+    private void postGpsStatusText(final String text) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                updateGpsStatusText(text);
             }
-        } catch (SecurityException e) {
-            updateGpsStatusText("GPS状態: 位置情報アクセスエラー");
-        }
+        });
     }
 
     private void stopGpsUpdates() {
@@ -336,116 +822,253 @@ public class MainActivity extends Activity implements SensorEventListener {
         if (checkSelfPermission(Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
             return;
         }
-        try {
-            locationManager.removeUpdates(gpsLocationListener);
-        } catch (SecurityException e) {
-        }
-    }
-
-    private String getSensorTypeName(int type) {
-        switch (type) {
-            case Sensor.TYPE_ACCELEROMETER: return "加速度計";
-            case Sensor.TYPE_MAGNETIC_FIELD: return "磁気センサー";
-            case Sensor.TYPE_GYROSCOPE: return "ジャイロスコープ";
-            case Sensor.TYPE_LIGHT: return "照度センサー";
-            case Sensor.TYPE_PRESSURE: return "気圧センサー";
-            case Sensor.TYPE_PROXIMITY: return "近接センサー";
-            case Sensor.TYPE_GRAVITY: return "重力センサー";
-            case Sensor.TYPE_LINEAR_ACCELERATION: return "線形加速度";
-            case Sensor.TYPE_ROTATION_VECTOR: return "回転ベクトル";
-            case Sensor.TYPE_RELATIVE_HUMIDITY: return "湿度センサー";
-            case Sensor.TYPE_AMBIENT_TEMPERATURE: return "温度センサー";
-            case Sensor.TYPE_MAGNETIC_FIELD_UNCALIBRATED: return "磁気(未較正)";
-            case Sensor.TYPE_GAME_ROTATION_VECTOR: return "ゲーム回転ベクトル";
-            case Sensor.TYPE_GYROSCOPE_UNCALIBRATED: return "ジャイロ(未較正)";
-            case Sensor.TYPE_SIGNIFICANT_MOTION: return "有意な動き";
-            case Sensor.TYPE_STEP_DETECTOR: return "歩行検出";
-            case Sensor.TYPE_STEP_COUNTER: return "歩数計";
-            case Sensor.TYPE_GEOMAGNETIC_ROTATION_VECTOR: return "地磁気回転ベクトル";
-            case Sensor.TYPE_HEART_RATE: return "心拍数";
-            case Sensor.TYPE_POSE_6DOF: return "6DoF姿勢";
-            case Sensor.TYPE_STATIONARY_DETECT: return "静止検出";
-            case Sensor.TYPE_MOTION_DETECT: return "動作検出";
-            case Sensor.TYPE_HEART_BEAT: return "心拍";
-            case Sensor.TYPE_LOW_LATENCY_OFFBODY_DETECT: return "装着検出";
-            case Sensor.TYPE_ACCELEROMETER_UNCALIBRATED: return "加速度(未較正)";
-            case Sensor.TYPE_HINGE_ANGLE: return "ヒンジ角度";
-            default: return "タイプ " + type;
-        }
+        // Queued behind any subscription still in progress
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    locationManager.removeUpdates(gpsLocationListener);
+                } catch (SecurityException e) {
+                }
+            }
+        });
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        if (sensorManager != null) {
-            if (pressureSensor != null) {
-                sensorManager.registerListener(this, pressureSensor, SensorManager.SENSOR_DELAY_UI);
-            }
-            if (rotationSensor != null) {
-                sensorManager.registerListener(this, rotationSensor, SensorManager.SENSOR_DELAY_UI);
-            }
-            if (gyroSensor != null) {
-                sensorManager.registerListener(this, gyroSensor, SensorManager.SENSOR_DELAY_UI);
+        // The sinks take one thread at a time: one that outlived onPause's wait is waited for here
+        awaitEnded(displayConsumer);
+        awaitEnded(vibrationConsumer);
+        displayConsumer = new BusConsumerThread("DisplayConsumer", sensorHub.bus(),
+                SampleBus.Policy.DROP_OLDEST, displaySink) {
+            @Override
+            protected void afterPoll(int delivered) {
+                if (metrics.isEnabled()) {
+                    metrics.onDisplaySamples(delivered);
+                }
+                scheduleFrame();
             }
+        };
+        metrics.watch("display", displayConsumer.subscription());
+        displayConsumer.start();
+        vibrationConsumer = new BusConsumerThread("VibrationConsumer", sensorHub.bus(),
+                SampleBus.Policy.DROP_OLDEST, vibration);
+        metrics.watch("vibration", vibrationConsumer.subscription());
+        vibrationConsumer.start();
+        // Rates follow signal activity and whether the header is on screen
+        rateScheduler.start();
+        float refreshRate = getWindowManager().getDefaultDisplay().getRefreshRate();
+        if (refreshRate > 0f) {
+            vsyncPeriodNanos = (long) (1e9 / refreshRate);
+        }
+        resumed = true;
+        if (dashboard != null) {
+            dashboard.start();
         }
+        updateCaptureButton(CaptureService.isRunning());
         startGpsAcquisitionFlow();
     }
 
+    private static void awaitEnded(BusConsumerThread consumer) {
+        if (consumer != null) {
+            while (!consumer.shutdownAndJoin(CONSUMER_JOIN_MILLIS) && !Thread.currentThread().isInterrupted()) {
+                // Still draining; its queue is bounded, so this ends
+            }
+        }
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
-        if (sensorManager != null) {
-            sensorManager.unregisterListener(this);
+        rateScheduler.stop();
+        if (displayConsumer != null && displayConsumer.shutdownAndJoin(CONSUMER_JOIN_MILLIS)) {
+            displayConsumer = null;
+        }
+        if (vibrationConsumer != null && vibrationConsumer.shutdownAndJoin(CONSUMER_JOIN_MILLIS)) {
+            vibrationConsumer = null;
+        }
+        resumed = false;
+        if (dashboard != null) {
+            dashboard.stop();
         }
+        choreographer.removeFrameCallback(displayFrameCallback);
+        frameScheduled.set(false);
         stopGpsUpdates();
     }
 
     @Override
-    public void onSensorChanged(SensorEvent event) {
-        int type = event.sensor.getType();
-        if (type == Sensor.TYPE_PRESSURE) {
-            TextView valueView = sensorValueViews.get(Sensor.TYPE_PRESSURE);
-            if (valueView != null && event.values != null && event.values.length > 0) {
-                float pressure = event.values[0]; // hPa
-                double currentAltitude = pressureToAltitude(pressure);
-                if (!initialPressureSet) {
-                    initialAltitude = currentAltitude;
-                    initialPressureSet = true;
-                }
-                double delta = currentAltitude - initialAltitude;
-                String text = String.format(Locale.getDefault(),
-                        "気圧: %.2f hPa\n高度: %.2f m\n起動時との差: %.2f m",
-                        pressure, currentAltitude, delta);
-                valueView.setText(text);
+    protected void onDestroy() {
+        super.onDestroy();
+        // Queued work still runs, so a pending stopGpsUpdates is not lost
+        backgroundExecutor.shutdown();
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(displayFrameCallback);
+        }
+    }
+
+    // Runs on the UI thread at most once per display frame with the newest values only.
+    // Labels are rebuilt in reusable buffers and setText is skipped when the digits are unchanged.
+    private void updateSensorViews(long frameTimeNanos) {
+        LatestValueSlot pressureSlot = pipeline.pressureSlot();
+        LatestValueSlot pressureStatsSlot = pipeline.pressureStatsSlot();
+        boolean pressureStatsChanged = pressureStatsSlot.poll();
+        if ((pressureSlot.poll() || pressureStatsChanged) && altitudeView != null) {
+            float[] v = pressureSlot.values();
+            float[] stats = pressureStatsSlot.values();
+            pressureText.clear()
+                    .append("気圧: ").append(v[0], 2).append(" hPa\n高度: ")
+                    // Without a sea-level fix the GPS reference is the WGS84 ellipsoid
+                    .append(v[1], 2).append(v[4] != 0f ? " m (楕円体高)\n起動時との差: " : " m\n起動時との差: ")
+                    .append(v[2], 2).append(v[4] != 0f ? " m\n楕円体面気圧 (推定): " : " m\n海面気圧 (推定): ")
+                    .append(v[3], 2).append(" hPa\nノイズ σ (10秒): ")
+                    .append(stats[WindowStats.SNAPSHOT_STDDEV], 3).append(" hPa");
+            if (pressureText.commit()) {
+                altitudeView.setText(pressureText.chars(), 0, pressureText.length());
             }
-        } else if (type == Sensor.TYPE_ROTATION_VECTOR) {
-            if (compassView != null && azimuthView != null && event.values != null) {
-                float[] rotationMatrix = new float[9];
-                float[] orientation = new float[3];
-                SensorManager.getRotationMatrixFromVector(rotationMatrix, event.values);
-                SensorManager.getOrientation(rotationMatrix, orientation);
-                float azimuth = (float) Math.toDegrees(orientation[0]);
-                if (azimuth < 0) azimuth += 360;
+        }
+        LatestValueSlot orientationSlot = pipeline.orientationSlot();
+        orientationSlot.poll();
+        if (orientationSlot.timestamp() != 0L) {
+            // The frame reaches the screen one vsync after frameTimeNanos; sensor timestamps
+            // count elapsed realtime while the frame clock is System.nanoTime
+            long displayTime = frameTimeNanos + vsyncPeriodNanos
+                    + SystemClock.elapsedRealtimeNanos() - System.nanoTime();
+            float azimuth = OrientationFilter.predictAzimuthDegrees(
+                    orientationSlot.values(), 1, orientationSlot.timestamp(), displayTime);
+            if (compassView != null) {
                 compassView.setAzimuth(azimuth);
-                azimuthView.setText(String.format(Locale.getDefault(), "方位: %.0f°", azimuth));
             }
-        } else if (type == Sensor.TYPE_GYROSCOPE) {
-            if (gyroView != null && event.values != null && event.values.length >= 3) {
-                gyroView.setText(String.format(Locale.getDefault(),
-                        "ジャイロ: x=%.3f y=%.3f z=%.3f (rad/s)",
-                        event.values[0], event.values[1], event.values[2]));
+            if (azimuthView != null) {
+                azimuthText.clear().append("方位: ").append(azimuth, 0).append('°');
+                if (azimuthText.commit()) {
+                    azimuthView.setText(azimuthText.chars(), 0, azimuthText.length());
+                }
             }
         }
+        LatestValueSlot gyroSlot = pipeline.gyroSlot();
+        LatestValueSlot gyroStatsSlot = pipeline.gyroStatsSlot();
+        boolean gyroStatsChanged = gyroStatsSlot.poll();
+        if ((gyroSlot.poll() || gyroStatsChanged) && gyroView != null) {
+            float[] v = gyroSlot.values();
+            float[] stats = gyroStatsSlot.values();
+            gyroText.clear()
+                    .append("ジャイロ: x=").append(v[0], 3)
+                    .append(" y=").append(v[1], 3)
+                    .append(" z=").append(v[2], 3).append(" (rad/s)\n平均 (60秒): x=")
+                    .append(stats[WindowStats.SNAPSHOT_MEAN], 4)
+                    .append(" y=").append(stats[WindowStats.SNAPSHOT_SIZE + WindowStats.SNAPSHOT_MEAN], 4)
+                    .append(" z=").append(stats[2 * WindowStats.SNAPSHOT_SIZE + WindowStats.SNAPSHOT_MEAN], 4);
+            if (gyroText.commit()) {
+                gyroView.setText(gyroText.chars(), 0, gyroText.length());
+            }
+        }
+        LatestValueSlot vibrationSlot = vibration.slot();
+        if (vibrationSlot.poll() && vibrationView != null) {
+            float[] v = vibrationSlot.values();
+            vibrationText.clear();
+            appendVibration(vibrationText.append("振動 (加速度): "), v, 0, " m/s²");
+            appendVibration(vibrationText.append("\n振動 (ジャイロ): "), v,
+                    VibrationMonitor.SNAPSHOT_SIZE, " rad/s");
+            if (vibrationText.commit()) {
+                vibrationView.setText(vibrationText.chars(), 0, vibrationText.length());
+            }
+        }
+        if (pipeline.gpsSlot().poll() && gpsView != null) {
+            GpsText.write(gpsText, pipeline.gpsSlot().value(), gpsFromCache);
+            LatestValueSlot accuracyStatsSlot = pipeline.gpsAccuracyStatsSlot();
+            accuracyStatsSlot.poll();
+            float[] stats = accuracyStatsSlot.values();
+            if (stats[WindowStats.SNAPSHOT_COUNT] > 0) {
+                gpsText.append("\n精度 中央値/90%: ").append(stats[WindowStats.SNAPSHOT_P50], 1)
+                        .append(" / ").append(stats[WindowStats.SNAPSHOT_P90], 1).append(" m");
+            }
+            TrackStore track = sensorHub.track();
+            if (track.size() > 0) {
+                gpsText.append("\n軌跡: ").append(track.distanceMeters() / 1000.0, 2).append(" km (")
+                        .append(track.fixCount()).append("点中").append(track.size()).append("点を保持)");
+            }
+            if (gpsText.commit()) {
+                gpsView.setText(gpsText.chars(), 0, gpsText.length());
+            }
+        }
+        chartView.refresh();
+        // The header holds every adaptively sampled view
+        boolean visible = listView.getFirstVisiblePosition() == 0;
+        if (visible != headerVisible) {
+            headerVisible = visible;
+            rateScheduler.setVisible(visible);
+        }
+        updateRateView();
+        updateTelemetryView(frameTimeNanos);
+        if (dashboard != null) {
+            dashboard.updateVisibleRows();
+        }
+        if (!firstSampleShown && (pressureSlot.timestamp() != 0L || orientationSlot.timestamp() != 0L
+                || gyroSlot.timestamp() != 0L)) {
+            firstSampleShown = true;
+            metrics.onFirstSample(SystemClock.elapsedRealtimeNanos());
+            reportFullyDrawn();
+        }
+        if (metrics.isEnabled()) {
+            metrics.onDisplayFrame();
+            updateMetricsView(frameTimeNanos);
+        }
     }
 
-    private double pressureToAltitude(double pressureHPa) {
-        // Convert hPa to meters using the barometric formula
-        return 44330.0 * (1.0 - Math.pow(pressureHPa / 1013.25, 1.0/5.255));
+    private void updateMetricsView(long frameTimeNanos) {
+        if (frameTimeNanos - metricsShownNanos < METRICS_REFRESH_NANOS) {
+            return;
+        }
+        metricsShownNanos = frameTimeNanos;
+        metrics.writeSummary(metricsText.clear());
+        if (metricsText.commit()) {
+            metricsView.setText(metricsText.chars(), 0, metricsText.length());
+        }
     }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        // Not used
+    // Events delivered against staying at the moving rate, and the hub CPU that saved
+    private void updateRateView() {
+        LatestValueSlot reportSlot = rateScheduler.reportSlot();
+        if (!reportSlot.poll()) {
+            return;
+        }
+        float[] v = reportSlot.values();
+        double events = 0.0;
+        double baseline = 0.0;
+        int high = 0;
+        for (int i = 0; i < rateScheduler.channelCount(); i++) {
+            int base = i * AdaptiveRatePolicy.REPORT_FIELDS;
+            events += v[base + AdaptiveRatePolicy.REPORT_EVENTS];
+            baseline += v[base + AdaptiveRatePolicy.REPORT_BASELINE_EVENTS];
+            if (v[base + AdaptiveRatePolicy.REPORT_HIGH] != 0f) {
+                high++;
+            }
+        }
+        if (baseline <= 0.0) {
+            return;
+        }
+        double saved = baseline - events;
+        rateText.clear()
+                .append("適応サンプリング: 高レート ").append(high).append('/').append(rateScheduler.channelCount())
+                .append("  イベント削減 ").append(100.0 * saved / baseline, 0).append("% (")
+                .append((long) saved).append(")\n推定CPU削減 (ハブスレッド): ")
+                .append(saved * sensorHub.cpuNanosPerEvent() * 1e-6, 0).append(" ms");
+        if (rateText.commit()) {
+            rateView.setText(rateText.chars(), 0, rateText.length());
+        }
+    }
+
+    private static void appendVibration(DecimalText text, float[] v, int offset, String unit) {
+        text.append(v[offset + SpectrumAnalyzer.SNAPSHOT_FREQUENCY], 1).append(" Hz ")
+                .append(v[offset + SpectrumAnalyzer.SNAPSHOT_AMPLITUDE], 3).append(unit);
+        // Only the machinery bands have thresholds
+        if ((int) v[offset + SpectrumAnalyzer.SNAPSHOT_ACTIVE_BANDS] != 0) {
+            text.append(" [検出]");
+        }
     }
 
     @Override
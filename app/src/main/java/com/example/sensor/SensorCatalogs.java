@@ -0,0 +1,49 @@
+package com.example.sensor;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.os.Build;
+
+import com.example.sensor.core.SensorCatalog;
+
+import java.io.File;
+import java.util.List;
+
+final class SensorCatalogs {
+    private static final String FILE_NAME = "sensor-catalog.bin";
+
+    private SensorCatalogs() {
+    }
+
+    /** Changes with the device and with every OS update, either of which may change the sensors. */
+    static String fingerprint() {
+        return Build.FINGERPRINT + '/' + Build.VERSION.SDK_INT;
+    }
+
+    /** Not backed up: a catalog restored onto another device would be rejected anyway. */
+    static File file(Context context) {
+        return new File(context.getNoBackupFilesDir(), FILE_NAME);
+    }
+
+    static SensorCatalog describe(List<Sensor> sensors, String fingerprint) {
+        SensorCatalog catalog = new SensorCatalog(fingerprint);
+        for (Sensor sensor : sensors) {
+            SensorCatalog.Entry e = new SensorCatalog.Entry();
+            e.type = sensor.getType();
+            e.name = sensor.getName();
+            e.vendor = sensor.getVendor();
+            e.version = sensor.getVersion();
+            e.maximumRange = sensor.getMaximumRange();
+            e.resolution = sensor.getResolution();
+            e.power = sensor.getPower();
+            e.minDelayUs = sensor.getMinDelay();
+            e.maxDelayUs = sensor.getMaxDelay();
+            e.fifoReservedEventCount = sensor.getFifoReservedEventCount();
+            e.fifoMaxEventCount = sensor.getFifoMaxEventCount();
+            e.reportingMode = sensor.getReportingMode();
+            e.wakeUp = sensor.isWakeUpSensor();
+            catalog.add(e);
+        }
+        return catalog;
+    }
+}
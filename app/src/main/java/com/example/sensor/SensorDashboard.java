@@ -0,0 +1,444 @@
+package com.example.sensor;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.SparseIntArray;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.LinearLayout;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import com.example.sensor.core.BusConsumerThread;
+import com.example.sensor.core.CaptureConfig;
+import com.example.sensor.core.DecimalText;
+import com.example.sensor.core.GpsFix;
+import com.example.sensor.core.LatestValueSlot;
+import com.example.sensor.core.SampleBus;
+import com.example.sensor.core.SampleSink;
+import com.example.sensor.core.SensorCatalog;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List rows for every sensor on the device. Rows are recycled by the ListView, and only
+ * sensors whose rows are on screen (plus a small margin) are registered, at a display
+ * rate rather than full rate. A sensor that is its type's default belongs to
+ * {@link SensorHub}: its row is a request to the hub and is read from the bus, newest
+ * sample only, so the hub still registers it once. Only the other sensors, which the
+ * hub never publishes, are registered here directly. Events land in one
+ * {@link LatestValueSlot} per sensor on a background thread, the bus consumer's for hub
+ * rows; {@link #updateVisibleRows()} runs once per frame and reformats
+ * only visible rows whose values changed. Rows are drawn from a {@link SensorCatalog},
+ * which may come from the saved copy before the platform has enumerated the sensors;
+ * nothing is registered until {@link #setSensors} supplies them.
+ */
+final class SensorDashboard extends BaseAdapter implements SensorEventListener, AbsListView.OnScrollListener {
+    private static final int SAMPLING_PERIOD_US = 100_000;
+    /** Rows kept registered beyond each edge of the screen, so slow scrolling does not churn. */
+    private static final int VISIBLE_MARGIN = 2;
+    private static final long VISIBILITY_DEBOUNCE_MS = 150L;
+    private static final int MAX_VALUES = 16;
+    private static final long JOIN_MILLIS = 200L;
+
+    private final Context context;
+    private final SensorManager sensorManager;
+    private final SensorHub hub;
+    private final SensorCatalog catalog;
+    // Set once on the UI thread, read on the sampler thread
+    private volatile List<Sensor> sensors;
+    private volatile Map<Sensor, Integer> positions;
+    /** position of each type's default sensor, read from the bus */
+    private volatile SparseIntArray hubRows;
+    /** value count, then up to MAX_VALUES values */
+    private final LatestValueSlot[] slots;
+    // UI thread only
+    private final boolean[] hasValues;
+    private final Runnable onValues;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private ListView listView;
+    private BusConsumerThread consumer;
+    private int firstVisible = 0;
+    private int lastVisible = -1;
+    // Sampler thread only
+    private final boolean[] registered;
+    private HandlerThread thread;
+    private Handler handler;
+    private boolean hubRequested;
+
+    private final SampleSink hubSink = new SampleSink() {
+        @Override
+        public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+            SparseIntArray rows = hubRows;
+            int position = rows != null ? rows.get(type, -1) : -1;
+            if (position >= 0) {
+                publish(position, timestampNanos, values, count);
+            }
+        }
+
+        @Override
+        public void onLocation(GpsFix fix) {
+        }
+    };
+
+    private final Runnable applyVisibility = new Runnable() {
+        @Override
+        public void run() {
+            final int first = Math.max(0, firstVisible - VISIBLE_MARGIN);
+            final int last = Math.min(catalog.size() - 1, lastVisible + VISIBLE_MARGIN);
+            final Handler h = handler;
+            if (h == null) {
+                return;
+            }
+            h.post(new Runnable() {
+                @Override
+                public void run() {
+                    register(first, last, h);
+                }
+            });
+        }
+    };
+
+    /** {@code onValues} is called on the sampler thread whenever a visible sensor reports. */
+    SensorDashboard(Context context, SensorManager sensorManager, SensorHub hub, SensorCatalog catalog,
+                    Runnable onValues) {
+        this.context = context;
+        this.sensorManager = sensorManager;
+        this.hub = hub;
+        this.catalog = catalog;
+        this.onValues = onValues;
+        slots = new LatestValueSlot[catalog.size()];
+        hasValues = new boolean[catalog.size()];
+        registered = new boolean[catalog.size()];
+        for (int i = 0; i < catalog.size(); i++) {
+            slots[i] = new LatestValueSlot(1 + MAX_VALUES);
+        }
+    }
+
+    /** The platform's sensors, listed as in the catalog. UI thread. */
+    void setSensors(List<Sensor> sensors) {
+        Map<Sensor, Integer> byPosition = new HashMap<>();
+        SparseIntArray defaults = new SparseIntArray();
+        for (int i = 0; i < sensors.size(); i++) {
+            Sensor sensor = sensors.get(i);
+            byPosition.put(sensor, i);
+            if (sensor.equals(sensorManager.getDefaultSensor(sensor.getType()))) {
+                defaults.put(sensor.getType(), i);
+            }
+        }
+        positions = byPosition;
+        hubRows = defaults;
+        this.sensors = sensors;
+        if (handler != null) {
+            mainHandler.post(applyVisibility);
+        }
+    }
+
+    void attach(ListView listView) {
+        this.listView = listView;
+        listView.setAdapter(this);
+        listView.setOnScrollListener(this);
+    }
+
+    void start() {
+        if (thread != null) {
+            return;
+        }
+        // The row slots take one writer: a consumer that outlived stop()'s wait goes first
+        if (consumer != null) {
+            while (!consumer.shutdownAndJoin(JOIN_MILLIS) && !Thread.currentThread().isInterrupted()) {
+                // Still draining; its queue is bounded, so this ends
+            }
+        }
+        thread = new HandlerThread("SensorDashboard");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        // Newest sample per type is all a row shows
+        consumer = new BusConsumerThread("SensorDashboardBus", hub.bus(), SampleBus.Policy.CONFLATE, hubSink) {
+            @Override
+            protected void afterPoll(int delivered) {
+                onValues.run();
+            }
+        };
+        hub.metrics().watch("dashboard", consumer.subscription());
+        consumer.start();
+        mainHandler.post(applyVisibility);
+    }
+
+    void stop() {
+        if (thread == null) {
+            return;
+        }
+        mainHandler.removeCallbacks(applyVisibility);
+        final HandlerThread t = thread;
+        final Handler h = handler;
+        h.post(new Runnable() {
+            @Override
+            public void run() {
+                register(0, -1, h);
+                t.quit();
+            }
+        });
+        thread = null;
+        handler = null;
+        if (consumer.shutdownAndJoin(JOIN_MILLIS)) {
+            consumer = null;
+        }
+    }
+
+    /**
+     * Registers rows first..last and unregisters the rest: hub rows by one request for
+     * all of them, others directly. Runs on {@code h}'s thread.
+     */
+    private void register(int first, int last, Handler h) {
+        List<Sensor> sensors = this.sensors;
+        SparseIntArray rows = hubRows;
+        if (sensors == null) {
+            if (hubRequested) {
+                hub.clearRequest(this);
+                hubRequested = false;
+            }
+            return;
+        }
+        CaptureConfig request = new CaptureConfig();
+        boolean requestChanged = false;
+        for (int i = 0; i < sensors.size(); i++) {
+            boolean wanted = i >= first && i <= last && isStreamable(catalog.get(i));
+            Sensor sensor = sensors.get(i);
+            boolean viaHub = rows.get(sensor.getType(), -1) == i;
+            if (viaHub && wanted) {
+                request.set(sensor.getType(), SAMPLING_PERIOD_US, 0);
+            }
+            if (wanted == registered[i]) {
+                continue;
+            }
+            if (viaHub) {
+                registered[i] = wanted;
+                requestChanged = true;
+            } else if (wanted) {
+                registered[i] = sensorManager.registerListener(this, sensor, SAMPLING_PERIOD_US, h);
+            } else {
+                sensorManager.unregisterListener(this, sensor);
+                registered[i] = false;
+            }
+        }
+        if (requestChanged) {
+            if (request.size() > 0) {
+                hub.setRequest(this, request);
+            } else {
+                hub.clearRequest(this);
+            }
+            hubRequested = request.size() > 0;
+        }
+    }
+
+    private static boolean isStreamable(SensorCatalog.Entry sensor) {
+        // One-shot sensors need requestTriggerSensor and disarm after a single event
+        return sensor.reportingMode != Sensor.REPORTING_MODE_ONE_SHOT;
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        Map<Sensor, Integer> positions = this.positions;
+        Integer position = positions != null ? positions.get(event.sensor) : null;
+        if (position == null) {
+            return;
+        }
+        publish(position, event.timestamp, event.values, event.values.length);
+        onValues.run();
+    }
+
+    private void publish(int position, long timestampNanos, float[] values, int count) {
+        LatestValueSlot slot = slots[position];
+        float[] buffer = slot.editBuffer();
+        int n = Math.min(count, MAX_VALUES);
+        buffer[0] = n;
+        System.arraycopy(values, 0, buffer, 1, n);
+        slot.publish(timestampNanos);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        int headers = listView != null ? listView.getHeaderViewsCount() : 0;
+        int first = Math.max(0, firstVisibleItem - headers);
+        int last = firstVisibleItem + visibleItemCount - 1 - headers;
+        if (first == firstVisible && last == lastVisible) {
+            return;
+        }
+        firstVisible = first;
+        lastVisible = last;
+        // Re-registering is a binder call per sensor; wait for the list to settle a little
+        mainHandler.removeCallbacks(applyVisibility);
+        mainHandler.postDelayed(applyVisibility, VISIBILITY_DEBOUNCE_MS);
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+    }
+
+    /** Reformats visible rows that have new values. UI thread, once per frame. */
+    void updateVisibleRows() {
+        if (listView == null) {
+            return;
+        }
+        for (int i = 0; i < listView.getChildCount(); i++) {
+            Object tag = listView.getChildAt(i).getTag();
+            if (tag instanceof RowHolder) {
+                RowHolder holder = (RowHolder) tag;
+                if (slots[holder.position].poll()) {
+                    hasValues[holder.position] = true;
+                    bindValues(holder);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return catalog.size();
+    }
+
+    @Override
+    public Object getItem(int position) {
+        return catalog.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        RowHolder holder;
+        if (convertView != null && convertView.getTag() instanceof RowHolder) {
+            holder = (RowHolder) convertView.getTag();
+        } else {
+            holder = new RowHolder(context);
+            convertView = holder.card;
+            convertView.setTag(holder);
+        }
+        if (holder.position != position) {
+            SensorCatalog.Entry sensor = catalog.get(position);
+            holder.position = position;
+            holder.nameView.setText(sensor.name);
+            holder.typeView.setText("タイプ: " + typeName(sensor.type));
+            holder.vendorView.setText("ベンダー: " + sensor.vendor + " | 範囲: " + sensor.maximumRange);
+            holder.valueText.invalidate();
+            if (hasValues[position]) {
+                bindValues(holder);
+            } else {
+                holder.valueView.setText(isStreamable(sensor) ? "データ: 取得中..." : "データ: ワンショットセンサー");
+            }
+        }
+        return convertView;
+    }
+
+    private void bindValues(RowHolder holder) {
+        float[] v = slots[holder.position].values();
+        int n = (int) v[0];
+        DecimalText text = holder.valueText.clear().append("データ: ");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(v[1 + i], 3);
+        }
+        if (text.commit()) {
+            holder.valueView.setText(text.chars(), 0, text.length());
+        }
+    }
+
+    static String typeName(int type) {
+        switch (type) {
+            case Sensor.TYPE_ACCELEROMETER: return "加速度計";
+            case Sensor.TYPE_MAGNETIC_FIELD: return "磁気センサー";
+            case Sensor.TYPE_GYROSCOPE: return "ジャイロスコープ";
+            case Sensor.TYPE_LIGHT: return "照度センサー";
+            case Sensor.TYPE_PRESSURE: return "気圧センサー";
+            case Sensor.TYPE_PROXIMITY: return "近接センサー";
+            case Sensor.TYPE_GRAVITY: return "重力センサー";
+            case Sensor.TYPE_LINEAR_ACCELERATION: return "線形加速度";
+            case Sensor.TYPE_ROTATION_VECTOR: return "回転ベクトル";
+            case Sensor.TYPE_RELATIVE_HUMIDITY: return "湿度センサー";
+            case Sensor.TYPE_AMBIENT_TEMPERATURE: return "温度センサー";
+            case Sensor.TYPE_MAGNETIC_FIELD_UNCALIBRATED: return "磁気(未較正)";
+            case Sensor.TYPE_GAME_ROTATION_VECTOR: return "ゲーム回転ベクトル";
+            case Sensor.TYPE_GYROSCOPE_UNCALIBRATED: return "ジャイロ(未較正)";
+            case Sensor.TYPE_SIGNIFICANT_MOTION: return "有意な動き";
+            case Sensor.TYPE_STEP_DETECTOR: return "歩行検出";
+            case Sensor.TYPE_STEP_COUNTER: return "歩数計";
+            case Sensor.TYPE_GEOMAGNETIC_ROTATION_VECTOR: return "地磁気回転ベクトル";
+            case Sensor.TYPE_HEART_RATE: return "心拍数";
+            case Sensor.TYPE_POSE_6DOF: return "6DoF姿勢";
+            case Sensor.TYPE_STATIONARY_DETECT: return "静止検出";
+            case Sensor.TYPE_MOTION_DETECT: return "動作検出";
+            case Sensor.TYPE_HEART_BEAT: return "心拍";
+            case Sensor.TYPE_LOW_LATENCY_OFFBODY_DETECT: return "装着検出";
+            case Sensor.TYPE_ACCELEROMETER_UNCALIBRATED: return "加速度(未較正)";
+            case Sensor.TYPE_HINGE_ANGLE: return "ヒンジ角度";
+            default: return "タイプ " + type;
+        }
+    }
+
+    /** Views of one recycled card, styled like MainActivity's sensor cards. */
+    private static final class RowHolder {
+        final LinearLayout card;
+        final TextView nameView;
+        final TextView typeView;
+        final TextView vendorView;
+        final TextView valueView;
+        final DecimalText valueText = new DecimalText(256);
+        int position = -1;
+
+        RowHolder(Context context) {
+            card = new LinearLayout(context);
+            card.setOrientation(LinearLayout.VERTICAL);
+            card.setBackgroundColor(Color.parseColor("#1E1E1E"));
+            card.setPadding(24, 24, 24, 24);
+            card.setLayoutParams(new AbsListView.LayoutParams(
+                    AbsListView.LayoutParams.MATCH_PARENT,
+                    AbsListView.LayoutParams.WRAP_CONTENT));
+
+            nameView = new TextView(context);
+            nameView.setTextSize(16);
+            nameView.setTextColor(Color.parseColor("#4FC3F7"));
+            nameView.setTypeface(null, Typeface.BOLD);
+            card.addView(nameView);
+
+            typeView = new TextView(context);
+            typeView.setTextSize(12);
+            typeView.setTextColor(Color.parseColor("#888888"));
+            typeView.setPadding(0, 4, 0, 8);
+            card.addView(typeView);
+
+            vendorView = new TextView(context);
+            vendorView.setTextSize(11);
+            vendorView.setTextColor(Color.parseColor("#666666"));
+            vendorView.setPadding(0, 0, 0, 8);
+            card.addView(vendorView);
+
+            valueView = new TextView(context);
+            valueView.setTextSize(14);
+            valueView.setTextColor(Color.parseColor("#76FF03"));
+            valueView.setTypeface(Typeface.MONOSPACE);
+            card.addView(valueView);
+        }
+    }
+}
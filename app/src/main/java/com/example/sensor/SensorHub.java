@@ -0,0 +1,323 @@
+package com.example.sensor;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener2;
+import android.hardware.SensorManager;
+import android.hardware.TriggerEvent;
+import android.hardware.TriggerEventListener;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+import com.example.sensor.core.BusConsumerThread;
+import com.example.sensor.core.CaptureConfig;
+import com.example.sensor.core.GpsFix;
+import com.example.sensor.core.PipelineMetrics;
+import com.example.sensor.core.SampleBus;
+import com.example.sensor.core.SensorHistory;
+import com.example.sensor.core.SensorRequests;
+import com.example.sensor.core.SensorTypes;
+import com.example.sensor.core.TelemetryStreamer;
+import com.example.sensor.core.TrackStore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide owner of the sensor registrations. Each sensor is registered once, at
+ * the fastest rate and lowest latency any client asked for, and every event is
+ * published to one {@link SampleBus} that the screen, the recorder and other
+ * consumers subscribe to. The hub thread is the bus's only producer. A history
+ * consumer keeps a bounded, multi-resolution record of the main channels for as long
+ * as the process lives, and a {@link TrackStore} the GPS track. One-shot sensors such as significant motion are armed as
+ * triggers, re-armed after each event, and their events published like any other.
+ * When {@link PipelineMetrics} are enabled, each event's delivery latency and the time
+ * spent handling it are recorded. A {@link TelemetryStreamer}, while started, pushes
+ * the main channels and fixes to a collector on the LAN from its own bus subscription.
+ */
+final class SensorHub implements SensorEventListener2 {
+    private static final int BUS_CAPACITY = 8192;
+    private static final long FLUSH_TIMEOUT_MS = 2000L;
+    /** Events between readings of the hub thread's CPU time. */
+    private static final int CPU_SAMPLE_EVENTS = 4096;
+    /** SENSOR_DELAY_GAME; the rate streamed while telemetry runs. */
+    private static final int TELEMETRY_PERIOD_US = 20_000;
+    private static final int[] TELEMETRY_TYPES =
+            {SensorTypes.PRESSURE, SensorTypes.ROTATION_VECTOR, SensorTypes.GYROSCOPE};
+
+    private static SensorHub instance;
+
+    private final SensorManager sensorManager;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final SampleBus bus = new SampleBus(BUS_CAPACITY);
+    private final SensorHistory history = new SensorHistory();
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private final TrackStore track = new TrackStore();
+    // Guarded by this
+    private TelemetryStreamer telemetry;
+    // Hub thread only
+    private final Map<Integer, Sensor> registeredSensors = new HashMap<>();
+    private long eventCount = 0;
+    private long cpuStartNanos = -1L;
+    private volatile long cpuNanosPerEvent = 0L;
+
+    // Trigger callbacks arrive on the main thread; events are moved to the hub thread
+    private final TriggerEventListener triggerListener = new TriggerEventListener() {
+        @Override
+        public void onTrigger(final TriggerEvent event) {
+            final int type = event.sensor.getType();
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onTriggerEvent(type, event);
+                }
+            });
+        }
+    };
+
+    private final Runnable applyRequests = new Runnable() {
+        @Override
+        public void run() {
+            applyRequests();
+        }
+    };
+
+    private final Runnable flushTimeout = new Runnable() {
+        @Override
+        public void run() {
+            requests.onFlushTimeout();
+        }
+    };
+
+    private final SensorRequests.Source source = new SensorRequests.Source() {
+        @Override
+        public boolean register(int type, int samplingPeriodUs, int maxReportLatencyUs) {
+            return registerSensor(type, samplingPeriodUs, maxReportLatencyUs);
+        }
+
+        @Override
+        public void unregister(int type) {
+            Sensor sensor = registeredSensors.remove(type);
+            if (sensor != null) {
+                unregisterSensor(sensor);
+            }
+        }
+
+        @Override
+        public int flush() {
+            int listening = 0;
+            for (Sensor sensor : registeredSensors.values()) {
+                if (sensor.getReportingMode() != Sensor.REPORTING_MODE_ONE_SHOT) {
+                    listening++;
+                }
+            }
+            // Triggers have no FIFO and never report a flush
+            return listening == 0 || !sensorManager.flush(SensorHub.this) ? 0 : listening;
+        }
+    };
+    private final SensorRequests requests = new SensorRequests(source);
+
+    static synchronized SensorHub get(Context context) {
+        if (instance == null) {
+            instance = new SensorHub(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SensorHub(Context context) {
+        sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        thread = new HandlerThread("SensorHub", Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        history.track(SensorTypes.PRESSURE, 1, 50);
+        history.track(SensorTypes.GYROSCOPE, 3, 200);
+        history.track(SensorTypes.ROTATION_VECTOR, 4, 50);
+        BusConsumerThread historyConsumer =
+                new BusConsumerThread("SensorHistory", bus, SampleBus.Policy.DROP_OLDEST, history);
+        metrics.watch("history", historyConsumer.subscription());
+        historyConsumer.start();
+    }
+
+    SampleBus bus() {
+        return bus;
+    }
+
+    SensorHistory history() {
+        return history;
+    }
+
+    /** Simplified GPS track of the whole process lifetime; fed by every fix source. */
+    TrackStore track() {
+        return track;
+    }
+
+    /** Process-wide pipeline instrumentation; off until enabled. */
+    PipelineMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Starts streaming to {@code host:port}, replacing any running streamer. The streamed
+     * sensors are held at the game rate for as long as it runs.
+     */
+    synchronized TelemetryStreamer startTelemetry(String host, int port, TelemetryStreamer.Transport transport) {
+        stopTelemetry();
+        telemetry = new TelemetryStreamer(bus, host, port, transport, TELEMETRY_TYPES);
+        CaptureConfig config = new CaptureConfig();
+        for (int type : TELEMETRY_TYPES) {
+            config.set(type, TELEMETRY_PERIOD_US, 0);
+        }
+        setRequest(telemetry, config);
+        metrics.watch("telemetry", telemetry.subscription());
+        telemetry.start();
+        return telemetry;
+    }
+
+    synchronized void stopTelemetry() {
+        if (telemetry != null) {
+            clearRequest(telemetry);
+            telemetry.shutdown();
+            telemetry = null;
+        }
+    }
+
+    /** The running streamer, or null. */
+    synchronized TelemetryStreamer telemetry() {
+        return telemetry;
+    }
+
+    /** Looper of the producer thread; {@link #publishLocation} must be called on it. */
+    Looper looper() {
+        return thread.getLooper();
+    }
+
+    /** Replaces what {@code client} needs; sampling periods and latencies in microseconds. */
+    void setRequest(Object client, CaptureConfig config) {
+        requests.set(client, config);
+        handler.post(applyRequests);
+    }
+
+    void clearRequest(Object client) {
+        requests.clear(client);
+        handler.post(applyRequests);
+    }
+
+    /** Hub thread CPU time per published sensor event, ns; 0 until measured. */
+    long cpuNanosPerEvent() {
+        return cpuNanosPerEvent;
+    }
+
+    void publishLocation(GpsFix fix) {
+        bus.publish(fix);
+        track.onLocation(fix);
+    }
+
+    /**
+     * Asks every batching sensor to deliver its FIFO contents now; {@code done} runs on the
+     * hub thread once all of it has been published, or after a timeout.
+     */
+    void flush(final Runnable done) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (requests.flush(done)) {
+                    handler.removeCallbacks(flushTimeout);
+                    handler.postDelayed(flushTimeout, FLUSH_TIMEOUT_MS);
+                }
+            }
+        });
+    }
+
+    private void applyRequests() {
+        if (sensorManager == null) {
+            return;
+        }
+        requests.apply();
+    }
+
+    private boolean registerSensor(int type, int period, int latency) {
+        Sensor sensor = selectSensor(type, latency > 0);
+        if (sensor == null) {
+            return false;
+        }
+        if (sensor.getReportingMode() == Sensor.REPORTING_MODE_ONE_SHOT) {
+            if (!sensorManager.requestTriggerSensor(triggerListener, sensor)) {
+                return false;
+            }
+        } else {
+            // Without FIFO space the latency is ignored and events arrive one by one
+            int effectiveLatency = sensor.getFifoMaxEventCount() > 0 ? latency : 0;
+            if (!sensorManager.registerListener(this, sensor, period, effectiveLatency, handler)) {
+                return false;
+            }
+        }
+        registeredSensors.put(type, sensor);
+        return true;
+    }
+
+    private void unregisterSensor(Sensor sensor) {
+        if (sensor.getReportingMode() == Sensor.REPORTING_MODE_ONE_SHOT) {
+            sensorManager.cancelTriggerSensor(triggerListener, sensor);
+        } else {
+            sensorManager.unregisterListener(this, sensor);
+        }
+    }
+
+    private void onTriggerEvent(int type, TriggerEvent event) {
+        Sensor sensor = registeredSensors.get(type);
+        if (sensor == null) {
+            // Cancelled while the event was on its way
+            return;
+        }
+        bus.publish(type, event.timestamp, 0, event.values, event.values.length);
+        // One-shot: the trigger disarms itself after firing
+        sensorManager.requestTriggerSensor(triggerListener, sensor);
+    }
+
+    /**
+     * Batching prefers the wake-up variant: its FIFO wakes the AP shortly before
+     * overflowing, while a non-wake-up FIFO silently drops samples when the AP sleeps.
+     */
+    private Sensor selectSensor(int type, boolean batching) {
+        Sensor sensor = batching ? sensorManager.getDefaultSensor(type, true) : null;
+        return sensor != null ? sensor : sensorManager.getDefaultSensor(type);
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        // Sensor timestamps count elapsed realtime; nothing is timed while metrics are off
+        boolean measured = metrics.isEnabled();
+        long received = measured ? SystemClock.elapsedRealtimeNanos() : 0L;
+        int type = event.sensor.getType();
+        bus.publish(type, event.timestamp, event.accuracy, event.values, event.values.length);
+        if (++eventCount % CPU_SAMPLE_EVENTS == 0) {
+            long cpu = Debug.threadCpuTimeNanos();
+            if (cpuStartNanos >= 0L) {
+                cpuNanosPerEvent = (cpu - cpuStartNanos) / CPU_SAMPLE_EVENTS;
+            }
+            cpuStartNanos = cpu;
+        }
+        if (measured) {
+            metrics.onSensorEvent(type, event.timestamp, received);
+            metrics.handlerTime().record(SystemClock.elapsedRealtimeNanos() - received);
+        }
+    }
+
+    @Override
+    public void onFlushCompleted(Sensor sensor) {
+        if (requests.onFlushCompleted()) {
+            handler.removeCallbacks(flushTimeout);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        // Accuracy travels with every sample
+    }
+}
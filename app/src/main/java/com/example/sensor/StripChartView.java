@@ -0,0 +1,183 @@
+package com.example.sensor;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.view.View;
+
+import com.example.sensor.core.StripChartBuffer;
+
+/**
+ * Scrolling chart of several channels stacked in lanes, one pixel column per
+ * {@link StripChartBuffer} column. Each column is drawn as a vertical min-max segment
+ * plus a segment joining it to the previous column's last value, so a spike that lasted
+ * a single sample still shows. Line buffers are sized in onSizeChanged; drawing does
+ * not allocate and costs the same at any sample rate.
+ */
+public class StripChartView extends View {
+    public static final long DEFAULT_WINDOW_NANOS = 30_000_000_000L;
+
+    private static final int FLOATS_PER_COLUMN = 8;
+    private static final float LANE_PADDING = 0.08f;
+
+    private final StripChartBuffer buffer;
+    private final int channels;
+    private final int[] channelLanes;
+    private final Paint[] channelPaints;
+    private final String[] laneLabels;
+    private final float[] laneMinSpans;
+    private final float[] laneLows;
+    private final float[] laneHighs;
+    private final Paint axisPaint = new Paint();
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private long windowNanos = DEFAULT_WINDOW_NANOS;
+    private float[] mins = new float[0];
+    private float[] maxs = new float[0];
+    private float[] lasts = new float[0];
+    private float[] lines = new float[0];
+
+    public StripChartView(Context context, int channels, int lanes) {
+        super(context);
+        this.channels = channels;
+        buffer = new StripChartBuffer(channels, 1, windowNanos);
+        channelLanes = new int[channels];
+        channelPaints = new Paint[channels];
+        for (int i = 0; i < channels; i++) {
+            channelPaints[i] = new Paint();
+            channelPaints[i].setColor(Color.WHITE);
+            channelPaints[i].setStrokeWidth(0f);
+        }
+        laneLabels = new String[lanes];
+        laneMinSpans = new float[lanes];
+        laneLows = new float[lanes];
+        laneHighs = new float[lanes];
+        axisPaint.setColor(Color.parseColor("#333333"));
+        labelPaint.setColor(Color.parseColor("#AAAAAA"));
+        labelPaint.setTextSize(28f);
+    }
+
+    /** Feed this from the sample thread; it keeps per-pixel min/max of everything added. */
+    public StripChartBuffer buffer() {
+        return buffer;
+    }
+
+    public void setChannel(int channel, int lane, int color) {
+        channelLanes[channel] = lane;
+        channelPaints[channel].setColor(color);
+    }
+
+    /** {@code minSpan} keeps a flat signal from being scaled up into noise. */
+    public void setLane(int lane, String label, float minSpan) {
+        laneLabels[lane] = label;
+        laneMinSpans[lane] = minSpan;
+    }
+
+    public void setWindowNanos(long windowNanos) {
+        this.windowNanos = windowNanos;
+        if (getWidth() > 0) {
+            buffer.setLayout(getWidth(), windowNanos);
+        }
+    }
+
+    /** Redraws on the next frame if samples arrived since the last draw. UI thread. */
+    public void refresh() {
+        if (buffer.hasChanges()) {
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (w <= 0) {
+            return;
+        }
+        buffer.setLayout(w, windowNanos);
+        mins = new float[channels * w];
+        maxs = new float[channels * w];
+        lasts = new float[channels * w];
+        lines = new float[w * FLOATS_PER_COLUMN];
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int columns = buffer.snapshot(mins, maxs, lasts);
+        if (columns == 0 || columns * FLOATS_PER_COLUMN > lines.length) {
+            return;
+        }
+        int lanes = laneLabels.length;
+        float laneHeight = getHeight() / (float) lanes;
+
+        // Autoscale each lane over the visible window
+        for (int lane = 0; lane < lanes; lane++) {
+            laneLows[lane] = Float.POSITIVE_INFINITY;
+            laneHighs[lane] = Float.NEGATIVE_INFINITY;
+        }
+        for (int ch = 0; ch < channels; ch++) {
+            int lane = channelLanes[ch];
+            int base = ch * columns;
+            for (int i = 0; i < columns; i++) {
+                float lo = mins[base + i];
+                if (!Float.isNaN(lo)) {
+                    laneLows[lane] = Math.min(laneLows[lane], lo);
+                    laneHighs[lane] = Math.max(laneHighs[lane], maxs[base + i]);
+                }
+            }
+        }
+        for (int lane = 0; lane < lanes; lane++) {
+            float span = laneHighs[lane] - laneLows[lane];
+            if (span < laneMinSpans[lane]) {
+                float mid = (laneHighs[lane] + laneLows[lane]) * 0.5f;
+                laneLows[lane] = mid - laneMinSpans[lane] * 0.5f;
+                laneHighs[lane] = mid + laneMinSpans[lane] * 0.5f;
+            }
+            float top = lane * laneHeight;
+            if (lane > 0) {
+                canvas.drawLine(0f, top, getWidth(), top, axisPaint);
+            }
+            if (laneLabels[lane] != null) {
+                canvas.drawText(laneLabels[lane], 8f, top + labelPaint.getTextSize(), labelPaint);
+            }
+        }
+
+        float dx = getWidth() / (float) columns;
+        for (int ch = 0; ch < channels; ch++) {
+            int lane = channelLanes[ch];
+            float lo = laneLows[lane];
+            float hi = laneHighs[lane];
+            if (!(hi > lo)) {
+                continue;
+            }
+            float top = lane * laneHeight + laneHeight * LANE_PADDING;
+            float scale = laneHeight * (1f - 2f * LANE_PADDING) / (hi - lo);
+            int base = ch * columns;
+            int n = 0;
+            float previous = Float.NaN;
+            for (int i = 0; i < columns; i++) {
+                float min = mins[base + i];
+                if (Float.isNaN(min)) {
+                    previous = Float.NaN;
+                    continue;
+                }
+                float max = maxs[base + i];
+                float x = i * dx;
+                float yMax = top + (hi - max) * scale;
+                lines[n++] = x;
+                lines[n++] = yMax;
+                lines[n++] = x;
+                lines[n++] = top + (hi - min) * scale + 1f;
+                if (!Float.isNaN(previous)) {
+                    float joined = Math.max(min, Math.min(max, previous));
+                    lines[n++] = x - dx;
+                    lines[n++] = top + (hi - previous) * scale;
+                    lines[n++] = x;
+                    lines[n++] = top + (hi - joined) * scale;
+                }
+                previous = lasts[base + i];
+            }
+            canvas.drawLines(lines, 0, n, channelPaints[ch]);
+        }
+    }
+}
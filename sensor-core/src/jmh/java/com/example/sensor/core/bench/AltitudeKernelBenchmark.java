@@ -0,0 +1,61 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.AltitudeEstimator;
+import com.example.sensor.core.BarometricAltitude;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AltitudeKernelBenchmark {
+    /** Barometer period at 50 Hz. */
+    private static final long PERIOD_NANOS = 20_000_000L;
+
+    private float[] pressure;
+    private int index;
+    private final AltitudeEstimator estimator = new AltitudeEstimator();
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        pressure = SyntheticTraces.pressure(1);
+    }
+
+    @Benchmark
+    public double pressureToAltitude() {
+        return BarometricAltitude.pressureToAltitude(pressure[index++ & SyntheticTraces.MASK]);
+    }
+
+    @Benchmark
+    public double pressureToAltitudeExact() {
+        return BarometricAltitude.pressureToAltitudeExact(pressure[index++ & SyntheticTraces.MASK],
+                BarometricAltitude.STANDARD_SEA_LEVEL_HPA);
+    }
+
+    /** One barometer sample through the Kalman filter, with a GPS altitude once a second. */
+    @Benchmark
+    public double estimator() {
+        int i = index++;
+        timestamp += PERIOD_NANOS;
+        if (i % 50 == 0) {
+            estimator.onGpsAltitude(timestamp, 120.0, 5.0);
+        }
+        estimator.onPressure(timestamp, pressure[i & SyntheticTraces.MASK]);
+        return estimator.altitude();
+    }
+}
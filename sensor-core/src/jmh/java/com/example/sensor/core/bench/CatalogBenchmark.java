@@ -0,0 +1,98 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.SensorCatalog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the saved sensor catalog costs at launch: reading it back, which is all a warm
+ * launch does before the sensor list can be drawn, writing it after the device or OS
+ * changed, and comparing it with a fresh enumeration. The app itself records time to
+ * first frame and to first displayed sample in {@code PipelineMetrics} on every launch
+ * and calls {@code reportFullyDrawn()} at the first sample, so {@code am start -W} and
+ * startup profilers see the same point.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogBenchmark {
+    private static final String FINGERPRINT = "vendor/device/device:14/UP1A.231005.007/10754064:user/release-keys/34";
+
+    /** A phone lists 30-60 sensors, counting wake-up variants. */
+    @Param({"40"})
+    public int sensors;
+
+    private File file;
+    private SensorCatalog catalog;
+    private SensorCatalog copy;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        catalog = synthetic(sensors);
+        copy = synthetic(sensors);
+        file = File.createTempFile("catalog", ".bin");
+        catalog.save(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public SensorCatalog load() {
+        return SensorCatalog.load(file, FINGERPRINT);
+    }
+
+    @Benchmark
+    public File save() throws IOException {
+        catalog.save(file);
+        return file;
+    }
+
+    @Benchmark
+    public boolean compare() {
+        return catalog.sameSensors(copy);
+    }
+
+    private static SensorCatalog synthetic(int count) {
+        SensorCatalog catalog = new SensorCatalog(FINGERPRINT);
+        for (int i = 0; i < count; i++) {
+            SensorCatalog.Entry e = new SensorCatalog.Entry();
+            e.type = 1 + i % 30;
+            e.name = "Vendor sensor " + i + (i >= count / 2 ? " Wakeup" : " Non-wakeup");
+            e.vendor = "Vendor";
+            e.version = 1;
+            e.maximumRange = 78.4532f;
+            e.resolution = 0.0023928226f;
+            e.power = 0.17f;
+            e.minDelayUs = 2_500;
+            e.maxDelayUs = 1_000_000;
+            e.fifoReservedEventCount = 3_000;
+            e.fifoMaxEventCount = 10_000;
+            e.reportingMode = 0;
+            e.wakeUp = i >= count / 2;
+            catalog.add(e);
+        }
+        return catalog;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.BarometricAltitude;
+import com.example.sensor.core.DecimalText;
+import com.example.sensor.core.LatestValueSlot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sensor sample to label text, as MainActivity does it: publish into a
+ * {@link LatestValueSlot}, poll, format. One "frame" per event is the worst case.
+ * {@code legacyFormat} is the String.format path it replaced, for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DisplayPathBenchmark {
+    private float[] pressure;
+    private float[] gyro;
+    private final LatestValueSlot pressureSlot = new LatestValueSlot(3);
+    private final LatestValueSlot gyroSlot = new LatestValueSlot(3);
+    private final DecimalText pressureText = new DecimalText(64);
+    private final DecimalText gyroText = new DecimalText(64);
+    private double initialAltitude;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        pressure = SyntheticTraces.pressure(4);
+        gyro = SyntheticTraces.gyro(5);
+        initialAltitude = BarometricAltitude.pressureToAltitude(pressure[0]);
+    }
+
+    @Benchmark
+    public int decimalText() {
+        publish();
+        int changed = 0;
+        if (pressureSlot.poll()) {
+            float[] v = pressureSlot.values();
+            pressureText.clear()
+                    .append("気圧: ").append(v[0], 2).append(" hPa\n高度: ")
+                    .append(v[1], 2).append(" m\n起動時との差: ")
+                    .append(v[2], 2).append(" m");
+            changed += pressureText.commit() ? 1 : 0;
+        }
+        if (gyroSlot.poll()) {
+            float[] v = gyroSlot.values();
+            gyroText.clear()
+                    .append("ジャイロ: x=").append(v[0], 3)
+                    .append(" y=").append(v[1], 3)
+                    .append(" z=").append(v[2], 3).append(" (rad/s)");
+            changed += gyroText.commit() ? 1 : 0;
+        }
+        return changed;
+    }
+
+    @Benchmark
+    public int legacyFormat() {
+        publish();
+        int length = 0;
+        if (pressureSlot.poll()) {
+            float[] v = pressureSlot.values();
+            length += String.format(Locale.getDefault(),
+                    "気圧: %.2f hPa\n高度: %.2f m\n起動時との差: %.2f m", v[0], v[1], v[2]).length();
+        }
+        if (gyroSlot.poll()) {
+            float[] v = gyroSlot.values();
+            length += String.format(Locale.getDefault(),
+                    "ジャイロ: x=%.3f y=%.3f z=%.3f (rad/s)", v[0], v[1], v[2]).length();
+        }
+        return length;
+    }
+
+    private void publish() {
+        int i = index++ & SyntheticTraces.MASK;
+        float p = pressure[i];
+        double altitude = BarometricAltitude.pressureToAltitude(p);
+        float[] slot = pressureSlot.editBuffer();
+        slot[0] = p;
+        slot[1] = (float) altitude;
+        slot[2] = (float) (altitude - initialAltitude);
+        pressureSlot.publish();
+
+        float[] g = gyroSlot.editBuffer();
+        g[0] = gyro[i * 3];
+        g[1] = gyro[i * 3 + 1];
+        g[2] = gyro[i * 3 + 2];
+        gyroSlot.publish();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.DecimalText;
+import com.example.sensor.core.GpsFix;
+import com.example.sensor.core.GpsText;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GpsTextBenchmark {
+    private GpsFix[] fixes;
+    private final DecimalText text = new DecimalText(192);
+    private int index;
+
+    @Setup
+    public void setUp() {
+        fixes = SyntheticTraces.gpsFixes(3);
+    }
+
+    @Benchmark
+    public boolean formatFix() {
+        return GpsText.write(text, fixes[index++ & SyntheticTraces.MASK], false).commit();
+    }
+}
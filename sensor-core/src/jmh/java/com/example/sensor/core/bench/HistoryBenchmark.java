@@ -0,0 +1,124 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.HistoryWindow;
+import com.example.sensor.core.SensorHistory;
+import com.example.sensor.core.SensorTypes;
+import com.example.sensor.core.SeriesHistory;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert and query cost of {@link SensorHistory} tracking a 200 Hz gyro, plus a
+ * long run that reports the heap retained after a synthetic day. JMH sums the
+ * long run's counters over its measurement iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+    private static final long PERIOD_NANOS = 5_000_000L;
+    private static final long HOUR_NANOS = 3_600_000_000_000L;
+
+    private float[] gyro;
+    private SensorHistory history;
+    private final HistoryWindow window = new HistoryWindow(4096);
+    private final float[] sample = new float[3];
+    private int index;
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        gyro = SyntheticTraces.gyro(7);
+        history = new SensorHistory();
+        history.track(SensorTypes.GYROSCOPE, 3, 200);
+        // Two hours, so every tier is full and queries cross tier boundaries
+        while (timestamp < 2 * HOUR_NANOS) {
+            insert();
+        }
+    }
+
+    private void insert() {
+        int i = index++ & SyntheticTraces.MASK;
+        timestamp += PERIOD_NANOS;
+        sample[0] = gyro[i * 3];
+        sample[1] = gyro[i * 3 + 1];
+        sample[2] = gyro[i * 3 + 2];
+        history.onSample(SensorTypes.GYROSCOPE, timestamp, 3, sample, 3);
+    }
+
+    @Benchmark
+    public long insertSample() {
+        insert();
+        return timestamp;
+    }
+
+    @Benchmark
+    public int queryLastHour() {
+        return history.series(SensorTypes.GYROSCOPE, 0).query(timestamp - HOUR_NANOS, timestamp, 4000, window);
+    }
+
+    @Benchmark
+    public int queryLastMinute() {
+        return history.series(SensorTypes.GYROSCOPE, 0).query(timestamp - 60_000_000_000L, timestamp, 4000, window);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+        /** Bytes the history reserved up front. */
+        public long budgetedBytes;
+        /** Used heap after the run minus before it, both after a GC. */
+        public long heapGrowthBytes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            budgetedBytes = 0;
+            heapGrowthBytes = 0;
+        }
+    }
+
+    /** A day of 200 Hz gyro into a fresh history: 17.3 M inserts per axis. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public long syntheticDay(Retained retained) {
+        SensorHistory day = new SensorHistory();
+        day.track(SensorTypes.GYROSCOPE, 3, 200);
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        long t = 0;
+        for (long n = 24 * HOUR_NANOS / PERIOD_NANOS; n > 0; n--) {
+            int i = (int) n & SyntheticTraces.MASK;
+            t += PERIOD_NANOS;
+            sample[0] = gyro[i * 3];
+            sample[1] = gyro[i * 3 + 1];
+            sample[2] = gyro[i * 3 + 2];
+            day.onSample(SensorTypes.GYROSCOPE, t, 3, sample, 3);
+        }
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        retained.budgetedBytes += day.usedBytes();
+        retained.heapGrowthBytes += after - before;
+        SeriesHistory series = day.series(SensorTypes.GYROSCOPE, 0);
+        return t + series.rawStart();
+    }
+}
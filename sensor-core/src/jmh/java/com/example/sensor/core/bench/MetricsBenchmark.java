@@ -0,0 +1,71 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.LatencyHistogram;
+import com.example.sensor.core.PipelineMetrics;
+import com.example.sensor.core.SensorTypes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What instrumenting one sensor event costs the hub thread, with metrics on and off,
+ * and a histogram record under contention. Disabled should be indistinguishable from
+ * an empty method; none of them should allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    private static final long PERIOD_NANOS = 5_000_000L;
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        metrics.setEnabled(enabled);
+    }
+
+    /** The hub's per-event instrumentation, clock reads included. */
+    @Benchmark
+    public long sensorEvent() {
+        timestamp += PERIOD_NANOS;
+        if (!metrics.isEnabled()) {
+            return timestamp;
+        }
+        long received = System.nanoTime();
+        metrics.onSensorEvent(SensorTypes.GYROSCOPE, timestamp, timestamp + 1_000_000L);
+        metrics.handlerTime().record(System.nanoTime() - received);
+        return received;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final LatencyHistogram histogram = new LatencyHistogram();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void contendedRecord(Shared shared) {
+        timestamp += 7919L;
+        shared.histogram.record(timestamp & 0xFFFFFFL);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.OrientationFilter;
+import com.example.sensor.core.OrientationMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrientationKernelBenchmark {
+    /** Gyro period at 200 Hz; rotation vectors arrive with every fourth gyro sample. */
+    private static final long GYRO_PERIOD_NANOS = 5_000_000L;
+
+    private float[][] rotationVectors;
+    private float[] gyro;
+    private int index;
+    private final OrientationFilter filter = new OrientationFilter();
+    private final float[] state = new float[OrientationFilter.STATE_SIZE];
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        rotationVectors = SyntheticTraces.rotationVectors(2);
+        gyro = SyntheticTraces.gyro(3);
+        filter.onRotationVector(0L, rotationVectors[0], 4);
+    }
+
+    @Benchmark
+    public float azimuthFromRotationVector() {
+        return OrientationMath.azimuthDegrees(rotationVectors[index++ & SyntheticTraces.MASK], 4);
+    }
+
+    /** One filter update at the live mix of four gyro samples per rotation vector. */
+    @Benchmark
+    public float filterUpdate() {
+        int i = index++ & SyntheticTraces.MASK;
+        timestamp += GYRO_PERIOD_NANOS;
+        filter.onGyroscope(timestamp, gyro[i * 3], gyro[i * 3 + 1], gyro[i * 3 + 2]);
+        if ((i & 3) == 0) {
+            filter.onRotationVector(timestamp, rotationVectors[i], 4);
+        }
+        return filter.azimuthDegrees();
+    }
+
+    /** What the UI thread does per frame: extrapolate a published state to the next vsync. */
+    @Benchmark
+    public float predictToVsync() {
+        int i = index++ & SyntheticTraces.MASK;
+        state[0] = rotationVectors[i][3];
+        state[1] = rotationVectors[i][0];
+        state[2] = rotationVectors[i][1];
+        state[3] = rotationVectors[i][2];
+        state[4] = gyro[i * 3];
+        state[5] = gyro[i * 3 + 1];
+        state[6] = gyro[i * 3 + 2];
+        return OrientationFilter.predictAzimuthDegrees(state, 0, 0L, 16_666_667L);
+    }
+}
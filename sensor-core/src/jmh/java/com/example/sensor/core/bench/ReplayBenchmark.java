@@ -0,0 +1,115 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.DisplayPipeline;
+import com.example.sensor.core.GpsFix;
+import com.example.sensor.core.ReplayEngine;
+import com.example.sensor.core.SensorTypes;
+import com.example.sensor.core.SessionRecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a synthetic one-hour session (gyro 100 Hz, rotation vector 50 Hz, pressure 10 Hz,
+ * GPS 1 Hz, recorded in 5 s FIFO bursts per sensor) as fast as possible through the
+ * {@link DisplayPipeline}. Score is the cost per replayed record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ReplayBenchmark {
+    static final long SECONDS = 3600;
+    static final int RECORDS = (int) (SECONDS * (100 + 50 + 10 + 1));
+
+    private File directory;
+    private ReplayEngine engine;
+    private final DisplayPipeline pipeline = new DisplayPipeline();
+
+    @Setup(Level.Trial)
+    public void record() throws IOException {
+        directory = Files.createTempDirectory("replay-bench").toFile();
+        writeSession(directory, SECONDS);
+    }
+
+    static void writeSession(File directory, long seconds) throws IOException {
+        float[] pressure = SyntheticTraces.pressure(7);
+        float[][] rotation = SyntheticTraces.rotationVectors(8);
+        float[] gyro = SyntheticTraces.gyro(9);
+        GpsFix[] fixes = SyntheticTraces.gpsFixes(10);
+        float[] values = new float[4];
+        SessionRecorder recorder = new SessionRecorder(directory);
+        try {
+            long burstNanos = 5_000_000_000L;
+            for (long burst = 0; burst < seconds * 1_000_000_000L; burst += burstNanos) {
+                for (long t = burst; t < burst + burstNanos; t += 10_000_000L) {
+                    int i = (int) (t / 10_000_000L);
+                    values[0] = gyro[(i * 3) % gyro.length];
+                    values[1] = gyro[(i * 3 + 1) % gyro.length];
+                    values[2] = gyro[(i * 3 + 2) % gyro.length];
+                    recorder.append(SensorTypes.GYROSCOPE, t, 3, values, 3);
+                }
+                for (long t = burst; t < burst + burstNanos; t += 20_000_000L) {
+                    float[] q = rotation[(int) (t / 20_000_000L) & SyntheticTraces.MASK];
+                    recorder.append(SensorTypes.ROTATION_VECTOR, t, 3, q, 4);
+                }
+                for (long t = burst; t < burst + burstNanos; t += 100_000_000L) {
+                    values[0] = pressure[(int) (t / 100_000_000L) & SyntheticTraces.MASK];
+                    recorder.append(SensorTypes.PRESSURE, t, 3, values, 1);
+                }
+                for (long t = burst; t < burst + burstNanos; t += 1_000_000_000L) {
+                    GpsFix fix = fixes[(int) (t / 1_000_000_000L) & SyntheticTraces.MASK];
+                    fix.elapsedRealtimeNanos = t;
+                    recorder.append(fix);
+                }
+            }
+        } finally {
+            recorder.close();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        engine = new ReplayEngine(directory);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeEngine() throws IOException {
+        engine.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long replayHour() throws IOException, InterruptedException {
+        return engine.run(pipeline, ReplayEngine.AS_FAST_AS_POSSIBLE);
+    }
+}
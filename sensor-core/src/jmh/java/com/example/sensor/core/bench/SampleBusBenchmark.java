@@ -0,0 +1,88 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.GpsFix;
+import com.example.sensor.core.SampleBus;
+import com.example.sensor.core.SampleSink;
+import com.example.sensor.core.SensorTypes;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One producer thread publishing gyro samples while one consumer thread polls a
+ * subscription with the given policy. Reports publish and poll throughput; the
+ * consumer's auxiliary counter shows how many samples reached it. BLOCK is left out:
+ * JMH stops the consumer first at the end of an iteration, which would leave the
+ * producer waiting forever.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleBusBenchmark {
+    @Param({"DROP_OLDEST", "CONFLATE"})
+    public String policy;
+
+    private SampleBus bus;
+    private SampleBus.Subscription subscription;
+    private final float[] values = new float[3];
+    private long timestamp;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bus = new SampleBus(4096);
+        subscription = bus.subscribe(SampleBus.Policy.valueOf(policy));
+        values[0] = 0.01f;
+        values[1] = -0.02f;
+        values[2] = 0.03f;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ConsumerCounters implements SampleSink {
+        public long delivered;
+        long checksum;
+
+        @Override
+        public void onSample(int type, long timestampNanos, int accuracy, float[] v, int count) {
+            delivered++;
+            checksum += timestampNanos;
+        }
+
+        @Override
+        public void onLocation(GpsFix fix) {
+            delivered++;
+        }
+    }
+
+    @Benchmark
+    @Group("bus")
+    @GroupThreads(1)
+    public void publish() {
+        bus.publish(SensorTypes.GYROSCOPE, timestamp++, 3, values, 3);
+    }
+
+    @Benchmark
+    @Group("bus")
+    @GroupThreads(1)
+    public int poll(ConsumerCounters counters) {
+        return subscription.poll(counters, 256);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.SampleBatch;
+import com.example.sensor.core.SensorTypes;
+import com.example.sensor.core.SessionRecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of appending FIFO bursts to the mapped recorder, including segment
+ * rollover and page faults on fresh mappings. Each single-shot iteration writes 256
+ * bursts of 4096 samples (64 MB) to a fresh directory that is deleted afterwards.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 8)
+@Fork(1)
+public class SessionRecorderBenchmark {
+    private static final int BURST = 4096;
+    private static final int BURSTS = 256;
+
+    private final SampleBatch batch = new SampleBatch(BURST);
+    private File directory;
+    private SessionRecorder recorder;
+
+    @Setup(Level.Trial)
+    public void fillBatch() {
+        float[] gyro = SyntheticTraces.gyro(6);
+        float[] values = new float[3];
+        for (int i = 0; i < BURST; i++) {
+            values[0] = gyro[(i * 3) % gyro.length];
+            values[1] = gyro[(i * 3 + 1) % gyro.length];
+            values[2] = gyro[(i * 3 + 2) % gyro.length];
+            batch.add(SensorTypes.GYROSCOPE, i * 2_500_000L, 3, values, 3);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("recorder-bench").toFile();
+        recorder = new SessionRecorder(directory, 16L * 1024 * 1024, SessionRecorder.DEFAULT_FORCE_INTERVAL_NANOS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        recorder.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST * BURSTS)
+    public long appendBursts() throws IOException {
+        for (int i = 0; i < BURSTS; i++) {
+            recorder.append(batch);
+        }
+        return recorder.recordCount();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.SpectrumAnalyzer;
+import com.example.sensor.core.VibrationMonitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Amortized cost of one 3-axis sample through the spectrum stage, FFT every
+ * {@code hop} samples included. At the 500 Hz an accelerometer typically reaches,
+ * one core has 2 ms per sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpectrumBenchmark {
+    private static final long PERIOD_NANOS = 2_000_000L;
+
+    @Param({"256", "1024"})
+    public int size;
+
+    @Param({"16", "64"})
+    public int hop;
+
+    private float[] gyro;
+    private SpectrumAnalyzer analyzer;
+    private final float[] sample = new float[3];
+    private int index;
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        gyro = SyntheticTraces.gyro(6);
+        analyzer = new SpectrumAnalyzer(size, hop, 3, VibrationMonitor.BAND_EDGES_HZ);
+        for (int i = 0; i < size; i++) {
+            addSample();
+        }
+    }
+
+    @Benchmark
+    public boolean addSample() {
+        int i = index++ & SyntheticTraces.MASK;
+        timestamp += PERIOD_NANOS;
+        sample[0] = gyro[i * 3];
+        sample[1] = gyro[i * 3 + 1];
+        sample[2] = gyro[i * 3 + 2];
+        return analyzer.add(timestamp, sample, 3);
+    }
+}
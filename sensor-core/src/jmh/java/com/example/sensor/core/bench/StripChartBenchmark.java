@@ -0,0 +1,78 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.StripChartBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of feeding the chart one gyro sample and of taking the per-frame snapshot.
+ * The snapshot should scale with the column count and not with the sample rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StripChartBenchmark {
+    private static final long WINDOW_NANOS = 30_000_000_000L;
+
+    @Param({"540", "1080", "2160"})
+    public int columns;
+
+    /** Gyro period: 200 Hz and 1 kHz. */
+    @Param({"5000000", "1000000"})
+    public long periodNanos;
+
+    private float[] gyro;
+    private StripChartBuffer buffer;
+    private float[] mins;
+    private float[] maxs;
+    private float[] lasts;
+    private int index;
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        gyro = SyntheticTraces.gyro(6);
+        buffer = new StripChartBuffer(3, columns, WINDOW_NANOS);
+        mins = new float[3 * columns];
+        maxs = new float[3 * columns];
+        lasts = new float[3 * columns];
+        // A full window of data, so snapshots copy real columns
+        for (long t = 0; t < WINDOW_NANOS; t += periodNanos) {
+            add();
+        }
+    }
+
+    private void add() {
+        int i = index++ & SyntheticTraces.MASK;
+        timestamp += periodNanos;
+        buffer.add(0, timestamp, gyro[i * 3]);
+        buffer.add(1, timestamp, gyro[i * 3 + 1]);
+        buffer.add(2, timestamp, gyro[i * 3 + 2]);
+    }
+
+    @Benchmark
+    public long addSample() {
+        add();
+        return timestamp;
+    }
+
+    @Benchmark
+    public int snapshot() {
+        return buffer.snapshot(mins, maxs, lasts);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.GpsFix;
+
+import java.util.Random;
+
+/** Deterministic synthetic sensor input for the benchmarks. */
+final class SyntheticTraces {
+    static final int LENGTH = 4096;
+    static final int MASK = LENGTH - 1;
+
+    private SyntheticTraces() {
+    }
+
+    /** Barometer random walk around 1000 hPa with ~0.02 hPa sensor noise. */
+    static float[] pressure(long seed) {
+        Random random = new Random(seed);
+        float[] out = new float[LENGTH];
+        double p = 1000.0;
+        for (int i = 0; i < LENGTH; i++) {
+            p += random.nextGaussian() * 0.005;
+            out[i] = (float) (p + random.nextGaussian() * 0.02);
+        }
+        return out;
+    }
+
+    /** Unit quaternions (x, y, z, w) of a device slowly turning about the vertical axis with wobble. */
+    static float[][] rotationVectors(long seed) {
+        Random random = new Random(seed);
+        float[][] out = new float[LENGTH][4];
+        for (int i = 0; i < LENGTH; i++) {
+            double yaw = i * 0.01;
+            double tilt = random.nextGaussian() * 0.02;
+            double x = Math.sin(tilt / 2);
+            double z = Math.sin(yaw / 2) * Math.cos(tilt / 2);
+            double w = Math.cos(yaw / 2) * Math.cos(tilt / 2);
+            double n = Math.sqrt(x * x + z * z + w * w);
+            out[i][0] = (float) (x / n);
+            out[i][1] = 0f;
+            out[i][2] = (float) (z / n);
+            out[i][3] = (float) (w / n);
+        }
+        return out;
+    }
+
+    /** Gyro samples in rad/s, interleaved x, y, z. */
+    static float[] gyro(long seed) {
+        Random random = new Random(seed);
+        float[] out = new float[LENGTH * 3];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (float) (random.nextGaussian() * 0.05);
+        }
+        return out;
+    }
+
+    /** 1 Hz walk starting in Tokyo. */
+    static GpsFix[] gpsFixes(long seed) {
+        Random random = new Random(seed);
+        GpsFix[] out = new GpsFix[LENGTH];
+        double lat = 35.681236;
+        double lon = 139.767125;
+        for (int i = 0; i < LENGTH; i++) {
+            lat += random.nextGaussian() * 1e-5;
+            lon += random.nextGaussian() * 1e-5;
+            GpsFix fix = new GpsFix();
+            fix.provider = "gps";
+            fix.latitude = lat;
+            fix.longitude = lon;
+            fix.hasAltitude = true;
+            fix.altitude = 40 + random.nextGaussian() * 3;
+            fix.hasAccuracy = true;
+            fix.accuracy = (float) (4 + Math.abs(random.nextGaussian()) * 2);
+            fix.hasSpeed = true;
+            fix.speed = (float) Math.abs(1.2 + random.nextGaussian() * 0.2);
+            fix.hasBearing = i % 10 != 0;
+            fix.bearing = (float) ((i * 3.7) % 360);
+            fix.time = 1_700_000_000_000L + i * 1000L;
+            out[i] = fix;
+        }
+        return out;
+    }
+
+    /**
+     * {@code count} 1 Hz fixes of a 1.4 m/s walk starting in Tokyo that turns a corner
+     * every few minutes and drifts in between, with 2 m of position noise.
+     */
+    static GpsFix[] gpsWalk(long seed, int count) {
+        Random random = new Random(seed);
+        GpsFix[] out = new GpsFix[count];
+        double metersPerDegree = 111_319.49;
+        double lat = 35.681236;
+        double lon = 139.767125;
+        double heading = 0.0;
+        for (int i = 0; i < count; i++) {
+            if (i % 240 == 0) {
+                heading += random.nextGaussian();
+            }
+            heading += random.nextGaussian() * 0.01;
+            lat += 1.4 * Math.cos(heading) / metersPerDegree;
+            lon += 1.4 * Math.sin(heading) / (metersPerDegree * Math.cos(Math.toRadians(lat)));
+            GpsFix fix = new GpsFix();
+            fix.provider = "gps";
+            fix.latitude = lat + random.nextGaussian() * 2.0 / metersPerDegree;
+            fix.longitude = lon + random.nextGaussian() * 2.0 / (metersPerDegree * Math.cos(Math.toRadians(lat)));
+            fix.hasAltitude = true;
+            fix.altitude = 40 + random.nextGaussian() * 3;
+            fix.hasAccuracy = true;
+            fix.accuracy = (float) (4 + Math.abs(random.nextGaussian()) * 2);
+            fix.time = 1_700_000_000_000L + i * 1000L;
+            fix.elapsedRealtimeNanos = i * 1_000_000_000L;
+            out[i] = fix;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.SampleBus;
+import com.example.sensor.core.SensorTypes;
+import com.example.sensor.core.TelemetryCollector;
+import com.example.sensor.core.TelemetryEncoder;
+import com.example.sensor.core.TelemetryStreamer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding cost per sample of the streamed channels, mixed as the hub publishes them
+ * (gyro at the game rate, rotation vector and pressure between its samples), and
+ * end-to-end throughput from the bus through a {@link TelemetryStreamer} to a
+ * {@link TelemetryCollector} over loopback. The producer is unpaced, so the loopback
+ * run shows what the streamer sustains; samples the bus overran are counted as
+ * dropped. Bytes per sample is bytes over samples in the auxiliary counters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TelemetryBenchmark {
+    private static final long PERIOD_NANOS = 20_000_000L;
+
+    private final float[] pressure = SyntheticTraces.pressure(1L);
+    private final float[][] rotation = SyntheticTraces.rotationVectors(2L);
+    private final float[] gyro = SyntheticTraces.gyro(3L);
+    private final float[] values = new float[4];
+    private final TelemetryEncoder encoder = new TelemetryEncoder();
+    private final ByteBuffer frame = ByteBuffer.allocateDirect(TelemetryStreamer.STREAM_FRAME_BYTES);
+    private int sequence;
+    private int step;
+    private long timestamp;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Encoded {
+        public long samples;
+        /** Frame bytes, headers included. */
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            samples = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        frame.clear();
+        encoder.begin(frame, sequence++);
+    }
+
+    /** One sample of the mix into the current frame, sealing it when full. */
+    @Benchmark
+    public int encode(Encoded counters) {
+        int type = nextSample();
+        if (!encoder.add(type, timestamp, 3, values, count(type))) {
+            counters.samples += encoder.sampleCount();
+            counters.bytes += encoder.finish();
+            frame.clear();
+            encoder.begin(frame, sequence++);
+            encoder.add(type, timestamp, 3, values, count(type));
+        }
+        return step;
+    }
+
+    /** Publishes the mix to a bus that a streamer drains to a loopback collector. */
+    @State(Scope.Benchmark)
+    public static class Loopback {
+        @Param({"TCP", "UDP"})
+        public String transport;
+
+        SampleBus bus;
+        TelemetryCollector collector;
+        TelemetryStreamer streamer;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            TelemetryStreamer.Transport t = TelemetryStreamer.Transport.valueOf(transport);
+            collector = new TelemetryCollector(0, t, null);
+            collector.start();
+            bus = new SampleBus(8192);
+            streamer = new TelemetryStreamer(bus, "127.0.0.1", collector.port(), t,
+                    new int[]{SensorTypes.PRESSURE, SensorTypes.ROTATION_VECTOR, SensorTypes.GYROSCOPE});
+            streamer.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws IOException, InterruptedException {
+            streamer.shutdown();
+            streamer.join(1000L);
+            collector.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Received {
+        public long receivedSamples;
+        public long receivedBytes;
+        public long droppedSamples;
+        long samplesAtStart;
+        long bytesAtStart;
+        long droppedAtStart;
+
+        @Setup(Level.Iteration)
+        public void mark(Loopback loopback) {
+            samplesAtStart = loopback.collector.samples();
+            bytesAtStart = loopback.collector.bytes();
+            droppedAtStart = loopback.streamer.samplesDropped();
+            receivedSamples = 0;
+            receivedBytes = 0;
+            droppedSamples = 0;
+        }
+    }
+
+    @Benchmark
+    public int loopback(Loopback loopback, Received counters) {
+        int type = nextSample();
+        loopback.bus.publish(type, timestamp, 3, values, count(type));
+        // The counters are volatile; reading them every sample would slow the producer
+        if ((step & 1023) == 0) {
+            counters.receivedSamples = loopback.collector.samples() - counters.samplesAtStart;
+            counters.receivedBytes = loopback.collector.bytes() - counters.bytesAtStart;
+            counters.droppedSamples = loopback.streamer.samplesDropped() - counters.droppedAtStart;
+        }
+        return step;
+    }
+
+    /** Fills {@link #values} with the next sample of the mix and returns its type. */
+    private int nextSample() {
+        int i = step++;
+        int k = (i >> 1) & SyntheticTraces.MASK;
+        if ((i & 7) == 7) {
+            values[0] = pressure[(i >> 3) & SyntheticTraces.MASK];
+            return SensorTypes.PRESSURE;
+        }
+        if ((i & 1) == 0) {
+            timestamp += PERIOD_NANOS;
+            values[0] = gyro[k * 3];
+            values[1] = gyro[k * 3 + 1];
+            values[2] = gyro[k * 3 + 2];
+            return SensorTypes.GYROSCOPE;
+        }
+        System.arraycopy(rotation[k], 0, values, 0, 4);
+        return SensorTypes.ROTATION_VECTOR;
+    }
+
+    private static int count(int type) {
+        switch (type) {
+            case SensorTypes.PRESSURE: return 1;
+            case SensorTypes.ROTATION_VECTOR: return 4;
+            default: return 3;
+        }
+    }
+}
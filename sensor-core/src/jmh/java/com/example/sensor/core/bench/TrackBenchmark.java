@@ -0,0 +1,128 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.GpsFix;
+import com.example.sensor.core.TrackStore;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert and query cost of {@link TrackStore} holding a ten-hour 1 Hz walk, plus a run
+ * that reports the points kept and the heap retained per hour of fixes. JMH sums the
+ * hourly run's counters over its measurement iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackBenchmark {
+    private static final int HOUR_FIXES = 3600;
+
+    private GpsFix[] walk;
+    private TrackStore track;
+    private final double[] bounds = new double[4];
+    private final double[] nearest = new double[3];
+    private final int[] segments = new int[4096];
+    private final GpsFix next = new GpsFix();
+    private int index;
+    private long time;
+
+    @Setup
+    public void setUp() {
+        walk = SyntheticTraces.gpsWalk(11, 10 * HOUR_FIXES);
+        track = new TrackStore();
+        for (GpsFix fix : walk) {
+            track.onLocation(fix);
+        }
+        track.bounds(bounds);
+        time = walk[walk.length - 1].time;
+    }
+
+    /** Replays the walk with later times, so every fix is accepted. */
+    @Benchmark
+    public int insertFix() {
+        GpsFix fix = walk[index++ % walk.length];
+        time += 1000L;
+        next.latitude = fix.latitude;
+        next.longitude = fix.longitude;
+        next.hasAltitude = fix.hasAltitude;
+        next.altitude = fix.altitude;
+        next.time = time;
+        track.onLocation(next);
+        return track.size();
+    }
+
+    /** A 100 m radius around a point of the walk. */
+    @Benchmark
+    public int nearPoint() {
+        GpsFix fix = walk[index++ % walk.length];
+        return track.nearest(fix.latitude, fix.longitude, 100.0, nearest);
+    }
+
+    /** Roughly 1 km square at the middle of the track's bounds. */
+    @Benchmark
+    public int boundingBox() {
+        double lat = (bounds[0] + bounds[2]) / 2;
+        double lon = (bounds[1] + bounds[3]) / 2;
+        return track.segmentsIn(lat - 0.0045, lon - 0.0055, lat + 0.0045, lon + 0.0055, segments);
+    }
+
+    @Benchmark
+    public double distance() {
+        return track.distanceMeters();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+        /** Points kept out of the hour's 3600 fixes. */
+        public long keptPoints;
+        /** Bytes the columns and index reserved. */
+        public long reservedBytes;
+        /** Used heap after the run minus before it, both after a GC. */
+        public long heapGrowthBytes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            keptPoints = 0;
+            reservedBytes = 0;
+            heapGrowthBytes = 0;
+        }
+    }
+
+    /** One hour of 1 Hz fixes into a fresh store. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int hourOfFixes(Retained retained) {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        TrackStore hour = new TrackStore();
+        for (int i = 0; i < HOUR_FIXES; i++) {
+            hour.onLocation(walk[i]);
+        }
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        retained.keptPoints += hour.size();
+        retained.reservedBytes += hour.memoryBytes();
+        retained.heapGrowthBytes += after - before;
+        return hour.size();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.sensor.core.bench;
+
+import com.example.sensor.core.QuantileSketch;
+import com.example.sensor.core.WindowStats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one sliding-window update and of a full snapshot. Both should stay flat as
+ * the window grows; the snapshot depends on the sketch bucket count only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WindowStatsBenchmark {
+    private static final long PERIOD_NANOS = 5_000_000L;
+
+    @Param({"64", "1024", "16384"})
+    public int window;
+
+    private float[] gyro;
+    private WindowStats stats;
+    private final float[] snapshot = new float[WindowStats.SNAPSHOT_SIZE];
+    private int index;
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        gyro = SyntheticTraces.gyro(6);
+        stats = new WindowStats(window, Long.MAX_VALUE, new QuantileSketch());
+        // Full window, so every update also evicts
+        for (int i = 0; i < window; i++) {
+            update();
+        }
+    }
+
+    @Benchmark
+    public double update() {
+        int i = index++ & SyntheticTraces.MASK;
+        timestamp += PERIOD_NANOS;
+        stats.add(timestamp, gyro[i * 3]);
+        return stats.mean();
+    }
+
+    @Benchmark
+    public float[] snapshot() {
+        stats.writeSnapshot(snapshot, 0);
+        return snapshot;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.sensor.core.tools;
+
+import com.example.sensor.core.TelemetryCollector;
+import com.example.sensor.core.TelemetryStreamer;
+
+import java.io.IOException;
+
+/**
+ * Listens for a phone's telemetry stream and prints the rate once a second. Kept out of
+ * the library so it does not ship in the app.
+ *
+ * <pre>./gradlew :sensor-core:collector -Pport=9000 [-Pudp]</pre>
+ */
+public final class CollectorMain {
+    private CollectorMain() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9000;
+        TelemetryStreamer.Transport transport = args.length > 1 && "udp".equalsIgnoreCase(args[1])
+                ? TelemetryStreamer.Transport.UDP : TelemetryStreamer.Transport.TCP;
+        TelemetryCollector collector = new TelemetryCollector(port, transport, null);
+        collector.start();
+        System.out.println("listening on " + transport + " port " + collector.port());
+        long lastSamples = 0;
+        while (true) {
+            Thread.sleep(1000L);
+            IOException failure = collector.failure();
+            if (failure != null) {
+                System.err.println("collector stopped: " + failure);
+                collector.close();
+                System.exit(1);
+            }
+            long n = collector.samples();
+            long total = Math.max(1L, n);
+            System.out.printf("%d samples/s, %.2f bytes/sample, %d frames lost, %d malformed%n",
+                    n - lastSamples, (double) collector.bytes() / total, collector.lostFrames(),
+                    collector.malformedFrames());
+            lastSamples = n;
+        }
+    }
+}
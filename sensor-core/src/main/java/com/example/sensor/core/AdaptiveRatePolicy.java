@@ -0,0 +1,251 @@
+package com.example.sensor.core;
+
+/**
+ * Picks a sampling period per sensor from how much its signal is moving. Each tracked
+ * sensor has a low and a high period; the standard deviation of its activity (the
+ * value for scalar sensors, the vector length otherwise) over a short window moves it
+ * between them with hysteresis:
+ * <ul>
+ * <li>up to high when the deviation exceeds {@code enterStdDev}, at most once per
+ *     {@link #MIN_DWELL_NANOS};</li>
+ * <li>back to low only after it stayed below {@code exitStdDev} for
+ *     {@link #HOLD_NANOS}.</li>
+ * </ul>
+ * A hidden sensor stays low. {@code SIGNIFICANT_MOTION} samples switch every visible
+ * sensor to high at once and {@code STATIONARY_DETECT} samples switch all to low, so the
+ * policy can also be woken by the hardware detectors.
+ *
+ * <p>Use as a bus consumer's sink. After each poll, {@link #takeChanged} tells whether
+ * {@link #writeConfig} has a new request. Event counts, time at each rate and the events
+ * saved against staying at the high rate are published to {@link #reportSlot()}.
+ */
+public class AdaptiveRatePolicy implements SampleSink {
+    public static final long MIN_DWELL_NANOS = 1_000_000_000L;
+    public static final long HOLD_NANOS = 5_000_000_000L;
+    private static final long REPORT_NANOS = 1_000_000_000L;
+    private static final int WINDOW_CAPACITY = 1024;
+
+    /** Fields of each channel in {@link #reportSlot()}, in tracking order. */
+    public static final int REPORT_TYPE = 0;
+    public static final int REPORT_PERIOD_US = 1;
+    /** 1 while at the high rate. */
+    public static final int REPORT_HIGH = 2;
+    public static final int REPORT_EVENTS = 3;
+    /** Events the sensor would have delivered had it stayed at the high rate. */
+    public static final int REPORT_BASELINE_EVENTS = 4;
+    public static final int REPORT_SWITCHES = 5;
+    public static final int REPORT_FIELDS = 6;
+
+    private final Channel[] channels;
+    private volatile int channelCount = 0;
+    private final LatestValueSlot reportSlot;
+    private boolean changed = true;
+    private long reported = Long.MIN_VALUE / 2;
+
+    public AdaptiveRatePolicy(int maxChannels) {
+        channels = new Channel[maxChannels];
+        reportSlot = new LatestValueSlot(maxChannels * REPORT_FIELDS);
+    }
+
+    /**
+     * Adds a sensor, starting at the high rate. Call before the policy receives samples.
+     *
+     * @param windowNanos span over which the activity deviation is measured
+     */
+    public synchronized void track(int type, int lowPeriodUs, int highPeriodUs,
+                                   double enterStdDev, double exitStdDev, long windowNanos) {
+        if (channelCount == channels.length) {
+            throw new IllegalStateException("too many channels");
+        }
+        if (exitStdDev > enterStdDev || highPeriodUs > lowPeriodUs) {
+            throw new IllegalArgumentException("bad thresholds or periods for type " + type);
+        }
+        channels[channelCount] = new Channel(type, lowPeriodUs, highPeriodUs, enterStdDev, exitStdDev,
+                new WindowStats(WINDOW_CAPACITY, windowNanos, new QuantileSketch()));
+        channelCount = channelCount + 1;
+    }
+
+    /** From any thread; a hidden sensor drops to its low rate on its next sample. */
+    public void setVisible(int type, boolean visible) {
+        Channel c = channel(type);
+        if (c != null) {
+            c.visible = visible;
+        }
+    }
+
+    private Channel channel(int type) {
+        int n = channelCount;
+        for (int i = 0; i < n; i++) {
+            if (channels[i].type == type) {
+                return channels[i];
+            }
+        }
+        return null;
+    }
+
+    public LatestValueSlot reportSlot() {
+        return reportSlot;
+    }
+
+    /** True once after any rate changed; then call {@link #writeConfig}. */
+    public boolean takeChanged() {
+        boolean c = changed;
+        changed = false;
+        return c;
+    }
+
+    /**
+     * Writes the current period of every sensor, and the wake-up detectors, with no
+     * batching. Call on the sample thread.
+     */
+    public CaptureConfig writeConfig(CaptureConfig out) {
+        int n = channelCount;
+        for (int i = 0; i < n; i++) {
+            Channel c = channels[i];
+            out.set(c.type, c.high ? c.highPeriodUs : c.lowPeriodUs, 0);
+        }
+        out.set(SensorTypes.SIGNIFICANT_MOTION, 0, 0);
+        out.set(SensorTypes.STATIONARY_DETECT, 0, 0);
+        return out;
+    }
+
+    @Override
+    public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+        int n = channelCount;
+        if (type == SensorTypes.SIGNIFICANT_MOTION || type == SensorTypes.STATIONARY_DETECT) {
+            boolean moving = type == SensorTypes.SIGNIFICANT_MOTION;
+            for (int i = 0; i < n; i++) {
+                Channel c = channels[i];
+                c.quietSince = Long.MIN_VALUE;
+                setHigh(c, moving && c.visible, timestampNanos);
+            }
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            Channel c = channels[i];
+            if (c.type == type && count > 0) {
+                onChannelSample(c, timestampNanos, values, count);
+                break;
+            }
+        }
+        if (timestampNanos - reported >= REPORT_NANOS) {
+            publishReport();
+            reported = timestampNanos;
+        }
+    }
+
+    @Override
+    public void onLocation(GpsFix fix) {
+    }
+
+    private void onChannelSample(Channel c, long t, float[] values, int count) {
+        if (c.lastTime != Long.MIN_VALUE && t > c.lastTime) {
+            long dt = t - c.lastTime;
+            if (c.high) {
+                c.highNanos += dt;
+                c.highEvents++;
+            } else {
+                c.lowNanos += dt;
+            }
+        }
+        c.lastTime = t;
+        c.events++;
+
+        double activity;
+        if (count >= 3) {
+            activity = Math.sqrt(values[0] * values[0] + values[1] * values[1] + values[2] * values[2]);
+        } else {
+            activity = values[0];
+        }
+        c.stats.add(t, activity);
+        double deviation = c.stats.stdDev();
+
+        if (!c.visible) {
+            setHigh(c, false, t);
+        } else if (!c.high) {
+            if (deviation > c.enterStdDev && t - c.changedAt >= MIN_DWELL_NANOS) {
+                setHigh(c, true, t);
+            }
+        } else if (deviation >= c.exitStdDev) {
+            c.quietSince = Long.MIN_VALUE;
+        } else if (c.quietSince == Long.MIN_VALUE) {
+            c.quietSince = t;
+        } else if (t - c.quietSince >= HOLD_NANOS) {
+            setHigh(c, false, t);
+        }
+    }
+
+    private void setHigh(Channel c, boolean high, long t) {
+        if (c.high == high) {
+            return;
+        }
+        c.high = high;
+        c.changedAt = t;
+        c.quietSince = Long.MIN_VALUE;
+        c.switches++;
+        changed = true;
+    }
+
+    private void publishReport() {
+        float[] out = reportSlot.editBuffer();
+        int n = channelCount;
+        for (int i = 0; i < n; i++) {
+            Channel c = channels[i];
+            int base = i * REPORT_FIELDS;
+            out[base + REPORT_TYPE] = c.type;
+            out[base + REPORT_PERIOD_US] = c.high ? c.highPeriodUs : c.lowPeriodUs;
+            out[base + REPORT_HIGH] = c.high ? 1f : 0f;
+            out[base + REPORT_EVENTS] = c.events;
+            out[base + REPORT_BASELINE_EVENTS] = (float) c.baselineEvents();
+            out[base + REPORT_SWITCHES] = c.switches;
+        }
+        reportSlot.publish();
+    }
+
+    private static final class Channel {
+        final int type;
+        final int lowPeriodUs;
+        final int highPeriodUs;
+        final double enterStdDev;
+        final double exitStdDev;
+        final WindowStats stats;
+        volatile boolean visible = true;
+        // Sample thread only
+        boolean high = true;
+        long changedAt = Long.MIN_VALUE / 2;
+        long quietSince = Long.MIN_VALUE;
+        long lastTime = Long.MIN_VALUE;
+        long events;
+        long highEvents;
+        long highNanos;
+        long lowNanos;
+        int switches;
+
+        Channel(int type, int lowPeriodUs, int highPeriodUs, double enterStdDev, double exitStdDev,
+                WindowStats stats) {
+            this.type = type;
+            this.lowPeriodUs = lowPeriodUs;
+            this.highPeriodUs = highPeriodUs;
+            this.enterStdDev = enterStdDev;
+            this.exitStdDev = exitStdDev;
+            this.stats = stats;
+        }
+
+        /**
+         * Events plus those the low-rate time would have produced at the rate measured
+         * while high (the nominal high period until a second of it has been seen).
+         */
+        double baselineEvents() {
+            double highRate;
+            if (highNanos >= 1_000_000_000L) {
+                highRate = highEvents * 1e9 / highNanos;
+            } else if (highPeriodUs > 0) {
+                highRate = 1e6 / highPeriodUs;
+            } else {
+                return events;
+            }
+            double lowEvents = events - highEvents;
+            return events + Math.max(0.0, lowNanos * 1e-9 * highRate - lowEvents);
+        }
+    }
+}
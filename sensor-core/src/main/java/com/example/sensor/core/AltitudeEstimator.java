@@ -0,0 +1,241 @@
+package com.example.sensor.core;
+
+/**
+ * Kalman filter fusing barometer samples with GPS altitude fixes.
+ *
+ * <p>State is altitude h, vertical speed v and the barometer bias b, all in meters. The
+ * barometer measures the standard-atmosphere altitude h + b: precise from one sample to
+ * the next but offset by however far the real sea-level pressure is from 1013.25 hPa.
+ * GPS measures h with an error of several meters but no drift. With both, the filter
+ * follows fast changes from the barometer and learns the bias, and with it the sea-level
+ * pressure, from GPS. Before the first GPS fix the bias stays near zero and the output is
+ * the smoothed standard-atmosphere altitude.
+ *
+ * <p>Fixes anchor the filter with their altitude above mean sea level where the platform
+ * provides one. Otherwise they only have height above the WGS84 ellipsoid, which differs
+ * from sea level by the local geoid height, up to about 100 m. The altitude and the
+ * sea-level pressure are then referenced to the ellipsoid (see
+ * {@link #isEllipsoidReferenced()}) until the first sea-level fix, after which
+ * ellipsoid-only fixes are ignored.
+ *
+ * <p>The covariance is kept as six scalars; an update does not allocate. Single thread only.
+ */
+public class AltitudeEstimator {
+    /** Spectral density of vertical acceleration, (m/s^2)^2 / Hz. */
+    public static final double DEFAULT_ACCELERATION_NOISE = 0.5;
+    /** Barometer bias random walk, m^2/s: about 8 m (1 hPa) per hour of weather change. */
+    public static final double DEFAULT_BIAS_DRIFT = 0.018;
+    /** Barometer altitude noise per sample, m. */
+    public static final double DEFAULT_BAROMETER_NOISE = 0.15;
+    /** Vertical GPS error relative to the reported horizontal accuracy. */
+    public static final double GPS_VERTICAL_ACCURACY_FACTOR = 1.5;
+    /** Used when a fix has an altitude but no accuracy. */
+    public static final double DEFAULT_GPS_NOISE = 30.0;
+
+    private static final double INITIAL_SPEED_STDDEV = 1.0;
+    private static final double INITIAL_BIAS_STDDEV = 100.0;
+    /** Samples averaged before the relative-altitude baseline is taken. */
+    private static final int BASELINE_SAMPLES = 25;
+    private static final double MAX_STEP_SECONDS = 1.0;
+
+    private final double accelerationNoise;
+    private final double biasDrift;
+    private final double barometerVariance;
+
+    private double h;
+    private double v;
+    private double b;
+    // Symmetric covariance, order h, v, b
+    private double phh, phv, phb, pvv, pvb, pbb;
+    private long lastTimestampNanos;
+    private boolean initialized = false;
+    private boolean gpsReference = false;
+    private boolean ellipsoidReference = false;
+    private double lastPressure = BarometricAltitude.STANDARD_SEA_LEVEL_HPA;
+    private int samples = 0;
+    private double baselineSum = 0.0;
+    private double baseline = 0.0;
+
+    public AltitudeEstimator() {
+        this(DEFAULT_ACCELERATION_NOISE, DEFAULT_BIAS_DRIFT, DEFAULT_BAROMETER_NOISE);
+    }
+
+    public AltitudeEstimator(double accelerationNoise, double biasDrift, double barometerNoiseMeters) {
+        this.accelerationNoise = accelerationNoise;
+        this.biasDrift = biasDrift;
+        this.barometerVariance = barometerNoiseMeters * barometerNoiseMeters;
+    }
+
+    public void reset() {
+        initialized = false;
+        gpsReference = false;
+        ellipsoidReference = false;
+        samples = 0;
+        baselineSum = 0.0;
+        baseline = 0.0;
+    }
+
+    public void onPressure(long timestampNanos, double pressureHPa) {
+        double z = BarometricAltitude.pressureToAltitude(pressureHPa);
+        lastPressure = pressureHPa;
+        if (!initialized) {
+            h = z;
+            v = 0.0;
+            b = 0.0;
+            phh = barometerVariance + INITIAL_BIAS_STDDEV * INITIAL_BIAS_STDDEV;
+            phv = 0.0;
+            phb = -INITIAL_BIAS_STDDEV * INITIAL_BIAS_STDDEV;
+            pvv = INITIAL_SPEED_STDDEV * INITIAL_SPEED_STDDEV;
+            pvb = 0.0;
+            pbb = INITIAL_BIAS_STDDEV * INITIAL_BIAS_STDDEV;
+            lastTimestampNanos = timestampNanos;
+            initialized = true;
+        } else {
+            predict(timestampNanos);
+            // H = [1 0 1]
+            double ph = phh + phb;
+            double pv = phv + pvb;
+            double pb = phb + pbb;
+            double s = ph + pb + barometerVariance;
+            update(z - (h + b), ph / s, pv / s, pb / s, ph, pv, pb);
+        }
+        if (samples < BASELINE_SAMPLES) {
+            samples++;
+            baselineSum += h + b;
+            baseline = baselineSum / samples;
+        }
+    }
+
+    /**
+     * Applies a GPS altitude above mean sea level. Fixes older than the last barometer
+     * sample are applied without rewinding the state; at one fix per second the error is
+     * negligible.
+     */
+    public void onGpsAltitude(long timestampNanos, double altitudeMeters, double accuracyMeters) {
+        if (!initialized) {
+            return;
+        }
+        predict(timestampNanos);
+        double sigma = accuracyMeters > 0.0
+                ? accuracyMeters * GPS_VERTICAL_ACCURACY_FACTOR : DEFAULT_GPS_NOISE;
+        // H = [1 0 0]
+        double s = phh + sigma * sigma;
+        update(altitudeMeters - h, phh / s, phv / s, phb / s, phh, phv, phb);
+        gpsReference = true;
+    }
+
+    /** Uses the fix's sea-level altitude if it has one, else its ellipsoid height; see the class comment. */
+    public void onLocation(GpsFix fix) {
+        double accuracy = fix.hasAccuracy ? fix.accuracy : 0.0;
+        if (fix.hasMslAltitude) {
+            if (ellipsoidReference) {
+                forgetDatum();
+                ellipsoidReference = false;
+            }
+            onGpsAltitude(fix.elapsedRealtimeNanos, fix.mslAltitude, accuracy);
+        } else if (fix.hasAltitude && (ellipsoidReference || !gpsReference)) {
+            onGpsAltitude(fix.elapsedRealtimeNanos, fix.altitude, accuracy);
+            ellipsoidReference = gpsReference;
+        }
+    }
+
+    /**
+     * Makes the split of the barometer altitude h + b into altitude and bias as uncertain
+     * as at the start, so the next fix moves the altitude to its datum at once; the
+     * barometer altitude itself stays as precise as it was.
+     */
+    private void forgetDatum() {
+        double variance = INITIAL_BIAS_STDDEV * INITIAL_BIAS_STDDEV;
+        // P += variance * u u' with u = [1 0 -1]
+        phh += variance;
+        phb -= variance;
+        pbb += variance;
+    }
+
+    private void predict(long timestampNanos) {
+        long elapsed = timestampNanos - lastTimestampNanos;
+        if (elapsed <= 0) {
+            return;
+        }
+        lastTimestampNanos = timestampNanos;
+        double dt = Math.min(elapsed * 1e-9, MAX_STEP_SECONDS);
+        h += v * dt;
+        // P = F P F' + Q, F = [[1 dt 0] [0 1 0] [0 0 1]]
+        double dt2 = dt * dt;
+        double q = accelerationNoise;
+        phh += dt * (2.0 * phv + dt * pvv) + q * dt2 * dt / 3.0;
+        phv += dt * pvv + q * dt2 / 2.0;
+        phb += dt * pvb;
+        pvv += q * dt;
+        pbb += biasDrift * dt;
+    }
+
+    /** x += k * innovation; P -= k * (H P) with k = P H' / s and hp = H P. */
+    private void update(double innovation, double kh, double kv, double kb,
+                        double hph, double hpv, double hpb) {
+        h += kh * innovation;
+        v += kv * innovation;
+        b += kb * innovation;
+        phh -= kh * hph;
+        phv -= kh * hpv;
+        phb -= kh * hpb;
+        pvv -= kv * hpv;
+        pvb -= kv * hpb;
+        pbb -= kb * hpb;
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /** True once a GPS altitude has anchored the barometer bias. */
+    public boolean hasGpsReference() {
+        return gpsReference;
+    }
+
+    /**
+     * True while the GPS reference is height above the WGS84 ellipsoid rather than above
+     * sea level, so {@link #altitude()} and {@link #seaLevelPressure()} are off by the
+     * geoid height.
+     */
+    public boolean isEllipsoidReferenced() {
+        return ellipsoidReference;
+    }
+
+    public double altitude() {
+        return h;
+    }
+
+    public double verticalSpeed() {
+        return v;
+    }
+
+    public double altitudeStdDev() {
+        return Math.sqrt(Math.max(phh, 0.0));
+    }
+
+    public double barometerBias() {
+        return b;
+    }
+
+    /**
+     * Altitude change since start, from the barometer alone so that GPS corrections of
+     * the absolute altitude do not show up as movement. Measured from the average of the
+     * first samples rather than a single one.
+     */
+    public double relativeAltitude() {
+        return h + b - baseline;
+    }
+
+    /**
+     * Sea-level pressure implied by the fused altitude; standard pressure before any GPS
+     * fix. With an ellipsoid reference it is the pressure at the ellipsoid, up to about
+     * 12 hPa from the true sea-level pressure.
+     */
+    public double seaLevelPressure() {
+        if (!gpsReference) {
+            return BarometricAltitude.STANDARD_SEA_LEVEL_HPA;
+        }
+        return BarometricAltitude.seaLevelPressure(lastPressure, h);
+    }
+}
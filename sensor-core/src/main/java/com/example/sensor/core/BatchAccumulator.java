@@ -0,0 +1,54 @@
+package com.example.sensor.core;
+
+/**
+ * Collects samples delivered in a hardware FIFO burst and hands them to the sink
+ * as one batch: when the batch fills up, or when the caller signals the end of
+ * the burst with {@link #drain()} (after the looper has dispatched the queued
+ * events, or on {@code onFlushCompleted}).
+ */
+public class BatchAccumulator {
+    private final SampleBatch batch;
+    private final BatchSink sink;
+    private long samples;
+    private long batches;
+    private long maxBatchSize;
+
+    public BatchAccumulator(int capacity, BatchSink sink) {
+        this.batch = new SampleBatch(capacity);
+        this.sink = sink;
+    }
+
+    public void add(int type, long timestampNanos, int accuracy, float[] values, int count) {
+        if (!batch.add(type, timestampNanos, accuracy, values, count)) {
+            emit();
+            batch.add(type, timestampNanos, accuracy, values, count);
+        }
+        samples++;
+    }
+
+    public void drain() {
+        if (batch.size() > 0) {
+            emit();
+        }
+    }
+
+    private void emit() {
+        batches++;
+        maxBatchSize = Math.max(maxBatchSize, batch.size());
+        sink.onBatch(batch);
+        batch.clear();
+    }
+
+    public long samples() {
+        return samples;
+    }
+
+    /** Number of batches delivered; roughly the number of application processor wakeups. */
+    public long batches() {
+        return batches;
+    }
+
+    public long maxBatchSize() {
+        return maxBatchSize;
+    }
+}
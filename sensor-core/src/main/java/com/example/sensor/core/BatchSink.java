@@ -0,0 +1,5 @@
+package com.example.sensor.core;
+
+public interface BatchSink {
+    void onBatch(SampleBatch batch);
+}
@@ -0,0 +1,82 @@
+package com.example.sensor.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drains one {@link SampleBus.Subscription} into a sink on its own thread, parking
+ * while the bus is idle. On {@link #shutdown()} whatever is still queued for the
+ * subscription is delivered before {@link #onShutdown()} runs and the subscription
+ * is removed. A sink that must only be called from one thread should not be handed to
+ * a new consumer until {@link #shutdownAndJoin} has returned true for the old one.
+ */
+public class BusConsumerThread extends Thread {
+    private static final int MAX_PER_POLL = 512;
+    private static final long IDLE_PARK_NANOS = 100_000_000L;
+
+    private final SampleBus bus;
+    private final SampleBus.Subscription subscription;
+    private final SampleSink sink;
+    private volatile boolean running = true;
+
+    public BusConsumerThread(String name, SampleBus bus, SampleBus.Policy policy, SampleSink sink) {
+        super(name);
+        this.bus = bus;
+        this.subscription = bus.subscribe(policy);
+        this.sink = sink;
+        setDaemon(true);
+    }
+
+    public SampleBus.Subscription subscription() {
+        return subscription;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                int n = subscription.awaitAndPoll(sink, MAX_PER_POLL, IDLE_PARK_NANOS);
+                if (n > 0) {
+                    afterPoll(n);
+                }
+            }
+            int n;
+            while ((n = subscription.poll(sink, MAX_PER_POLL)) > 0) {
+                afterPoll(n);
+            }
+        } finally {
+            bus.unsubscribe(subscription);
+            onShutdown();
+        }
+    }
+
+    /** Called on this thread after each non-empty poll, e.g. to end a batch or schedule a frame. */
+    protected void afterPoll(int delivered) {
+    }
+
+    /** Called on this thread once the subscription is drained. */
+    protected void onShutdown() {
+    }
+
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * {@link #shutdown()}, then waits up to {@code timeoutMillis} for the drain and
+     * {@link #onShutdown()} to finish. Returns whether the thread has ended; an
+     * interrupt stops the wait early and is passed on.
+     */
+    public boolean shutdownAndJoin(long timeoutMillis) {
+        shutdown();
+        if (Thread.currentThread() == this) {
+            return false;
+        }
+        try {
+            join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !isAlive();
+    }
+}
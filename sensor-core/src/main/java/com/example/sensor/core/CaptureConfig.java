@@ -0,0 +1,109 @@
+package com.example.sensor.core;
+
+import java.util.Arrays;
+
+/**
+ * Per-sensor sampling period and hardware FIFO max report latency for background capture.
+ * A latency of 0 disables batching for that sensor.
+ */
+public class CaptureConfig {
+    /**
+     * Same as {@code SensorManager.SENSOR_DELAY_FASTEST}. From Android 12 it needs the
+     * {@code HIGH_SAMPLING_RATE_SENSORS} permission to go past 200 Hz.
+     */
+    public static final int SAMPLING_PERIOD_FASTEST = 0;
+
+    private int[] types = new int[8];
+    private int[] samplingPeriodsUs = new int[8];
+    private int[] maxReportLatenciesUs = new int[8];
+    private int size;
+
+    public static CaptureConfig defaults() {
+        return new CaptureConfig()
+                .set(SensorTypes.PRESSURE, SAMPLING_PERIOD_FASTEST, 10_000_000)
+                .set(SensorTypes.ROTATION_VECTOR, SAMPLING_PERIOD_FASTEST, 5_000_000)
+                .set(SensorTypes.GYROSCOPE, SAMPLING_PERIOD_FASTEST, 5_000_000);
+    }
+
+    public CaptureConfig set(int type, int samplingPeriodUs, int maxReportLatencyUs) {
+        if (samplingPeriodUs < 0 || maxReportLatencyUs < 0) {
+            throw new IllegalArgumentException("negative period or latency for type " + type);
+        }
+        int i = indexOf(type);
+        if (i < 0) {
+            if (size == types.length) {
+                types = Arrays.copyOf(types, size * 2);
+                samplingPeriodsUs = Arrays.copyOf(samplingPeriodsUs, size * 2);
+                maxReportLatenciesUs = Arrays.copyOf(maxReportLatenciesUs, size * 2);
+            }
+            i = size++;
+            types[i] = type;
+        }
+        samplingPeriodsUs[i] = samplingPeriodUs;
+        maxReportLatenciesUs[i] = maxReportLatencyUs;
+        return this;
+    }
+
+    public CaptureConfig remove(int type) {
+        int i = indexOf(type);
+        if (i >= 0) {
+            size--;
+            types[i] = types[size];
+            samplingPeriodsUs[i] = samplingPeriodsUs[size];
+            maxReportLatenciesUs[i] = maxReportLatenciesUs[size];
+        }
+        return this;
+    }
+
+    /**
+     * Adds the sensors of {@code other}, another client's request. A sensor both ask for
+     * gets the shorter period and the shorter latency, so neither client gets less than
+     * it asked for.
+     */
+    public CaptureConfig merge(CaptureConfig other) {
+        for (int i = 0; i < other.size; i++) {
+            int type = other.types[i];
+            int j = indexOf(type);
+            if (j < 0) {
+                set(type, other.samplingPeriodsUs[i], other.maxReportLatenciesUs[i]);
+            } else {
+                set(type, Math.min(samplingPeriodsUs[j], other.samplingPeriodsUs[i]),
+                        Math.min(maxReportLatenciesUs[j], other.maxReportLatenciesUs[i]));
+            }
+        }
+        return this;
+    }
+
+    /** Applies one latency to every configured sensor. */
+    public CaptureConfig setMaxReportLatencyUs(int maxReportLatencyUs) {
+        for (int i = 0; i < size; i++) {
+            set(types[i], samplingPeriodsUs[i], maxReportLatencyUs);
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int type(int i) {
+        return types[i];
+    }
+
+    public int samplingPeriodUs(int i) {
+        return samplingPeriodsUs[i];
+    }
+
+    public int maxReportLatencyUs(int i) {
+        return maxReportLatenciesUs[i];
+    }
+
+    public int indexOf(int type) {
+        for (int i = 0; i < size; i++) {
+            if (types[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.sensor.core;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Reusable text buffer for numeric read-outs. Numbers are written as fixed-point
+ * digits straight into a char[], so building a label allocates nothing, and
+ * {@link #commit()} reports whether the visible text actually changed.
+ *
+ * <p>The committed array is handed to {@code TextView.setText(char[], int, int)},
+ * which keeps a reference to it; it is only rewritten by the next successful commit.
+ */
+public class DecimalText {
+    private static final long[] POW10 = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L
+    };
+
+    private final char decimalSeparator;
+    private char[] work;
+    private char[] committed;
+    private int length;
+    private int committedLength = -1;
+    private final char[] digits = new char[20];
+
+    public DecimalText(int capacity) {
+        this(capacity, Locale.getDefault());
+    }
+
+    public DecimalText(int capacity, Locale locale) {
+        decimalSeparator = DecimalFormatSymbols.getInstance(locale).getDecimalSeparator();
+        work = new char[capacity];
+        committed = new char[capacity];
+    }
+
+    public DecimalText clear() {
+        length = 0;
+        return this;
+    }
+
+    public DecimalText append(char c) {
+        ensureCapacity(1);
+        work[length++] = c;
+        return this;
+    }
+
+    public DecimalText append(String s) {
+        int n = s.length();
+        ensureCapacity(n);
+        s.getChars(0, n, work, length);
+        length += n;
+        return this;
+    }
+
+    public DecimalText append(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return append("-9223372036854775808");
+            }
+            append('-');
+            value = -value;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (char) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        ensureCapacity(n);
+        while (n > 0) {
+            work[length++] = digits[--n];
+        }
+        return this;
+    }
+
+    /** Appends {@code value} rounded half-up to {@code decimals} places (0..8), like {@code %.Nf}. */
+    public DecimalText append(double value, int decimals) {
+        if (Double.isNaN(value)) {
+            return append("NaN");
+        }
+        if (Double.isInfinite(value)) {
+            return append(value > 0 ? "∞" : "-∞");
+        }
+        long scale = POW10[decimals];
+        double scaled = Math.abs(value) * scale;
+        if (scaled >= Long.MAX_VALUE) {
+            return append(value > 0 ? "∞" : "-∞");
+        }
+        long fixed = (long) (scaled + 0.5);
+        if (value < 0 && fixed != 0) {
+            append('-');
+        }
+        append(fixed / scale);
+        if (decimals > 0) {
+            long fraction = fixed % scale;
+            ensureCapacity(decimals + 1);
+            work[length++] = decimalSeparator;
+            for (int i = decimals - 1; i >= 0; i--) {
+                work[length + i] = (char) ('0' + (fraction % 10));
+                fraction /= 10;
+            }
+            length += decimals;
+        }
+        return this;
+    }
+
+    /**
+     * Publishes the text built since {@link #clear()}. Returns false, leaving the
+     * committed text untouched, if it is identical to the previous commit.
+     */
+    public boolean commit() {
+        if (length == committedLength) {
+            boolean same = true;
+            for (int i = 0; i < length; i++) {
+                if (work[i] != committed[i]) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) {
+                return false;
+            }
+        }
+        if (committed.length < work.length) {
+            committed = new char[work.length];
+        }
+        System.arraycopy(work, 0, committed, 0, length);
+        committedLength = length;
+        return true;
+    }
+
+    /** Makes the next commit report a change, e.g. after the view was given other text. */
+    public void invalidate() {
+        committedLength = -1;
+    }
+
+    public char[] chars() {
+        return committed;
+    }
+
+    public int length() {
+        return committedLength < 0 ? 0 : committedLength;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > work.length) {
+            char[] grown = new char[Math.max(work.length * 2, length + extra)];
+            System.arraycopy(work, 0, grown, 0, length);
+            work = grown;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.sensor.core;
+
+/**
+ * The processing behind the main screen: fused altitude and its change since start,
+ * fused orientation, gyro rates and the latest GPS fix, plus sliding-window statistics
+ * of pressure noise, gyro drift and GPS accuracy. Results are published to slots for a
+ * reader on another thread. The vibration spectrum is left to {@link VibrationMonitor}
+ * on a consumer of its own. Driven by live sensor callbacks or by {@link ReplayEngine}.
+ * Each slot has a single writer: onSample calls must come from one thread, onLocation
+ * calls from one (possibly different) thread.
+ */
+public class DisplayPipeline implements SampleSink {
+    /** Channels fed to the chart set with {@link #setChart}. */
+    public static final int CHART_PRESSURE = 0;
+    public static final int CHART_ALTITUDE_DELTA = 1;
+    public static final int CHART_GYRO_X = 2;
+    public static final int CHART_GYRO_Y = 3;
+    public static final int CHART_GYRO_Z = 4;
+    public static final int CHART_CHANNELS = 5;
+
+    /** Statistics snapshots walk the quantile buckets, so they are published at most this often. */
+    private static final long STATS_PUBLISH_NANOS = 100_000_000L;
+
+    /**
+     * pressure hPa, altitude m, change since start m, estimated sea-level pressure hPa,
+     * then 1 if the last two are referenced to the WGS84 ellipsoid rather than sea level
+     */
+    private final LatestValueSlot pressureSlot = new LatestValueSlot(5);
+    /**
+     * azimuth degrees [0, 360), then {@link OrientationFilter#writeState} from index 1;
+     * published with the filter's timestamp so a reader can extrapolate the heading
+     */
+    private final LatestValueSlot orientationSlot = new LatestValueSlot(1 + OrientationFilter.STATE_SIZE);
+    /** x, y, z rad/s */
+    private final LatestValueSlot gyroSlot = new LatestValueSlot(3);
+    private final GpsFixSlot gpsSlot = new GpsFixSlot();
+    /** {@link WindowStats#writeSnapshot} of the pressure over the last 10 s at 50 Hz */
+    private final LatestValueSlot pressureStatsSlot = new LatestValueSlot(WindowStats.SNAPSHOT_SIZE);
+    /** snapshots of x, y and z over the last 60 s at 200 Hz, one after another */
+    private final LatestValueSlot gyroStatsSlot = new LatestValueSlot(3 * WindowStats.SNAPSHOT_SIZE);
+    /** snapshot of the reported GPS accuracy over the last 100 fixes */
+    private final LatestValueSlot gpsAccuracyStatsSlot = new LatestValueSlot(WindowStats.SNAPSHOT_SIZE);
+    private final WindowStats pressureStats = new WindowStats(500, 10_000_000_000L, new QuantileSketch());
+    private final WindowStats[] gyroStats = {
+            new WindowStats(12000, 60_000_000_000L, new QuantileSketch()),
+            new WindowStats(12000, 60_000_000_000L, new QuantileSketch()),
+            new WindowStats(12000, 60_000_000_000L, new QuantileSketch()),
+    };
+    private final WindowStats gpsAccuracyStats = new WindowStats(100);
+    // Half of MIN_VALUE so the first "now - published" does not overflow
+    private long pressureStatsPublished = Long.MIN_VALUE / 2;
+    private long gyroStatsPublished = Long.MIN_VALUE / 2;
+    // Hands fixes from the onLocation thread to the estimator on the onSample thread
+    private final GpsFixSlot altitudeFixSlot = new GpsFixSlot();
+    private final AltitudeEstimator altitudeEstimator = new AltitudeEstimator();
+    private final OrientationFilter orientationFilter = new OrientationFilter();
+    private volatile StripChartBuffer chart;
+
+    /** Every sample, not just the newest per frame, also goes to {@code chart}; null to stop. */
+    public void setChart(StripChartBuffer chart) {
+        if (chart != null && chart.channels() < CHART_CHANNELS) {
+            throw new IllegalArgumentException("chart needs " + CHART_CHANNELS + " channels");
+        }
+        this.chart = chart;
+    }
+
+    @Override
+    public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+        if (type == SensorTypes.PRESSURE) {
+            if (count > 0) {
+                float pressure = values[0];
+                if (altitudeFixSlot.poll()) {
+                    altitudeEstimator.onLocation(altitudeFixSlot.value());
+                }
+                altitudeEstimator.onPressure(timestampNanos, pressure);
+                float[] slot = pressureSlot.editBuffer();
+                slot[0] = pressure;
+                slot[1] = (float) altitudeEstimator.altitude();
+                slot[2] = (float) altitudeEstimator.relativeAltitude();
+                slot[3] = (float) altitudeEstimator.seaLevelPressure();
+                slot[4] = altitudeEstimator.isEllipsoidReferenced() ? 1f : 0f;
+                pressureSlot.publish();
+                pressureStats.add(timestampNanos, pressure);
+                if (timestampNanos - pressureStatsPublished >= STATS_PUBLISH_NANOS) {
+                    pressureStats.writeSnapshot(pressureStatsSlot.editBuffer(), 0);
+                    pressureStatsSlot.publish(timestampNanos);
+                    pressureStatsPublished = timestampNanos;
+                }
+                StripChartBuffer c = chart;
+                if (c != null) {
+                    c.add(CHART_PRESSURE, timestampNanos, pressure);
+                    c.add(CHART_ALTITUDE_DELTA, timestampNanos, slot[2]);
+                }
+            }
+        } else if (type == SensorTypes.ROTATION_VECTOR) {
+            if (count >= 3) {
+                orientationFilter.onRotationVector(timestampNanos, values, count);
+                publishOrientation();
+            }
+        } else if (type == SensorTypes.GYROSCOPE) {
+            if (count >= 3) {
+                orientationFilter.onGyroscope(timestampNanos, values[0], values[1], values[2]);
+                if (orientationFilter.isInitialized()) {
+                    publishOrientation();
+                }
+                float[] slot = gyroSlot.editBuffer();
+                slot[0] = values[0];
+                slot[1] = values[1];
+                slot[2] = values[2];
+                gyroSlot.publish();
+                for (int axis = 0; axis < 3; axis++) {
+                    gyroStats[axis].add(timestampNanos, values[axis]);
+                }
+                if (timestampNanos - gyroStatsPublished >= STATS_PUBLISH_NANOS) {
+                    float[] stats = gyroStatsSlot.editBuffer();
+                    for (int axis = 0; axis < 3; axis++) {
+                        gyroStats[axis].writeSnapshot(stats, axis * WindowStats.SNAPSHOT_SIZE);
+                    }
+                    gyroStatsSlot.publish(timestampNanos);
+                    gyroStatsPublished = timestampNanos;
+                }
+                StripChartBuffer c = chart;
+                if (c != null) {
+                    c.add(CHART_GYRO_X, timestampNanos, values[0]);
+                    c.add(CHART_GYRO_Y, timestampNanos, values[1]);
+                    c.add(CHART_GYRO_Z, timestampNanos, values[2]);
+                }
+            }
+        }
+    }
+
+    private void publishOrientation() {
+        float[] slot = orientationSlot.editBuffer();
+        slot[0] = orientationFilter.azimuthDegrees();
+        orientationFilter.writeState(slot, 1);
+        orientationSlot.publish(orientationFilter.timestampNanos());
+    }
+
+    @Override
+    public void onLocation(GpsFix fix) {
+        gpsSlot.publish(fix);
+        altitudeFixSlot.publish(fix);
+        if (fix.hasAccuracy) {
+            gpsAccuracyStats.add(fix.elapsedRealtimeNanos, fix.accuracy);
+            gpsAccuracyStats.writeSnapshot(gpsAccuracyStatsSlot.editBuffer(), 0);
+            gpsAccuracyStatsSlot.publish();
+        }
+    }
+
+    public LatestValueSlot pressureSlot() {
+        return pressureSlot;
+    }
+
+    public LatestValueSlot orientationSlot() {
+        return orientationSlot;
+    }
+
+    public LatestValueSlot gyroSlot() {
+        return gyroSlot;
+    }
+
+    public LatestValueSlot pressureStatsSlot() {
+        return pressureStatsSlot;
+    }
+
+    public LatestValueSlot gyroStatsSlot() {
+        return gyroStatsSlot;
+    }
+
+    public LatestValueSlot gpsAccuracyStatsSlot() {
+        return gpsAccuracyStatsSlot;
+    }
+
+    public GpsFixSlot gpsSlot() {
+        return gpsSlot;
+    }
+}
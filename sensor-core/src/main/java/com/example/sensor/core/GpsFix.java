@@ -0,0 +1,24 @@
+package com.example.sensor.core;
+
+/** Mutable copy of the {@code Location} fields the app uses, reused between fixes. */
+public class GpsFix {
+    public String provider;
+    public double latitude;
+    public double longitude;
+    public boolean hasAltitude;
+    /** Height above the WGS84 ellipsoid, m; not above sea level. */
+    public double altitude;
+    public boolean hasMslAltitude;
+    /** Altitude above mean sea level, m, where the platform converts it (Android 14 on). */
+    public double mslAltitude;
+    public boolean hasAccuracy;
+    public float accuracy;
+    public boolean hasSpeed;
+    public float speed;
+    public boolean hasBearing;
+    public float bearing;
+    /** UTC wall-clock time of the fix, ms. */
+    public long time;
+    /** Fix time on the elapsed-realtime clock, ns; 0 if unknown. */
+    public long elapsedRealtimeNanos;
+}
@@ -0,0 +1,46 @@
+package com.example.sensor.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** {@link LatestValueSlot} for GPS fixes: triple-buffered, single writer, single reader. */
+public class GpsFixSlot {
+    private static final int DIRTY = 0x4;
+    private static final int INDEX_MASK = 0x3;
+
+    private final GpsFix[] buffers = {new GpsFix(), new GpsFix(), new GpsFix()};
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int writeIndex = 0;
+    private int readIndex = 2;
+
+    public void publish(GpsFix fix) {
+        GpsFix target = buffers[writeIndex];
+        target.provider = fix.provider;
+        target.latitude = fix.latitude;
+        target.longitude = fix.longitude;
+        target.hasAltitude = fix.hasAltitude;
+        target.altitude = fix.altitude;
+        target.hasMslAltitude = fix.hasMslAltitude;
+        target.mslAltitude = fix.mslAltitude;
+        target.hasAccuracy = fix.hasAccuracy;
+        target.accuracy = fix.accuracy;
+        target.hasSpeed = fix.hasSpeed;
+        target.speed = fix.speed;
+        target.hasBearing = fix.hasBearing;
+        target.bearing = fix.bearing;
+        target.time = fix.time;
+        target.elapsedRealtimeNanos = fix.elapsedRealtimeNanos;
+        writeIndex = middle.getAndSet(writeIndex | DIRTY) & INDEX_MASK;
+    }
+
+    public boolean poll() {
+        if ((middle.get() & DIRTY) == 0) {
+            return false;
+        }
+        readIndex = middle.getAndSet(readIndex) & INDEX_MASK;
+        return true;
+    }
+
+    public GpsFix value() {
+        return buffers[readIndex];
+    }
+}
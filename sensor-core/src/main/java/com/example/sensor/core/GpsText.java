@@ -0,0 +1,40 @@
+package com.example.sensor.core;
+
+/** Builds the GPS card text into a reusable {@link DecimalText}. */
+public final class GpsText {
+    private GpsText() {
+    }
+
+    public static DecimalText write(DecimalText out, GpsFix fix, boolean fromCache) {
+        out.clear()
+                .append("GPS状態: ").append(fromCache ? "キャッシュ" : "リアルタイム")
+                .append("\nプロバイダ: ").append(String.valueOf(fix.provider))
+                .append("\n緯度: ").append(fix.latitude, 6)
+                .append("\n経度: ").append(fix.longitude, 6)
+                .append("\n高度: ");
+        if (fix.hasAltitude) {
+            out.append(fix.altitude, 2).append(" m");
+        } else {
+            out.append("--");
+        }
+        out.append("\n精度: ");
+        if (fix.hasAccuracy) {
+            out.append(fix.accuracy, 2).append(" m");
+        } else {
+            out.append("--");
+        }
+        out.append("\n速度: ");
+        if (fix.hasSpeed) {
+            out.append(fix.speed, 2).append(" m/s");
+        } else {
+            out.append("--");
+        }
+        out.append("\n方位: ");
+        if (fix.hasBearing) {
+            out.append(fix.bearing, 2).append('°');
+        } else {
+            out.append("--");
+        }
+        return out.append("\n時刻: ").append(fix.time);
+    }
+}
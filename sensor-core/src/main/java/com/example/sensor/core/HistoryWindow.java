@@ -0,0 +1,75 @@
+package com.example.sensor.core;
+
+import java.util.Arrays;
+
+/** Reusable result of {@link SeriesHistory#query}; grows only when a query returns more points than ever before. */
+public class HistoryWindow {
+    private long[] timestamps;
+    private float[] mins;
+    private float[] maxs;
+    private float[] means;
+    private int[] counts;
+    private int size;
+    /** Tier the points came from, -1 for raw samples. */
+    int tier;
+
+    public HistoryWindow(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        timestamps = new long[capacity];
+        mins = new float[capacity];
+        maxs = new float[capacity];
+        means = new float[capacity];
+        counts = new int[capacity];
+    }
+
+    void clear() {
+        size = 0;
+        tier = -1;
+    }
+
+    void add(long timestamp, float min, float max, float mean, int count) {
+        if (size == timestamps.length) {
+            int capacity = size * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            mins = Arrays.copyOf(mins, capacity);
+            maxs = Arrays.copyOf(maxs, capacity);
+            means = Arrays.copyOf(means, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        timestamps[size] = timestamp;
+        mins[size] = min;
+        maxs[size] = max;
+        means[size] = mean;
+        counts[size] = count;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int tier() {
+        return tier;
+    }
+
+    /** Sample time for raw points, bucket start for rollups. */
+    public long timestamp(int i) {
+        return timestamps[i];
+    }
+
+    public float min(int i) {
+        return mins[i];
+    }
+
+    public float max(int i) {
+        return maxs[i];
+    }
+
+    public float mean(int i) {
+        return means[i];
+    }
+
+    public int count(int i) {
+        return counts[i];
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.sensor.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-writer / single-reader holder for the newest value of one channel.
+ * Triple-buffered: the writer never waits for the reader and the reader only
+ * ever sees complete samples. Intermediate samples are overwritten.
+ */
+public class LatestValueSlot {
+    private static final int DIRTY = 0x4;
+    private static final int INDEX_MASK = 0x3;
+
+    private final float[][] buffers;
+    private final long[] timestamps = new long[3];
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int writeIndex = 0;
+    private int readIndex = 2;
+
+    public LatestValueSlot(int size) {
+        buffers = new float[3][size];
+    }
+
+    /** Buffer owned by the writer until the next {@link #publish()}. */
+    public float[] editBuffer() {
+        return buffers[writeIndex];
+    }
+
+    public void publish() {
+        writeIndex = middle.getAndSet(writeIndex | DIRTY) & INDEX_MASK;
+    }
+
+    /** Publishes the edit buffer together with the time its values refer to. */
+    public void publish(long timestampNanos) {
+        timestamps[writeIndex] = timestampNanos;
+        publish();
+    }
+
+    /** Swaps in the newest published values; returns false if nothing changed since the last poll. */
+    public boolean poll() {
+        if ((middle.get() & DIRTY) == 0) {
+            return false;
+        }
+        readIndex = middle.getAndSet(readIndex) & INDEX_MASK;
+        return true;
+    }
+
+    /** Values seen by the last successful {@link #poll()}. */
+    public float[] values() {
+        return buffers[readIndex];
+    }
+
+    /** Timestamp passed to {@link #publish(long)} with the values seen by the last poll. */
+    public long timestamp() {
+        return timestamps[readIndex];
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.sensor.core;
+
+/**
+ * Mahony-style orientation filter. The attitude quaternion is advanced with every
+ * gyroscope sample and pulled towards each rotation-vector sample, which arrives less
+ * often but does not drift. The pull follows a time constant rather than a per-sample
+ * gain, so it behaves the same at any rotation-vector rate; the residual also trains a
+ * gyro bias estimate (the integral term).
+ *
+ * <p>The quaternion rotates device to world coordinates, as the rotation vector does.
+ * Between samples the heading can be extrapolated with the last angular rate, for
+ * example to the vsync at which a frame will be shown. State is held in primitive
+ * fields and no method allocates. Single thread only.
+ */
+public class OrientationFilter {
+    /** How long the gyro path is trusted before the rotation vector takes over, s. */
+    public static final double DEFAULT_TIME_CONSTANT_SECONDS = 0.5;
+    /** Integral gain of the bias estimate, 1/s. */
+    public static final double DEFAULT_BIAS_GAIN = 0.05;
+    /** Extrapolation horizon limit. */
+    public static final long MAX_PREDICTION_NANOS = 100_000_000L;
+    /** Values written by {@link #writeState}: w, x, y, z, then angular rate x, y, z in rad/s. */
+    public static final int STATE_SIZE = 7;
+
+    private static final double MAX_GYRO_STEP_SECONDS = 0.1;
+    private static final double MAX_BIAS = 0.1;
+    /** Without a gyro sample this recent, rotation vectors are taken as they are. */
+    private static final long GYRO_TIMEOUT_NANOS = 500_000_000L;
+
+    private final double timeConstant;
+    private final double biasGain;
+
+    private double qw = 1.0, qx, qy, qz;
+    private double rateX, rateY, rateZ;
+    private double biasX, biasY, biasZ;
+    private long timestampNanos;
+    private long lastGyroNanos;
+    private long lastCorrectionNanos;
+    private boolean initialized = false;
+    private boolean gyroSeen = false;
+
+    public OrientationFilter() {
+        this(DEFAULT_TIME_CONSTANT_SECONDS, DEFAULT_BIAS_GAIN);
+    }
+
+    public OrientationFilter(double timeConstantSeconds, double biasGain) {
+        this.timeConstant = timeConstantSeconds;
+        this.biasGain = biasGain;
+    }
+
+    public void reset() {
+        qw = 1.0;
+        qx = qy = qz = 0.0;
+        rateX = rateY = rateZ = 0.0;
+        biasX = biasY = biasZ = 0.0;
+        initialized = false;
+        gyroSeen = false;
+    }
+
+    /** Integrates one gyroscope sample, rad/s in device coordinates. */
+    public void onGyroscope(long timestampNanos, float x, float y, float z) {
+        rateX = x - biasX;
+        rateY = y - biasY;
+        rateZ = z - biasZ;
+        long previous = lastGyroNanos;
+        lastGyroNanos = timestampNanos;
+        boolean continuous = gyroSeen;
+        gyroSeen = true;
+        if (!initialized) {
+            return;
+        }
+        double dt = (timestampNanos - previous) * 1e-9;
+        if (!continuous || dt <= 0.0 || dt > MAX_GYRO_STEP_SECONDS) {
+            // Gap in the gyro stream: restart integration from here
+            this.timestampNanos = Math.max(this.timestampNanos, timestampNanos);
+            return;
+        }
+        rotate(rateX * dt, rateY * dt, rateZ * dt);
+        this.timestampNanos = timestampNanos;
+    }
+
+    /** Corrects towards a rotation vector (x, y, z[, w]). */
+    public void onRotationVector(long timestampNanos, float[] rotationVector, int length) {
+        double mx = rotationVector[0];
+        double my = rotationVector[1];
+        double mz = rotationVector[2];
+        double mw;
+        if (length >= 4) {
+            mw = rotationVector[3];
+        } else {
+            mw = 1 - mx * mx - my * my - mz * mz;
+            mw = mw > 0 ? Math.sqrt(mw) : 0;
+        }
+        boolean gyroActive = gyroSeen && timestampNanos - lastGyroNanos < GYRO_TIMEOUT_NANOS;
+        if (!initialized || !gyroActive) {
+            double n = 1.0 / Math.sqrt(mw * mw + mx * mx + my * my + mz * mz);
+            qw = mw * n;
+            qx = mx * n;
+            qy = my * n;
+            qz = mz * n;
+            if (!gyroActive) {
+                rateX = rateY = rateZ = 0.0;
+            }
+            this.timestampNanos = Math.max(this.timestampNanos, timestampNanos);
+            lastCorrectionNanos = timestampNanos;
+            initialized = true;
+            return;
+        }
+        // Error rotation in device coordinates: conj(q) * m
+        double ew = qw * mw + qx * mx + qy * my + qz * mz;
+        double ex = qw * mx - qx * mw - qy * mz + qz * my;
+        double ey = qw * my + qx * mz - qy * mw - qz * mx;
+        double ez = qw * mz - qx * my + qy * mx - qz * mw;
+        if (ew < 0) {
+            // q and -q are the same rotation; take the short way round
+            ew = -ew;
+            ex = -ex;
+            ey = -ey;
+            ez = -ez;
+        }
+        double sin = Math.sqrt(ex * ex + ey * ey + ez * ez);
+        double angle = 2.0 * Math.atan2(sin, ew);
+        double scale = sin > 1e-12 ? angle / sin : 2.0;
+        // Rotation vector of the error, radians
+        double rx = ex * scale;
+        double ry = ey * scale;
+        double rz = ez * scale;
+        double dt = Math.min(Math.max((timestampNanos - lastCorrectionNanos) * 1e-9, 0.0), MAX_GYRO_STEP_SECONDS);
+        lastCorrectionNanos = timestampNanos;
+        double fraction = 1.0 - Math.exp(-dt / timeConstant);
+        rotate(rx * fraction, ry * fraction, rz * fraction);
+        // A persistent error in one direction means the gyro under- or over-reads there
+        biasX = clampBias(biasX - biasGain * rx * dt);
+        biasY = clampBias(biasY - biasGain * ry * dt);
+        biasZ = clampBias(biasZ - biasGain * rz * dt);
+    }
+
+    private static double clampBias(double b) {
+        return Math.max(-MAX_BIAS, Math.min(MAX_BIAS, b));
+    }
+
+    /** q = q * exp(v / 2) for a rotation vector v in device coordinates, then renormalize. */
+    private void rotate(double vx, double vy, double vz) {
+        double angle = Math.sqrt(vx * vx + vy * vy + vz * vz);
+        double dw;
+        double s;
+        if (angle < 1e-6) {
+            // Second-order series; exact enough below a microradian
+            dw = 1.0 - angle * angle / 8.0;
+            s = 0.5;
+        } else {
+            dw = Math.cos(angle * 0.5);
+            s = Math.sin(angle * 0.5) / angle;
+        }
+        double dx = vx * s;
+        double dy = vy * s;
+        double dz = vz * s;
+        double w = qw * dw - qx * dx - qy * dy - qz * dz;
+        double x = qw * dx + qx * dw + qy * dz - qz * dy;
+        double y = qw * dy - qx * dz + qy * dw + qz * dx;
+        double z = qw * dz + qx * dy - qy * dx + qz * dw;
+        double n = 1.0 / Math.sqrt(w * w + x * x + y * y + z * z);
+        qw = w * n;
+        qx = x * n;
+        qy = y * n;
+        qz = z * n;
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /** Time of the newest sample folded into the state, sensor clock. */
+    public long timestampNanos() {
+        return timestampNanos;
+    }
+
+    public float azimuthDegrees() {
+        return OrientationMath.azimuthDegrees(qw, qx, qy, qz);
+    }
+
+    public float predictAzimuthDegrees(long targetNanos) {
+        return predictAzimuthDegrees(qw, qx, qy, qz, rateX, rateY, rateZ, targetNanos - timestampNanos);
+    }
+
+    public double gyroBiasX() {
+        return biasX;
+    }
+
+    public double gyroBiasY() {
+        return biasY;
+    }
+
+    public double gyroBiasZ() {
+        return biasZ;
+    }
+
+    /** Copies the quaternion and bias-corrected angular rate into {@code out[offset..offset+7)}. */
+    public void writeState(float[] out, int offset) {
+        out[offset] = (float) qw;
+        out[offset + 1] = (float) qx;
+        out[offset + 2] = (float) qy;
+        out[offset + 3] = (float) qz;
+        out[offset + 4] = (float) rateX;
+        out[offset + 5] = (float) rateY;
+        out[offset + 6] = (float) rateZ;
+    }
+
+    /**
+     * Heading at {@code targetNanos} from a state written by {@link #writeState} at
+     * {@code stateNanos}, assuming the angular rate holds. Lets a reader on another
+     * thread extrapolate without touching the filter.
+     */
+    public static float predictAzimuthDegrees(float[] state, int offset, long stateNanos, long targetNanos) {
+        return predictAzimuthDegrees(state[offset], state[offset + 1], state[offset + 2], state[offset + 3],
+                state[offset + 4], state[offset + 5], state[offset + 6], targetNanos - stateNanos);
+    }
+
+    private static float predictAzimuthDegrees(double w, double x, double y, double z,
+                                               double rx, double ry, double rz, long aheadNanos) {
+        double dt = Math.min(Math.max(aheadNanos, 0L), MAX_PREDICTION_NANOS) * 1e-9;
+        double vx = rx * dt;
+        double vy = ry * dt;
+        double vz = rz * dt;
+        double angle = Math.sqrt(vx * vx + vy * vy + vz * vz);
+        if (angle < 1e-9) {
+            return OrientationMath.azimuthDegrees(w, x, y, z);
+        }
+        double dw = Math.cos(angle * 0.5);
+        double s = Math.sin(angle * 0.5) / angle;
+        double dx = vx * s;
+        double dy = vy * s;
+        double dz = vz * s;
+        return OrientationMath.azimuthDegrees(
+                w * dw - x * dx - y * dy - z * dz,
+                w * dx + x * dw + y * dz - z * dy,
+                w * dy - x * dz + y * dw + z * dx,
+                w * dz + x * dy - y * dx + z * dw);
+    }
+}
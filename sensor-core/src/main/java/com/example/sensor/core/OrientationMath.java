@@ -0,0 +1,70 @@
+package com.example.sensor.core;
+
+/**
+ * Allocation-free equivalents of the parts of {@code SensorManager.getRotationMatrixFromVector}
+ * and {@code getOrientation} the app needs.
+ */
+public final class OrientationMath {
+    private OrientationMath() {
+    }
+
+    /**
+     * Azimuth in degrees [0, 360) from a rotation vector (x, y, z[, w]).
+     * Same result as {@code getOrientation(getRotationMatrixFromVector(rv))[0]}.
+     */
+    public static float azimuthDegrees(float[] rotationVector, int length) {
+        float q1 = rotationVector[0];
+        float q2 = rotationVector[1];
+        float q3 = rotationVector[2];
+        float q0;
+        if (length >= 4) {
+            q0 = rotationVector[3];
+        } else {
+            q0 = 1 - q1 * q1 - q2 * q2 - q3 * q3;
+            q0 = q0 > 0 ? (float) Math.sqrt(q0) : 0;
+        }
+        return azimuthDegrees(q0, q1, q2, q3);
+    }
+
+    /** Azimuth in degrees [0, 360) from a unit quaternion rotating device to world coordinates. */
+    public static float azimuthDegrees(double w, double x, double y, double z) {
+        // R[1] and R[4] of the 3x3 rotation matrix
+        double r1 = 2 * x * y - 2 * z * w;
+        double r4 = 1 - 2 * x * x - 2 * z * z;
+        float azimuth = (float) Math.toDegrees(Math.atan2(r1, r4));
+        return azimuth < 0 ? azimuth + 360 : azimuth;
+    }
+
+    /**
+     * Spherical interpolation from unit quaternion {@code a} (t = 0) to {@code b} (t = 1),
+     * each stored as x, y, z, w like a rotation vector, along the shorter arc. Nearly
+     * equal quaternions are interpolated linearly and renormalized.
+     */
+    public static void slerp(double[] a, int aOffset, double[] b, int bOffset, double t, double[] out, int outOffset) {
+        double dot = a[aOffset] * b[bOffset] + a[aOffset + 1] * b[bOffset + 1]
+                + a[aOffset + 2] * b[bOffset + 2] + a[aOffset + 3] * b[bOffset + 3];
+        // q and -q are the same rotation; going through the nearer one takes the short way
+        double sign = dot < 0 ? -1.0 : 1.0;
+        dot *= sign;
+        double wa;
+        double wb;
+        if (dot > 0.9995) {
+            wa = 1.0 - t;
+            wb = t * sign;
+        } else {
+            double theta = Math.acos(dot);
+            double sin = Math.sin(theta);
+            wa = Math.sin((1.0 - t) * theta) / sin;
+            wb = Math.sin(t * theta) / sin * sign;
+        }
+        double x = wa * a[aOffset] + wb * b[bOffset];
+        double y = wa * a[aOffset + 1] + wb * b[bOffset + 1];
+        double z = wa * a[aOffset + 2] + wb * b[bOffset + 2];
+        double w = wa * a[aOffset + 3] + wb * b[bOffset + 3];
+        double n = Math.sqrt(x * x + y * y + z * z + w * w);
+        out[outOffset] = x / n;
+        out[outOffset + 1] = y / n;
+        out[outOffset + 2] = z / n;
+        out[outOffset + 3] = w / n;
+    }
+}
@@ -0,0 +1,402 @@
+package com.example.sensor.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and {@link LatencyHistogram}s for the sensor pipeline: per-sensor event
+ * rate, gaps and the samples they lost, delivery latency from the sensor timestamp to
+ * the callback, time spent in the event handler and in drawing, GPS fix intervals,
+ * samples lost by bus subscribers and samples folded into a single display frame.
+ * Startup times, from process start to the first frame and the first displayed sample,
+ * are recorded once per process whether or not metrics are enabled, and kept by
+ * {@link #reset()}.
+ *
+ * <p>Everything is off until {@link #setEnabled}. Callers check {@link #isEnabled()}
+ * before reading a clock, so a disabled pipeline pays one volatile read per event.
+ * Recording never locks or allocates. Sensor events must come from one thread, as
+ * they do from the hub; the other recorders and the readers may be on any thread.
+ */
+public class PipelineMetrics {
+    public static final int MAX_SENSORS = 32;
+    private static final int MAX_SUBSCRIPTIONS = 8;
+    /** An interval this many times the usual one is a gap. */
+    private static final int GAP_FACTOR = 2;
+    /** Weight of a new interval in the smoothed one, as a right shift: 1/16. */
+    private static final int INTERVAL_SMOOTHING_SHIFT = 4;
+
+    // Per-sensor columns; a sensor's index is claimed on its first event
+    private static final int EVENTS = 0;
+    private static final int GAPS = 1;
+    private static final int MISSED = 2;
+    private static final int LAST_TIMESTAMP = 3;
+    private static final int INTERVAL = 4;
+    private static final int PENDING_MISSED = 5;
+    private static final int FIELDS = 6;
+
+    // Startup columns, elapsed-realtime ns; 0 until known
+    private static final int PROCESS_START = 0;
+    private static final int FIRST_FRAME = 1;
+    private static final int FIRST_SAMPLE = 2;
+    private static final int CATALOG_LOAD = 3;
+    private static final int ENUMERATION = 4;
+    private static final int STARTUP_FIELDS = 5;
+
+    private volatile boolean enabled;
+    private final AtomicIntegerArray types = new AtomicIntegerArray(MAX_SENSORS);
+    private final AtomicInteger sensorCount = new AtomicInteger();
+    private final AtomicLongArray sensorFields = new AtomicLongArray(MAX_SENSORS * FIELDS);
+    private final LatencyHistogram[] deliveryLatency = new LatencyHistogram[MAX_SENSORS];
+    private final LatencyHistogram handlerTime = new LatencyHistogram();
+    private final LatencyHistogram drawTime = new LatencyHistogram();
+    private final LatencyHistogram gpsFixInterval = new LatencyHistogram();
+    private volatile long lastFixNanos = Long.MIN_VALUE;
+    private final AtomicLongArray displayCounts = new AtomicLongArray(2);
+    private volatile SampleBus.Subscription[] subscriptions = new SampleBus.Subscription[0];
+    private volatile String[] subscriptionNames = new String[0];
+    private final AtomicLongArray startup = new AtomicLongArray(STARTUP_FIELDS);
+    private volatile boolean catalogCached;
+
+    public PipelineMetrics() {
+        for (int i = 0; i < MAX_SENSORS; i++) {
+            deliveryLatency[i] = new LatencyHistogram();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Turning recording on starts from zero, so a report covers one enabled period. */
+    public void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) {
+            reset();
+        }
+        this.enabled = enabled;
+    }
+
+    /**
+     * One sensor event, as received at {@code nowNanos} on the elapsed-realtime clock the
+     * sensor timestamps use. Event-thread only.
+     */
+    public void onSensorEvent(int type, long timestampNanos, long nowNanos) {
+        int i = indexOf(type);
+        if (i < 0) {
+            return;
+        }
+        deliveryLatency[i].record(nowNanos - timestampNanos);
+        int base = i * FIELDS;
+        long events = sensorFields.get(base + EVENTS);
+        long last = sensorFields.get(base + LAST_TIMESTAMP);
+        if (events > 0 && timestampNanos > last) {
+            long interval = timestampNanos - last;
+            long usual = sensorFields.get(base + INTERVAL);
+            long pending = sensorFields.get(base + PENDING_MISSED);
+            if (usual == 0L) {
+                usual = interval;
+            } else if (interval >= GAP_FACTOR * usual) {
+                if (pending > 0L) {
+                    // Two long intervals in a row: the sensor was re-registered at a slower rate
+                    pending = 0L;
+                    usual = interval;
+                } else {
+                    pending = (interval + usual / 2) / usual - 1;
+                }
+            } else {
+                if (pending > 0L) {
+                    sensorFields.lazySet(base + GAPS, sensorFields.get(base + GAPS) + 1);
+                    sensorFields.lazySet(base + MISSED, sensorFields.get(base + MISSED) + pending);
+                    pending = 0L;
+                }
+                // Gaps stay out of the smoothed interval so one stall does not hide the next
+                usual += (interval - usual) >> INTERVAL_SMOOTHING_SHIFT;
+            }
+            sensorFields.lazySet(base + PENDING_MISSED, pending);
+            sensorFields.lazySet(base + INTERVAL, usual);
+        }
+        sensorFields.lazySet(base + LAST_TIMESTAMP, timestampNanos);
+        sensorFields.lazySet(base + EVENTS, events + 1);
+    }
+
+    /** Time spent handling one sensor event. */
+    public LatencyHistogram handlerTime() {
+        return handlerTime;
+    }
+
+    /** Time spent drawing the compass. */
+    public LatencyHistogram drawTime() {
+        return drawTime;
+    }
+
+    public LatencyHistogram gpsFixInterval() {
+        return gpsFixInterval;
+    }
+
+    /** A GPS fix taken at {@code elapsedRealtimeNanos}; fixes must come from one thread. */
+    public void onLocation(long elapsedRealtimeNanos) {
+        long last = lastFixNanos;
+        if (last != Long.MIN_VALUE && elapsedRealtimeNanos > last) {
+            gpsFixInterval.record(elapsedRealtimeNanos - last);
+        }
+        lastFixNanos = elapsedRealtimeNanos;
+    }
+
+    /** Samples handed to the display since the last frame, which shows only the newest. */
+    public void onDisplaySamples(int count) {
+        displayCounts.addAndGet(0, count);
+    }
+
+    public void onDisplayFrame() {
+        displayCounts.incrementAndGet(1);
+    }
+
+    /** When the process started; later calls are ignored. */
+    public void onProcessStart(long elapsedRealtimeNanos) {
+        startup.compareAndSet(PROCESS_START, 0L, elapsedRealtimeNanos);
+    }
+
+    /** The first frame was drawn; later calls are ignored. */
+    public void onFirstFrame(long elapsedRealtimeNanos) {
+        startup.compareAndSet(FIRST_FRAME, 0L, elapsedRealtimeNanos);
+    }
+
+    /** The first sensor sample reached the display; later calls are ignored. */
+    public void onFirstSample(long elapsedRealtimeNanos) {
+        startup.compareAndSet(FIRST_SAMPLE, 0L, elapsedRealtimeNanos);
+    }
+
+    /** Time taken to obtain the sensor catalog, and whether it was read from the saved copy. */
+    public void onCatalogLoaded(boolean cached, long nanos) {
+        catalogCached = cached;
+        startup.set(CATALOG_LOAD, nanos);
+    }
+
+    /** Time taken to enumerate the sensors from the platform. */
+    public void onSensorsEnumerated(long nanos) {
+        startup.set(ENUMERATION, nanos);
+    }
+
+    public long timeToFirstFrameNanos() {
+        return sinceProcessStart(FIRST_FRAME);
+    }
+
+    public long timeToFirstSampleNanos() {
+        return sinceProcessStart(FIRST_SAMPLE);
+    }
+
+    private long sinceProcessStart(int field) {
+        long start = startup.get(PROCESS_START);
+        long at = startup.get(field);
+        return start == 0L || at == 0L ? -1L : at - start;
+    }
+
+    /** Reports the samples {@code subscription} loses to overrun or conflation under {@code name}. */
+    public synchronized void watch(String name, SampleBus.Subscription subscription) {
+        SampleBus.Subscription[] subs = subscriptions;
+        String[] names = subscriptionNames;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                // A restarted consumer replaces its predecessor
+                SampleBus.Subscription[] nextSubs = subs.clone();
+                nextSubs[i] = subscription;
+                subscriptions = nextSubs;
+                return;
+            }
+        }
+        if (subs.length == MAX_SUBSCRIPTIONS) {
+            return;
+        }
+        SampleBus.Subscription[] nextSubs = new SampleBus.Subscription[subs.length + 1];
+        String[] nextNames = new String[names.length + 1];
+        System.arraycopy(subs, 0, nextSubs, 0, subs.length);
+        System.arraycopy(names, 0, nextNames, 0, names.length);
+        nextSubs[subs.length] = subscription;
+        nextNames[names.length] = name;
+        subscriptionNames = nextNames;
+        subscriptions = nextSubs;
+    }
+
+    public int sensorCount() {
+        return sensorCount.get();
+    }
+
+    public int sensorType(int index) {
+        return types.get(index);
+    }
+
+    public long events(int index) {
+        return sensorFields.get(index * FIELDS + EVENTS);
+    }
+
+    /**
+     * Intervals of at least twice the usual one, counted once the rate is back to usual;
+     * a lasting change of rate is not a gap.
+     */
+    public long gaps(int index) {
+        return sensorFields.get(index * FIELDS + GAPS);
+    }
+
+    /** Samples the gaps would have held at the usual rate. */
+    public long missed(int index) {
+        return sensorFields.get(index * FIELDS + MISSED);
+    }
+
+    /** Smoothed event rate from the usual interval between sensor timestamps; 0 until measured. */
+    public double eventsPerSecond(int index) {
+        long interval = sensorFields.get(index * FIELDS + INTERVAL);
+        return interval > 0L ? 1e9 / interval : 0.0;
+    }
+
+    public LatencyHistogram deliveryLatency(int index) {
+        return deliveryLatency[index];
+    }
+
+    /** Display samples beyond one per frame, which the frame never showed. */
+    public long coalesced() {
+        return Math.max(0L, displayCounts.get(0) - displayCounts.get(1));
+    }
+
+    public long frames() {
+        return displayCounts.get(1);
+    }
+
+    /**
+     * Appends a short multi-line summary for an on-screen overlay: one line per sensor,
+     * then the handler, draw and GPS histograms and the losses. Does not allocate.
+     */
+    public void writeSummary(DecimalText out) {
+        for (int i = 0; i < sensorCount(); i++) {
+            LatencyHistogram latency = deliveryLatency[i];
+            if (i > 0) {
+                out.append('\n');
+            }
+            String name = SensorTypes.name(types.get(i));
+            if (name != null) {
+                out.append(name);
+            } else {
+                out.append("type ").append(types.get(i));
+            }
+            out.append(' ').append(eventsPerSecond(i), 1).append(" Hz  gaps ").append(gaps(i))
+                    .append(" (-").append(missed(i)).append(")  lat p50/p99 ")
+                    .append(latency.percentileNanos(0.5) * 1e-6, 1).append('/')
+                    .append(latency.percentileNanos(0.99) * 1e-6, 1).append(" ms");
+        }
+        appendSummary(out.append(sensorCount() == 0 ? "" : "\n").append("handler "), handlerTime, 1e-3, " us");
+        appendSummary(out.append("\ndraw "), drawTime, 1e-3, " us");
+        appendSummary(out.append("\ngps interval "), gpsFixInterval, 1e-9, " s");
+        out.append("\ncoalesced ").append(coalesced()).append(" / frames ").append(frames());
+        SampleBus.Subscription[] subs = subscriptions;
+        String[] names = subscriptionNames;
+        for (int i = 0; i < Math.min(subs.length, names.length); i++) {
+            out.append("  ").append(names[i]).append(" dropped ").append(subs[i].dropped());
+        }
+        appendMillis(out.append("\nstartup frame/sample "), timeToFirstFrameNanos(), 0);
+        appendMillis(out.append('/'), timeToFirstSampleNanos(), 0);
+        appendMillis(out.append(" ms  catalog ").append(catalogCached ? "cached " : "enumerated "),
+                startup.get(CATALOG_LOAD), 1);
+        appendMillis(out.append(" ms  enum "), startup.get(ENUMERATION), 1);
+        out.append(" ms");
+    }
+
+    private static void appendMillis(DecimalText out, long nanos, int decimals) {
+        if (nanos < 0L) {
+            out.append('-');
+        } else {
+            out.append(nanos * 1e-6, decimals);
+        }
+    }
+
+    private static void appendSummary(DecimalText out, LatencyHistogram h, double scale, String unit) {
+        out.append("p50/p99/max ").append(h.percentileNanos(0.5) * scale, 1).append('/')
+                .append(h.percentileNanos(0.99) * scale, 1).append('/')
+                .append(h.maxNanos() * scale, 1).append(unit).append(" (n=").append(h.count()).append(')');
+    }
+
+    /** Full snapshot as JSON, times in nanoseconds; for export, so it may allocate. */
+    public String toJson() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("{\"enabled\":").append(enabled).append(",\"sensors\":[");
+        for (int i = 0; i < sensorCount(); i++) {
+            out.append(i == 0 ? "" : ",").append("{\"type\":").append(types.get(i))
+                    .append(",\"name\":");
+            String name = SensorTypes.name(types.get(i));
+            if (name != null) {
+                out.append('"').append(name).append('"');
+            } else {
+                out.append("null");
+            }
+            out.append(",\"events\":").append(events(i))
+                    .append(",\"eventsPerSecond\":").append(eventsPerSecond(i))
+                    .append(",\"gaps\":").append(gaps(i))
+                    .append(",\"missed\":").append(missed(i))
+                    .append(",\"deliveryLatency\":");
+            appendJson(out, deliveryLatency[i]);
+            out.append('}');
+        }
+        out.append("],\"handlerTime\":");
+        appendJson(out, handlerTime);
+        out.append(",\"drawTime\":");
+        appendJson(out, drawTime);
+        out.append(",\"gpsFixInterval\":");
+        appendJson(out, gpsFixInterval);
+        out.append(",\"display\":{\"frames\":").append(frames())
+                .append(",\"coalesced\":").append(coalesced()).append("},\"subscribers\":[");
+        SampleBus.Subscription[] subs = subscriptions;
+        String[] names = subscriptionNames;
+        for (int i = 0; i < Math.min(subs.length, names.length); i++) {
+            out.append(i == 0 ? "" : ",").append("{\"name\":\"").append(names[i])
+                    .append("\",\"policy\":\"").append(subs[i].policy())
+                    .append("\",\"delivered\":").append(subs[i].delivered())
+                    .append(",\"dropped\":").append(subs[i].dropped()).append('}');
+        }
+        out.append("],\"startup\":{\"firstFrame\":").append(timeToFirstFrameNanos())
+                .append(",\"firstSample\":").append(timeToFirstSampleNanos())
+                .append(",\"catalogCached\":").append(catalogCached)
+                .append(",\"catalogLoad\":").append(startup.get(CATALOG_LOAD))
+                .append(",\"enumeration\":").append(startup.get(ENUMERATION));
+        return out.append("}}").toString();
+    }
+
+    private static void appendJson(StringBuilder out, LatencyHistogram h) {
+        out.append("{\"count\":").append(h.count())
+                .append(",\"mean\":").append((long) h.meanNanos())
+                .append(",\"p50\":").append(h.percentileNanos(0.5))
+                .append(",\"p90\":").append(h.percentileNanos(0.9))
+                .append(",\"p99\":").append(h.percentileNanos(0.99))
+                .append(",\"p999\":").append(h.percentileNanos(0.999))
+                .append(",\"max\":").append(h.maxNanos()).append('}');
+    }
+
+    /** Clears every counter; sensors keep their indices. */
+    public void reset() {
+        for (int i = 0; i < sensorFields.length(); i++) {
+            sensorFields.set(i, 0L);
+        }
+        for (LatencyHistogram h : deliveryLatency) {
+            h.reset();
+        }
+        handlerTime.reset();
+        drawTime.reset();
+        gpsFixInterval.reset();
+        lastFixNanos = Long.MIN_VALUE;
+        displayCounts.set(0, 0L);
+        displayCounts.set(1, 0L);
+    }
+
+    private int indexOf(int type) {
+        int n = sensorCount.get();
+        for (int i = 0; i < n; i++) {
+            if (types.get(i) == type) {
+                return i;
+            }
+        }
+        if (n == MAX_SENSORS) {
+            return -1;
+        }
+        // Single writer: the type is in place before readers see the new count
+        types.set(n, type);
+        sensorCount.set(n + 1);
+        return n;
+    }
+}
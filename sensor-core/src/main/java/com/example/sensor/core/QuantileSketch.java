@@ -0,0 +1,129 @@
+package com.example.sensor.core;
+
+import java.util.Arrays;
+
+/**
+ * Quantile sketch with relative-error guarantees in the style of DDSketch: each value
+ * is counted in a logarithmic bucket, so any quantile is returned within
+ * {@code relativeAccuracy} of the true value. Buckets are a fixed int array, which makes
+ * add, remove (for sliding windows) and merge O(1) per value and allocation-free.
+ * Magnitudes below {@code minMagnitude} count as zero; above {@code maxMagnitude} they
+ * are clamped into the last bucket.
+ */
+public class QuantileSketch {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final double DEFAULT_MIN_MAGNITUDE = 1e-6;
+    public static final double DEFAULT_MAX_MAGNITUDE = 1e6;
+
+    private final double relativeAccuracy;
+    private final double minMagnitude;
+    private final double gamma;
+    private final double inverseLogGamma;
+    private final int offset;
+    private final int bucketCount;
+    private final int[] positive;
+    private final int[] negative;
+    private int zeroCount;
+    private long count;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MIN_MAGNITUDE, DEFAULT_MAX_MAGNITUDE);
+    }
+
+    public QuantileSketch(double relativeAccuracy, double minMagnitude, double maxMagnitude) {
+        this.relativeAccuracy = relativeAccuracy;
+        this.minMagnitude = minMagnitude;
+        gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        inverseLogGamma = 1.0 / Math.log(gamma);
+        offset = (int) Math.ceil(Math.log(minMagnitude) * inverseLogGamma);
+        bucketCount = (int) Math.ceil(Math.log(maxMagnitude) * inverseLogGamma) - offset + 1;
+        positive = new int[bucketCount];
+        negative = new int[bucketCount];
+    }
+
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public void add(double value) {
+        update(value, 1);
+    }
+
+    /** Takes back one earlier {@link #add} of {@code value}. */
+    public void remove(double value) {
+        update(value, -1);
+    }
+
+    private void update(double value, int delta) {
+        double magnitude = Math.abs(value);
+        if (magnitude < minMagnitude || Double.isNaN(value)) {
+            zeroCount += delta;
+        } else if (value > 0) {
+            positive[bucket(magnitude)] += delta;
+        } else {
+            negative[bucket(magnitude)] += delta;
+        }
+        count += delta;
+    }
+
+    private int bucket(double magnitude) {
+        int i = (int) Math.ceil(Math.log(magnitude) * inverseLogGamma) - offset;
+        return i < 0 ? 0 : i >= bucketCount ? bucketCount - 1 : i;
+    }
+
+    /** Value of bucket {@code i}: the point with equal relative error to both bucket edges. */
+    private double value(int i) {
+        return 2.0 * Math.pow(gamma, i + offset) / (gamma + 1.0);
+    }
+
+    /** Adds another sketch's counts; both must have been built with the same parameters. */
+    public void merge(QuantileSketch other) {
+        if (other.bucketCount != bucketCount || other.gamma != gamma || other.offset != offset) {
+            throw new IllegalArgumentException("sketch parameters differ");
+        }
+        for (int i = 0; i < bucketCount; i++) {
+            positive[i] += other.positive[i];
+            negative[i] += other.negative[i];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public void clear() {
+        Arrays.fill(positive, 0);
+        Arrays.fill(negative, 0);
+        zeroCount = 0;
+        count = 0;
+    }
+
+    /** Value at rank {@code q * (count - 1)}, q in [0, 1]; NaN when empty. */
+    public double quantile(double q) {
+        if (count <= 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (Math.max(0.0, Math.min(1.0, q)) * (count - 1));
+        long seen = 0;
+        // Most negative first: large negative magnitudes come before small ones
+        for (int i = bucketCount - 1; i >= 0; i--) {
+            seen += negative[i];
+            if (seen > rank) {
+                return -value(i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0.0;
+        }
+        for (int i = 0; i < bucketCount; i++) {
+            seen += positive[i];
+            if (seen > rank) {
+                return value(i);
+            }
+        }
+        return value(bucketCount - 1);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.sensor.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+/** Time source used by {@link ReplayEngine} to pace timed replays. */
+public interface ReplayClock {
+    ReplayClock SYSTEM = new ReplayClock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleepUntil(long deadlineNanos) throws InterruptedException {
+            long remaining;
+            while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+    };
+
+    long nanoTime();
+
+    void sleepUntil(long deadlineNanos) throws InterruptedException;
+}
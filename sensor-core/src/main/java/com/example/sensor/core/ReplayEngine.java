@@ -0,0 +1,193 @@
+package com.example.sensor.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replays a recorded session into a {@link SampleSink}, e.g. the same
+ * {@link DisplayPipeline} the live app uses. The session is read once, in file order,
+ * by a single {@link SessionReader}. Records were written in arrival order, which is
+ * timestamp order except where a batched sensor delivered its FIFO late; those are put
+ * back in place by a window of the next {@code reorderRecords} records. Equal
+ * timestamps are broken by type (ascending, location last) and then file order, so
+ * every run delivers the same sequence. A record older than one already delivered,
+ * having arrived more than a window late, is delivered at once and counted in
+ * {@link #lateRecords()}.
+ *
+ * <p>Timing: {@link #ORIGINAL_SPEED} reproduces the recorded gaps, other positive
+ * speeds scale them, and {@link #AS_FAST_AS_POSSIBLE} never waits. The loop does not
+ * allocate, so long sessions replay headless at memory-map read speed. An engine
+ * replays its session once.
+ */
+public class ReplayEngine implements Closeable {
+    public static final double ORIGINAL_SPEED = 1.0;
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+    /** Covers a 10 s FIFO batch alongside a few hundred unbatched samples a second. */
+    public static final int DEFAULT_REORDER_RECORDS = 8192;
+
+    private final SessionReader reader;
+    private final ReplayClock clock;
+    private volatile boolean stopped;
+
+    // Records read but not yet delivered, in slots; order holds the slots sorted, as a ring
+    private final int[] types;
+    private final long[] timestamps;
+    private final int[] accuracies;
+    private final int[] counts;
+    private final float[] values;
+    private final GpsFix[] fixes;
+    private final float[] sample = new float[SessionRecorder.MAX_VALUES];
+    private final int[] order;
+    private final int[] free;
+    private int freeCount;
+    private int head;
+    private int size;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long lateRecords;
+
+    public ReplayEngine(File sessionDirectory) throws IOException {
+        this(sessionDirectory, ReplayClock.SYSTEM);
+    }
+
+    public ReplayEngine(File sessionDirectory, ReplayClock clock) throws IOException {
+        this(sessionDirectory, clock, DEFAULT_REORDER_RECORDS);
+    }
+
+    public ReplayEngine(File sessionDirectory, ReplayClock clock, int reorderRecords) throws IOException {
+        if (reorderRecords < 1) {
+            throw new IllegalArgumentException("reorderRecords must be positive: " + reorderRecords);
+        }
+        this.clock = clock;
+        types = new int[reorderRecords];
+        timestamps = new long[reorderRecords];
+        accuracies = new int[reorderRecords];
+        counts = new int[reorderRecords];
+        values = new float[reorderRecords * SessionRecorder.MAX_VALUES];
+        fixes = new GpsFix[reorderRecords];
+        order = new int[reorderRecords];
+        free = new int[reorderRecords];
+        for (int i = 0; i < reorderRecords; i++) {
+            free[i] = reorderRecords - 1 - i;
+        }
+        freeCount = reorderRecords;
+        reader = new SessionReader(sessionDirectory);
+    }
+
+    /** Records delivered after a record with a later timestamp; 0 unless a batch came in more than a window late. */
+    public long lateRecords() {
+        return lateRecords;
+    }
+
+    /**
+     * Delivers every record to {@code sink} in timestamp order and returns the number
+     * delivered. {@code speed} is a multiple of real time, or {@link #AS_FAST_AS_POSSIBLE}.
+     */
+    public long run(SampleSink sink, double speed) throws IOException, InterruptedException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("speed must be positive: " + speed);
+        }
+        boolean timed = !Double.isInfinite(speed);
+        boolean more = fill(true);
+        long firstTimestamp = Long.MIN_VALUE;
+        long startNanos = 0L;
+        long delivered = 0L;
+        while (!stopped && size > 0) {
+            int slot = order[head];
+            long timestamp = timestamps[slot];
+            if (timed) {
+                if (firstTimestamp == Long.MIN_VALUE) {
+                    firstTimestamp = timestamp;
+                    startNanos = clock.nanoTime();
+                } else {
+                    clock.sleepUntil(startNanos + (long) ((timestamp - firstTimestamp) / speed));
+                }
+            }
+            int type = types[slot];
+            if (type == SensorTypes.LOCATION) {
+                sink.onLocation(fixes[slot]);
+            } else {
+                int n = counts[slot];
+                System.arraycopy(values, slot * SessionRecorder.MAX_VALUES, sample, 0, Math.min(n, SessionRecorder.MAX_VALUES));
+                sink.onSample(type, timestamp, accuracies[slot], sample, n);
+            }
+            delivered++;
+            lastTimestamp = Math.max(lastTimestamp, timestamp);
+            head = head + 1 == order.length ? 0 : head + 1;
+            size--;
+            free[freeCount++] = slot;
+            more = fill(more);
+        }
+        return delivered;
+    }
+
+    /** Reads records into the window until it is full; returns false once the session is exhausted. */
+    private boolean fill(boolean more) throws IOException {
+        while (more && size < order.length) {
+            more = reader.next();
+            if (more) {
+                insert(readSlot());
+            }
+        }
+        return more;
+    }
+
+    private int readSlot() {
+        int slot = free[--freeCount];
+        int type = reader.type();
+        types[slot] = type;
+        timestamps[slot] = reader.timestamp();
+        if (type == SensorTypes.LOCATION) {
+            if (fixes[slot] == null) {
+                fixes[slot] = new GpsFix();
+            }
+            reader.readLocation(fixes[slot]);
+        } else {
+            int n = reader.valueCount();
+            accuracies[slot] = reader.accuracy();
+            counts[slot] = n;
+            System.arraycopy(reader.values(), 0, values, slot * SessionRecorder.MAX_VALUES, Math.min(n, SessionRecorder.MAX_VALUES));
+        }
+        return slot;
+    }
+
+    // Almost always an append; an early timestamp walks back only past the records it precedes
+    private void insert(int slot) {
+        if (timestamps[slot] < lastTimestamp) {
+            lateRecords++;
+        }
+        int capacity = order.length;
+        int i = size;
+        while (i > 0) {
+            int prev = order[(head + i - 1) % capacity];
+            if (!before(slot, prev)) {
+                break;
+            }
+            order[(head + i) % capacity] = prev;
+            i--;
+        }
+        order[(head + i) % capacity] = slot;
+        size++;
+    }
+
+    private boolean before(int a, int b) {
+        if (timestamps[a] != timestamps[b]) {
+            return timestamps[a] < timestamps[b];
+        }
+        return rank(types[a]) < rank(types[b]);
+    }
+
+    private static int rank(int type) {
+        return type == SensorTypes.LOCATION ? Integer.MAX_VALUE : type;
+    }
+
+    /** Makes a running {@link #run} return after the current record; callable from any thread. */
+    public void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.sensor.core;
+
+import java.util.Arrays;
+
+/**
+ * Resamples streams of different rates onto one time grid, so that fusion and export
+ * see every channel at the same instants. Sensor timestamps already count elapsed
+ * realtime. Fixes are placed by their elapsed-realtime time; a fix without one is
+ * mapped from its UTC time with the offset between the clocks last seen on a fix that
+ * had both.
+ *
+ * <p>Each tracked channel keeps its newest samples in a bounded ring. A grid point is
+ * emitted once every channel has a sample at or after it, so it can be interpolated,
+ * or once it is {@code maxLatencyNanos} older than the newest sample, so a slow or
+ * silent channel cannot hold the others back. Scalars and vectors are interpolated
+ * linearly; rotation vectors, as quaternions, by {@link OrientationMath#slerp slerp}.
+ * A channel without samples on both sides of a grid point, no more than
+ * {@code maxGapNanos} apart, repeats its last sample if that is recent enough and NaN
+ * otherwise; its bit in the frame's valid mask is then clear. Grid points no channel
+ * has data for are skipped.
+ *
+ * <p>A sample older than the newest of its channel, as from a batched sensor flushing
+ * its FIFO, is put in time order as long as the grid has not reached it yet, and is
+ * dropped as late once it has. Nothing is allocated after {@link #track} calls.
+ * Single thread only.
+ */
+public class SampleAligner implements SampleSink {
+    /** Receives each grid point; {@code values} is reused for the next frame. */
+    public interface Listener {
+        /**
+         * Bit {@code c} of {@code validMask} is set when channel {@code c} was interpolated,
+         * or had a sample exactly at {@code timestampNanos}.
+         */
+        void onFrame(long timestampNanos, double[] values, long validMask);
+    }
+
+    public static final int LINEAR = 0;
+    /** Quaternion x, y, z, w; a three-value rotation vector gets its w computed. */
+    public static final int SLERP = 1;
+    public static final int MAX_CHANNELS = 16;
+    /** Values of the location channel: latitude, longitude and altitude (NaN without one). */
+    public static final int LOCATION_WIDTH = 3;
+
+    // How a channel was filled in at a grid point
+    private static final int NONE = 0;
+    private static final int HELD = 1;
+    private static final int INTERPOLATED = 2;
+
+    private final long periodNanos;
+    private final long maxLatencyNanos;
+    private final long maxGapNanos;
+    private final int capacity;
+    private final Listener listener;
+
+    private final int[] types = new int[MAX_CHANNELS];
+    private final int[] widths = new int[MAX_CHANNELS];
+    private final int[] methods = new int[MAX_CHANNELS];
+    private final int[] offsets = new int[MAX_CHANNELS];
+    private final long[][] times = new long[MAX_CHANNELS][];
+    private final double[][] rings = new double[MAX_CHANNELS][];
+    // Ring slot the next sample goes to, and samples held
+    private final int[] heads = new int[MAX_CHANNELS];
+    private final int[] counts = new int[MAX_CHANNELS];
+    private final long[] latest = new long[MAX_CHANNELS];
+    private int channelCount;
+    private double[] frame = new double[0];
+    private double[] scratch = new double[0];
+
+    private boolean started;
+    private long nextFrame;
+    private long newest;
+    private boolean hasClockOffset;
+    private long wallMinusElapsedNanos;
+
+    private long frames;
+    private long skippedFrames;
+    private long lateSamples;
+    private long overrunSamples;
+    private long unplacedFixes;
+
+    /**
+     * @param capacity samples kept per channel; must cover {@code maxLatencyNanos} at the
+     *                 fastest channel's rate, or samples are overwritten before use
+     */
+    public SampleAligner(long periodNanos, long maxLatencyNanos, long maxGapNanos, int capacity, Listener listener) {
+        if (periodNanos <= 0 || capacity < 2) {
+            throw new IllegalArgumentException("period " + periodNanos + ", capacity " + capacity);
+        }
+        this.periodNanos = periodNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.maxGapNanos = maxGapNanos;
+        this.capacity = capacity;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a channel for {@code type} ({@link SensorTypes#LOCATION} for fixes, with
+     * {@link #LOCATION_WIDTH} values) and returns its index. Before the first sample only.
+     */
+    public int track(int type, int width, int method) {
+        if (started) {
+            throw new IllegalStateException("channels are fixed once samples arrive");
+        }
+        if (channelCount == MAX_CHANNELS || indexOf(type) >= 0) {
+            throw new IllegalArgumentException("cannot track type " + type);
+        }
+        if (method == SLERP ? width != 4 : width < 1 || type == SensorTypes.LOCATION && width != LOCATION_WIDTH) {
+            throw new IllegalArgumentException("width " + width + " for method " + method);
+        }
+        int c = channelCount++;
+        types[c] = type;
+        widths[c] = width;
+        methods[c] = method;
+        offsets[c] = frame.length;
+        times[c] = new long[capacity];
+        rings[c] = new double[capacity * width];
+        frame = new double[frame.length + width];
+        scratch = new double[Math.max(scratch.length, width)];
+        return c;
+    }
+
+    public int channelCount() {
+        return channelCount;
+    }
+
+    /** Where channel {@code c}'s values start in each frame. */
+    public int offset(int c) {
+        return offsets[c];
+    }
+
+    public int width(int c) {
+        return widths[c];
+    }
+
+    public int frameWidth() {
+        return frame.length;
+    }
+
+    public long frames() {
+        return frames;
+    }
+
+    /** Grid points passed over because no channel had data near them. */
+    public long skippedFrames() {
+        return skippedFrames;
+    }
+
+    /** Samples that arrived after the grid had moved past them. */
+    public long lateSamples() {
+        return lateSamples;
+    }
+
+    /** Samples pushed out of a full ring before the grid reached them. */
+    public long overrunSamples() {
+        return overrunSamples;
+    }
+
+    /** Fixes with only a UTC time, received before any fix tied the clocks together. */
+    public long unplacedFixes() {
+        return unplacedFixes;
+    }
+
+    @Override
+    public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+        int c = indexOf(type);
+        if (c < 0) {
+            return;
+        }
+        int width = widths[c];
+        int n = Math.min(count, width);
+        for (int i = 0; i < n; i++) {
+            scratch[i] = values[i];
+        }
+        if (methods[c] == SLERP && n == 3) {
+            double w = 1.0 - scratch[0] * scratch[0] - scratch[1] * scratch[1] - scratch[2] * scratch[2];
+            scratch[3] = w > 0.0 ? Math.sqrt(w) : 0.0;
+            n = 4;
+        }
+        Arrays.fill(scratch, n, width, 0.0);
+        store(c, timestampNanos);
+    }
+
+    @Override
+    public void onLocation(GpsFix fix) {
+        int c = indexOf(SensorTypes.LOCATION);
+        if (c < 0) {
+            return;
+        }
+        long t;
+        if (fix.elapsedRealtimeNanos != 0L) {
+            t = fix.elapsedRealtimeNanos;
+            // The wall clock may be stepped, so the newest pairing is the one to trust
+            wallMinusElapsedNanos = fix.time * 1_000_000L - t;
+            hasClockOffset = true;
+        } else if (hasClockOffset) {
+            t = fix.time * 1_000_000L - wallMinusElapsedNanos;
+        } else {
+            unplacedFixes++;
+            return;
+        }
+        scratch[0] = fix.latitude;
+        scratch[1] = fix.longitude;
+        scratch[2] = fix.hasAltitude ? fix.altitude : Double.NaN;
+        store(c, t);
+    }
+
+    /** Emits every grid point up to the newest sample, as at the end of a recording. */
+    public void flush() {
+        drain(true);
+    }
+
+    private int indexOf(int type) {
+        for (int c = 0; c < channelCount; c++) {
+            if (types[c] == type) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private void store(int c, long t) {
+        if (counts[c] > 0 && t <= latest[c] && t < nextFrame) {
+            // Out of order, and the grid has already been emitted past it
+            lateSamples++;
+            return;
+        }
+        int width = widths[c];
+        long[] ts = times[c];
+        double[] ring = rings[c];
+        int slot = heads[c];
+        if (counts[c] == capacity && ts[slot] >= nextFrame) {
+            overrunSamples++;
+        }
+        // Out of order: move newer samples up one slot, which is rarely more than a few
+        int kept = counts[c] == capacity ? capacity - 1 : counts[c];
+        for (int k = 0; k < kept; k++) {
+            int previous = slot == 0 ? capacity - 1 : slot - 1;
+            if (ts[previous] <= t) {
+                break;
+            }
+            ts[slot] = ts[previous];
+            System.arraycopy(ring, previous * width, ring, slot * width, width);
+            slot = previous;
+        }
+        ts[slot] = t;
+        System.arraycopy(scratch, 0, ring, slot * width, width);
+        heads[c] = heads[c] + 1 == capacity ? 0 : heads[c] + 1;
+        if (counts[c] < capacity) {
+            counts[c]++;
+        }
+        latest[c] = counts[c] == 1 ? t : Math.max(latest[c], t);
+        if (!started) {
+            started = true;
+            newest = t;
+            nextFrame = gridCeil(t);
+        }
+        newest = Math.max(newest, t);
+        drain(false);
+    }
+
+    private long gridCeil(long t) {
+        return -Math.floorDiv(-t, periodNanos) * periodNanos;
+    }
+
+    private void drain(boolean all) {
+        if (!started) {
+            return;
+        }
+        while (true) {
+            long t = nextFrame;
+            if (t > newest) {
+                return;
+            }
+            if (!all && t > newest - maxLatencyNanos) {
+                for (int c = 0; c < channelCount; c++) {
+                    if (counts[c] == 0 || latest[c] < t) {
+                        return;
+                    }
+                }
+            }
+            long mask = 0L;
+            boolean any = false;
+            for (int c = 0; c < channelCount; c++) {
+                int result = sample(c, t);
+                any |= result != NONE;
+                if (result == INTERPOLATED) {
+                    mask |= 1L << c;
+                }
+            }
+            if (!any) {
+                skipFrom(t);
+                continue;
+            }
+            frames++;
+            nextFrame = t + periodNanos;
+            listener.onFrame(t, frame, mask);
+        }
+    }
+
+    /** Writes channel {@code c} at {@code t} into the frame. */
+    private int sample(int c, long t) {
+        int width = widths[c];
+        int out = offsets[c];
+        long[] ts = times[c];
+        double[] ring = rings[c];
+        // Newest first: grid points trail the newest samples by a few at most
+        int after = -1;
+        int before = -1;
+        int slot = heads[c];
+        for (int k = 0; k < counts[c]; k++) {
+            slot = slot == 0 ? capacity - 1 : slot - 1;
+            if (ts[slot] <= t) {
+                before = slot;
+                break;
+            }
+            after = slot;
+        }
+        if (before >= 0 && ts[before] == t) {
+            // On a sample: nothing to interpolate, and as good as interpolated
+            System.arraycopy(ring, before * width, frame, out, width);
+            return INTERPOLATED;
+        }
+        if (before >= 0 && after >= 0 && ts[after] - ts[before] <= maxGapNanos) {
+            double f = (double) (t - ts[before]) / (ts[after] - ts[before]);
+            if (methods[c] == SLERP) {
+                OrientationMath.slerp(ring, before * width, ring, after * width, f, frame, out);
+            } else {
+                for (int i = 0; i < width; i++) {
+                    double a = ring[before * width + i];
+                    frame[out + i] = a + (ring[after * width + i] - a) * f;
+                }
+            }
+            return INTERPOLATED;
+        }
+        if (before >= 0 && t - ts[before] <= maxGapNanos) {
+            System.arraycopy(ring, before * width, frame, out, width);
+            return HELD;
+        }
+        Arrays.fill(frame, out, out + width, Double.NaN);
+        return NONE;
+    }
+
+    /** Moves the grid to the first point at or after the next sample past {@code t}. */
+    private void skipFrom(long t) {
+        long next = Long.MAX_VALUE;
+        for (int c = 0; c < channelCount; c++) {
+            int slot = heads[c];
+            for (int k = 0; k < counts[c]; k++) {
+                slot = slot == 0 ? capacity - 1 : slot - 1;
+                if (times[c][slot] <= t) {
+                    break;
+                }
+                next = Math.min(next, times[c][slot]);
+            }
+        }
+        // Some sample is newer than t, or drain would not have got here
+        long resume = gridCeil(next);
+        skippedFrames += (resume - t) / periodNanos;
+        nextFrame = resume;
+    }
+}
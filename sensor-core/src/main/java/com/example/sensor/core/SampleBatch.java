@@ -0,0 +1,81 @@
+package com.example.sensor.core;
+
+/**
+ * Preallocated columnar batch of sensor samples. Filled on the sensor thread
+ * and handed to a {@link BatchSink}; contents are only valid during that call.
+ */
+public class SampleBatch {
+    public static final int MAX_VALUES = 8;
+
+    private final int[] types;
+    private final long[] timestamps;
+    private final int[] accuracies;
+    private final int[] valueCounts;
+    private final float[] values;
+    private int size;
+
+    public SampleBatch(int capacity) {
+        types = new int[capacity];
+        timestamps = new long[capacity];
+        accuracies = new int[capacity];
+        valueCounts = new int[capacity];
+        values = new float[capacity * MAX_VALUES];
+    }
+
+    /** Returns false without copying anything if the batch is full. */
+    public boolean add(int type, long timestampNanos, int accuracy, float[] src, int count) {
+        if (size == types.length) {
+            return false;
+        }
+        int n = Math.min(count, MAX_VALUES);
+        types[size] = type;
+        timestamps[size] = timestampNanos;
+        accuracies[size] = accuracy;
+        valueCounts[size] = n;
+        System.arraycopy(src, 0, values, size * MAX_VALUES, n);
+        size++;
+        return true;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return types.length;
+    }
+
+    public boolean isFull() {
+        return size == types.length;
+    }
+
+    public int type(int i) {
+        return types[i];
+    }
+
+    /** Sensor timestamp, ns on the elapsed-realtime clock. */
+    public long timestamp(int i) {
+        return timestamps[i];
+    }
+
+    public int accuracy(int i) {
+        return accuracies[i];
+    }
+
+    public int valueCount(int i) {
+        return valueCounts[i];
+    }
+
+    public float value(int i, int index) {
+        return values[i * MAX_VALUES + index];
+    }
+
+    /** Backing array; sample {@code i} starts at {@code i * MAX_VALUES}. */
+    public float[] values() {
+        return values;
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.sensor.core;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer, multi-consumer ring buffer of sensor samples and GPS fixes.
+ * Slots are preallocated columns; publishing and polling do not allocate.
+ *
+ * <p>Every {@link Subscription} has its own read sequence and {@link Policy}.
+ * Only {@link Policy#BLOCK} subscribers gate the producer; the others never slow it
+ * down and instead lose samples when they fall a full ring behind. Each slot carries
+ * the sequence it holds, written before (as -1) and after the data, so a reader can
+ * tell when the producer lapped it mid-read and discard the torn copy.
+ */
+public class SampleBus {
+    public static final int MAX_VALUES = SampleBatch.MAX_VALUES;
+
+    public enum Policy {
+        /** Never lose samples; the producer waits while this subscriber is a full ring behind. */
+        BLOCK,
+        /** Skip to the oldest sample still in the ring when lapped. */
+        DROP_OLDEST,
+        /** Deliver only the newest sample of each type published since the last poll. */
+        CONFLATE
+    }
+
+    private static final int ACCURACY_SHIFT = 8;
+    private static final int COUNT_MASK = 0xFF;
+    private static final int MAX_CONFLATED_TYPES = 16;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray slotSequences;
+    private final AtomicIntegerArray types;
+    private final AtomicIntegerArray accuracyAndCount;
+    private final AtomicLongArray timestamps;
+    private final AtomicIntegerArray values;
+    /** latitude bits, longitude bits, wall-clock ms per slot; location slots only */
+    private final AtomicLongArray locations;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private long producerWaits;
+
+    public SampleBus(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        slotSequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slotSequences.set(i, Long.MIN_VALUE);
+        }
+        types = new AtomicIntegerArray(capacity);
+        accuracyAndCount = new AtomicIntegerArray(capacity);
+        timestamps = new AtomicLongArray(capacity);
+        values = new AtomicIntegerArray(capacity * MAX_VALUES);
+        locations = new AtomicLongArray(capacity * 3);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Sequence of the last published slot, -1 before the first publish. */
+    public long cursor() {
+        return cursor.get();
+    }
+
+    /** Times the producer had to wait for a {@link Policy#BLOCK} subscriber. Producer thread only. */
+    public long producerWaits() {
+        return producerWaits;
+    }
+
+    /** New subscribers start at the next published sample. */
+    public synchronized Subscription subscribe(Policy policy) {
+        Subscription subscription = new Subscription(policy, cursor.get() + 1);
+        Subscription[] current = subscriptions;
+        Subscription[] next = new Subscription[current.length + 1];
+        System.arraycopy(current, 0, next, 0, current.length);
+        next[current.length] = subscription;
+        subscriptions = next;
+        return subscription;
+    }
+
+    public synchronized void unsubscribe(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] next = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                subscriptions = next;
+                break;
+            }
+        }
+        // Let a producer blocked on it continue
+        subscription.sequence.set(Long.MAX_VALUE);
+    }
+
+    public void publish(int type, long timestampNanos, int accuracy, float[] src, int count) {
+        int n = Math.min(count, MAX_VALUES);
+        long sequence = claim();
+        int slot = (int) sequence & mask;
+        types.lazySet(slot, type);
+        accuracyAndCount.lazySet(slot, (accuracy << ACCURACY_SHIFT) | n);
+        timestamps.lazySet(slot, timestampNanos);
+        int base = slot * MAX_VALUES;
+        for (int i = 0; i < n; i++) {
+            values.lazySet(base + i, Float.floatToRawIntBits(src[i]));
+        }
+        commit(sequence, slot);
+    }
+
+    /** Publishes a fix as a {@link SensorTypes#LOCATION} sample keyed by its elapsed-realtime time. */
+    public void publish(GpsFix fix) {
+        long sequence = claim();
+        int slot = (int) sequence & mask;
+        types.lazySet(slot, SensorTypes.LOCATION);
+        accuracyAndCount.lazySet(slot, 5);
+        timestamps.lazySet(slot, fix.elapsedRealtimeNanos);
+        locations.lazySet(slot * 3, Double.doubleToRawLongBits(fix.latitude));
+        locations.lazySet(slot * 3 + 1, Double.doubleToRawLongBits(fix.longitude));
+        locations.lazySet(slot * 3 + 2, fix.time);
+        int base = slot * MAX_VALUES;
+        values.lazySet(base, Float.floatToRawIntBits(fix.hasAltitude ? (float) fix.altitude : Float.NaN));
+        values.lazySet(base + 1, Float.floatToRawIntBits(fix.hasAccuracy ? fix.accuracy : Float.NaN));
+        values.lazySet(base + 2, Float.floatToRawIntBits(fix.hasSpeed ? fix.speed : Float.NaN));
+        values.lazySet(base + 3, Float.floatToRawIntBits(fix.hasBearing ? fix.bearing : Float.NaN));
+        values.lazySet(base + 4, Float.floatToRawIntBits(fix.hasMslAltitude ? (float) fix.mslAltitude : Float.NaN));
+        commit(sequence, slot);
+    }
+
+    private long claim() {
+        long sequence = cursor.get() + 1;
+        Subscription[] subs = subscriptions;
+        for (Subscription s : subs) {
+            if (s.policy == Policy.BLOCK) {
+                int spins = 0;
+                while (sequence - s.sequence.get() >= capacity) {
+                    if (spins++ == 0) {
+                        producerWaits++;
+                    }
+                    s.wake();
+                    if (spins < 100) {
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(50_000L);
+                    }
+                }
+            }
+        }
+        slotSequences.set((int) sequence & mask, -1L);
+        return sequence;
+    }
+
+    private void commit(long sequence, int slot) {
+        slotSequences.lazySet(slot, sequence);
+        cursor.set(sequence);
+        Subscription[] subs = subscriptions;
+        for (Subscription s : subs) {
+            if (s.waiter != null) {
+                s.wake();
+            }
+        }
+    }
+
+    /** A subscriber's position and counters. Poll from one consumer thread only. */
+    public final class Subscription {
+        private final Policy policy;
+        private final AtomicLong sequence;
+        private final float[] scratch = new float[MAX_VALUES];
+        private final GpsFix fix = new GpsFix();
+        private final long[] conflatedSequences = new long[MAX_CONFLATED_TYPES];
+        private final int[] conflatedTypes = new int[MAX_CONFLATED_TYPES];
+        private volatile Thread waiter;
+        private volatile long dropped;
+        private volatile long delivered;
+
+        Subscription(Policy policy, long start) {
+            this.policy = policy;
+            this.sequence = new AtomicLong(start);
+        }
+
+        public Policy policy() {
+            return policy;
+        }
+
+        /** Samples published but not yet consumed by this subscriber. Any thread. */
+        public long lag() {
+            return Math.max(0L, cursor.get() + 1 - sequence.get());
+        }
+
+        /** Samples this subscriber lost to overrun or conflation. Any thread. */
+        public long dropped() {
+            return dropped;
+        }
+
+        public long delivered() {
+            return delivered;
+        }
+
+        /** Delivers up to {@code max} available samples to {@code sink}; returns the number delivered. */
+        public int poll(SampleSink sink, int max) {
+            return policy == Policy.CONFLATE ? pollConflated(sink) : pollInOrder(sink, max);
+        }
+
+        /**
+         * Like {@link #poll} but parks for up to {@code timeoutNanos} while nothing is
+         * available. The producer unparks waiting subscribers after each publish.
+         */
+        public int awaitAndPoll(SampleSink sink, int max, long timeoutNanos) {
+            if (cursor.get() < sequence.get()) {
+                waiter = Thread.currentThread();
+                if (cursor.get() < sequence.get()) {
+                    LockSupport.parkNanos(this, timeoutNanos);
+                }
+                waiter = null;
+            }
+            return poll(sink, max);
+        }
+
+        void wake() {
+            Thread t = waiter;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+
+        private int pollInOrder(SampleSink sink, int max) {
+            long next = sequence.get();
+            long available = cursor.get();
+            int count = 0;
+            while (next <= available && count < max) {
+                if (!deliver(next, sink)) {
+                    // Lapped: resume at the oldest slot the producer cannot overwrite before we get there
+                    long oldest = cursor.get() - capacity + 2;
+                    if (oldest > next) {
+                        dropped += oldest - next;
+                        next = oldest;
+                    } else {
+                        next++;
+                        dropped++;
+                    }
+                    available = cursor.get();
+                    continue;
+                }
+                count++;
+                next++;
+                sequence.lazySet(next);
+            }
+            sequence.set(next);
+            delivered += count;
+            return count;
+        }
+
+        private int pollConflated(SampleSink sink) {
+            long next = sequence.get();
+            long available = cursor.get();
+            if (available < next) {
+                return 0;
+            }
+            long oldest = Math.max(next, available - capacity + 2);
+            int distinct = 0;
+            // Newest sequence per type, scanning backwards from the cursor
+            for (long s = available; s >= oldest && distinct < MAX_CONFLATED_TYPES; s--) {
+                int slot = (int) s & mask;
+                if (slotSequences.get(slot) != s) {
+                    break;
+                }
+                int type = types.get(slot);
+                boolean seen = false;
+                for (int i = 0; i < distinct; i++) {
+                    if (conflatedTypes[i] == type) {
+                        seen = true;
+                        break;
+                    }
+                }
+                if (!seen) {
+                    conflatedTypes[distinct] = type;
+                    conflatedSequences[distinct] = s;
+                    distinct++;
+                }
+            }
+            // Oldest first, so consumers still see samples in publish order
+            int count = 0;
+            for (int i = distinct - 1; i >= 0; i--) {
+                if (deliver(conflatedSequences[i], sink)) {
+                    count++;
+                }
+            }
+            dropped += available + 1 - next - count;
+            delivered += count;
+            sequence.set(available + 1);
+            return count;
+        }
+
+        /** Copies slot {@code s} out and hands it to the sink; false if it was overwritten. */
+        private boolean deliver(long s, SampleSink sink) {
+            int slot = (int) s & mask;
+            if (slotSequences.get(slot) != s) {
+                return false;
+            }
+            int type = types.get(slot);
+            int packed = accuracyAndCount.get(slot);
+            long timestamp = timestamps.get(slot);
+            int n = packed & COUNT_MASK;
+            int base = slot * MAX_VALUES;
+            for (int i = 0; i < n; i++) {
+                scratch[i] = Float.intBitsToFloat(values.get(base + i));
+            }
+            long lat = 0L;
+            long lon = 0L;
+            long time = 0L;
+            if (type == SensorTypes.LOCATION) {
+                lat = locations.get(slot * 3);
+                lon = locations.get(slot * 3 + 1);
+                time = locations.get(slot * 3 + 2);
+            }
+            if (slotSequences.get(slot) != s) {
+                return false;
+            }
+            if (type == SensorTypes.LOCATION) {
+                fix.provider = "gps";
+                fix.elapsedRealtimeNanos = timestamp;
+                fix.latitude = Double.longBitsToDouble(lat);
+                fix.longitude = Double.longBitsToDouble(lon);
+                fix.time = time;
+                fix.hasAltitude = !Float.isNaN(scratch[0]);
+                fix.altitude = fix.hasAltitude ? scratch[0] : 0.0;
+                fix.hasAccuracy = !Float.isNaN(scratch[1]);
+                fix.accuracy = fix.hasAccuracy ? scratch[1] : 0f;
+                fix.hasSpeed = !Float.isNaN(scratch[2]);
+                fix.speed = fix.hasSpeed ? scratch[2] : 0f;
+                fix.hasBearing = !Float.isNaN(scratch[3]);
+                fix.bearing = fix.hasBearing ? scratch[3] : 0f;
+                fix.hasMslAltitude = !Float.isNaN(scratch[4]);
+                fix.mslAltitude = fix.hasMslAltitude ? scratch[4] : 0.0;
+                sink.onLocation(fix);
+            } else {
+                sink.onSample(type, timestamp, packed >> ACCURACY_SHIFT, scratch, n);
+            }
+            return true;
+        }
+    }
+}
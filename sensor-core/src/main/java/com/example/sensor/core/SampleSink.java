@@ -0,0 +1,11 @@
+package com.example.sensor.core;
+
+/**
+ * Receives live or replayed samples. {@code values} and {@code fix} are only valid
+ * during the call and are reused by the caller.
+ */
+public interface SampleSink {
+    void onSample(int type, long timestampNanos, int accuracy, float[] values, int count);
+
+    void onLocation(GpsFix fix);
+}
@@ -0,0 +1,176 @@
+package com.example.sensor.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The device's sensors and what each can do, in the order the platform lists them.
+ * Enumerating sensors is a binder round trip the screen would otherwise wait for at
+ * every launch, so the catalog is saved and read back on later launches. A saved
+ * catalog is only accepted for the same build fingerprint, which changes with the
+ * device and with every OS update.
+ *
+ * <pre>
+ * file (big endian, {@link DataOutputStream} encoding)
+ *   int MAGIC, short VERSION, UTF fingerprint, int count
+ *   per sensor: int type, UTF name, UTF vendor, int version, float maximumRange,
+ *   float resolution, float power, int minDelayUs, int maxDelayUs,
+ *   int fifoReservedEventCount, int fifoMaxEventCount, int reportingMode, boolean wakeUp
+ * </pre>
+ */
+public class SensorCatalog {
+    public static final int MAGIC = 0x53434154; // "SCAT"
+    public static final short VERSION = 1;
+
+    /** One sensor's description, as reported by the platform. */
+    public static class Entry {
+        public int type;
+        public String name;
+        public String vendor;
+        public int version;
+        public float maximumRange;
+        public float resolution;
+        /** mA */
+        public float power;
+        /** 0 for on-change and one-shot sensors. */
+        public int minDelayUs;
+        public int maxDelayUs;
+        public int fifoReservedEventCount;
+        public int fifoMaxEventCount;
+        public int reportingMode;
+        public boolean wakeUp;
+
+        boolean sameAs(Entry o) {
+            return type == o.type && name.equals(o.name) && vendor.equals(o.vendor) && version == o.version
+                    && Float.compare(maximumRange, o.maximumRange) == 0
+                    && Float.compare(resolution, o.resolution) == 0
+                    && Float.compare(power, o.power) == 0
+                    && minDelayUs == o.minDelayUs && maxDelayUs == o.maxDelayUs
+                    && fifoReservedEventCount == o.fifoReservedEventCount
+                    && fifoMaxEventCount == o.fifoMaxEventCount
+                    && reportingMode == o.reportingMode && wakeUp == o.wakeUp;
+        }
+    }
+
+    private final String fingerprint;
+    private final List<Entry> entries = new ArrayList<>();
+
+    public SensorCatalog(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    public void add(Entry entry) {
+        entries.add(entry);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Entry get(int index) {
+        return entries.get(index);
+    }
+
+    /** Index of the first sensor of {@code type}, or -1. */
+    public int indexOf(int type) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).type == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Whether {@code other} lists the same sensors, in the same order, with the same capabilities. */
+    public boolean sameSensors(SensorCatalog other) {
+        if (other == null || other.size() != size()) {
+            return false;
+        }
+        for (int i = 0; i < size(); i++) {
+            if (!get(i).sameAs(other.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a catalog saved by {@link #save}. Returns null if there is none, if it was
+     * saved on another build, or if it cannot be read; the caller then enumerates again.
+     */
+    public static SensorCatalog load(File file, String fingerprint) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION || !in.readUTF().equals(fingerprint)) {
+                return null;
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                return null;
+            }
+            SensorCatalog catalog = new SensorCatalog(fingerprint);
+            for (int i = 0; i < count; i++) {
+                Entry e = new Entry();
+                e.type = in.readInt();
+                e.name = in.readUTF();
+                e.vendor = in.readUTF();
+                e.version = in.readInt();
+                e.maximumRange = in.readFloat();
+                e.resolution = in.readFloat();
+                e.power = in.readFloat();
+                e.minDelayUs = in.readInt();
+                e.maxDelayUs = in.readInt();
+                e.fifoReservedEventCount = in.readInt();
+                e.fifoMaxEventCount = in.readInt();
+                e.reportingMode = in.readInt();
+                e.wakeUp = in.readBoolean();
+                catalog.add(e);
+            }
+            return catalog;
+        } catch (IOException e) {
+            // Missing, truncated or written by another version
+            return null;
+        }
+    }
+
+    /** Writes to a temporary file renamed over {@code file}, so a reader never sees half a catalog. */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeUTF(fingerprint);
+            out.writeInt(entries.size());
+            for (Entry e : entries) {
+                out.writeInt(e.type);
+                out.writeUTF(e.name);
+                out.writeUTF(e.vendor);
+                out.writeInt(e.version);
+                out.writeFloat(e.maximumRange);
+                out.writeFloat(e.resolution);
+                out.writeFloat(e.power);
+                out.writeInt(e.minDelayUs);
+                out.writeInt(e.maxDelayUs);
+                out.writeInt(e.fifoReservedEventCount);
+                out.writeInt(e.fifoMaxEventCount);
+                out.writeInt(e.reportingMode);
+                out.writeBoolean(e.wakeUp);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("cannot replace " + file);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.sensor.core;
+
+/**
+ * {@link SeriesHistory} per axis of the tracked sensor types, under a hard memory
+ * budget. By default each axis keeps {@value #DEFAULT_RAW_SECONDS} s of raw samples at
+ * its expected rate, then 1 s buckets for an hour and 1 min buckets for a day. Use as a
+ * bus consumer's sink; samples of untracked types are ignored.
+ */
+public class SensorHistory implements SampleSink {
+    public static final long DEFAULT_BUDGET_BYTES = 4L * 1024 * 1024;
+    public static final int DEFAULT_RAW_SECONDS = 60;
+    public static final long[] DEFAULT_TIER_BUCKET_NANOS = {1_000_000_000L, 60_000_000_000L};
+    public static final int[] DEFAULT_TIER_CAPACITIES = {3600, 1440};
+
+    private static final int MAX_TYPES = 16;
+
+    private final long budgetBytes;
+    private long usedBytes = 0;
+    private final int[] types = new int[MAX_TYPES];
+    private final SeriesHistory[][] series = new SeriesHistory[MAX_TYPES][];
+    private volatile int typeCount = 0;
+
+    public SensorHistory() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    public SensorHistory(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Starts keeping {@code axes} values of {@code type}. Throws IllegalStateException if
+     * the channels would not fit in the budget; nothing is allocated in that case.
+     */
+    public void track(int type, int axes, int expectedRateHz) {
+        track(type, axes, expectedRateHz * DEFAULT_RAW_SECONDS, DEFAULT_TIER_BUCKET_NANOS, DEFAULT_TIER_CAPACITIES);
+    }
+
+    public synchronized void track(int type, int axes, int rawCapacity, long[] tierBucketNanos, int[] tierCapacities) {
+        if (indexOf(type) >= 0) {
+            throw new IllegalStateException("type " + type + " already tracked");
+        }
+        if (typeCount == MAX_TYPES) {
+            throw new IllegalStateException("too many types");
+        }
+        long bytes = axes * SeriesHistory.bytesFor(rawCapacity, tierCapacities);
+        if (usedBytes + bytes > budgetBytes) {
+            throw new IllegalStateException("history budget exceeded: " + (usedBytes + bytes) + " > " + budgetBytes);
+        }
+        SeriesHistory[] axisSeries = new SeriesHistory[axes];
+        for (int i = 0; i < axes; i++) {
+            axisSeries[i] = new SeriesHistory(rawCapacity, tierBucketNanos, tierCapacities);
+        }
+        types[typeCount] = type;
+        series[typeCount] = axisSeries;
+        usedBytes += bytes;
+        // Publishes the new entry to the sample thread
+        typeCount = typeCount + 1;
+    }
+
+    private int indexOf(int type) {
+        int n = typeCount;
+        for (int i = 0; i < n; i++) {
+            if (types[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** History of one axis, or null if not tracked. */
+    public SeriesHistory series(int type, int axis) {
+        int i = indexOf(type);
+        if (i < 0 || axis >= series[i].length) {
+            return null;
+        }
+        return series[i][axis];
+    }
+
+    public long budgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    @Override
+    public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+        int i = indexOf(type);
+        if (i < 0) {
+            return;
+        }
+        SeriesHistory[] axisSeries = series[i];
+        int n = Math.min(count, axisSeries.length);
+        for (int axis = 0; axis < n; axis++) {
+            axisSeries[axis].add(timestampNanos, values[axis]);
+        }
+    }
+
+    @Override
+    public void onLocation(GpsFix fix) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.sensor.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What each client of the sensor hub asked for, and the registrations that satisfy all
+ * of them. Every sensor is registered once, with the shortest period and latency any
+ * client asked for ({@link CaptureConfig#merge}); {@link #apply} changes only the
+ * registrations whose settings changed. It also tracks FIFO flushes: a flush is
+ * complete once every flushed sensor has reported {@code onFlushCompleted}, or when the
+ * caller gives up waiting.
+ *
+ * <p>Clients may be added and removed from any thread; {@link #apply}, the flush
+ * methods and the {@link Source} calls belong to the thread that owns the sensors.
+ */
+public class SensorRequests {
+    /** The platform's sensors; {@code SensorManager} on a device, a fake in tests. */
+    public interface Source {
+        /** Registers or re-registers {@code type}; false if the device has no such sensor. */
+        boolean register(int type, int samplingPeriodUs, int maxReportLatencyUs);
+
+        void unregister(int type);
+
+        /**
+         * Asks every registered sensor to deliver its FIFO contents and returns the number
+         * of {@code onFlushCompleted} calls to expect, 0 if none will come.
+         */
+        int flush();
+    }
+
+    private final Source source;
+    // Guarded by this
+    private final Map<Object, CaptureConfig> requests = new HashMap<>();
+    // Owner thread only
+    private final CaptureConfig registered = new CaptureConfig();
+    private final List<Runnable> flushCallbacks = new ArrayList<>();
+    private int pendingFlushes;
+
+    public SensorRequests(Source source) {
+        this.source = source;
+    }
+
+    /** Replaces what {@code client} needs; takes effect on the next {@link #apply}. */
+    public synchronized void set(Object client, CaptureConfig config) {
+        requests.put(client, config);
+    }
+
+    public synchronized void clear(Object client) {
+        requests.remove(client);
+    }
+
+    /** Every client's request merged into one. */
+    public synchronized CaptureConfig merged() {
+        CaptureConfig wanted = new CaptureConfig();
+        for (CaptureConfig config : requests.values()) {
+            wanted.merge(config);
+        }
+        return wanted;
+    }
+
+    /** What is registered now. */
+    public CaptureConfig registered() {
+        return registered;
+    }
+
+    /** Brings the registrations in line with {@link #merged}. */
+    public void apply() {
+        CaptureConfig wanted = merged();
+        for (int i = registered.size() - 1; i >= 0; i--) {
+            int type = registered.type(i);
+            if (wanted.indexOf(type) < 0) {
+                source.unregister(type);
+                registered.remove(type);
+            }
+        }
+        for (int i = 0; i < wanted.size(); i++) {
+            int type = wanted.type(i);
+            int period = wanted.samplingPeriodUs(i);
+            int latency = wanted.maxReportLatencyUs(i);
+            int r = registered.indexOf(type);
+            if (r >= 0) {
+                if (registered.samplingPeriodUs(r) == period && registered.maxReportLatencyUs(r) == latency) {
+                    continue;
+                }
+                source.unregister(type);
+                registered.remove(type);
+            }
+            if (source.register(type, period, latency)) {
+                registered.set(type, period, latency);
+            }
+        }
+    }
+
+    /**
+     * Starts a flush; {@code done}, if not null, runs once it completes. A flush started
+     * while another is pending also completes that one's callbacks. Returns true while
+     * completions are awaited, when the caller should arrange a {@link #onFlushTimeout}.
+     */
+    public boolean flush(Runnable done) {
+        if (done != null) {
+            flushCallbacks.add(done);
+        }
+        pendingFlushes = source.flush();
+        if (pendingFlushes == 0) {
+            completeFlush();
+            return false;
+        }
+        return true;
+    }
+
+    /** One flushed sensor delivered its FIFO; true if that completed the flush. */
+    public boolean onFlushCompleted() {
+        if (pendingFlushes > 0 && --pendingFlushes == 0) {
+            completeFlush();
+            return true;
+        }
+        return false;
+    }
+
+    /** Gives up on the completions still awaited, as some drivers never report them. */
+    public void onFlushTimeout() {
+        pendingFlushes = 0;
+        completeFlush();
+    }
+
+    public boolean isFlushing() {
+        return pendingFlushes > 0;
+    }
+
+    private void completeFlush() {
+        // A callback may start the next flush
+        Runnable[] done = flushCallbacks.toArray(new Runnable[0]);
+        flushCallbacks.clear();
+        for (Runnable r : done) {
+            r.run();
+        }
+    }
+}
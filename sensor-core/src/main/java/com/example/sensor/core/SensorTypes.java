@@ -0,0 +1,36 @@
+package com.example.sensor.core;
+
+/**
+ * Sensor type ids used by the core module. Values match {@code android.hardware.Sensor}
+ * so the app can pass {@code event.sensor.getType()} straight through.
+ */
+public final class SensorTypes {
+    public static final int ACCELEROMETER = 1;
+    public static final int MAGNETIC_FIELD = 2;
+    public static final int GYROSCOPE = 4;
+    public static final int PRESSURE = 6;
+    public static final int ROTATION_VECTOR = 11;
+    public static final int SIGNIFICANT_MOTION = 17;
+    public static final int STATIONARY_DETECT = 29;
+
+    /** Pseudo type for GPS fixes; not an Android sensor. */
+    public static final int LOCATION = -1;
+
+    private SensorTypes() {
+    }
+
+    /** Short name of the types above, for reports; null for any other type. */
+    public static String name(int type) {
+        switch (type) {
+            case ACCELEROMETER: return "accelerometer";
+            case MAGNETIC_FIELD: return "magnetic_field";
+            case GYROSCOPE: return "gyroscope";
+            case PRESSURE: return "pressure";
+            case ROTATION_VECTOR: return "rotation_vector";
+            case SIGNIFICANT_MOTION: return "significant_motion";
+            case STATIONARY_DETECT: return "stationary_detect";
+            case LOCATION: return "location";
+            default: return null;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.sensor.core;
+
+/**
+ * Fixed-size history of one scalar channel. The newest samples are kept raw in a ring
+ * of {@code long[]} timestamps and {@code float[]} values; older data survives only in
+ * rollup tiers of fixed-width buckets holding min, max, mean and sample count. Every
+ * tier is fed on insert from the raw sample, so rollups cost a few compares per tier
+ * and never rescan old data. All arrays are allocated in the constructor; the heap
+ * used does not grow with the length of the run. Thread safe; meant for one writer.
+ */
+public class SeriesHistory {
+    private static final int RAW_BYTES_PER_SAMPLE = 8 + 4;
+    private static final int BYTES_PER_BUCKET = 8 + 4 + 4 + 4 + 4;
+
+    private final long[] rawTimes;
+    private final float[] rawValues;
+    private int rawHead = 0;
+    private int rawSize = 0;
+    private final Tier[] tiers;
+
+    /**
+     * @param rawCapacity      raw samples kept
+     * @param tierBucketNanos  bucket width of each tier, finest first
+     * @param tierCapacities   buckets kept per tier
+     */
+    public SeriesHistory(int rawCapacity, long[] tierBucketNanos, int[] tierCapacities) {
+        if (tierBucketNanos.length != tierCapacities.length) {
+            throw new IllegalArgumentException("one capacity per tier");
+        }
+        rawTimes = new long[rawCapacity];
+        rawValues = new float[rawCapacity];
+        tiers = new Tier[tierBucketNanos.length];
+        for (int i = 0; i < tiers.length; i++) {
+            if (i > 0 && tierBucketNanos[i] <= tierBucketNanos[i - 1]) {
+                throw new IllegalArgumentException("tiers must get coarser");
+            }
+            tiers[i] = new Tier(tierBucketNanos[i], tierCapacities[i]);
+        }
+    }
+
+    /** Heap taken by a history with this layout, excluding object headers. */
+    public static long bytesFor(int rawCapacity, int[] tierCapacities) {
+        long bytes = (long) rawCapacity * RAW_BYTES_PER_SAMPLE;
+        for (int capacity : tierCapacities) {
+            bytes += (long) capacity * BYTES_PER_BUCKET;
+        }
+        return bytes;
+    }
+
+    public long memoryBytes() {
+        long bytes = (long) rawTimes.length * RAW_BYTES_PER_SAMPLE;
+        for (Tier tier : tiers) {
+            bytes += (long) tier.capacity * BYTES_PER_BUCKET;
+        }
+        return bytes;
+    }
+
+    public int tierCount() {
+        return tiers.length;
+    }
+
+    /** Bucket width of {@code tier}; 0 for raw samples (tier -1). */
+    public long bucketNanos(int tier) {
+        return tier < 0 ? 0L : tiers[tier].bucketNanos;
+    }
+
+    /** Timestamps must not go backwards; older samples are dropped. */
+    public synchronized void add(long timestampNanos, float value) {
+        if (rawSize > 0 && timestampNanos < rawTimes[(rawHead + rawSize - 1) % rawTimes.length]) {
+            return;
+        }
+        int slot;
+        if (rawSize < rawTimes.length) {
+            slot = (rawHead + rawSize) % rawTimes.length;
+            rawSize++;
+        } else {
+            slot = rawHead;
+            rawHead = (rawHead + 1) % rawTimes.length;
+        }
+        rawTimes[slot] = timestampNanos;
+        rawValues[slot] = value;
+        for (Tier tier : tiers) {
+            tier.add(timestampNanos, value);
+        }
+    }
+
+    /** Oldest timestamp still held raw, or Long.MAX_VALUE if empty. */
+    public synchronized long rawStart() {
+        return rawSize == 0 ? Long.MAX_VALUE : rawTimes[rawHead];
+    }
+
+    /**
+     * Fills {@code out} with the data in [from, to). Uses the raw samples if they reach
+     * back to {@code from} and fit in {@code maxPoints}; otherwise the finest tier that
+     * does both; if none fits in {@code maxPoints}, the coarsest tier that reaches back
+     * far enough, or failing that the coarsest tier. Raw points have min = max = mean.
+     * Returns the tier used, -1 for raw.
+     */
+    public synchronized int query(long fromNanos, long toNanos, int maxPoints, HistoryWindow out) {
+        out.clear();
+        if (rawSize > 0 && rawTimes[rawHead] <= fromNanos && countRaw(fromNanos, toNanos) <= maxPoints) {
+            copyRaw(fromNanos, toNanos, out);
+            out.tier = -1;
+            return -1;
+        }
+        int covering = -1;
+        for (int i = 0; i < tiers.length; i++) {
+            Tier tier = tiers[i];
+            if (tier.start() <= fromNanos) {
+                if (tier.count(fromNanos, toNanos) <= maxPoints) {
+                    tier.copy(fromNanos, toNanos, out);
+                    out.tier = i;
+                    return i;
+                }
+                covering = i;
+            }
+        }
+        int chosen = covering >= 0 ? covering : tiers.length - 1;
+        if (chosen < 0) {
+            copyRaw(fromNanos, toNanos, out);
+            out.tier = -1;
+            return -1;
+        }
+        tiers[chosen].copy(fromNanos, toNanos, out);
+        out.tier = chosen;
+        return chosen;
+    }
+
+    private int countRaw(long from, long to) {
+        return lowerBound(rawTimes, rawHead, rawSize, to) - lowerBound(rawTimes, rawHead, rawSize, from);
+    }
+
+    private void copyRaw(long from, long to, HistoryWindow out) {
+        int end = lowerBound(rawTimes, rawHead, rawSize, to);
+        for (int i = lowerBound(rawTimes, rawHead, rawSize, from); i < end; i++) {
+            int slot = (rawHead + i) % rawTimes.length;
+            float v = rawValues[slot];
+            out.add(rawTimes[slot], v, v, v, 1);
+        }
+    }
+
+    /** First logical index in a sorted ring whose time is >= {@code key}. */
+    private static int lowerBound(long[] times, int head, int size, long key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[(head + mid) % times.length] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Ring of closed buckets plus the bucket being filled. */
+    private static final class Tier {
+        final long bucketNanos;
+        final int capacity;
+        final long[] starts;
+        final float[] mins;
+        final float[] maxs;
+        final float[] means;
+        final int[] counts;
+        int head = 0;
+        int size = 0;
+        long openStart = Long.MIN_VALUE;
+        float openMin;
+        float openMax;
+        double openSum;
+        int openCount;
+
+        Tier(long bucketNanos, int capacity) {
+            this.bucketNanos = bucketNanos;
+            this.capacity = capacity;
+            starts = new long[capacity];
+            mins = new float[capacity];
+            maxs = new float[capacity];
+            means = new float[capacity];
+            counts = new int[capacity];
+        }
+
+        void add(long t, float v) {
+            long start = t - Math.floorMod(t, bucketNanos);
+            if (start != openStart) {
+                close();
+                openStart = start;
+                openMin = v;
+                openMax = v;
+                openSum = v;
+                openCount = 1;
+                return;
+            }
+            if (v < openMin) {
+                openMin = v;
+            }
+            if (v > openMax) {
+                openMax = v;
+            }
+            openSum += v;
+            openCount++;
+        }
+
+        private void close() {
+            if (openCount == 0 || capacity == 0) {
+                return;
+            }
+            int slot;
+            if (size < capacity) {
+                slot = (head + size) % capacity;
+                size++;
+            } else {
+                slot = head;
+                head = (head + 1) % capacity;
+            }
+            starts[slot] = openStart;
+            mins[slot] = openMin;
+            maxs[slot] = openMax;
+            means[slot] = (float) (openSum / openCount);
+            counts[slot] = openCount;
+            openCount = 0;
+        }
+
+        long start() {
+            if (size > 0) {
+                return starts[head];
+            }
+            return openCount > 0 ? openStart : Long.MAX_VALUE;
+        }
+
+        /** Closed buckets overlapping [from, to) are those starting in (from - width, to). */
+        int count(long from, long to) {
+            int n = lowerBound(starts, head, size, to) - lowerBound(starts, head, size, from - bucketNanos + 1);
+            if (openCount > 0 && openStart + bucketNanos > from && openStart < to) {
+                n++;
+            }
+            return n;
+        }
+
+        void copy(long from, long to, HistoryWindow out) {
+            int end = lowerBound(starts, head, size, to);
+            for (int i = lowerBound(starts, head, size, from - bucketNanos + 1); i < end; i++) {
+                int slot = (head + i) % capacity;
+                out.add(starts[slot], mins[slot], maxs[slot], means[slot], counts[slot]);
+            }
+            if (openCount > 0 && openStart + bucketNanos > from && openStart < to) {
+                out.add(openStart, openMin, openMax, (float) (openSum / openCount), openCount);
+            }
+        }
+    }
+}
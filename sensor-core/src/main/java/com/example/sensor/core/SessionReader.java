@@ -0,0 +1,159 @@
+package com.example.sensor.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sequential cursor over a session written by {@link SessionRecorder}, optionally
+ * filtered to one sensor type. Records after a segment's committed count (written
+ * after the last force before a crash) are still returned; reading a segment stops
+ * at the first record whose type is 0.
+ */
+public class SessionReader implements Closeable {
+    /** Type filter accepting every record. */
+    public static final int ALL_TYPES = Integer.MIN_VALUE;
+
+    private final File directory;
+    private final int typeFilter;
+    private final float[] values = new float[SessionRecorder.MAX_VALUES];
+
+    private RandomAccessFile file;
+    private MappedByteBuffer buffer;
+    private int segmentIndex = -1;
+    private int position;
+    private int record = -1;
+    private long uncommittedRecords;
+    private long segmentRecords;
+    private long committedRecords;
+
+    public SessionReader(File directory) throws IOException {
+        this(directory, ALL_TYPES);
+    }
+
+    public SessionReader(File directory, int typeFilter) throws IOException {
+        this.directory = directory;
+        this.typeFilter = typeFilter;
+        if (!openSegment(0)) {
+            throw new IOException("no session segments in " + directory);
+        }
+    }
+
+    /** Advances to the next matching record; returns false at the end of the session. */
+    public boolean next() throws IOException {
+        while (true) {
+            if (buffer != null && position + SessionRecorder.RECORD_SIZE <= buffer.limit()) {
+                int p = position;
+                int type = buffer.getInt(p + SessionRecorder.RECORD_TYPE);
+                if (type != 0) {
+                    position = p + SessionRecorder.RECORD_SIZE;
+                    if (++segmentRecords > committedRecords) {
+                        uncommittedRecords++;
+                    }
+                    if (typeFilter == ALL_TYPES || type == typeFilter) {
+                        record = p;
+                        return true;
+                    }
+                    continue;
+                }
+            }
+            if (!openSegment(segmentIndex + 1)) {
+                record = -1;
+                return false;
+            }
+        }
+    }
+
+    public int type() {
+        return buffer.getInt(record + SessionRecorder.RECORD_TYPE);
+    }
+
+    public int accuracy() {
+        return buffer.getShort(record + SessionRecorder.RECORD_ACCURACY);
+    }
+
+    public int valueCount() {
+        return buffer.getShort(record + SessionRecorder.RECORD_COUNT);
+    }
+
+    /** Sensor timestamp, elapsed-realtime ns. */
+    public long timestamp() {
+        return buffer.getLong(record + SessionRecorder.RECORD_TIMESTAMP);
+    }
+
+    /** Values of the current record in a buffer reused for every record. */
+    public float[] values() {
+        int n = Math.min(valueCount(), SessionRecorder.MAX_VALUES);
+        int v = record + SessionRecorder.RECORD_VALUES;
+        for (int i = 0; i < n; i++) {
+            values[i] = buffer.getFloat(v + i * 4);
+        }
+        return values;
+    }
+
+    /** Decodes the current {@link SensorTypes#LOCATION} record into {@code fix}. */
+    public GpsFix readLocation(GpsFix fix) {
+        int v = record + SessionRecorder.RECORD_VALUES;
+        fix.provider = "gps";
+        fix.elapsedRealtimeNanos = timestamp();
+        fix.latitude = buffer.getDouble(v);
+        fix.longitude = buffer.getDouble(v + 8);
+        fix.time = buffer.getLong(v + 16);
+        float altitude = buffer.getFloat(v + 24);
+        float accuracy = buffer.getFloat(v + 28);
+        float speed = buffer.getFloat(v + 32);
+        float bearing = buffer.getFloat(v + 36);
+        fix.hasAltitude = !Float.isNaN(altitude);
+        fix.altitude = fix.hasAltitude ? altitude : 0.0;
+        fix.hasAccuracy = !Float.isNaN(accuracy);
+        fix.accuracy = fix.hasAccuracy ? accuracy : 0f;
+        fix.hasSpeed = !Float.isNaN(speed);
+        fix.speed = fix.hasSpeed ? speed : 0f;
+        fix.hasBearing = !Float.isNaN(bearing);
+        fix.bearing = fix.hasBearing ? bearing : 0f;
+        return fix;
+    }
+
+    /** Records read so far that lie beyond their segment's committed count. */
+    public long uncommittedRecords() {
+        return uncommittedRecords;
+    }
+
+    private boolean openSegment(int index) throws IOException {
+        closeSegment();
+        File f = SessionRecorder.segmentFile(directory, index);
+        if (!f.isFile()) {
+            return false;
+        }
+        file = new RandomAccessFile(f, "r");
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < SessionRecorder.HEADER_SIZE
+                || buffer.getInt(0) != SessionRecorder.MAGIC
+                || buffer.getShort(6) != SessionRecorder.RECORD_SIZE) {
+            throw new IOException("not a session segment: " + f);
+        }
+        segmentIndex = index;
+        position = SessionRecorder.HEADER_SIZE;
+        segmentRecords = 0;
+        committedRecords = buffer.getLong(SessionRecorder.HEADER_COMMITTED);
+        return true;
+    }
+
+    private void closeSegment() throws IOException {
+        buffer = null;
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+}
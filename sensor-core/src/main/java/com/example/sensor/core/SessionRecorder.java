@@ -0,0 +1,253 @@
+package com.example.sensor.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * Appends fixed-width binary records to memory-mapped, preallocated segment files.
+ * Appending is a handful of absolute puts into the mapping: no syscall and no
+ * allocation per sample. The page cache is flushed with {@code force()} at most
+ * once per force interval, at which point the segment header's committed record
+ * count is advanced. A segment rolls over when full. A session gets a directory of its
+ * own: the recorder refuses one that already holds files, so it never writes over or
+ * interleaves with another session. Single writer thread only.
+ *
+ * <pre>
+ * header (64 bytes, little endian)
+ *   0  int   MAGIC
+ *   4  short VERSION
+ *   6  short RECORD_SIZE
+ *   8  int   segment index
+ *  12  int   1 when closed cleanly, else 0
+ *  16  long  session start, wall-clock ms
+ *  24  long  committed record count (valid up to the last force)
+ *
+ * record (64 bytes)
+ *   0  int   sensor type, written last; 0 marks the end of the data
+ *   4  short accuracy
+ *   6  short value count
+ *   8  long  sensor timestamp, elapsed-realtime ns
+ *  16  float[MAX_VALUES] values, or a location payload for {@link SensorTypes#LOCATION}:
+ *      double lat, double lon, long time ms, float alt, float acc, float speed, float bearing
+ *      (absent fields are NaN)
+ * </pre>
+ */
+public class SessionRecorder implements Closeable {
+    public static final int MAGIC = 0x53534E53; // "SNSS"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 64;
+    public static final int MAX_VALUES = 12;
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_FORCE_INTERVAL_NANOS = 2_000_000_000L;
+
+    static final int HEADER_INDEX = 8;
+    static final int HEADER_CLEAN = 12;
+    static final int HEADER_START_MS = 16;
+    static final int HEADER_COMMITTED = 24;
+    static final int RECORD_TYPE = 0;
+    static final int RECORD_ACCURACY = 4;
+    static final int RECORD_COUNT = 6;
+    static final int RECORD_TIMESTAMP = 8;
+    static final int RECORD_VALUES = 16;
+
+    private final File directory;
+    private final int segmentBytes;
+    private final long forceIntervalNanos;
+    private final long sessionStartMs;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int segmentIndex = -1;
+    private int position;
+    private long segmentRecords;
+    private long totalRecords;
+    private long lastForceNanos;
+    private boolean closed;
+
+    /** Records into {@code directory}, which is created if needed and must be empty. */
+    public SessionRecorder(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_FORCE_INTERVAL_NANOS);
+    }
+
+    public SessionRecorder(File directory, long segmentBytes, long forceIntervalNanos) throws IOException {
+        if (segmentBytes < HEADER_SIZE + RECORD_SIZE || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segment size out of range: " + segmentBytes);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        String[] existing = directory.list();
+        if (existing == null || existing.length > 0) {
+            throw new IOException(directory + " is not empty");
+        }
+        this.directory = directory;
+        // Whole records only, so the writer never needs a bounds check inside a record
+        this.segmentBytes = (int) (HEADER_SIZE + (segmentBytes - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE);
+        this.forceIntervalNanos = forceIntervalNanos;
+        this.sessionStartMs = System.currentTimeMillis();
+        openSegment(0);
+    }
+
+    /**
+     * Starts a session in a new directory {@code name} under {@code root}, or
+     * {@code name-2}, {@code name-3} and so on when that is taken, as by a second
+     * session started within the same second.
+     */
+    public static SessionRecorder create(File root, String name) throws IOException {
+        if (!root.isDirectory() && !root.mkdirs()) {
+            throw new IOException("cannot create " + root);
+        }
+        for (int n = 1; n <= 100; n++) {
+            File directory = new File(root, n == 1 ? name : name + '-' + n);
+            // mkdir fails if the directory exists, so two sessions never get the same one
+            if (directory.mkdir()) {
+                return new SessionRecorder(directory);
+            }
+        }
+        throw new IOException("no free session directory for " + name + " in " + root);
+    }
+
+    public static File segmentFile(File directory, int index) {
+        return new File(directory, String.format(Locale.ROOT, "segment-%05d.bin", index));
+    }
+
+    public void append(int type, long timestampNanos, int accuracy, float[] values, int count) throws IOException {
+        int p = beginRecord();
+        int n = Math.min(count, MAX_VALUES);
+        buffer.putShort(p + RECORD_ACCURACY, (short) accuracy);
+        buffer.putShort(p + RECORD_COUNT, (short) n);
+        buffer.putLong(p + RECORD_TIMESTAMP, timestampNanos);
+        int v = p + RECORD_VALUES;
+        for (int i = 0; i < n; i++) {
+            buffer.putFloat(v + i * 4, values[i]);
+        }
+        endRecord(p, type);
+    }
+
+    public void append(SampleBatch batch) throws IOException {
+        float[] values = batch.values();
+        for (int s = 0; s < batch.size(); s++) {
+            int p = beginRecord();
+            int n = batch.valueCount(s);
+            buffer.putShort(p + RECORD_ACCURACY, (short) batch.accuracy(s));
+            buffer.putShort(p + RECORD_COUNT, (short) n);
+            buffer.putLong(p + RECORD_TIMESTAMP, batch.timestamp(s));
+            int v = p + RECORD_VALUES;
+            int base = s * SampleBatch.MAX_VALUES;
+            for (int i = 0; i < n; i++) {
+                buffer.putFloat(v + i * 4, values[base + i]);
+            }
+            endRecord(p, batch.type(s));
+        }
+    }
+
+    public void append(GpsFix fix) throws IOException {
+        int p = beginRecord();
+        buffer.putShort(p + RECORD_ACCURACY, (short) 0);
+        buffer.putShort(p + RECORD_COUNT, (short) 0);
+        buffer.putLong(p + RECORD_TIMESTAMP, fix.elapsedRealtimeNanos);
+        int v = p + RECORD_VALUES;
+        buffer.putDouble(v, fix.latitude);
+        buffer.putDouble(v + 8, fix.longitude);
+        buffer.putLong(v + 16, fix.time);
+        buffer.putFloat(v + 24, fix.hasAltitude ? (float) fix.altitude : Float.NaN);
+        buffer.putFloat(v + 28, fix.hasAccuracy ? fix.accuracy : Float.NaN);
+        buffer.putFloat(v + 32, fix.hasSpeed ? fix.speed : Float.NaN);
+        buffer.putFloat(v + 36, fix.hasBearing ? fix.bearing : Float.NaN);
+        endRecord(p, SensorTypes.LOCATION);
+    }
+
+    private int beginRecord() throws IOException {
+        if (closed) {
+            throw new IOException("recorder closed");
+        }
+        if (position + RECORD_SIZE > segmentBytes) {
+            finishSegment();
+            openSegment(segmentIndex + 1);
+        }
+        return position;
+    }
+
+    private void endRecord(int p, int type) {
+        // Type goes in last so a reader never sees a half-written record as valid
+        buffer.putInt(p + RECORD_TYPE, type);
+        position = p + RECORD_SIZE;
+        segmentRecords++;
+        totalRecords++;
+        long now = System.nanoTime();
+        if (now - lastForceNanos >= forceIntervalNanos) {
+            force(now);
+        }
+    }
+
+    /** Flushes written records to storage and advances the committed count. */
+    public void force() {
+        force(System.nanoTime());
+    }
+
+    private void force(long now) {
+        buffer.putLong(HEADER_COMMITTED, segmentRecords);
+        buffer.force();
+        lastForceNanos = now;
+    }
+
+    private void openSegment(int index) throws IOException {
+        File f = segmentFile(directory, index);
+        file = new RandomAccessFile(f, "rw");
+        // From empty, so the preallocated space reads as zeros and nothing of an earlier file survives
+        file.setLength(0);
+        file.setLength(segmentBytes);
+        channel = file.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, VERSION);
+        buffer.putShort(6, (short) RECORD_SIZE);
+        buffer.putInt(HEADER_INDEX, index);
+        buffer.putInt(HEADER_CLEAN, 0);
+        buffer.putLong(HEADER_START_MS, sessionStartMs);
+        buffer.putLong(HEADER_COMMITTED, 0L);
+        buffer.force();
+        segmentIndex = index;
+        position = HEADER_SIZE;
+        segmentRecords = 0;
+        lastForceNanos = System.nanoTime();
+    }
+
+    private void finishSegment() throws IOException {
+        buffer.putInt(HEADER_CLEAN, 1);
+        force(System.nanoTime());
+        channel.close();
+        file.close();
+        buffer = null;
+    }
+
+    public long recordCount() {
+        return totalRecords;
+    }
+
+    public int segmentCount() {
+        return segmentIndex + 1;
+    }
+
+    public File directory() {
+        return directory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        finishSegment();
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.sensor.core;
+
+import java.util.Arrays;
+
+/**
+ * Streaming vibration spectrum of a 1 to 3 axis sensor. Samples go into a ring; every
+ * {@code hop} samples the newest {@code size} are detrended per axis (removing gravity
+ * or gyro bias), Hann windowed and transformed with an in-place radix-2 FFT over
+ * preallocated arrays, using precomputed twiddle and bit-reversal tables. Two axes share
+ * one complex FFT (x real, y imaginary), so three axes cost two transforms. The power of
+ * all axes is summed per bin, which makes the result independent of how the phone is
+ * mounted.
+ *
+ * <p>Each spectrum yields the dominant frequency (parabolic interpolation between bins),
+ * its amplitude, the RMS of the whole spectrum and of each configured band, and band
+ * threshold events with hysteresis. The sample rate is taken from the timestamps of the
+ * frame, so batching and rate jitter do not shift frequencies. Nothing is allocated
+ * after construction. Single thread only.
+ */
+public class SpectrumAnalyzer {
+    /** Called from {@link #add} when a band's RMS crosses its thresholds. */
+    public interface Listener {
+        void onBandChanged(int band, boolean active, long timestampNanos, double rms);
+    }
+
+    /** Values written by {@link #writeSnapshot}, followed by one RMS per band. */
+    public static final int SNAPSHOT_FREQUENCY = 0;
+    public static final int SNAPSHOT_AMPLITUDE = 1;
+    public static final int SNAPSHOT_RMS = 2;
+    public static final int SNAPSHOT_RATE = 3;
+    /** Bit {@code b} set while band {@code b} is above its threshold. */
+    public static final int SNAPSHOT_ACTIVE_BANDS = 4;
+    public static final int SNAPSHOT_BANDS = 5;
+
+    private final int size;
+    private final int hop;
+    private final int axes;
+    private final double[] bandEdgesHz;
+
+    private final float[] ring;
+    private final long[] times;
+    private int ringPos = 0;
+    private int filled = 0;
+    private int sinceHop = 0;
+
+    private final double[] window;
+    private final double windowSquareSum;
+    private final double[] cos;
+    private final double[] sin;
+    private final int[] bitReverse;
+    private final double[] re;
+    private final double[] im;
+    private final double[] power;
+
+    private final double[] bandRms;
+    private final double[] onThreshold;
+    private final double[] offThreshold;
+    private int activeBands = 0;
+    private Listener listener;
+
+    private boolean hasSpectrum = false;
+    private long spectrumTime;
+    private double sampleRateHz;
+    private double dominantHz;
+    private double dominantAmplitude;
+    private double totalRms;
+
+    /**
+     * @param size         FFT length, a power of two
+     * @param hop          samples between spectra, 1..size
+     * @param axes         values used per sample, 1..3
+     * @param bandEdgesHz  ascending band edges; band b is [edges[b], edges[b + 1])
+     */
+    public SpectrumAnalyzer(int size, int hop, int axes, double[] bandEdgesHz) {
+        if (size < 4 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("size must be a power of two: " + size);
+        }
+        if (hop <= 0 || hop > size || axes < 1 || axes > 3 || bandEdgesHz.length < 2) {
+            throw new IllegalArgumentException("bad hop, axes or bands");
+        }
+        this.size = size;
+        this.hop = hop;
+        this.axes = axes;
+        this.bandEdgesHz = bandEdgesHz.clone();
+        ring = new float[size * axes];
+        times = new long[size];
+
+        window = new double[size];
+        double squares = 0.0;
+        for (int i = 0; i < size; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / size);
+            squares += window[i] * window[i];
+        }
+        windowSquareSum = squares;
+        cos = new double[size / 2];
+        sin = new double[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            cos[i] = Math.cos(2.0 * Math.PI * i / size);
+            sin[i] = -Math.sin(2.0 * Math.PI * i / size);
+        }
+        bitReverse = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        re = new double[size];
+        im = new double[size];
+        power = new double[size / 2 + 1];
+
+        int bands = bandEdgesHz.length - 1;
+        bandRms = new double[bands];
+        onThreshold = new double[bands];
+        offThreshold = new double[bands];
+        Arrays.fill(onThreshold, Double.POSITIVE_INFINITY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int bandCount() {
+        return bandRms.length;
+    }
+
+    public int snapshotSize() {
+        return SNAPSHOT_BANDS + bandRms.length;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** A band turns active above {@code onRms} and inactive again below {@code offRms}. */
+    public void setThreshold(int band, double onRms, double offRms) {
+        onThreshold[band] = onRms;
+        offThreshold[band] = Math.min(onRms, offRms);
+    }
+
+    /** Adds one sample; returns true if it completed a new spectrum. */
+    public boolean add(long timestampNanos, float[] values, int count) {
+        if (count < axes) {
+            return false;
+        }
+        int base = ringPos * axes;
+        for (int a = 0; a < axes; a++) {
+            ring[base + a] = values[a];
+        }
+        times[ringPos] = timestampNanos;
+        ringPos = (ringPos + 1) & (size - 1);
+        if (filled < size) {
+            filled++;
+        }
+        if (++sinceHop < hop || filled < size) {
+            return false;
+        }
+        sinceHop = 0;
+        return analyze();
+    }
+
+    public void reset() {
+        filled = 0;
+        sinceHop = 0;
+        ringPos = 0;
+        hasSpectrum = false;
+        activeBands = 0;
+    }
+
+    private boolean analyze() {
+        // ringPos is now the oldest sample
+        long oldest = times[ringPos];
+        long newest = times[(ringPos - 1) & (size - 1)];
+        if (newest <= oldest) {
+            return false;
+        }
+        sampleRateHz = (size - 1) * 1e9 / (newest - oldest);
+        spectrumTime = newest;
+        Arrays.fill(power, 0.0);
+        for (int a = 0; a < axes; a += 2) {
+            boolean pair = a + 1 < axes;
+            load(a, re);
+            if (pair) {
+                load(a + 1, im);
+            } else {
+                Arrays.fill(im, 0.0);
+            }
+            fft();
+            accumulatePower(pair);
+        }
+
+        double scale = 2.0 / (size * windowSquareSum);
+        int half = size / 2;
+        double total = 0.0;
+        int peak = 0;
+        for (int k = 1; k <= half; k++) {
+            total += power[k];
+            if (power[k] > power[peak] || peak == 0) {
+                peak = k;
+            }
+        }
+        totalRms = Math.sqrt(total * scale);
+        double offset = 0.0;
+        if (peak > 1 && peak < half) {
+            double l = Math.sqrt(power[peak - 1]);
+            double c = Math.sqrt(power[peak]);
+            double r = Math.sqrt(power[peak + 1]);
+            double d = l - 2.0 * c + r;
+            if (d < 0.0) {
+                offset = 0.5 * (l - r) / d;
+            }
+        }
+        double binHz = sampleRateHz / size;
+        dominantHz = (peak + offset) * binHz;
+        // The Hann main lobe spreads a tone over three bins; a tone of amplitude A has
+        // mean square A^2 / 2
+        double lobe = power[peak] + power[peak - 1] + (peak < half ? power[peak + 1] : 0.0);
+        dominantAmplitude = Math.sqrt(2.0 * lobe * scale);
+
+        for (int b = 0; b < bandRms.length; b++) {
+            int from = Math.max(1, (int) Math.ceil(bandEdgesHz[b] / binHz));
+            int to = Math.min(half, (int) Math.ceil(bandEdgesHz[b + 1] / binHz) - 1);
+            double sum = 0.0;
+            for (int k = from; k <= to; k++) {
+                sum += power[k];
+            }
+            double rms = Math.sqrt(sum * scale);
+            bandRms[b] = rms;
+            int bit = 1 << b;
+            boolean active = (activeBands & bit) != 0;
+            if (!active && rms > onThreshold[b]) {
+                activeBands |= bit;
+                if (listener != null) {
+                    listener.onBandChanged(b, true, spectrumTime, rms);
+                }
+            } else if (active && rms < offThreshold[b]) {
+                activeBands &= ~bit;
+                if (listener != null) {
+                    listener.onBandChanged(b, false, spectrumTime, rms);
+                }
+            }
+        }
+        hasSpectrum = true;
+        return true;
+    }
+
+    /** Writes one axis of the frame, mean removed and windowed, in bit-reversed order. */
+    private void load(int axis, double[] out) {
+        double sum = 0.0;
+        for (int i = 0; i < size; i++) {
+            sum += ring[i * axes + axis];
+        }
+        double mean = sum / size;
+        for (int i = 0; i < size; i++) {
+            int slot = (ringPos + i) & (size - 1);
+            out[bitReverse[i]] = (ring[slot * axes + axis] - mean) * window[i];
+        }
+    }
+
+    /** In-place iterative radix-2 FFT of (re, im), input already in bit-reversed order. */
+    private void fft() {
+        int n = size;
+        for (int length = 2; length <= n; length <<= 1) {
+            int halfLength = length >> 1;
+            int stride = n / length;
+            for (int start = 0; start < n; start += length) {
+                for (int j = 0, t = 0; j < halfLength; j++, t += stride) {
+                    int i0 = start + j;
+                    int i1 = i0 + halfLength;
+                    double wr = cos[t];
+                    double wi = sin[t];
+                    double xr = re[i1] * wr - im[i1] * wi;
+                    double xi = re[i1] * wi + im[i1] * wr;
+                    re[i1] = re[i0] - xr;
+                    im[i1] = im[i0] - xi;
+                    re[i0] += xr;
+                    im[i0] += xi;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the one-sided power of the transform. For two real signals packed as x + iy,
+     * |X[k]|^2 + |Y[k]|^2 = (|Z[k]|^2 + |Z[n - k]|^2) / 2.
+     */
+    private void accumulatePower(boolean pair) {
+        int n = size;
+        for (int k = 1; k <= n / 2; k++) {
+            double p = re[k] * re[k] + im[k] * im[k];
+            if (pair) {
+                int m = n - k;
+                p = 0.5 * (p + re[m] * re[m] + im[m] * im[m]);
+            }
+            power[k] += p;
+        }
+    }
+
+    public boolean hasSpectrum() {
+        return hasSpectrum;
+    }
+
+    /** Timestamp of the newest sample in the last spectrum. */
+    public long spectrumTimeNanos() {
+        return spectrumTime;
+    }
+
+    public double sampleRateHz() {
+        return sampleRateHz;
+    }
+
+    public double dominantFrequencyHz() {
+        return dominantHz;
+    }
+
+    /** Amplitude of the dominant tone, summed over axes, in sensor units. */
+    public double dominantAmplitude() {
+        return dominantAmplitude;
+    }
+
+    /** RMS of everything above DC, in sensor units. */
+    public double rms() {
+        return totalRms;
+    }
+
+    public double bandRms(int band) {
+        return bandRms[band];
+    }
+
+    public boolean isBandActive(int band) {
+        return (activeBands & (1 << band)) != 0;
+    }
+
+    /** Power of bin {@code k} (0..size/2), unscaled; bin k is k * sampleRate / size Hz. */
+    public double binPower(int k) {
+        return power[k];
+    }
+
+    /** Writes the {@code SNAPSHOT_*} values and band RMS to {@code out[offset..offset+snapshotSize())}. */
+    public void writeSnapshot(float[] out, int offset) {
+        out[offset + SNAPSHOT_FREQUENCY] = (float) dominantHz;
+        out[offset + SNAPSHOT_AMPLITUDE] = (float) dominantAmplitude;
+        out[offset + SNAPSHOT_RMS] = (float) totalRms;
+        out[offset + SNAPSHOT_RATE] = (float) sampleRateHz;
+        out[offset + SNAPSHOT_ACTIVE_BANDS] = activeBands;
+        for (int b = 0; b < bandRms.length; b++) {
+            out[offset + SNAPSHOT_BANDS + b] = (float) bandRms[b];
+        }
+    }
+}
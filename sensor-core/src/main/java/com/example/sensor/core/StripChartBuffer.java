@@ -0,0 +1,143 @@
+package com.example.sensor.core;
+
+import java.util.Arrays;
+
+/**
+ * Streaming min/max decimation for a scrolling chart. The time window is split into
+ * one column per pixel; every sample only updates the min, max and last value of its
+ * column, so memory and drawing cost follow the chart width while any number of samples
+ * per column is absorbed and no spike between frames is lost. Columns are keyed by
+ * sample timestamp, all channels share one time axis, and the window ends at the newest
+ * column seen.
+ *
+ * <p>{@link #add} is called by one producer thread, {@link #snapshot} by the drawing
+ * thread; both hold the lock for O(1) and O(columns) work respectively.
+ */
+public class StripChartBuffer {
+    private final int channels;
+    private int columns;
+    private long columnNanos;
+    private float[] mins;
+    private float[] maxs;
+    private float[] lasts;
+    private long head = Long.MIN_VALUE;
+    private boolean changed = false;
+
+    public StripChartBuffer(int channels, int columns, long windowNanos) {
+        this.channels = channels;
+        setLayout(columns, windowNanos);
+    }
+
+    public int channels() {
+        return channels;
+    }
+
+    public synchronized int columns() {
+        return columns;
+    }
+
+    /** Changes the column count, typically to the view width in pixels. Clears the chart. */
+    public synchronized void setLayout(int columns, long windowNanos) {
+        if (columns <= 0 || windowNanos < columns) {
+            throw new IllegalArgumentException("bad layout: " + columns + " columns over " + windowNanos + " ns");
+        }
+        this.columns = columns;
+        this.columnNanos = windowNanos / columns;
+        mins = new float[channels * columns];
+        maxs = new float[channels * columns];
+        lasts = new float[channels * columns];
+        Arrays.fill(mins, Float.NaN);
+        head = Long.MIN_VALUE;
+        changed = true;
+    }
+
+    public synchronized void add(int channel, long timestampNanos, float value) {
+        long column = Math.floorDiv(timestampNanos, columnNanos);
+        if (advanceTo(column)) {
+            merge(channel, column, value, value, value);
+        }
+    }
+
+    /**
+     * Adds a rolled-up bucket, such as one from {@link SeriesHistory}, to every column it
+     * spans, so history coarser than a pixel still draws without gaps.
+     */
+    public synchronized void addBucket(int channel, long startNanos, long widthNanos, float min, float max, float last) {
+        long first = Math.floorDiv(startNanos, columnNanos);
+        long end = Math.floorDiv(startNanos + Math.max(widthNanos, 1L) - 1, columnNanos);
+        if (!advanceTo(end)) {
+            return;
+        }
+        for (long column = Math.max(first, head - columns + 1); column <= end; column++) {
+            merge(channel, column, min, max, last);
+        }
+    }
+
+    /** Scrolls the window so it ends at {@code column} or later; false if the column is too old. */
+    private boolean advanceTo(long column) {
+        if (head == Long.MIN_VALUE) {
+            head = column;
+        } else if (column > head) {
+            // Scroll: clear the columns being reused, at most one full window
+            long from = Math.max(head + 1, column - columns + 1);
+            for (long c = from; c <= column; c++) {
+                int slot = (int) Math.floorMod(c, (long) columns);
+                for (int ch = 0; ch < channels; ch++) {
+                    mins[ch * columns + slot] = Float.NaN;
+                }
+            }
+            head = column;
+        } else if (column <= head - columns) {
+            // Older than the window
+            return false;
+        }
+        return true;
+    }
+
+    private void merge(int channel, long column, float min, float max, float last) {
+        int i = channel * columns + (int) Math.floorMod(column, (long) columns);
+        if (Float.isNaN(mins[i])) {
+            mins[i] = min;
+            maxs[i] = max;
+        } else {
+            if (min < mins[i]) {
+                mins[i] = min;
+            }
+            if (max > maxs[i]) {
+                maxs[i] = max;
+            }
+        }
+        lasts[i] = last;
+        changed = true;
+    }
+
+    /** True if samples were added since the last snapshot. */
+    public synchronized boolean hasChanges() {
+        return changed;
+    }
+
+    /**
+     * Copies the window, oldest column first, into arrays of at least
+     * {@code channels() * columns()} entries laid out as {@code [channel * columns + column]}.
+     * Empty columns have a NaN min. Returns the number of columns copied.
+     */
+    public synchronized int snapshot(float[] outMins, float[] outMaxs, float[] outLasts) {
+        int n = columns;
+        if (outMins.length < channels * n) {
+            return 0;
+        }
+        int start = head == Long.MIN_VALUE ? 0 : (int) Math.floorMod(head + 1, (long) n);
+        for (int ch = 0; ch < channels; ch++) {
+            int base = ch * n;
+            int first = n - start;
+            System.arraycopy(mins, base + start, outMins, base, first);
+            System.arraycopy(mins, base, outMins, base + first, start);
+            System.arraycopy(maxs, base + start, outMaxs, base, first);
+            System.arraycopy(maxs, base, outMaxs, base + first, start);
+            System.arraycopy(lasts, base + start, outLasts, base, first);
+            System.arraycopy(lasts, base, outLasts, base + first, start);
+        }
+        changed = false;
+        return n;
+    }
+}
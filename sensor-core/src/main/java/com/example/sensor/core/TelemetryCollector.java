@@ -0,0 +1,211 @@
+package com.example.sensor.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Minimal receiving end for {@link TelemetryStreamer}, for a PC on the LAN or a
+ * loopback benchmark. Serves one TCP connection at a time, or receives datagrams,
+ * on its own thread; decodes every frame into an optional sink and counts samples,
+ * bytes and frames lost between sequence numbers. A corrupt datagram is counted and
+ * skipped; a corrupt TCP stream cannot be resynchronized, so its connection is dropped
+ * and the streamer reconnects. Counters may be read from any thread.
+ *
+ * <p>To watch a phone's stream from a PC: {@code ./gradlew :sensor-core:collector
+ * -Pport=9000 [-Pudp]}.
+ */
+public class TelemetryCollector implements Closeable {
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final TelemetryStreamer.Transport transport;
+    private final SampleSink sink;
+    private final ServerSocketChannel server;
+    private final DatagramChannel datagram;
+    private final TelemetryDecoder decoder = new TelemetryDecoder();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final Thread thread;
+    private volatile SocketChannel socket;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+    private boolean sequenced;
+    private int expectedSequence;
+
+    private volatile long samples;
+    private volatile long bytes;
+    private volatile long frames;
+    private volatile long lostFrames;
+    private volatile long malformedFrames;
+    private volatile long connections;
+
+    /** Binds {@code port} on all interfaces; 0 picks a free port, see {@link #port()}. */
+    public TelemetryCollector(int port, TelemetryStreamer.Transport transport, SampleSink sink) throws IOException {
+        this.transport = transport;
+        this.sink = sink != null ? sink : new SampleSink() {
+            @Override
+            public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+            }
+
+            @Override
+            public void onLocation(GpsFix fix) {
+            }
+        };
+        if (transport == TelemetryStreamer.Transport.UDP) {
+            server = null;
+            datagram = DatagramChannel.open();
+            datagram.bind(new InetSocketAddress(port));
+        } else {
+            datagram = null;
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(port));
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "TelemetryCollector");
+        thread.setDaemon(true);
+    }
+
+    public int port() throws IOException {
+        InetSocketAddress address = (InetSocketAddress) (server != null ? server.getLocalAddress() : datagram.getLocalAddress());
+        return address.getPort();
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public long samples() {
+        return samples;
+    }
+
+    /** Frame bytes received, headers included. */
+    public long bytes() {
+        return bytes;
+    }
+
+    public long frames() {
+        return frames;
+    }
+
+    /** Frames missing between the sequence numbers received. */
+    public long lostFrames() {
+        return lostFrames;
+    }
+
+    /** Datagrams that did not hold exactly one valid frame, and TCP streams dropped for a corrupt frame. */
+    public long malformedFrames() {
+        return malformedFrames;
+    }
+
+    public long connections() {
+        return connections;
+    }
+
+    /** What stopped the receiving thread, if it stopped before {@link #close()}; else null. */
+    public IOException failure() {
+        return failure;
+    }
+
+    private void serve() {
+        try {
+            if (transport == TelemetryStreamer.Transport.UDP) {
+                receiveDatagrams();
+            } else {
+                while (running) {
+                    SocketChannel accepted = server.accept();
+                    socket = accepted;
+                    connections++;
+                    try {
+                        receiveStream(accepted);
+                    } catch (IllegalArgumentException e) {
+                        malformedFrames++;
+                    } catch (IOException e) {
+                        // Connection lost; wait for the streamer to reconnect
+                    } finally {
+                        socket = null;
+                        accepted.close();
+                    }
+                }
+            }
+        } catch (ClosedChannelException e) {
+            // Closed by close()
+        } catch (IOException e) {
+            if (running) {
+                failure = e;
+            }
+        }
+    }
+
+    private void receiveStream(SocketChannel from) throws IOException {
+        buffer.clear();
+        while (running && from.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.remaining() >= TelemetryEncoder.HEADER_SIZE) {
+                int size = TelemetryDecoder.frameSize(buffer);
+                if (size < TelemetryEncoder.HEADER_SIZE || size > buffer.capacity()) {
+                    throw new IllegalArgumentException("frame size " + size);
+                }
+                if (buffer.remaining() < size) {
+                    break;
+                }
+                onFrame(size);
+            }
+            buffer.compact();
+        }
+    }
+
+    private void receiveDatagrams() throws IOException {
+        while (running) {
+            buffer.clear();
+            datagram.receive(buffer);
+            buffer.flip();
+            // One frame per datagram, never spanning two; anything else is damaged or foreign
+            try {
+                if (buffer.remaining() < TelemetryEncoder.HEADER_SIZE
+                        || TelemetryDecoder.frameSize(buffer) != buffer.remaining()) {
+                    malformedFrames++;
+                    continue;
+                }
+                onFrame(buffer.remaining());
+            } catch (IllegalArgumentException e) {
+                malformedFrames++;
+            }
+        }
+    }
+
+    private void onFrame(int size) {
+        samples += decoder.decode(buffer, sink);
+        bytes += size;
+        frames++;
+        int sequence = decoder.sequence();
+        if (sequenced && sequence - expectedSequence > 0) {
+            lostFrames += sequence - expectedSequence;
+        }
+        sequenced = true;
+        expectedSequence = sequence + 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (server != null) {
+            server.close();
+        }
+        SocketChannel s = socket;
+        if (s != null) {
+            s.close();
+        }
+        if (datagram != null) {
+            datagram.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.sensor.core;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/** Reads frames written by {@link TelemetryEncoder} back into a {@link SampleSink}. One decoder per thread. */
+public class TelemetryDecoder {
+    private final float[] values = new float[SampleBus.MAX_VALUES];
+    private final GpsFix fix = new GpsFix();
+    private final int[] types = new int[TelemetryEncoder.MAX_TYPES];
+    private final long[][] previous = new long[TelemetryEncoder.MAX_TYPES][SampleBus.MAX_VALUES];
+    private int typeCount;
+    private int sequence;
+
+    /** Size of the frame whose header starts at {@code frame}'s position; the header must be there. */
+    public static int frameSize(ByteBuffer frame) {
+        int start = frame.position();
+        frame.order(ByteOrder.LITTLE_ENDIAN);
+        if (frame.getInt(start) != TelemetryEncoder.MAGIC) {
+            throw new IllegalArgumentException("not a telemetry frame");
+        }
+        return TelemetryEncoder.HEADER_SIZE + frame.getInt(start + TelemetryEncoder.HEADER_PAYLOAD);
+    }
+
+    /**
+     * Decodes one whole frame from {@code frame}'s position, which is left after it, and
+     * delivers its samples in order. Returns the number of samples. A truncated or corrupt
+     * frame throws {@link IllegalArgumentException}, possibly after some of its samples
+     * were delivered; nothing past the frame's stated size is read.
+     */
+    public int decode(ByteBuffer frame, SampleSink sink) {
+        int start = frame.position();
+        if (frame.remaining() < TelemetryEncoder.HEADER_SIZE) {
+            throw new IllegalArgumentException("truncated header: " + frame.remaining() + " bytes");
+        }
+        int size = frameSize(frame);
+        if (size < TelemetryEncoder.HEADER_SIZE || size > frame.remaining()) {
+            throw new IllegalArgumentException("frame of " + size + " bytes in " + frame.remaining());
+        }
+        int end = start + size;
+        int limit = frame.limit();
+        frame.limit(end);
+        try {
+            return decodeSamples(frame, start, end, sink);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("samples overrun the frame");
+        } finally {
+            frame.limit(limit);
+            frame.position(end);
+        }
+    }
+
+    private int decodeSamples(ByteBuffer frame, int start, int end, SampleSink sink) {
+        int count = frame.getShort(start + TelemetryEncoder.HEADER_COUNT);
+        sequence = frame.getInt(start + TelemetryEncoder.HEADER_SEQUENCE);
+        long micros = Math.floorDiv(frame.getLong(start + TelemetryEncoder.HEADER_BASE), 1000L);
+        frame.position(start + TelemetryEncoder.HEADER_SIZE);
+        typeCount = 0;
+        long lat = 0L;
+        long lon = 0L;
+        long time = 0L;
+        for (int s = 0; s < count; s++) {
+            int type = frame.get();
+            micros += getSigned(frame);
+            long timestamp = micros * 1000L;
+            if (type == SensorTypes.LOCATION) {
+                int present = frame.get();
+                lat += getSigned(frame);
+                lon += getSigned(frame);
+                time += getSigned(frame);
+                fix.provider = "gps";
+                fix.latitude = lat / 1e7;
+                fix.longitude = lon / 1e7;
+                fix.time = time;
+                fix.elapsedRealtimeNanos = timestamp;
+                fix.hasAltitude = (present & TelemetryEncoder.HAS_ALTITUDE) != 0;
+                fix.altitude = fix.hasAltitude ? getSigned(frame) / 100.0 : 0.0;
+                fix.hasAccuracy = (present & TelemetryEncoder.HAS_ACCURACY) != 0;
+                fix.accuracy = fix.hasAccuracy ? getSigned(frame) / 100f : 0f;
+                fix.hasSpeed = (present & TelemetryEncoder.HAS_SPEED) != 0;
+                fix.speed = fix.hasSpeed ? getSigned(frame) / 100f : 0f;
+                fix.hasBearing = (present & TelemetryEncoder.HAS_BEARING) != 0;
+                fix.bearing = fix.hasBearing ? getSigned(frame) / 100f : 0f;
+                sink.onLocation(fix);
+            } else {
+                int packed = frame.get() & 0xFF;
+                int n = packed & 0xF;
+                if (n > values.length) {
+                    throw new IllegalArgumentException("value count " + n);
+                }
+                long[] last = previousValues(type);
+                double resolution = TelemetryEncoder.resolution(type);
+                for (int i = 0; i < n; i++) {
+                    last[i] += getSigned(frame);
+                    values[i] = (float) (last[i] * resolution);
+                }
+                sink.onSample(type, timestamp, packed >> 4, values, n);
+            }
+        }
+        if (frame.position() != end) {
+            throw new IllegalArgumentException("frame length mismatch");
+        }
+        return count;
+    }
+
+    /** Sequence number of the last decoded frame. */
+    public int sequence() {
+        return sequence;
+    }
+
+    // Mirrors TelemetryEncoder's slot assignment
+    private long[] previousValues(int type) {
+        for (int i = 0; i < typeCount; i++) {
+            if (types[i] == type) {
+                return previous[i];
+            }
+        }
+        int i = typeCount < TelemetryEncoder.MAX_TYPES ? typeCount++ : TelemetryEncoder.MAX_TYPES - 1;
+        types[i] = type;
+        Arrays.fill(previous[i], 0L);
+        return previous[i];
+    }
+
+    private static long getSigned(ByteBuffer in) {
+        long zigzag = 0L;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
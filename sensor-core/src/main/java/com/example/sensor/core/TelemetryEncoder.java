@@ -0,0 +1,193 @@
+package com.example.sensor.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Packs samples and fixes into self-contained binary frames for {@link TelemetryStreamer}.
+ * Values are quantized to a fixed resolution per sensor type and written as zigzag
+ * varint deltas from the previous sample of the same type in the frame, so a slowly
+ * changing channel costs one or two bytes per axis. Every frame starts from zero and
+ * decodes on its own, so a lost datagram loses only its own samples.
+ *
+ * <pre>
+ * header (24 bytes, little endian)
+ *   0  int   MAGIC
+ *   4  short VERSION
+ *   6  short sample count
+ *   8  int   frame sequence, +1 per frame sent or dropped
+ *  12  int   payload bytes after the header
+ *  16  long  timestamp of the first sample, elapsed-realtime ns
+ *
+ * record
+ *   byte    sensor type ({@link SensorTypes#LOCATION} for fixes)
+ *   varint  timestamp delta from the previous record, us, zigzag
+ *   sample: byte accuracy &lt;&lt; 4 | value count, then per value a zigzag varint delta
+ *           of value / {@link #resolution(int)}
+ *   fix:    byte presence bits (altitude, accuracy, speed, bearing), zigzag varint
+ *           deltas of latitude and longitude in 1e-7 degrees and of the UTC time in
+ *           ms, then each present field as a zigzag varint in cm, cm, cm/s and 0.01 deg
+ * </pre>
+ *
+ * Timestamps are carried to the microsecond. One encoder per thread.
+ */
+public class TelemetryEncoder {
+    public static final int MAGIC = 0x54534E53; // "SNST"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    /** Room a record may need; {@link #add} refuses a record when less is left. */
+    public static final int MAX_RECORD_BYTES = 1 + 10 + 1 + SampleBus.MAX_VALUES * 10;
+
+    static final int HEADER_COUNT = 6;
+    static final int HEADER_SEQUENCE = 8;
+    static final int HEADER_PAYLOAD = 12;
+    static final int HEADER_BASE = 16;
+    static final int HAS_ALTITUDE = 1;
+    static final int HAS_ACCURACY = 2;
+    static final int HAS_SPEED = 4;
+    static final int HAS_BEARING = 8;
+    static final int MAX_TYPES = 16;
+
+    private ByteBuffer frame;
+    private int start;
+    private int count;
+    private long base;
+    private long previousMicros;
+    // Previous quantized values per type, reset with every frame
+    private final int[] types = new int[MAX_TYPES];
+    private final long[][] previous = new long[MAX_TYPES][SampleBus.MAX_VALUES];
+    private int typeCount;
+    private long previousLat;
+    private long previousLon;
+    private long previousTime;
+
+    /** Value of one quantization step of {@code type}'s values. */
+    public static double resolution(int type) {
+        switch (type) {
+            case SensorTypes.PRESSURE: return 1e-3;
+            case SensorTypes.GYROSCOPE: return 1e-4;
+            case SensorTypes.ROTATION_VECTOR: return 1e-5;
+            case SensorTypes.MAGNETIC_FIELD: return 1e-2;
+            default: return 1e-3;
+        }
+    }
+
+    /** Starts a frame at {@code frame}'s position; the buffer is switched to little endian. */
+    public void begin(ByteBuffer frame, int sequence) {
+        this.frame = frame;
+        frame.order(ByteOrder.LITTLE_ENDIAN);
+        start = frame.position();
+        frame.putInt(start, MAGIC);
+        frame.putShort(start + 4, VERSION);
+        frame.putInt(start + HEADER_SEQUENCE, sequence);
+        frame.position(start + HEADER_SIZE);
+        count = 0;
+        typeCount = 0;
+        previousLat = 0L;
+        previousLon = 0L;
+        previousTime = 0L;
+    }
+
+    /** Returns false, writing nothing, if the frame has no room left or holds the most samples a frame may. */
+    public boolean add(int type, long timestampNanos, int accuracy, float[] values, int count) {
+        if (!beginRecord(type, timestampNanos)) {
+            return false;
+        }
+        int n = Math.min(count, SampleBus.MAX_VALUES);
+        frame.put((byte) ((accuracy & 0xF) << 4 | n));
+        long[] last = previousValues(type);
+        double scale = 1.0 / resolution(type);
+        for (int i = 0; i < n; i++) {
+            long q = Math.round(values[i] * scale);
+            putSigned(q - last[i]);
+            last[i] = q;
+        }
+        this.count++;
+        return true;
+    }
+
+    public boolean add(GpsFix fix) {
+        if (!beginRecord(SensorTypes.LOCATION, fix.elapsedRealtimeNanos)) {
+            return false;
+        }
+        int present = (fix.hasAltitude ? HAS_ALTITUDE : 0) | (fix.hasAccuracy ? HAS_ACCURACY : 0)
+                | (fix.hasSpeed ? HAS_SPEED : 0) | (fix.hasBearing ? HAS_BEARING : 0);
+        frame.put((byte) present);
+        long lat = Math.round(fix.latitude * 1e7);
+        long lon = Math.round(fix.longitude * 1e7);
+        putSigned(lat - previousLat);
+        putSigned(lon - previousLon);
+        putSigned(fix.time - previousTime);
+        previousLat = lat;
+        previousLon = lon;
+        previousTime = fix.time;
+        if (fix.hasAltitude) {
+            putSigned(Math.round(fix.altitude * 100.0));
+        }
+        if (fix.hasAccuracy) {
+            putSigned(Math.round(fix.accuracy * 100.0));
+        }
+        if (fix.hasSpeed) {
+            putSigned(Math.round(fix.speed * 100.0));
+        }
+        if (fix.hasBearing) {
+            putSigned(Math.round(fix.bearing * 100.0));
+        }
+        count++;
+        return true;
+    }
+
+    private boolean beginRecord(int type, long timestampNanos) {
+        if (type != (byte) type) {
+            throw new IllegalArgumentException("type does not fit a byte: " + type);
+        }
+        if (frame.remaining() < MAX_RECORD_BYTES || count == Short.MAX_VALUE) {
+            return false;
+        }
+        long micros = Math.floorDiv(timestampNanos, 1000L);
+        if (count == 0) {
+            base = timestampNanos;
+            previousMicros = micros;
+        }
+        frame.put((byte) type);
+        putSigned(micros - previousMicros);
+        previousMicros = micros;
+        return true;
+    }
+
+    private long[] previousValues(int type) {
+        for (int i = 0; i < typeCount; i++) {
+            if (types[i] == type) {
+                return previous[i];
+            }
+        }
+        // More types than slots: reuse the last one, which costs bytes but stays decodable
+        int i = typeCount < MAX_TYPES ? typeCount++ : MAX_TYPES - 1;
+        types[i] = type;
+        Arrays.fill(previous[i], 0L);
+        return previous[i];
+    }
+
+    private void putSigned(long v) {
+        long zigzag = (v << 1) ^ (v >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            frame.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        frame.put((byte) zigzag);
+    }
+
+    public int sampleCount() {
+        return count;
+    }
+
+    /** Completes the header; the frame occupies its start to the buffer's position. Returns its size. */
+    public int finish() {
+        int size = frame.position() - start;
+        frame.putShort(start + HEADER_COUNT, (short) count);
+        frame.putInt(start + HEADER_PAYLOAD, size - HEADER_SIZE);
+        frame.putLong(start + HEADER_BASE, base);
+        return size;
+    }
+}
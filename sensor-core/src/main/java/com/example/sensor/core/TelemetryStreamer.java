@@ -0,0 +1,395 @@
+package com.example.sensor.core;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Streams chosen sensor types and GPS fixes to a collector over non-blocking NIO, on
+ * its own thread. Samples come from a {@link SampleBus.Policy#DROP_OLDEST}
+ * subscription, so the producer never waits for the network. They are packed by a
+ * {@link TelemetryEncoder} into frames, flushed when full or after the flush interval,
+ * into a bounded queue of preallocated buffers. While the collector is slow or
+ * unreachable the oldest unsent frames are dropped and counted. A lost connection is
+ * retried with exponential backoff; TCP resends a partly written frame from its
+ * start on the new connection, so the stream stays frame-aligned.
+ *
+ * <p>Over UDP each frame is one datagram of at most {@link #DATAGRAM_FRAME_BYTES}.
+ * Frame sequence numbers let the collector count frames lost anywhere on the way.
+ * Counters may be read from any thread.
+ */
+public class TelemetryStreamer extends Thread implements SampleSink {
+    public enum Transport {
+        TCP,
+        UDP
+    }
+
+    public static final int STREAM_FRAME_BYTES = 16 * 1024;
+    /** Fits an Ethernet MTU, so datagrams are not fragmented. */
+    public static final int DATAGRAM_FRAME_BYTES = 1400;
+    public static final int DEFAULT_QUEUE_FRAMES = 32;
+    public static final long DEFAULT_FLUSH_NANOS = 50_000_000L;
+
+    private static final int MAX_PER_POLL = 512;
+    private static final long IDLE_NANOS = 5_000_000L;
+    private static final long MIN_BACKOFF_NANOS = 500_000_000L;
+    private static final long MAX_BACKOFF_NANOS = 30_000_000_000L;
+    private static final long CONNECT_TIMEOUT_NANOS = 5_000_000_000L;
+
+    private final String host;
+    private final int port;
+    private final Transport transport;
+    private final int[] types;
+    private final long flushNanos;
+    private final SampleBus bus;
+    private final SampleBus.Subscription subscription;
+    private final GpsFixSlot locationSlot = new GpsFixSlot();
+    private final TelemetryEncoder encoder = new TelemetryEncoder();
+    private volatile boolean running = true;
+
+    // Streamer thread only. Frames queued[head .. head + queued) are sealed and unsent
+    private final ByteBuffer[] frames;
+    private final int[] frameSamples;
+    private int head = 0;
+    private int queued = 0;
+    private ByteBuffer open;
+    private long openedNanos;
+    private int sequence = 0;
+    private long lastFixTime = Long.MIN_VALUE;
+    private Selector selector;
+    private ByteChannel channel;
+    private SelectionKey key;
+    private boolean connected;
+    private long backoffNanos = MIN_BACKOFF_NANOS;
+    private long retryAtNanos;
+    private long connectStartNanos;
+
+    private volatile long samplesSent;
+    private volatile long bytesSent;
+    private volatile long framesSent;
+    private volatile long framesDropped;
+    private volatile long samplesDropped;
+    private volatile long reconnects;
+    private volatile boolean up;
+
+    public TelemetryStreamer(SampleBus bus, String host, int port, Transport transport, int[] types) {
+        this(bus, host, port, transport, types, DEFAULT_QUEUE_FRAMES, DEFAULT_FLUSH_NANOS);
+    }
+
+    /**
+     * @param host        resolved on the streamer thread, so this may be a name
+     * @param types       sensor types to send; fixes are always sent
+     * @param queueFrames sealed frames kept while the collector is behind
+     */
+    public TelemetryStreamer(SampleBus bus, String host, int port, Transport transport, int[] types,
+                             int queueFrames, long flushNanos) {
+        super("TelemetryStreamer");
+        if (queueFrames < 2) {
+            throw new IllegalArgumentException("queue needs at least 2 frames: " + queueFrames);
+        }
+        for (int type : types) {
+            if (type != (byte) type) {
+                throw new IllegalArgumentException("type does not fit a byte: " + type);
+            }
+        }
+        this.host = host;
+        this.port = port;
+        this.transport = transport;
+        this.types = types.clone();
+        this.flushNanos = flushNanos;
+        int frameBytes = transport == Transport.UDP ? DATAGRAM_FRAME_BYTES : STREAM_FRAME_BYTES;
+        // One more than the queue: the frame being filled
+        frames = new ByteBuffer[queueFrames + 1];
+        frameSamples = new int[queueFrames + 1];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = ByteBuffer.allocateDirect(frameBytes);
+        }
+        this.bus = bus;
+        this.subscription = bus.subscribe(SampleBus.Policy.DROP_OLDEST);
+        setDaemon(true);
+    }
+
+    public SampleBus.Subscription subscription() {
+        return subscription;
+    }
+
+    /** Hands a fix to the streamer; call from one thread. Fixes not newer than the last sent are skipped. */
+    public void offerLocation(GpsFix fix) {
+        locationSlot.publish(fix);
+    }
+
+    public void shutdown() {
+        running = false;
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+    }
+
+    public boolean isConnected() {
+        return up;
+    }
+
+    public long samplesSent() {
+        return samplesSent;
+    }
+
+    public long bytesSent() {
+        return bytesSent;
+    }
+
+    public long framesSent() {
+        return framesSent;
+    }
+
+    /** Whole frames dropped because the queue was full. */
+    public long framesDropped() {
+        return framesDropped;
+    }
+
+    /** Samples lost in dropped frames plus those the bus subscription lost to overrun. */
+    public long samplesDropped() {
+        return samplesDropped + subscription.dropped();
+    }
+
+    public long reconnects() {
+        return reconnects;
+    }
+
+    @Override
+    public void run() {
+        try {
+            selector = Selector.open();
+            retryAtNanos = System.nanoTime();
+            openFrame(retryAtNanos);
+            while (running) {
+                long now = System.nanoTime();
+                if (channel == null && now - retryAtNanos >= 0) {
+                    connect(now);
+                }
+                int polled = subscription.poll(this, MAX_PER_POLL);
+                if (locationSlot.poll()) {
+                    onLocation(locationSlot.value());
+                }
+                now = System.nanoTime();
+                if (encoder.sampleCount() > 0 && now - openedNanos >= flushNanos) {
+                    seal(now);
+                }
+                boolean stalled = false;
+                if (connected) {
+                    stalled = !send();
+                } else if (channel != null && now - connectStartNanos >= CONNECT_TIMEOUT_NANOS) {
+                    disconnect(now);
+                }
+                if (polled == 0 || stalled) {
+                    await(now);
+                }
+            }
+            // One last try for what is queued; a slow collector does not hold up shutdown
+            if (encoder.sampleCount() > 0) {
+                seal(System.nanoTime());
+            }
+            if (connected) {
+                send();
+            }
+        } catch (IOException e) {
+            // Selector failure: nothing more can be sent
+        } finally {
+            close();
+            bus.unsubscribe(subscription);
+            try {
+                if (selector != null) {
+                    selector.close();
+                }
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    @Override
+    public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+        if (!accepts(type)) {
+            return;
+        }
+        if (!encoder.add(type, timestampNanos, accuracy, values, count)) {
+            seal(System.nanoTime());
+            encoder.add(type, timestampNanos, accuracy, values, count);
+        }
+    }
+
+    @Override
+    public void onLocation(GpsFix fix) {
+        // Bus fixes and offered fixes may be the same fix
+        if (fix.time <= lastFixTime) {
+            return;
+        }
+        lastFixTime = fix.time;
+        if (!encoder.add(fix)) {
+            seal(System.nanoTime());
+            encoder.add(fix);
+        }
+    }
+
+    private boolean accepts(int type) {
+        for (int t : types) {
+            if (t == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void openFrame(long now) {
+        open = frames[(head + queued) % frames.length];
+        open.clear();
+        encoder.begin(open, sequence++);
+        openedNanos = now;
+    }
+
+    /** Queues the open frame, dropping the oldest unstarted one if the queue is full, and opens the next. */
+    private void seal(long now) {
+        encoder.finish();
+        open.flip();
+        int slot = (head + queued) % frames.length;
+        frameSamples[slot] = encoder.sampleCount();
+        if (queued == frames.length - 1) {
+            // A TCP frame already partly written must be finished, so drop the one after it
+            int victim = frames[head].position() > 0 ? (head + 1) % frames.length : head;
+            framesDropped++;
+            samplesDropped += frameSamples[victim];
+            if (victim == head) {
+                head = (head + 1) % frames.length;
+            } else {
+                // Move the partly written frame up over the dropped one
+                ByteBuffer partial = frames[head];
+                int partialSamples = frameSamples[head];
+                frames[head] = frames[victim];
+                frameSamples[head] = frameSamples[victim];
+                frames[victim] = partial;
+                frameSamples[victim] = partialSamples;
+                head = victim;
+            }
+            queued--;
+        }
+        queued++;
+        openFrame(now);
+    }
+
+    /** Writes queued frames until the queue is empty (true) or the channel is full (false). */
+    private boolean send() {
+        try {
+            while (queued > 0) {
+                ByteBuffer frame = frames[head];
+                int written = channel.write(frame);
+                if (written > 0) {
+                    bytesSent += written;
+                }
+                if (frame.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return false;
+                }
+                framesSent++;
+                samplesSent += frameSamples[head];
+                head = (head + 1) % frames.length;
+                queued--;
+            }
+            key.interestOps(0);
+            backoffNanos = MIN_BACKOFF_NANOS;
+            return true;
+        } catch (IOException e) {
+            disconnect(System.nanoTime());
+            return false;
+        }
+    }
+
+    private void connect(long now) {
+        connectStartNanos = now;
+        try {
+            InetSocketAddress address = new InetSocketAddress(host, port);
+            if (address.isUnresolved()) {
+                throw new IOException("cannot resolve " + host);
+            }
+            if (transport == Transport.UDP) {
+                DatagramChannel datagram = DatagramChannel.open();
+                channel = datagram;
+                datagram.configureBlocking(false);
+                datagram.connect(address);
+                key = datagram.register(selector, 0);
+                connected = true;
+            } else {
+                SocketChannel socket = SocketChannel.open();
+                channel = socket;
+                socket.configureBlocking(false);
+                socket.socket().setTcpNoDelay(true);
+                connected = socket.connect(address);
+                key = socket.register(selector, connected ? 0 : SelectionKey.OP_CONNECT);
+            }
+            up = connected;
+        } catch (IOException | RuntimeException e) {
+            disconnect(now);
+        }
+    }
+
+    private void await(long now) throws IOException {
+        long timeout = IDLE_NANOS;
+        if (encoder.sampleCount() > 0) {
+            timeout = Math.min(timeout, Math.max(0L, flushNanos - (now - openedNanos)));
+        }
+        if (channel == null) {
+            timeout = Math.min(timeout, Math.max(0L, retryAtNanos - now));
+        }
+        int ready = selector.select(Math.max(1L, timeout / 1_000_000L));
+        if (ready == 0 || key == null || !key.isValid()) {
+            selector.selectedKeys().clear();
+            return;
+        }
+        selector.selectedKeys().clear();
+        if (!connected && key.isConnectable()) {
+            try {
+                if (((SocketChannel) channel).finishConnect()) {
+                    connected = true;
+                    up = true;
+                    key.interestOps(0);
+                }
+            } catch (IOException e) {
+                disconnect(System.nanoTime());
+            }
+        }
+    }
+
+    private void disconnect(long now) {
+        if (channel != null) {
+            reconnects++;
+        }
+        close();
+        // The next connection starts with whole frames
+        if (queued > 0) {
+            frames[head].rewind();
+        }
+        retryAtNanos = now + backoffNanos;
+        backoffNanos = Math.min(MAX_BACKOFF_NANOS, backoffNanos * 2);
+    }
+
+    private void close() {
+        connected = false;
+        up = false;
+        if (key != null) {
+            key.cancel();
+            key = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,497 @@
+package com.example.sensor.core;
+
+import java.util.Arrays;
+
+/**
+ * GPS track kept as primitive columns and simplified as fixes arrive. Coordinates are
+ * stored as 1e-7 degree integers (about 1 cm), with the fix time, altitude and the
+ * distance along the track, 28 bytes per kept point.
+ *
+ * <p>Simplification is an opening window: the newest fix is always the last point,
+ * and replaces its predecessor whenever every fix dropped since the last kept point
+ * stays within the tolerance of the segment to the new fix. The window is bounded, so
+ * a fix costs at most {@value #MAX_WINDOW} distance checks, and no dropped fix is
+ * farther than the tolerance from the stored track.
+ *
+ * <p>Finished segments are indexed by the 0.01 degree tiles (about 1 km) their bounds
+ * cover, so bounding-box and nearest-point queries only look at the tiles they touch.
+ * Distances are cumulative and cost nothing to query. Fixes not newer than the last
+ * one are ignored, so the same fix may arrive from several sources. Thread safe.
+ */
+public class TrackStore implements SampleSink {
+    public static final double DEFAULT_TOLERANCE_METERS = 5.0;
+    /** Fixes reported less accurately than this are not kept. */
+    public static final float DEFAULT_MAX_ACCURACY_METERS = 50f;
+
+    private static final int MAX_WINDOW = 32;
+    private static final double E7 = 1e7;
+    private static final double METERS_PER_DEGREE = 111_319.49;
+    private static final int TILE_E7 = 100_000;
+    /** Segments covering more tiles than this, such as jumps after a lost fix, are kept in a list scanned by every query. */
+    private static final int MAX_TILES_PER_SEGMENT = 16;
+    private static final int BYTES_PER_POINT = 4 + 4 + 8 + 4 + 8;
+    private static final int BYTES_PER_ENTRY = 4 + 4;
+    private static final int BYTES_PER_TILE = 8 + 4;
+
+    private final double tolerance;
+    private final float maxAccuracy;
+
+    // Points; the last one is the newest fix and may still be replaced
+    private int[] latE7;
+    private int[] lonE7;
+    private long[] times;
+    private float[] altitudes;
+    private double[] distances;
+    private int size = 0;
+    private int fixCount = 0;
+    private int minLatE7 = Integer.MAX_VALUE;
+    private int minLonE7 = Integer.MAX_VALUE;
+    private int maxLatE7 = Integer.MIN_VALUE;
+    private int maxLonE7 = Integer.MIN_VALUE;
+
+    // Fixes dropped since the last kept point, the anchor at size - 2
+    private final int[] windowLatE7 = new int[MAX_WINDOW];
+    private final int[] windowLonE7 = new int[MAX_WINDOW];
+    private int windowSize = 0;
+
+    // Open-addressing table from tile to the head of its chain of entries
+    private long[] tileKeys = new long[64];
+    private int[] tileHeads = new int[64];
+    private int tileCount = 0;
+    private int[] entrySegments = new int[64];
+    private int[] entryNext = new int[64];
+    private int entryCount = 0;
+    private int[] wideSegments = new int[8];
+    private int wideCount = 0;
+
+    public TrackStore() {
+        this(DEFAULT_TOLERANCE_METERS, DEFAULT_MAX_ACCURACY_METERS, 1024);
+    }
+
+    /**
+     * @param toleranceMeters    largest distance of a dropped fix from the stored track
+     * @param maxAccuracyMeters  fixes with a worse reported accuracy are ignored
+     * @param initialCapacity    points before the columns first grow
+     */
+    public TrackStore(double toleranceMeters, float maxAccuracyMeters, int initialCapacity) {
+        if (!(toleranceMeters >= 0.0) || initialCapacity < 2) {
+            throw new IllegalArgumentException("bad tolerance or capacity");
+        }
+        this.tolerance = toleranceMeters;
+        this.maxAccuracy = maxAccuracyMeters;
+        latE7 = new int[initialCapacity];
+        lonE7 = new int[initialCapacity];
+        times = new long[initialCapacity];
+        altitudes = new float[initialCapacity];
+        distances = new double[initialCapacity];
+        Arrays.fill(tileHeads, -1);
+    }
+
+    @Override
+    public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+        // Fixes only
+    }
+
+    @Override
+    public synchronized void onLocation(GpsFix fix) {
+        if (fix.hasAccuracy && fix.accuracy > maxAccuracy) {
+            return;
+        }
+        if (size > 0 && fix.time <= times[size - 1]) {
+            return;
+        }
+        int lat = (int) Math.round(fix.latitude * E7);
+        int lon = (int) Math.round(fix.longitude * E7);
+        float altitude = fix.hasAltitude ? (float) fix.altitude : Float.NaN;
+        fixCount++;
+        if (size >= 2 && windowSize < MAX_WINDOW && tailRedundant(lat, lon)) {
+            windowLatE7[windowSize] = latE7[size - 1];
+            windowLonE7[windowSize] = lonE7[size - 1];
+            windowSize++;
+            set(size - 1, lat, lon, fix.time, altitude);
+        } else {
+            if (size >= 2) {
+                // The tail is kept: the segment from the anchor to it is final
+                index(size - 2);
+            }
+            windowSize = 0;
+            if (size == latE7.length) {
+                grow();
+            }
+            size++;
+            set(size - 1, lat, lon, fix.time, altitude);
+        }
+        minLatE7 = Math.min(minLatE7, lat);
+        minLonE7 = Math.min(minLonE7, lon);
+        maxLatE7 = Math.max(maxLatE7, lat);
+        maxLonE7 = Math.max(maxLonE7, lon);
+    }
+
+    /** Whether the tail and every fix dropped before it lie within tolerance of anchor to (lat, lon). */
+    private boolean tailRedundant(int lat, int lon) {
+        int a = size - 2;
+        int aLat = latE7[a];
+        int aLon = lonE7[a];
+        double scale = lonScale(aLat);
+        double bx = (lon - aLon) * scale;
+        double by = lat - aLat;
+        double limit = tolerance * E7 / METERS_PER_DEGREE;
+        limit *= limit;
+        if (segmentDistanceSquared((lonE7[size - 1] - aLon) * scale, latE7[size - 1] - aLat, bx, by) > limit) {
+            return false;
+        }
+        for (int i = 0; i < windowSize; i++) {
+            if (segmentDistanceSquared((windowLonE7[i] - aLon) * scale, windowLatE7[i] - aLat, bx, by) > limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void set(int i, int lat, int lon, long time, float altitude) {
+        latE7[i] = lat;
+        lonE7[i] = lon;
+        times[i] = time;
+        altitudes[i] = altitude;
+        distances[i] = i == 0 ? 0.0 : distances[i - 1] + meters(latE7[i - 1], lonE7[i - 1], lat, lon);
+    }
+
+    private void grow() {
+        int capacity = latE7.length * 2;
+        latE7 = Arrays.copyOf(latE7, capacity);
+        lonE7 = Arrays.copyOf(lonE7, capacity);
+        times = Arrays.copyOf(times, capacity);
+        altitudes = Arrays.copyOf(altitudes, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+    }
+
+    /** Fixes accepted, including those the simplification dropped. */
+    public synchronized int fixCount() {
+        return fixCount;
+    }
+
+    /** Points kept; segment {@code i} runs from point {@code i} to {@code i + 1}. */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized double latitude(int i) {
+        return latE7[i] / E7;
+    }
+
+    public synchronized double longitude(int i) {
+        return lonE7[i] / E7;
+    }
+
+    /** UTC wall-clock time of point {@code i}, ms. */
+    public synchronized long time(int i) {
+        return times[i];
+    }
+
+    /** Altitude of point {@code i}, m; NaN if the fix had none. */
+    public synchronized float altitude(int i) {
+        return altitudes[i];
+    }
+
+    /** Length of the whole track, m. */
+    public synchronized double distanceMeters() {
+        return size == 0 ? 0.0 : distances[size - 1];
+    }
+
+    /** Length of the track between points {@code from} and {@code to}, m. */
+    public synchronized double distanceMeters(int from, int to) {
+        return distances[to] - distances[from];
+    }
+
+    /** Writes min latitude, min longitude, max latitude, max longitude; false if the track is empty. */
+    public synchronized boolean bounds(double[] out) {
+        if (size == 0) {
+            return false;
+        }
+        out[0] = minLatE7 / E7;
+        out[1] = minLonE7 / E7;
+        out[2] = maxLatE7 / E7;
+        out[3] = maxLonE7 / E7;
+        return true;
+    }
+
+    /**
+     * Writes to {@code out} the segments whose bounds intersect the box, in no particular
+     * order; returns how many there are, which may exceed {@code out.length}.
+     */
+    public synchronized int segmentsIn(double minLat, double minLon, double maxLat, double maxLon, int[] out) {
+        int qMinLat = (int) Math.floor(minLat * E7);
+        int qMinLon = (int) Math.floor(minLon * E7);
+        int qMaxLat = (int) Math.ceil(maxLat * E7);
+        int qMaxLon = (int) Math.ceil(maxLon * E7);
+        int count = 0;
+        int ty0 = tile(qMinLat);
+        int tx0 = tile(qMinLon);
+        int ty1 = tile(qMaxLat);
+        int tx1 = tile(qMaxLon);
+        long tiles = (long) (ty1 - ty0 + 1) * (tx1 - tx0 + 1);
+        if (tiles > size) {
+            // A box wider than the track: scanning the segments is cheaper than the tiles
+            for (int s = 0; s + 1 < size; s++) {
+                if (boundsIntersect(s, qMinLat, qMinLon, qMaxLat, qMaxLon)) {
+                    count = add(out, count, s);
+                }
+            }
+            return count;
+        }
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                for (int e = head(ty, tx); e >= 0; e = entryNext[e]) {
+                    int s = entrySegments[e];
+                    // Counted once, in the first tile it shares with the box
+                    if (firstSharedTile(s, ty, tx, ty0, tx0)
+                            && boundsIntersect(s, qMinLat, qMinLon, qMaxLat, qMaxLon)) {
+                        count = add(out, count, s);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < wideCount; i++) {
+            if (boundsIntersect(wideSegments[i], qMinLat, qMinLon, qMaxLat, qMaxLon)) {
+                count = add(out, count, wideSegments[i]);
+            }
+        }
+        // The newest segment is not indexed until its end is final
+        if (size >= 2 && boundsIntersect(size - 2, qMinLat, qMinLon, qMaxLat, qMaxLon)) {
+            count = add(out, count, size - 2);
+        }
+        return count;
+    }
+
+    /**
+     * Finds the closest point of the track within {@code radiusMeters} of (lat, lon).
+     * Returns its segment, or -1 if none is that close, and writes the distance in
+     * meters and the latitude and longitude of the closest point to {@code out}. A track
+     * of one point is treated as a segment of length zero.
+     */
+    public synchronized int nearest(double lat, double lon, double radiusMeters, double[] out) {
+        if (size == 0) {
+            return -1;
+        }
+        int pLat = (int) Math.round(lat * E7);
+        int pLon = (int) Math.round(lon * E7);
+        double scale = lonScale(pLat);
+        // Long and clamped: near the poles or for a huge radius the box spans the globe
+        long dLat = (long) Math.min(1e10, Math.ceil(radiusMeters * E7 / METERS_PER_DEGREE));
+        long dLon = (long) Math.min(1e10, Math.ceil(dLat / Math.max(scale, 1e-6)));
+        long ty0 = tile(pLat - dLat);
+        long tx0 = tile(pLon - dLon);
+        long ty1 = tile(pLat + dLat);
+        long tx1 = tile(pLon + dLon);
+        double limit = radiusMeters * E7 / METERS_PER_DEGREE;
+        double best = limit * limit;
+        int bestSegment = -1;
+        if (size == 1) {
+            double dx = (lonE7[0] - pLon) * scale;
+            double dy = latE7[0] - pLat;
+            if (dx * dx + dy * dy <= best) {
+                writeNearest(out, Math.sqrt(dx * dx + dy * dy), latE7[0], lonE7[0]);
+                return 0;
+            }
+            return -1;
+        }
+        long tiles = (ty1 - ty0 + 1) * (tx1 - tx0 + 1);
+        if (tiles > size) {
+            for (int s = 0; s + 1 < size; s++) {
+                double d = distanceSquared(s, pLat, pLon, scale);
+                if (d <= best) {
+                    best = d;
+                    bestSegment = s;
+                }
+            }
+        } else {
+            for (int ty = (int) ty0; ty <= ty1; ty++) {
+                for (int tx = (int) tx0; tx <= tx1; tx++) {
+                    for (int e = head(ty, tx); e >= 0; e = entryNext[e]) {
+                        double d = distanceSquared(entrySegments[e], pLat, pLon, scale);
+                        if (d <= best) {
+                            best = d;
+                            bestSegment = entrySegments[e];
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < wideCount; i++) {
+                double d = distanceSquared(wideSegments[i], pLat, pLon, scale);
+                if (d <= best) {
+                    best = d;
+                    bestSegment = wideSegments[i];
+                }
+            }
+            double d = distanceSquared(size - 2, pLat, pLon, scale);
+            if (d <= best) {
+                best = d;
+                bestSegment = size - 2;
+            }
+        }
+        if (bestSegment >= 0) {
+            // Closest point on the segment, by the same projection as the distance
+            int a = bestSegment;
+            double bx = (lonE7[a + 1] - lonE7[a]) * scale;
+            double by = latE7[a + 1] - latE7[a];
+            double px = (pLon - lonE7[a]) * scale;
+            double py = pLat - latE7[a];
+            double t = projection(px, py, bx, by);
+            writeNearest(out, Math.sqrt(best), latE7[a] + t * by, lonE7[a] + t * (lonE7[a + 1] - lonE7[a]));
+        }
+        return bestSegment;
+    }
+
+    private static void writeNearest(double[] out, double distanceE7, double latE7, double lonE7) {
+        out[0] = distanceE7 * METERS_PER_DEGREE / E7;
+        out[1] = latE7 / E7;
+        out[2] = lonE7 / E7;
+    }
+
+    /** Heap held by the columns and the index, excluding object headers. */
+    public synchronized long memoryBytes() {
+        return (long) latE7.length * BYTES_PER_POINT
+                + (long) entrySegments.length * BYTES_PER_ENTRY
+                + (long) tileKeys.length * BYTES_PER_TILE
+                + wideSegments.length * 4L
+                + MAX_WINDOW * 8L;
+    }
+
+    private void index(int s) {
+        int ty0 = tile(Math.min(latE7[s], latE7[s + 1]));
+        int ty1 = tile(Math.max(latE7[s], latE7[s + 1]));
+        int tx0 = tile(Math.min(lonE7[s], lonE7[s + 1]));
+        int tx1 = tile(Math.max(lonE7[s], lonE7[s + 1]));
+        if ((long) (ty1 - ty0 + 1) * (tx1 - tx0 + 1) > MAX_TILES_PER_SEGMENT) {
+            if (wideCount == wideSegments.length) {
+                wideSegments = Arrays.copyOf(wideSegments, wideCount * 2);
+            }
+            wideSegments[wideCount++] = s;
+            return;
+        }
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                int slot = tileSlot(ty, tx, true);
+                if (entryCount == entrySegments.length) {
+                    entrySegments = Arrays.copyOf(entrySegments, entryCount * 2);
+                    entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+                }
+                entrySegments[entryCount] = s;
+                entryNext[entryCount] = tileHeads[slot];
+                tileHeads[slot] = entryCount++;
+            }
+        }
+    }
+
+    private int head(int ty, int tx) {
+        int slot = tileSlot(ty, tx, false);
+        return slot < 0 ? -1 : tileHeads[slot];
+    }
+
+    /** Slot of the tile in the table; with {@code create}, adds it if missing, else returns -1. */
+    private int tileSlot(int ty, int tx, boolean create) {
+        long key = ((long) ty << 32) | (tx & 0xFFFFFFFFL);
+        int mask = tileKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (tileHeads[slot] >= 0) {
+            if (tileKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return -1;
+        }
+        if (2 * (tileCount + 1) > tileKeys.length) {
+            rehash();
+            return tileSlot(ty, tx, true);
+        }
+        tileKeys[slot] = key;
+        tileCount++;
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = tileKeys;
+        int[] oldHeads = tileHeads;
+        tileKeys = new long[oldKeys.length * 2];
+        tileHeads = new int[oldKeys.length * 2];
+        Arrays.fill(tileHeads, -1);
+        int mask = tileKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] >= 0) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (tileHeads[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                tileKeys[slot] = oldKeys[i];
+                tileHeads[slot] = oldHeads[i];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tile(int e7) {
+        return Math.floorDiv(e7, TILE_E7);
+    }
+
+    private static long tile(long e7) {
+        return Math.floorDiv(e7, TILE_E7);
+    }
+
+    private boolean firstSharedTile(int s, int ty, int tx, int qty0, int qtx0) {
+        int sty0 = tile(Math.min(latE7[s], latE7[s + 1]));
+        int stx0 = tile(Math.min(lonE7[s], lonE7[s + 1]));
+        return ty == Math.max(sty0, qty0) && tx == Math.max(stx0, qtx0);
+    }
+
+    private boolean boundsIntersect(int s, int minLat, int minLon, int maxLat, int maxLon) {
+        return Math.max(latE7[s], latE7[s + 1]) >= minLat && Math.min(latE7[s], latE7[s + 1]) <= maxLat
+                && Math.max(lonE7[s], lonE7[s + 1]) >= minLon && Math.min(lonE7[s], lonE7[s + 1]) <= maxLon;
+    }
+
+    private static int add(int[] out, int count, int s) {
+        if (count < out.length) {
+            out[count] = s;
+        }
+        return count + 1;
+    }
+
+    /** Squared distance, in 1e-7 degrees of latitude, from the point to segment {@code s}. */
+    private double distanceSquared(int s, int pLat, int pLon, double scale) {
+        return segmentDistanceSquared((pLon - lonE7[s]) * scale, pLat - latE7[s],
+                (lonE7[s + 1] - lonE7[s]) * scale, latE7[s + 1] - latE7[s]);
+    }
+
+    /** Squared distance from (px, py) to the segment from the origin to (bx, by). */
+    private static double segmentDistanceSquared(double px, double py, double bx, double by) {
+        double t = projection(px, py, bx, by);
+        double dx = px - t * bx;
+        double dy = py - t * by;
+        return dx * dx + dy * dy;
+    }
+
+    private static double projection(double px, double py, double bx, double by) {
+        double length2 = bx * bx + by * by;
+        if (length2 == 0.0) {
+            return 0.0;
+        }
+        return Math.max(0.0, Math.min(1.0, (px * bx + py * by) / length2));
+    }
+
+    /** Longitude units per latitude unit of ground distance at this latitude. */
+    private static double lonScale(int latE7) {
+        return Math.cos(Math.toRadians(latE7 / E7));
+    }
+
+    /** Equirectangular distance, m; exact enough over the length of one segment. */
+    private static double meters(int lat1, int lon1, int lat2, int lon2) {
+        double dx = (lon2 - lon1) * Math.cos(Math.toRadians((lat1 + (double) lat2) / 2 / E7));
+        double dy = lat2 - lat1;
+        return Math.sqrt(dx * dx + dy * dy) * METERS_PER_DEGREE / E7;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.sensor.core;
+
+/**
+ * Vibration spectrum of the accelerometer and gyro, published to a slot for a reader on
+ * another thread. Kept apart from {@link DisplayPipeline} and fed by its own bus
+ * consumer, so an FFT never holds up the display path. onSample calls must come from
+ * one thread; fixes are ignored.
+ */
+public class VibrationMonitor implements SampleSink {
+    /** Vibration bands, Hz: handling and walking, then three machinery ranges. */
+    public static final double[] BAND_EDGES_HZ = {1.0, 5.0, 20.0, 50.0, 500.0};
+    /** Bands watched for machinery vibration; the first one is ordinary motion. */
+    public static final int FIRST_MACHINE_BAND = 1;
+    public static final int SNAPSHOT_SIZE = SpectrumAnalyzer.SNAPSHOT_BANDS + BAND_EDGES_HZ.length - 1;
+    private static final int SPECTRUM_SIZE = 256;
+    private static final int SPECTRUM_HOP = 64;
+    // Band RMS thresholds with hysteresis
+    private static final double ACCEL_ON = 0.5;
+    private static final double ACCEL_OFF = 0.3;
+    private static final double GYRO_ON = 0.1;
+    private static final double GYRO_OFF = 0.06;
+
+    /** accelerometer then gyro {@link SpectrumAnalyzer#writeSnapshot}, each SNAPSHOT_SIZE long */
+    private final LatestValueSlot slot = new LatestValueSlot(2 * SNAPSHOT_SIZE);
+    private final SpectrumAnalyzer accelSpectrum = new SpectrumAnalyzer(SPECTRUM_SIZE, SPECTRUM_HOP, 3, BAND_EDGES_HZ);
+    private final SpectrumAnalyzer gyroSpectrum = new SpectrumAnalyzer(SPECTRUM_SIZE, SPECTRUM_HOP, 3, BAND_EDGES_HZ);
+
+    public VibrationMonitor() {
+        for (int b = FIRST_MACHINE_BAND; b < BAND_EDGES_HZ.length - 1; b++) {
+            accelSpectrum.setThreshold(b, ACCEL_ON, ACCEL_OFF);
+            gyroSpectrum.setThreshold(b, GYRO_ON, GYRO_OFF);
+        }
+    }
+
+    /**
+     * Receives accelerometer band threshold crossings on the onSample thread; bands are
+     * those of {@link #BAND_EDGES_HZ}.
+     */
+    public void setListener(SpectrumAnalyzer.Listener listener) {
+        accelSpectrum.setListener(listener);
+    }
+
+    @Override
+    public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+        if (type == SensorTypes.ACCELEROMETER) {
+            if (accelSpectrum.add(timestampNanos, values, count)) {
+                publish();
+            }
+        } else if (type == SensorTypes.GYROSCOPE) {
+            if (count >= 3 && gyroSpectrum.add(timestampNanos, values, count)) {
+                publish();
+            }
+        }
+    }
+
+    @Override
+    public void onLocation(GpsFix fix) {
+    }
+
+    private void publish() {
+        float[] v = slot.editBuffer();
+        accelSpectrum.writeSnapshot(v, 0);
+        gyroSpectrum.writeSnapshot(v, SNAPSHOT_SIZE);
+        slot.publish();
+    }
+
+    public LatestValueSlot slot() {
+        return slot;
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.sensor.core;
+
+/**
+ * Mean, variance, min, max and quantiles over the last {@code capacity} samples, or
+ * fewer if {@code maxAgeNanos} evicts them first. Each update is O(1) amortized:
+ * <ul>
+ * <li>mean and variance follow Welford's recurrences for insert and removal, on values
+ *     shifted by a reference so a large offset such as 1013 hPa does not swamp the
+ *     variance;</li>
+ * <li>min and max come from monotonic deques of ring positions;</li>
+ * <li>quantiles come from a {@link QuantileSketch} of the same shifted values, which
+ *     supports removal.</li>
+ * </ul>
+ * Once per {@code capacity} removals the window is rescanned: the reference moves to
+ * the window mean, the moments are recomputed with Kahan summation and the sketch is
+ * rebuilt, which clears rounding drift and keeps quantile errors relative to the
+ * spread of the window rather than to how far the signal has wandered.
+ * Nothing is allocated after construction. Single thread only.
+ */
+public class WindowStats {
+    /** Values written by {@link #writeSnapshot}. */
+    public static final int SNAPSHOT_COUNT = 0;
+    public static final int SNAPSHOT_MEAN = 1;
+    public static final int SNAPSHOT_STDDEV = 2;
+    public static final int SNAPSHOT_MIN = 3;
+    public static final int SNAPSHOT_MAX = 4;
+    public static final int SNAPSHOT_P50 = 5;
+    public static final int SNAPSHOT_P90 = 6;
+    public static final int SNAPSHOT_P99 = 7;
+    public static final int SNAPSHOT_SIZE = 8;
+
+    private final int capacity;
+    private final long maxAgeNanos;
+    private final long[] times;
+    private final double[] values;
+    /** Sequence numbers of the window; slot = sequence % capacity. */
+    private long head = 0;
+    private long tail = 0;
+
+    private boolean hasReference = false;
+    private double reference;
+    private double mean;
+    private double m2;
+    private int removalsSinceRecompute = 0;
+
+    private final long[] minDeque;
+    private final long[] maxDeque;
+    private int minFront, minSize;
+    private int maxFront, maxSize;
+
+    private final QuantileSketch sketch;
+
+    public WindowStats(int capacity) {
+        this(capacity, Long.MAX_VALUE, new QuantileSketch());
+    }
+
+    public WindowStats(int capacity, long maxAgeNanos, QuantileSketch sketch) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.maxAgeNanos = maxAgeNanos;
+        this.sketch = sketch;
+        times = new long[capacity];
+        values = new double[capacity];
+        minDeque = new long[capacity];
+        maxDeque = new long[capacity];
+    }
+
+    public void add(long timestampNanos, double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (!hasReference) {
+            reference = value;
+            hasReference = true;
+        }
+        if (tail - head == capacity) {
+            removeOldest();
+        }
+        if (maxAgeNanos != Long.MAX_VALUE) {
+            while (tail > head && timestampNanos - times[(int) (head % capacity)] > maxAgeNanos) {
+                removeOldest();
+            }
+        }
+        long sequence = tail++;
+        int slot = (int) (sequence % capacity);
+        times[slot] = timestampNanos;
+        values[slot] = value;
+
+        double x = value - reference;
+        int n = (int) (tail - head);
+        double delta = x - mean;
+        mean += delta / n;
+        m2 += delta * (x - mean);
+        sketch.add(x);
+
+        while (minSize > 0 && values[slotOf(minDeque, minFront, minSize - 1)] >= value) {
+            minSize--;
+        }
+        minDeque[(minFront + minSize++) % capacity] = sequence;
+        while (maxSize > 0 && values[slotOf(maxDeque, maxFront, maxSize - 1)] <= value) {
+            maxSize--;
+        }
+        maxDeque[(maxFront + maxSize++) % capacity] = sequence;
+    }
+
+    private int slotOf(long[] deque, int front, int i) {
+        return (int) (deque[(front + i) % capacity] % capacity);
+    }
+
+    private void removeOldest() {
+        long sequence = head++;
+        int slot = (int) (sequence % capacity);
+        double x = values[slot] - reference;
+        int n = (int) (tail - head);
+        if (n == 0) {
+            mean = 0.0;
+            m2 = 0.0;
+        } else {
+            double delta = x - mean;
+            mean -= delta / n;
+            m2 -= delta * (x - mean);
+        }
+        sketch.remove(x);
+        if (minSize > 0 && minDeque[minFront] == sequence) {
+            minFront = (minFront + 1) % capacity;
+            minSize--;
+        }
+        if (maxSize > 0 && maxDeque[maxFront] == sequence) {
+            maxFront = (maxFront + 1) % capacity;
+            maxSize--;
+        }
+        if (++removalsSinceRecompute >= capacity) {
+            recompute();
+        }
+    }
+
+    /** Re-centers on the window mean and rebuilds the moments and the sketch exactly. */
+    private void recompute() {
+        removalsSinceRecompute = 0;
+        int n = (int) (tail - head);
+        if (n == 0) {
+            mean = 0.0;
+            m2 = 0.0;
+            return;
+        }
+        double sum = 0.0;
+        double compensation = 0.0;
+        for (long s = head; s < tail; s++) {
+            // Kahan summation
+            double y = values[(int) (s % capacity)] - reference - compensation;
+            double t = sum + y;
+            compensation = (t - sum) - y;
+            sum = t;
+        }
+        reference += sum / n;
+        mean = 0.0;
+        double squares = 0.0;
+        sketch.clear();
+        for (long s = head; s < tail; s++) {
+            double d = values[(int) (s % capacity)] - reference;
+            mean += d;
+            squares += d * d;
+            sketch.add(d);
+        }
+        mean /= n;
+        m2 = squares - n * mean * mean;
+    }
+
+    public void clear() {
+        head = tail = 0;
+        hasReference = false;
+        mean = m2 = 0.0;
+        removalsSinceRecompute = 0;
+        minSize = maxSize = 0;
+        sketch.clear();
+    }
+
+    public int count() {
+        return (int) (tail - head);
+    }
+
+    public double mean() {
+        return count() == 0 ? Double.NaN : reference + mean;
+    }
+
+    /** Sample variance (n - 1 denominator). */
+    public double variance() {
+        int n = count();
+        return n < 2 ? 0.0 : Math.max(0.0, m2 / (n - 1));
+    }
+
+    public double stdDev() {
+        return Math.sqrt(variance());
+    }
+
+    public double min() {
+        return minSize == 0 ? Double.NaN : values[slotOf(minDeque, minFront, 0)];
+    }
+
+    public double max() {
+        return maxSize == 0 ? Double.NaN : values[slotOf(maxDeque, maxFront, 0)];
+    }
+
+    /**
+     * Approximate quantile. The sketch holds distances from the reference, so the error
+     * is relative to that distance rather than to the value itself.
+     */
+    public double quantile(double q) {
+        return count() == 0 ? Double.NaN : reference + sketch.quantile(q);
+    }
+
+    /** Writes the {@code SNAPSHOT_*} values to {@code out[offset..offset+SNAPSHOT_SIZE)}. */
+    public void writeSnapshot(float[] out, int offset) {
+        out[offset + SNAPSHOT_COUNT] = count();
+        out[offset + SNAPSHOT_MEAN] = (float) mean();
+        out[offset + SNAPSHOT_STDDEV] = (float) stdDev();
+        out[offset + SNAPSHOT_MIN] = (float) min();
+        out[offset + SNAPSHOT_MAX] = (float) max();
+        out[offset + SNAPSHOT_P50] = (float) quantile(0.5);
+        out[offset + SNAPSHOT_P90] = (float) quantile(0.9);
+        out[offset + SNAPSHOT_P99] = (float) quantile(0.99);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.sensor.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveRatePolicyTest {
+    private static final long MS = 1_000_000L;
+    private static final long S = 1_000L * MS;
+    private static final long START = 100L * S;
+    private static final int PRESSURE_LOW_US = 200_000;
+    private static final int PRESSURE_HIGH_US = 20_000;
+    private static final int GYRO_LOW_US = 20_000;
+    private static final int GYRO_HIGH_US = CaptureConfig.SAMPLING_PERIOD_FASTEST;
+    private static final long NEVER = -1L;
+
+    private AdaptiveRatePolicy policy;
+    private final float[] values = new float[3];
+
+    @Before
+    public void setUp() {
+        policy = new AdaptiveRatePolicy(2);
+        policy.track(SensorTypes.PRESSURE, PRESSURE_LOW_US, PRESSURE_HIGH_US, 0.04, 0.02, 2 * S);
+        policy.track(SensorTypes.GYROSCOPE, GYRO_LOW_US, GYRO_HIGH_US, 0.1, 0.04, S);
+    }
+
+    private int period(int type) {
+        CaptureConfig config = policy.writeConfig(new CaptureConfig());
+        return config.samplingPeriodUs(config.indexOf(type));
+    }
+
+    private boolean high(int type) {
+        return period(type) == (type == SensorTypes.PRESSURE ? PRESSURE_HIGH_US : GYRO_HIGH_US);
+    }
+
+    /**
+     * Feeds {@code type} from {@code from} every {@code step} until {@code until} inclusive,
+     * alternating +/- {@code amplitude} around a steady level, and stops at the first sample
+     * that changes its rate. Returns that sample's time, or {@link #NEVER}.
+     */
+    private long feed(int type, long from, long until, long step, double amplitude) {
+        boolean wasHigh = high(type);
+        int i = 0;
+        for (long t = from; t <= until; t += step, i++) {
+            double offset = i % 2 == 0 ? amplitude : -amplitude;
+            if (type == SensorTypes.PRESSURE) {
+                values[0] = (float) (1000.0 + offset);
+                policy.onSample(type, t, 3, values, 1);
+            } else {
+                // A vector: activity is its length
+                values[0] = (float) (1.0 + offset);
+                values[1] = 0f;
+                values[2] = 0f;
+                policy.onSample(type, t, 3, values, 3);
+            }
+            if (high(type) != wasHigh) {
+                return t;
+            }
+        }
+        return NEVER;
+    }
+
+    private void detector(int type, long t) {
+        values[0] = 1f;
+        policy.onSample(type, t, 3, values, 1);
+    }
+
+    @Test
+    public void startsHighAndAsksForAFirstRequest() {
+        assertTrue(high(SensorTypes.PRESSURE));
+        assertTrue(high(SensorTypes.GYROSCOPE));
+        assertTrue(policy.takeChanged());
+        assertFalse(policy.takeChanged());
+        // The hardware detectors are always asked for, so they can wake the policy
+        CaptureConfig config = policy.writeConfig(new CaptureConfig());
+        assertTrue(config.indexOf(SensorTypes.SIGNIFICANT_MOTION) >= 0);
+        assertTrue(config.indexOf(SensorTypes.STATIONARY_DETECT) >= 0);
+        assertEquals(0, config.maxReportLatencyUs(config.indexOf(SensorTypes.PRESSURE)));
+    }
+
+    @Test
+    public void dropsToLowOnlyAfterStayingQuietForTheHoldTime() {
+        policy.takeChanged();
+        long low = feed(SensorTypes.PRESSURE, START, START + 10 * S, 20 * MS, 0.0);
+        assertEquals(START + AdaptiveRatePolicy.HOLD_NANOS, low);
+        assertEquals(PRESSURE_LOW_US, period(SensorTypes.PRESSURE));
+        assertTrue(policy.takeChanged());
+        // The gyro has seen nothing and keeps its rate
+        assertTrue(high(SensorTypes.GYROSCOPE));
+    }
+
+    @Test
+    public void risesAboveTheEnterThresholdNoSoonerThanTheMinimumDwell() {
+        long low = feed(SensorTypes.PRESSURE, START, START + 10 * S, 20 * MS, 0.0);
+        policy.takeChanged();
+        // Moving at once: the deviation passes 0.04 well within a second, the dwell holds it
+        long high = feed(SensorTypes.PRESSURE, low + 20 * MS, low + 10 * S, 20 * MS, 0.1);
+        assertEquals(low + AdaptiveRatePolicy.MIN_DWELL_NANOS, high);
+        assertTrue(policy.takeChanged());
+    }
+
+    @Test
+    public void staysPutBetweenTheExitAndEnterThresholds() {
+        long low = feed(SensorTypes.PRESSURE, START, START + 10 * S, 20 * MS, 0.0);
+        // Low: a deviation of 0.03 is under the enter threshold
+        assertEquals(NEVER, feed(SensorTypes.PRESSURE, low + 20 * MS, low + 20 * S, 20 * MS, 0.03));
+        long t = low + 20 * S;
+
+        long high = feed(SensorTypes.PRESSURE, t + 20 * MS, t + 10 * S, 20 * MS, 0.1);
+        assertTrue(high != NEVER);
+        // High: 0.03 is over the exit threshold, so the quiet timer never starts
+        assertEquals(NEVER, feed(SensorTypes.PRESSURE, high + 20 * MS, high + 30 * S, 20 * MS, 0.03));
+        t = high + 30 * S;
+
+        // Quiet again: the window forgets the 0.03 within its 2 s, then the hold runs
+        long back = feed(SensorTypes.PRESSURE, t + 20 * MS, t + 20 * S, 20 * MS, 0.0);
+        assertTrue("dropped at " + (back - t) / MS + " ms", back - t >= AdaptiveRatePolicy.HOLD_NANOS);
+        assertTrue("dropped at " + (back - t) / MS + " ms", back - t <= AdaptiveRatePolicy.HOLD_NANOS + 2 * S);
+    }
+
+    @Test
+    public void aHiddenSensorStaysLowWhateverItsSignal() {
+        policy.setVisible(SensorTypes.GYROSCOPE, false);
+        long low = feed(SensorTypes.GYROSCOPE, START, START + S, 5 * MS, 0.5);
+        assertEquals(START, low);
+        assertEquals(NEVER, feed(SensorTypes.GYROSCOPE, low + 5 * MS, low + 10 * S, 5 * MS, 0.5));
+        // Not even the motion detector raises it
+        detector(SensorTypes.SIGNIFICANT_MOTION, low + 10 * S + MS);
+        assertFalse(high(SensorTypes.GYROSCOPE));
+        assertTrue(high(SensorTypes.PRESSURE));
+
+        policy.setVisible(SensorTypes.GYROSCOPE, true);
+        long t = low + 11 * S;
+        assertEquals(t, feed(SensorTypes.GYROSCOPE, t, t + 10 * S, 5 * MS, 0.5));
+    }
+
+    @Test
+    public void hardwareDetectorsSwitchEveryVisibleSensorAtOnce() {
+        detector(SensorTypes.STATIONARY_DETECT, START);
+        assertFalse(high(SensorTypes.PRESSURE));
+        assertFalse(high(SensorTypes.GYROSCOPE));
+        policy.takeChanged();
+
+        // Ignores the dwell and needs no signal of its own
+        detector(SensorTypes.SIGNIFICANT_MOTION, START + MS);
+        assertTrue(high(SensorTypes.PRESSURE));
+        assertTrue(high(SensorTypes.GYROSCOPE));
+        assertTrue(policy.takeChanged());
+
+        detector(SensorTypes.STATIONARY_DETECT, START + 2 * MS);
+        assertFalse(high(SensorTypes.PRESSURE));
+        assertFalse(high(SensorTypes.GYROSCOPE));
+        assertTrue(policy.takeChanged());
+        assertFalse(policy.takeChanged());
+    }
+
+    @Test
+    public void reportsTheEventsSavedAgainstStayingHigh() {
+        // 5 s at 50 Hz until the hold drops the rate, then 10 s at 5 Hz
+        long low = feed(SensorTypes.PRESSURE, START, START + 10 * S, 20 * MS, 0.0);
+        assertEquals(START + 5 * S, low);
+        assertEquals(NEVER, feed(SensorTypes.PRESSURE, low + 200 * MS, low + 10 * S, 200 * MS, 0.0));
+
+        LatestValueSlot slot = policy.reportSlot();
+        assertTrue(slot.poll());
+        float[] report = slot.values();
+        assertEquals(SensorTypes.PRESSURE, (int) report[AdaptiveRatePolicy.REPORT_TYPE]);
+        assertEquals(PRESSURE_LOW_US, (int) report[AdaptiveRatePolicy.REPORT_PERIOD_US]);
+        assertEquals(0f, report[AdaptiveRatePolicy.REPORT_HIGH], 0f);
+        assertEquals(251 + 50, (int) report[AdaptiveRatePolicy.REPORT_EVENTS]);
+        assertEquals(1, (int) report[AdaptiveRatePolicy.REPORT_SWITCHES]);
+        // 250 events in 5 s measured at the high rate: 50 Hz over the 10 s spent low would
+        // have been 500 events instead of the 51 counted there
+        assertEquals(301 + 500 - 51, report[AdaptiveRatePolicy.REPORT_BASELINE_EVENTS], 1e-3f);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.sensor.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AltitudeEstimatorTest {
+    private static final long MS = 1_000_000L;
+    private static final double PRESSURE = 1000.0;
+    private static final double ELLIPSOID = 150.0;
+    // A geoid 40 m above the ellipsoid
+    private static final double MSL = 110.0;
+
+    private AltitudeEstimator estimator;
+    private final GpsFix fix = new GpsFix();
+    private long t;
+
+    @Before
+    public void setUp() {
+        estimator = new AltitudeEstimator();
+        fix.hasAltitude = true;
+        fix.altitude = ELLIPSOID;
+        fix.hasAccuracy = true;
+        fix.accuracy = 3f;
+        t = 1_000 * MS;
+    }
+
+    /** {@code seconds} of 25 Hz pressure samples with {@link #fix} once a second. */
+    private void run(int seconds) {
+        for (int i = 0; i < seconds * 25; i++) {
+            t += 40 * MS;
+            estimator.onPressure(t, PRESSURE);
+            if (i % 25 == 0) {
+                fix.elapsedRealtimeNanos = t;
+                estimator.onLocation(fix);
+            }
+            assertEquals(0.0, estimator.relativeAltitude(), 0.05);
+        }
+    }
+
+    @Test
+    public void ellipsoidHeightsAnchorTheFilterAndSaySo() {
+        run(60);
+        assertTrue(estimator.hasGpsReference());
+        assertTrue(estimator.isEllipsoidReferenced());
+        assertEquals(ELLIPSOID, estimator.altitude(), 1.0);
+        assertEquals(BarometricAltitude.seaLevelPressure(PRESSURE, estimator.altitude()),
+                estimator.seaLevelPressure(), 1e-9);
+    }
+
+    @Test
+    public void aSeaLevelFixTakesOverAtOnceAndEllipsoidHeightsAreThenIgnored() {
+        run(60);
+        fix.hasMslAltitude = true;
+        fix.mslAltitude = MSL;
+        run(3);
+        assertFalse(estimator.isEllipsoidReferenced());
+        assertEquals(MSL, estimator.altitude(), 2.0);
+
+        run(60);
+        double settled = estimator.altitude();
+        assertEquals(MSL, settled, 1.0);
+        // Some fixes come without the conversion; they must not pull the altitude back up
+        fix.hasMslAltitude = false;
+        run(60);
+        assertFalse(estimator.isEllipsoidReferenced());
+        assertEquals(settled, estimator.altitude(), 0.5);
+    }
+
+    @Test
+    public void noFixKeepsTheStandardAtmosphere() {
+        fix.hasAltitude = false;
+        run(10);
+        assertFalse(estimator.hasGpsReference());
+        assertFalse(estimator.isEllipsoidReferenced());
+        assertEquals(BarometricAltitude.pressureToAltitude(PRESSURE), estimator.altitude(), 0.5);
+        assertEquals(BarometricAltitude.STANDARD_SEA_LEVEL_HPA, estimator.seaLevelPressure(), 0.0);
+    }
+}
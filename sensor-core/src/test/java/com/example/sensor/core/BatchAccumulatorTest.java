@@ -0,0 +1,90 @@
+package com.example.sensor.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchAccumulatorTest {
+    /** Copies out what each batch held, since the batch itself is reused. */
+    private static final class Batches implements BatchSink {
+        final List<long[]> timestamps = new ArrayList<>();
+        final List<float[]> firstValues = new ArrayList<>();
+
+        @Override
+        public void onBatch(SampleBatch batch) {
+            long[] ts = new long[batch.size()];
+            float[] first = new float[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                ts[i] = batch.timestamp(i);
+                first[i] = batch.value(i, 0);
+            }
+            timestamps.add(ts);
+            firstValues.add(first);
+        }
+    }
+
+    private final float[] values = new float[3];
+
+    private void add(BatchAccumulator accumulator, long t) {
+        values[0] = t;
+        accumulator.add(SensorTypes.GYROSCOPE, t, 3, values, 3);
+    }
+
+    @Test
+    public void holdsABurstUntilDrained() {
+        Batches sink = new Batches();
+        BatchAccumulator accumulator = new BatchAccumulator(16, sink);
+        for (long t = 1; t <= 10; t++) {
+            add(accumulator, t);
+        }
+        assertEquals(0, sink.timestamps.size());
+
+        accumulator.drain();
+
+        assertEquals(1, sink.timestamps.size());
+        assertEquals(10, sink.timestamps.get(0).length);
+        assertEquals(10L, sink.timestamps.get(0)[9]);
+        assertEquals(10f, sink.firstValues.get(0)[9], 0f);
+        assertEquals(1, accumulator.batches());
+        assertEquals(10, accumulator.maxBatchSize());
+    }
+
+    @Test
+    public void emitsFullBatchesWithoutLosingTheSampleThatDidNotFit() {
+        Batches sink = new Batches();
+        BatchAccumulator accumulator = new BatchAccumulator(4, sink);
+        for (long t = 1; t <= 10; t++) {
+            add(accumulator, t);
+        }
+        accumulator.drain();
+
+        assertEquals(3, sink.timestamps.size());
+        assertEquals(4, sink.timestamps.get(0).length);
+        assertEquals(4, sink.timestamps.get(1).length);
+        assertEquals(2, sink.timestamps.get(2).length);
+        long expected = 1;
+        for (long[] batch : sink.timestamps) {
+            for (long t : batch) {
+                assertEquals(expected++, t);
+            }
+        }
+        assertEquals(10, accumulator.samples());
+        assertEquals(3, accumulator.batches());
+        assertEquals(4, accumulator.maxBatchSize());
+    }
+
+    @Test
+    public void drainingAnEmptyBurstEmitsNothing() {
+        Batches sink = new Batches();
+        BatchAccumulator accumulator = new BatchAccumulator(4, sink);
+        accumulator.drain();
+        add(accumulator, 1);
+        accumulator.drain();
+        accumulator.drain();
+        assertEquals(1, sink.timestamps.size());
+        assertEquals(1, accumulator.batches());
+    }
+}
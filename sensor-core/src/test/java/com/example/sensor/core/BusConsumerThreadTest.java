@@ -0,0 +1,90 @@
+package com.example.sensor.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BusConsumerThreadTest {
+    /** Slow, and fails if two threads are ever inside it at once. */
+    private static final class SingleThreadSink implements SampleSink {
+        final AtomicInteger inside = new AtomicInteger();
+        volatile int samples;
+        volatile boolean overlapped;
+
+        @Override
+        public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+            if (inside.incrementAndGet() != 1) {
+                overlapped = true;
+            }
+            try {
+                Thread.sleep(1L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            samples++;
+            inside.decrementAndGet();
+        }
+
+        @Override
+        public void onLocation(GpsFix fix) {
+        }
+    }
+
+    private final float[] values = new float[3];
+
+    @Test
+    public void shutdownAndJoinReturnsOnlyOnceTheQueueIsDrained() {
+        SampleBus bus = new SampleBus(256);
+        SingleThreadSink sink = new SingleThreadSink();
+        final AtomicInteger shutdowns = new AtomicInteger();
+        BusConsumerThread consumer = new BusConsumerThread("test", bus, SampleBus.Policy.BLOCK, sink) {
+            @Override
+            protected void onShutdown() {
+                shutdowns.incrementAndGet();
+            }
+        };
+        consumer.start();
+        for (int i = 0; i < 100; i++) {
+            bus.publish(SensorTypes.GYROSCOPE, i, 3, values, 3);
+        }
+
+        assertTrue(consumer.shutdownAndJoin(10_000L));
+        assertFalse(consumer.isAlive());
+        assertEquals(100, sink.samples);
+        assertEquals(1, shutdowns.get());
+    }
+
+    @Test
+    public void aNewConsumerStartedAfterTheJoinNeverOverlapsTheOldOne() {
+        SampleBus bus = new SampleBus(64);
+        SingleThreadSink sink = new SingleThreadSink();
+        for (int round = 0; round < 5; round++) {
+            BusConsumerThread consumer = new BusConsumerThread("test", bus, SampleBus.Policy.DROP_OLDEST, sink);
+            consumer.start();
+            for (int i = 0; i < 50; i++) {
+                bus.publish(SensorTypes.GYROSCOPE, i, 3, values, 3);
+            }
+            assertTrue(consumer.shutdownAndJoin(10_000L));
+        }
+        assertFalse(sink.overlapped);
+    }
+
+    @Test
+    public void joinTimesOutWhileTheSinkIsStillBusy() {
+        SampleBus bus = new SampleBus(256);
+        SingleThreadSink sink = new SingleThreadSink();
+        BusConsumerThread consumer = new BusConsumerThread("test", bus, SampleBus.Policy.BLOCK, sink);
+        consumer.start();
+        for (int i = 0; i < 200; i++) {
+            bus.publish(SensorTypes.GYROSCOPE, i, 3, values, 3);
+        }
+        // 200 samples at 1 ms each cannot drain in 1 ms
+        assertFalse(consumer.shutdownAndJoin(1L));
+        assertTrue(consumer.shutdownAndJoin(10_000L));
+        assertEquals(200, sink.samples);
+    }
+}
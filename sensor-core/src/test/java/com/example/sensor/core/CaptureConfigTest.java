@@ -0,0 +1,85 @@
+package com.example.sensor.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CaptureConfigTest {
+    @Test
+    public void setReplacesAnExistingSensor() {
+        CaptureConfig config = new CaptureConfig()
+                .set(SensorTypes.GYROSCOPE, 5_000, 1_000_000)
+                .set(SensorTypes.GYROSCOPE, 20_000, 0);
+        assertEquals(1, config.size());
+        assertEquals(20_000, config.samplingPeriodUs(0));
+        assertEquals(0, config.maxReportLatencyUs(0));
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        CaptureConfig config = new CaptureConfig();
+        for (int type = 1; type <= 20; type++) {
+            config.set(type, type * 1000, type);
+        }
+        assertEquals(20, config.size());
+        for (int type = 1; type <= 20; type++) {
+            int i = config.indexOf(type);
+            assertEquals(type * 1000, config.samplingPeriodUs(i));
+            assertEquals(type, config.maxReportLatencyUs(i));
+        }
+    }
+
+    @Test
+    public void removeKeepsTheOthers() {
+        CaptureConfig config = new CaptureConfig()
+                .set(SensorTypes.PRESSURE, 1, 2)
+                .set(SensorTypes.GYROSCOPE, 3, 4)
+                .set(SensorTypes.ROTATION_VECTOR, 5, 6)
+                .remove(SensorTypes.PRESSURE)
+                .remove(SensorTypes.LOCATION);
+        assertEquals(2, config.size());
+        assertEquals(-1, config.indexOf(SensorTypes.PRESSURE));
+        assertEquals(3, config.samplingPeriodUs(config.indexOf(SensorTypes.GYROSCOPE)));
+        assertEquals(6, config.maxReportLatencyUs(config.indexOf(SensorTypes.ROTATION_VECTOR)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativePeriods() {
+        new CaptureConfig().set(SensorTypes.GYROSCOPE, -1, 0);
+    }
+
+    @Test
+    public void mergeTakesTheShorterPeriodAndLatencyOfEachSensor() {
+        CaptureConfig capture = new CaptureConfig()
+                .set(SensorTypes.PRESSURE, 100_000, 10_000_000)
+                .set(SensorTypes.GYROSCOPE, 5_000, 5_000_000);
+        CaptureConfig screen = new CaptureConfig()
+                .set(SensorTypes.GYROSCOPE, 20_000, 0)
+                .set(SensorTypes.ROTATION_VECTOR, 20_000, 0);
+
+        CaptureConfig merged = new CaptureConfig().merge(capture).merge(screen);
+
+        assertEquals(3, merged.size());
+        int p = merged.indexOf(SensorTypes.PRESSURE);
+        assertEquals(100_000, merged.samplingPeriodUs(p));
+        assertEquals(10_000_000, merged.maxReportLatencyUs(p));
+        // The capture's rate and the screen's immediacy
+        int g = merged.indexOf(SensorTypes.GYROSCOPE);
+        assertEquals(5_000, merged.samplingPeriodUs(g));
+        assertEquals(0, merged.maxReportLatencyUs(g));
+        int r = merged.indexOf(SensorTypes.ROTATION_VECTOR);
+        assertEquals(20_000, merged.samplingPeriodUs(r));
+        // The inputs are left alone
+        assertEquals(5_000_000, capture.maxReportLatencyUs(capture.indexOf(SensorTypes.GYROSCOPE)));
+        assertEquals(20_000, screen.samplingPeriodUs(screen.indexOf(SensorTypes.GYROSCOPE)));
+    }
+
+    @Test
+    public void setMaxReportLatencyAppliesToEverySensor() {
+        CaptureConfig config = CaptureConfig.defaults().setMaxReportLatencyUs(0);
+        for (int i = 0; i < config.size(); i++) {
+            assertEquals(0, config.maxReportLatencyUs(i));
+        }
+        assertEquals(CaptureConfig.defaults().size(), config.size());
+    }
+}
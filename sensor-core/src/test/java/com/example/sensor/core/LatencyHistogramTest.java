@@ -0,0 +1,91 @@
+package com.example.sensor.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    private static final int LAST_BUCKET = LatencyHistogram.bucket(Long.MAX_VALUE);
+
+    @Test
+    public void valuesBelowSixteenHaveABucketEach() {
+        for (int v = 0; v < LatencyHistogram.SUB_BUCKETS; v++) {
+            assertEquals(v, LatencyHistogram.bucket(v));
+            assertEquals(v, LatencyHistogram.value(v));
+        }
+    }
+
+    @Test
+    public void eachPowerOfTwoStartsANewRowOfSubBuckets() {
+        for (int k = 4; k <= 40; k++) {
+            long power = 1L << k;
+            int bucket = LatencyHistogram.bucket(power);
+            assertEquals("2^" + k, (k - 3) * LatencyHistogram.SUB_BUCKETS, bucket);
+            assertEquals("2^" + k, bucket - 1, LatencyHistogram.bucket(power - 1));
+            long width = Math.max(1L, power >> 4);
+            assertEquals("2^" + k, power + width / 2, LatencyHistogram.value(bucket));
+            // The last sub-bucket of the row ends just below the next power
+            assertEquals("2^" + k, bucket + LatencyHistogram.SUB_BUCKETS - 1,
+                    LatencyHistogram.bucket(2 * power - 1));
+        }
+    }
+
+    @Test
+    public void everythingFromTheTopOfTwoToTheFortyCountsInTheLastBucket() {
+        long start = (1L << 40) + 15 * (1L << 36);
+        assertEquals(LAST_BUCKET, LatencyHistogram.bucket(start));
+        assertEquals(LAST_BUCKET - 1, LatencyHistogram.bucket(start - 1));
+        assertEquals(LAST_BUCKET, LatencyHistogram.bucket(1L << 41));
+        assertEquals(LAST_BUCKET, LatencyHistogram.bucket(1L << 62));
+        assertEquals(start + (1L << 35), LatencyHistogram.value(LAST_BUCKET));
+    }
+
+    @Test
+    public void bucketValuesAreWithinOneSubBucketOfTheRecordedValue() {
+        int previous = 0;
+        for (long v = 1; v < (1L << 40); v += 1 + v / 7) {
+            int bucket = LatencyHistogram.bucket(v);
+            assertTrue(bucket >= previous);
+            previous = bucket;
+            long value = LatencyHistogram.value(bucket);
+            assertTrue(v + " -> " + value, Math.abs(value - v) <= v / LatencyHistogram.SUB_BUCKETS);
+            // A bucket's midpoint falls in that bucket
+            assertEquals(bucket, LatencyHistogram.bucket(value));
+        }
+    }
+
+    @Test
+    public void percentilesUseTheNearestRankAndNeverExceedTheMax() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0L, h.percentileNanos(0.5));
+        for (int v = 1; v <= 100; v++) {
+            h.record(v);
+        }
+        assertEquals(100, h.count());
+        assertEquals(50.5, h.meanNanos(), 1e-9);
+        assertEquals(1L, h.percentileNanos(0.0));
+        assertEquals(1L, h.percentileNanos(0.01));
+        // Rank 50 is the value 50, in the 50..51 bucket
+        assertEquals(51L, h.percentileNanos(0.5));
+        assertEquals(LatencyHistogram.value(LatencyHistogram.bucket(91)), h.percentileNanos(0.9));
+        // Rank 100 lands in the 100..103 bucket, reported as the max
+        assertEquals(100L, h.percentileNanos(1.0));
+        assertEquals(100L, h.percentileNanos(2.0));
+    }
+
+    @Test
+    public void negativeAndHugeRecordingsAreClamped() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-5L);
+        h.record(1L << 50);
+        assertEquals(0L, h.percentileNanos(0.5));
+        assertEquals(LatencyHistogram.value(LAST_BUCKET), h.percentileNanos(1.0));
+        assertEquals(1L << 50, h.maxNanos());
+
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0L, h.maxNanos());
+        assertEquals(0L, h.percentileNanos(1.0));
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.sensor.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrientationFilterTest {
+    private static final long GYRO_PERIOD_NANOS = 5_000_000L;
+    /** Rotation vectors arrive at a quarter of the gyro rate, as at SENSOR_DELAY_GAME. */
+    private static final int GYRO_PER_ROTATION_VECTOR = 4;
+    private static final long START_NANOS = 1_000_000_000L;
+
+    /**
+     * A phone lying flat and turning about the vertical: yaw(t) = 0.5 t + 0.3 sin(2 pi 0.2 t)
+     * radians. The gyro reads the true rate plus a constant bias and noise; the rotation
+     * vector reads the true yaw plus noise.
+     */
+    private static final class TurningTrace {
+        final Random random = new Random(42L);
+        final double gyroBias;
+        final double gyroNoise;
+        final double yawNoise;
+
+        TurningTrace(double gyroBias, double gyroNoise, double yawNoise) {
+            this.gyroBias = gyroBias;
+            this.gyroNoise = gyroNoise;
+            this.yawNoise = yawNoise;
+        }
+
+        static double yaw(double t) {
+            return 0.5 * t + 0.3 * Math.sin(2 * Math.PI * 0.2 * t);
+        }
+
+        static double rate(double t) {
+            return 0.5 + 0.3 * 2 * Math.PI * 0.2 * Math.cos(2 * Math.PI * 0.2 * t);
+        }
+
+        float gyroZ(double t) {
+            return (float) (rate(t) + gyroBias + random.nextGaussian() * gyroNoise);
+        }
+
+        void rotationVector(double t, float[] out) {
+            double yaw = yaw(t) + random.nextGaussian() * yawNoise;
+            out[0] = 0f;
+            out[1] = 0f;
+            out[2] = (float) Math.sin(yaw / 2);
+            out[3] = (float) Math.cos(yaw / 2);
+        }
+    }
+
+    /** The azimuth a yaw about the vertical reads as: the heading falls as the phone turns left. */
+    private static float azimuth(double yaw) {
+        double degrees = -Math.toDegrees(yaw) % 360.0;
+        return (float) (degrees < 0 ? degrees + 360.0 : degrees);
+    }
+
+    private static double headingError(float actual, float expected) {
+        double d = Math.abs(actual - expected) % 360.0;
+        return Math.min(d, 360.0 - d);
+    }
+
+    private static double seconds(long t) {
+        return (t - START_NANOS) * 1e-9;
+    }
+
+    @Test
+    public void tracksTheHeadingOfATurningDeviceAndLearnsTheGyroBias() {
+        TurningTrace trace = new TurningTrace(0.02, 0.005, Math.toRadians(1.0));
+        OrientationFilter filter = new OrientationFilter();
+        float[] rv = new float[4];
+        double sumSquares = 0.0;
+        double rawSumSquares = 0.0;
+        double maxError = 0.0;
+        int checked = 0;
+        int steps = 120 * 200;
+        for (int i = 0; i < steps; i++) {
+            long t = START_NANOS + i * GYRO_PERIOD_NANOS;
+            filter.onGyroscope(t, 0f, 0f, trace.gyroZ(seconds(t)));
+            if (i % GYRO_PER_ROTATION_VECTOR == 0) {
+                trace.rotationVector(seconds(t), rv);
+                filter.onRotationVector(t, rv, 4);
+                if (seconds(t) >= 5.0) {
+                    float truth = azimuth(TurningTrace.yaw(seconds(t)));
+                    double e = headingError(filter.azimuthDegrees(), truth);
+                    double raw = headingError(OrientationMath.azimuthDegrees(rv, 4), truth);
+                    sumSquares += e * e;
+                    rawSumSquares += raw * raw;
+                    maxError = Math.max(maxError, e);
+                    checked++;
+                }
+            }
+        }
+        double rms = Math.sqrt(sumSquares / checked);
+        double rawRms = Math.sqrt(rawSumSquares / checked);
+        assertTrue("rms " + rms, rms < 0.5);
+        assertTrue("max " + maxError, maxError < 1.5);
+        // Fusing in the gyro smooths out the rotation vector's noise
+        assertTrue("rms " + rms + " vs rotation vector " + rawRms, rms < rawRms * 0.6);
+        assertEquals(0.02, filter.gyroBiasZ(), 0.005);
+        assertEquals(0.0, filter.gyroBiasX(), 1e-3);
+        assertEquals(0.0, filter.gyroBiasY(), 1e-3);
+    }
+
+    @Test
+    public void takesRotationVectorsAsTheyAreWithoutAGyro() {
+        TurningTrace trace = new TurningTrace(0.0, 0.0, Math.toRadians(1.0));
+        OrientationFilter filter = new OrientationFilter();
+        float[] rv = new float[4];
+        for (int i = 0; i < 100; i++) {
+            long t = START_NANOS + i * 20_000_000L;
+            trace.rotationVector(seconds(t), rv);
+            filter.onRotationVector(t, rv, 4);
+            assertEquals(OrientationMath.azimuthDegrees(rv, 4), filter.azimuthDegrees(), 1e-3f);
+            // Without a rate nothing is extrapolated
+            assertEquals(filter.azimuthDegrees(), filter.predictAzimuthDegrees(t + 50_000_000L), 1e-3f);
+        }
+    }
+
+    @Test
+    public void predictsTheHeadingAheadAtTheLastRateForAtMost100Ms() {
+        // A steady turn at 1 rad/s, exact sensors
+        OrientationFilter filter = new OrientationFilter();
+        float[] rv = new float[4];
+        double rate = 1.0;
+        long t = START_NANOS;
+        for (int i = 0; i < 400; i++) {
+            t = START_NANOS + i * GYRO_PERIOD_NANOS;
+            double yaw = rate * seconds(t);
+            filter.onGyroscope(t, 0f, 0f, (float) rate);
+            if (i % GYRO_PER_ROTATION_VECTOR == 0) {
+                rv[2] = (float) Math.sin(yaw / 2);
+                rv[3] = (float) Math.cos(yaw / 2);
+                filter.onRotationVector(t, rv, 4);
+            }
+        }
+        assertEquals(t, filter.timestampNanos());
+        float now = filter.azimuthDegrees();
+        assertEquals(azimuth(rate * seconds(t)), now, 0.05f);
+
+        float ahead50 = filter.predictAzimuthDegrees(t + 50_000_000L);
+        assertEquals(azimuth(rate * seconds(t + 50_000_000L)), ahead50, 0.05f);
+        assertEquals(headingError(now, azimuth(rate * seconds(t) + 0.05)), headingError(now, ahead50), 0.05);
+
+        // The horizon is capped at MAX_PREDICTION_NANOS
+        float capped = filter.predictAzimuthDegrees(t + OrientationFilter.MAX_PREDICTION_NANOS);
+        assertEquals(azimuth(rate * seconds(t + OrientationFilter.MAX_PREDICTION_NANOS)), capped, 0.05f);
+        assertEquals(capped, filter.predictAzimuthDegrees(t + 500_000_000L), 1e-4f);
+        assertEquals(capped, filter.predictAzimuthDegrees(t + 10_000_000_000L), 1e-4f);
+
+        // Nothing is extrapolated backwards
+        assertEquals(now, filter.predictAzimuthDegrees(t - 30_000_000L), 1e-4f);
+
+        // A reader on another thread gets the same answer from the published state
+        float[] state = new float[1 + OrientationFilter.STATE_SIZE];
+        filter.writeState(state, 1);
+        assertEquals(ahead50, OrientationFilter.predictAzimuthDegrees(state, 1, t, t + 50_000_000L), 0.01f);
+        assertEquals(capped, OrientationFilter.predictAzimuthDegrees(state, 1, t, t + 1_000_000_000L), 0.01f);
+    }
+
+    @Test
+    public void doesNotIntegrateAcrossAGyroGap() {
+        OrientationFilter filter = new OrientationFilter();
+        float[] rv = {0f, 0f, 0f, 1f};
+        filter.onRotationVector(START_NANOS, rv, 4);
+        filter.onGyroscope(START_NANOS, 0f, 0f, 1f);
+        // 300 ms later at 1 rad/s: integrating the gap would turn the heading by 17 degrees
+        filter.onGyroscope(START_NANOS + 300_000_000L, 0f, 0f, 1f);
+        assertEquals(0f, headingError(filter.azimuthDegrees(), 0f), 1e-3);
+        assertEquals(START_NANOS + 300_000_000L, filter.timestampNanos());
+
+        filter.onGyroscope(START_NANOS + 305_000_000L, 0f, 0f, 1f);
+        assertEquals(Math.toDegrees(0.005), headingError(filter.azimuthDegrees(), 0f), 1e-3);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.sensor.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineMetricsTest {
+    private static final long MS = 1_000_000L;
+    private static final int TYPE = SensorTypes.GYROSCOPE;
+
+    private PipelineMetrics metrics;
+    private long t;
+
+    @Before
+    public void setUp() {
+        metrics = new PipelineMetrics();
+        metrics.setEnabled(true);
+        t = 1_000 * MS;
+    }
+
+    /** {@code n} events {@code interval} apart, each delivered 2 ms after its timestamp. */
+    private void events(int n, long interval) {
+        for (int i = 0; i < n; i++) {
+            t += interval;
+            metrics.onSensorEvent(TYPE, t, t + 2 * MS);
+        }
+    }
+
+    @Test
+    public void aSteadyRateHasNoGaps() {
+        events(100, 10 * MS);
+        assertEquals(1, metrics.sensorCount());
+        assertEquals(TYPE, metrics.sensorType(0));
+        assertEquals(100, metrics.events(0));
+        assertEquals(100.0, metrics.eventsPerSecond(0), 1e-9);
+        assertEquals(0, metrics.gaps(0));
+        assertEquals(0, metrics.missed(0));
+        assertEquals(2 * MS, metrics.deliveryLatency(0).maxNanos());
+        // Jitter under twice the usual interval is not a gap
+        events(1, 19 * MS);
+        events(10, 10 * MS);
+        assertEquals(0, metrics.gaps(0));
+    }
+
+    @Test
+    public void aGapIsCountedOnceTheRateIsBack() {
+        events(50, 10 * MS);
+        // Four samples lost
+        events(1, 50 * MS);
+        assertEquals(0, metrics.gaps(0));
+        events(1, 10 * MS);
+        assertEquals(1, metrics.gaps(0));
+        assertEquals(4, metrics.missed(0));
+        // The gap stayed out of the usual interval
+        assertEquals(100.0, metrics.eventsPerSecond(0), 1e-9);
+
+        // 26 ms is 2.6 intervals, rounded to 3: two samples lost
+        events(1, 26 * MS);
+        events(1, 10 * MS);
+        assertEquals(2, metrics.gaps(0));
+        assertEquals(4 + 2, metrics.missed(0));
+    }
+
+    @Test
+    public void twoLongIntervalsInARowAreARateChangeNotAGap() {
+        events(50, 10 * MS);
+        // Re-registered at 20 Hz
+        events(50, 50 * MS);
+        assertEquals(0, metrics.gaps(0));
+        assertEquals(0, metrics.missed(0));
+        assertEquals(20.0, metrics.eventsPerSecond(0), 1e-9);
+        // Gaps are then measured against the new rate
+        events(1, 150 * MS);
+        events(1, 50 * MS);
+        assertEquals(1, metrics.gaps(0));
+        assertEquals(2, metrics.missed(0));
+    }
+
+    @Test
+    public void sensorsAreCountedSeparatelyAndReEnablingStartsFromZero() {
+        events(10, 10 * MS);
+        metrics.onSensorEvent(SensorTypes.PRESSURE, t, t + 5 * MS);
+        metrics.onSensorEvent(SensorTypes.PRESSURE, t + 40 * MS, t + 45 * MS);
+        assertEquals(2, metrics.sensorCount());
+        assertEquals(SensorTypes.PRESSURE, metrics.sensorType(1));
+        assertEquals(2, metrics.events(1));
+        assertEquals(25.0, metrics.eventsPerSecond(1), 1e-9);
+        assertEquals(10, metrics.events(0));
+
+        metrics.setEnabled(false);
+        metrics.setEnabled(true);
+        assertEquals(2, metrics.sensorCount());
+        assertEquals(0, metrics.events(0));
+        assertEquals(0.0, metrics.eventsPerSecond(0), 0.0);
+        assertEquals(0, metrics.deliveryLatency(1).count());
+    }
+
+    @Test
+    public void aRestartedConsumerReplacesItsPredecessor() {
+        SampleBus bus = new SampleBus(16);
+        metrics.watch("display", bus.subscribe(SampleBus.Policy.DROP_OLDEST));
+        metrics.watch("display", bus.subscribe(SampleBus.Policy.CONFLATE));
+        metrics.watch("history", bus.subscribe(SampleBus.Policy.BLOCK));
+        String json = metrics.toJson();
+        assertEquals(json.indexOf("\"name\":\"display\""), json.lastIndexOf("\"name\":\"display\""));
+        assertTrue(json, json.contains("{\"name\":\"display\",\"policy\":\"CONFLATE\""));
+        assertTrue(json, json.contains("{\"name\":\"history\",\"policy\":\"BLOCK\""));
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.sensor.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReplayEngineTest {
+    private static final long MS = 1_000_000L;
+    private static final long START = 1_000L * MS;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final float[] values = new float[3];
+
+    /** Records each delivery as "type@ms:value". */
+    private static final class Log implements SampleSink {
+        final List<String> entries = new ArrayList<>();
+
+        @Override
+        public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+            entries.add(type + "@" + (timestampNanos - START) / MS + ":" + (int) values[0]);
+        }
+
+        @Override
+        public void onLocation(GpsFix fix) {
+            entries.add("gps@" + (fix.elapsedRealtimeNanos - START) / MS + ":" + (int) fix.latitude);
+        }
+    }
+
+    private void sample(SessionRecorder recorder, int type, long ms, int value) throws IOException {
+        values[0] = value;
+        recorder.append(type, START + ms * MS, 3, values, 1);
+    }
+
+    private void fix(SessionRecorder recorder, long ms, int latitude) throws IOException {
+        GpsFix fix = new GpsFix();
+        fix.elapsedRealtimeNanos = START + ms * MS;
+        fix.latitude = latitude;
+        recorder.append(fix);
+    }
+
+    /**
+     * Gyro every 10 ms as it arrived, a pressure batch for 0-40 ms flushed at 45 ms, and a
+     * GPS fix sharing a timestamp with a gyro sample.
+     */
+    private File record() throws IOException {
+        SessionRecorder recorder = SessionRecorder.create(folder.getRoot(), "session");
+        try {
+            for (int ms = 0; ms <= 40; ms += 10) {
+                sample(recorder, SensorTypes.GYROSCOPE, ms, ms);
+            }
+            for (int ms = 0; ms <= 40; ms += 20) {
+                sample(recorder, SensorTypes.PRESSURE, ms, 1000 + ms);
+            }
+            fix(recorder, 50, 7);
+            sample(recorder, SensorTypes.GYROSCOPE, 50, 50);
+            return recorder.directory();
+        } finally {
+            recorder.close();
+        }
+    }
+
+    private static String g(int ms) {
+        return SensorTypes.GYROSCOPE + "@" + ms + ":" + ms;
+    }
+
+    private static String p(int ms) {
+        return SensorTypes.PRESSURE + "@" + ms + ":" + (1000 + ms);
+    }
+
+    private static List<String> sorted() {
+        List<String> expected = new ArrayList<>();
+        // Equal timestamps: ascending type, location last
+        boolean gyroFirst = SensorTypes.GYROSCOPE < SensorTypes.PRESSURE;
+        for (int ms = 0; ms <= 40; ms += 10) {
+            boolean pressure = ms % 20 == 0;
+            if (pressure && !gyroFirst) {
+                expected.add(p(ms));
+            }
+            expected.add(g(ms));
+            if (pressure && gyroFirst) {
+                expected.add(p(ms));
+            }
+        }
+        expected.add(g(50));
+        expected.add("gps@50:7");
+        return expected;
+    }
+
+    @Test
+    public void putsALateBatchBackInTimestampOrder() throws IOException, InterruptedException {
+        Log log = new Log();
+        try (ReplayEngine engine = new ReplayEngine(record())) {
+            assertEquals(10, engine.run(log, ReplayEngine.AS_FAST_AS_POSSIBLE));
+            assertEquals(0, engine.lateRecords());
+        }
+        assertEquals(sorted(), log.entries);
+    }
+
+    @Test
+    public void deliversRecordsBeyondTheWindowAndCountsThem() throws IOException, InterruptedException {
+        Log log = new Log();
+        // Two records of look-ahead: the 0 ms pressure is read after 30 ms was delivered
+        try (ReplayEngine engine = new ReplayEngine(record(), ReplayClock.SYSTEM, 2)) {
+            assertEquals(10, engine.run(log, ReplayEngine.AS_FAST_AS_POSSIBLE));
+            assertEquals(2, engine.lateRecords());
+        }
+        assertEquals(10, log.entries.size());
+        assertEquals(g(0), log.entries.get(0));
+        assertEquals(g(30), log.entries.get(3));
+        assertEquals(p(0), log.entries.get(4));
+    }
+
+    @Test
+    public void pacesTimedReplaysByTheRecordedGaps() throws IOException, InterruptedException {
+        final List<Long> sleeps = new ArrayList<>();
+        ReplayClock clock = new ReplayClock() {
+            @Override
+            public long nanoTime() {
+                return 0L;
+            }
+
+            @Override
+            public void sleepUntil(long deadlineNanos) {
+                sleeps.add(deadlineNanos);
+            }
+        };
+        try (ReplayEngine engine = new ReplayEngine(record(), clock)) {
+            engine.run(new Log(), 2.0);
+        }
+        // Nine waits after the first record, at half the recorded offsets
+        assertEquals(9, sleeps.size());
+        assertEquals(0L, (long) sleeps.get(0));
+        assertEquals(5 * MS, (long) sleeps.get(1));
+        assertEquals(25 * MS, (long) sleeps.get(8));
+    }
+}
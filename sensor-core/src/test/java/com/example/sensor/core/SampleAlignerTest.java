@@ -0,0 +1,126 @@
+package com.example.sensor.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SampleAlignerTest {
+    private static final long MS = 1_000_000L;
+    private static final long START = 1_000L * MS;
+
+    /** Copies out every frame, since the aligner reuses its array. */
+    private static final class Frames implements SampleAligner.Listener {
+        final List<Long> times = new ArrayList<>();
+        final List<double[]> values = new ArrayList<>();
+        final List<Long> masks = new ArrayList<>();
+
+        @Override
+        public void onFrame(long timestampNanos, double[] frame, long validMask) {
+            times.add(timestampNanos);
+            values.add(frame.clone());
+            masks.add(validMask);
+        }
+    }
+
+    private final float[] value = new float[1];
+
+    private void send(SampleAligner aligner, int type, long t, double v) {
+        value[0] = (float) v;
+        aligner.onSample(type, t, 3, value, 1);
+    }
+
+    @Test
+    public void interpolatesEachChannelOntoTheGrid() {
+        Frames frames = new Frames();
+        SampleAligner aligner = new SampleAligner(10 * MS, 1_000 * MS, 1_000 * MS, 64, frames);
+        int fast = aligner.track(SensorTypes.GYROSCOPE, 1, SampleAligner.LINEAR);
+        int slow = aligner.track(SensorTypes.PRESSURE, 1, SampleAligner.LINEAR);
+        // A ramp of 1 per ms, sampled every 4 ms and every 25 ms
+        for (long ms = 0; ms <= 200; ms++) {
+            if (ms % 4 == 0) {
+                send(aligner, SensorTypes.GYROSCOPE, START + ms * MS, ms);
+            }
+            if (ms % 25 == 0) {
+                send(aligner, SensorTypes.PRESSURE, START + ms * MS, 2 * ms);
+            }
+        }
+        aligner.flush();
+
+        assertEquals(21, frames.times.size());
+        for (int i = 0; i < frames.times.size(); i++) {
+            double ms = (frames.times.get(i) - START) / (double) MS;
+            assertEquals(i * 10.0, ms, 0.0);
+            assertEquals(ms, frames.values.get(i)[aligner.offset(fast)], 1e-9);
+            assertEquals(2 * ms, frames.values.get(i)[aligner.offset(slow)], 1e-9);
+            assertEquals(3L, (long) frames.masks.get(i));
+        }
+        assertEquals(0, aligner.lateSamples());
+    }
+
+    @Test
+    public void putsOutOfOrderSamplesInTimeOrderUntilTheGridPassesThem() {
+        Frames frames = new Frames();
+        SampleAligner aligner = new SampleAligner(10 * MS, 1_000 * MS, 1_000 * MS, 64, frames);
+        int gyro = aligner.track(SensorTypes.GYROSCOPE, 1, SampleAligner.LINEAR);
+        aligner.track(SensorTypes.PRESSURE, 1, SampleAligner.LINEAR);
+        // The slow channel holds the grid back while the fast one arrives out of order
+        send(aligner, SensorTypes.PRESSURE, START, 0);
+        long[] order = {0, 10, 30, 20, 50, 40, 45, 60};
+        for (long ms : order) {
+            send(aligner, SensorTypes.GYROSCOPE, START + ms * MS, ms);
+        }
+        assertEquals(1, frames.times.size());
+        send(aligner, SensorTypes.PRESSURE, START + 100 * MS, 0);
+
+        // Every grid point up to the gyro's newest sample, each exactly on a sample
+        assertEquals(7, frames.times.size());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(START + i * 10 * MS, (long) frames.times.get(i));
+            assertEquals(i * 10.0, frames.values.get(i)[aligner.offset(gyro)], 1e-9);
+        }
+        assertEquals(0, aligner.lateSamples());
+
+        // Behind the grid now: too late to be used, and the next frame is unaffected
+        send(aligner, SensorTypes.GYROSCOPE, START + 55 * MS, 1e6);
+        assertEquals(1, aligner.lateSamples());
+        send(aligner, SensorTypes.GYROSCOPE, START + 80 * MS, 80);
+        assertEquals(70.0, frames.values.get(7)[aligner.offset(gyro)], 1e-9);
+    }
+
+    @Test
+    public void countsSamplesPushedOutBeforeTheGridReachedThem() {
+        Frames frames = new Frames();
+        SampleAligner aligner = new SampleAligner(10 * MS, 10_000 * MS, 1_000 * MS, 4, frames);
+        aligner.track(SensorTypes.GYROSCOPE, 1, SampleAligner.LINEAR);
+        aligner.track(SensorTypes.PRESSURE, 1, SampleAligner.LINEAR);
+        send(aligner, SensorTypes.PRESSURE, START, 0);
+        for (long ms = 10; ms < 20; ms++) {
+            send(aligner, SensorTypes.GYROSCOPE, START + ms * MS, ms);
+        }
+        // Six of the ten were overwritten while the pressure held the grid at 10 ms
+        assertEquals(6, aligner.overrunSamples());
+        assertEquals(1, frames.times.size());
+    }
+
+    @Test
+    public void slerpsRotationVectors() {
+        Frames frames = new Frames();
+        SampleAligner aligner = new SampleAligner(10 * MS, 1_000 * MS, 1_000 * MS, 16, frames);
+        int c = aligner.track(SensorTypes.ROTATION_VECTOR, 4, SampleAligner.SLERP);
+        // 0 and 90 degrees about z, 20 ms apart: 45 degrees at the grid point between
+        float[] q = {0f, 0f, 0f, 1f};
+        aligner.onSample(SensorTypes.ROTATION_VECTOR, START, 3, q, 4);
+        q[2] = (float) Math.sin(Math.PI / 4);
+        q[3] = (float) Math.cos(Math.PI / 4);
+        aligner.onSample(SensorTypes.ROTATION_VECTOR, START + 20 * MS, 3, q, 4);
+        aligner.flush();
+
+        double[] mid = frames.values.get(1);
+        int o = aligner.offset(c);
+        assertEquals(Math.sin(Math.PI / 8), mid[o + 2], 1e-6);
+        assertEquals(Math.cos(Math.PI / 8), mid[o + 3], 1e-6);
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.sensor.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SampleBusTest {
+    /** Records "type@timestamp:first value" for each delivery. */
+    private static final class Log implements SampleSink {
+        final List<String> entries = new ArrayList<>();
+        final List<GpsFix> fixes = new ArrayList<>();
+
+        @Override
+        public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+            entries.add(type + "@" + timestampNanos + ":" + (int) values[0]);
+        }
+
+        @Override
+        public void onLocation(GpsFix fix) {
+            GpsFix copy = new GpsFix();
+            copy.provider = fix.provider;
+            copy.elapsedRealtimeNanos = fix.elapsedRealtimeNanos;
+            copy.latitude = fix.latitude;
+            copy.longitude = fix.longitude;
+            copy.time = fix.time;
+            copy.hasAltitude = fix.hasAltitude;
+            copy.altitude = fix.altitude;
+            copy.hasMslAltitude = fix.hasMslAltitude;
+            copy.mslAltitude = fix.mslAltitude;
+            copy.hasAccuracy = fix.hasAccuracy;
+            copy.accuracy = fix.accuracy;
+            copy.hasSpeed = fix.hasSpeed;
+            copy.speed = fix.speed;
+            copy.hasBearing = fix.hasBearing;
+            copy.bearing = fix.bearing;
+            fixes.add(copy);
+        }
+    }
+
+    /**
+     * Checks that every sample is whole: value i is the sequence number plus i, and the
+     * timestamp and count match it. Sequence numbers must only go up.
+     */
+    private static final class Checker implements SampleSink {
+        long last = -1;
+        long received;
+        volatile String error;
+
+        @Override
+        public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+            long n = timestampNanos;
+            if (n <= last) {
+                error = "sample " + n + " after " + last;
+            }
+            if (count != (int) (n % SampleBus.MAX_VALUES) + 1 || accuracy != (int) (n % 4)) {
+                error = "torn header at " + n + ": count " + count + ", accuracy " + accuracy;
+            }
+            for (int i = 0; i < count; i++) {
+                if (values[i] != (float) ((n + i) % 100_000)) {
+                    error = "torn value " + i + " at " + n + ": " + values[i];
+                }
+            }
+            last = n;
+            received++;
+        }
+
+        @Override
+        public void onLocation(GpsFix fix) {
+            error = "unexpected fix";
+        }
+    }
+
+    private final float[] values = new float[SampleBus.MAX_VALUES];
+
+    private void publish(SampleBus bus, int type, long t, int value) {
+        values[0] = value;
+        bus.publish(type, t, 3, values, 1);
+    }
+
+    @Test
+    public void deliversInPublishOrderToEverySubscriber() {
+        SampleBus bus = new SampleBus(16);
+        SampleBus.Subscription a = bus.subscribe(SampleBus.Policy.DROP_OLDEST);
+        SampleBus.Subscription b = bus.subscribe(SampleBus.Policy.BLOCK);
+        for (int i = 0; i < 10; i++) {
+            publish(bus, SensorTypes.GYROSCOPE, i, i);
+        }
+        Log logA = new Log();
+        Log logB = new Log();
+        assertEquals(4, a.poll(logA, 4));
+        assertEquals(6, a.poll(logA, 100));
+        assertEquals(10, b.poll(logB, 100));
+        assertEquals(logA.entries, logB.entries);
+        assertEquals(SensorTypes.GYROSCOPE + "@9:9", logA.entries.get(9));
+        assertEquals(0, a.lag());
+        assertEquals(0, a.dropped());
+        assertEquals(10, a.delivered());
+    }
+
+    @Test
+    public void subscribersStartAtTheNextPublishedSample() {
+        SampleBus bus = new SampleBus(16);
+        publish(bus, SensorTypes.GYROSCOPE, 1, 1);
+        SampleBus.Subscription late = bus.subscribe(SampleBus.Policy.DROP_OLDEST);
+        publish(bus, SensorTypes.GYROSCOPE, 2, 2);
+        Log log = new Log();
+        assertEquals(1, late.poll(log, 100));
+        assertEquals(SensorTypes.GYROSCOPE + "@2:2", log.entries.get(0));
+    }
+
+    @Test
+    public void dropOldestSkipsToTheOldestSampleStillInTheRing() {
+        SampleBus bus = new SampleBus(8);
+        SampleBus.Subscription sub = bus.subscribe(SampleBus.Policy.DROP_OLDEST);
+        for (int i = 0; i < 20; i++) {
+            publish(bus, SensorTypes.GYROSCOPE, i, i);
+        }
+        assertEquals(20, sub.lag());
+        Log log = new Log();
+        int n = sub.poll(log, 100);
+
+        // Resumes at cursor - capacity + 2, leaving the producer a slot of headroom
+        assertEquals(7, n);
+        assertEquals(13, sub.dropped());
+        assertEquals(SensorTypes.GYROSCOPE + "@13:13", log.entries.get(0));
+        assertEquals(SensorTypes.GYROSCOPE + "@19:19", log.entries.get(6));
+        assertEquals(0, sub.lag());
+    }
+
+    @Test
+    public void dropOldestNeverDeliversATornSampleUnderAConcurrentProducer() throws InterruptedException {
+        final SampleBus bus = new SampleBus(64);
+        final SampleBus.Subscription sub = bus.subscribe(SampleBus.Policy.DROP_OLDEST);
+        final int total = 2_000_000;
+        final Checker checker = new Checker();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (done.getCount() > 0 || sub.lag() > 0) {
+                    sub.poll(checker, 16);
+                }
+            }
+        });
+        consumer.start();
+        float[] v = new float[SampleBus.MAX_VALUES];
+        for (long n = 0; n < total; n++) {
+            int count = (int) (n % SampleBus.MAX_VALUES) + 1;
+            for (int i = 0; i < count; i++) {
+                v[i] = (float) ((n + i) % 100_000);
+            }
+            bus.publish(SensorTypes.GYROSCOPE, n, (int) (n % 4), v, count);
+        }
+        done.countDown();
+        consumer.join(30_000L);
+
+        assertEquals(null, checker.error);
+        assertEquals(total - 1, checker.last);
+        // Every sample was either delivered or counted as dropped, never both
+        assertEquals(total, checker.received + sub.dropped());
+        assertEquals(checker.received, sub.delivered());
+    }
+
+    @Test
+    public void conflateDeliversOnlyTheNewestOfEachTypeInPublishOrder() {
+        SampleBus bus = new SampleBus(64);
+        SampleBus.Subscription sub = bus.subscribe(SampleBus.Policy.CONFLATE);
+        for (int i = 0; i < 10; i++) {
+            publish(bus, SensorTypes.GYROSCOPE, i, i);
+            if (i % 3 == 0) {
+                publish(bus, SensorTypes.PRESSURE, i, 1000 + i);
+            }
+        }
+        publish(bus, SensorTypes.ACCELEROMETER, 10, 7);
+        Log log = new Log();
+
+        assertEquals(3, sub.poll(log, 100));
+        List<String> expected = new ArrayList<>();
+        expected.add(SensorTypes.GYROSCOPE + "@9:9");
+        expected.add(SensorTypes.PRESSURE + "@9:1009");
+        expected.add(SensorTypes.ACCELEROMETER + "@10:7");
+        assertEquals(expected, log.entries);
+        assertEquals(15 - 3, sub.dropped());
+        assertEquals(0, sub.poll(log, 100));
+
+        publish(bus, SensorTypes.GYROSCOPE, 11, 11);
+        assertEquals(1, sub.poll(log, 100));
+        assertEquals(SensorTypes.GYROSCOPE + "@11:11", log.entries.get(3));
+    }
+
+    @Test
+    public void blockHoldsTheProducerUntilTheSubscriberCatchesUp() throws InterruptedException {
+        final SampleBus bus = new SampleBus(8);
+        final SampleBus.Subscription sub = bus.subscribe(SampleBus.Policy.BLOCK);
+        final CountDownLatch published = new CountDownLatch(1);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                float[] v = new float[1];
+                for (int i = 0; i < 20; i++) {
+                    v[0] = i;
+                    bus.publish(SensorTypes.GYROSCOPE, i, 3, v, 1);
+                }
+                published.countDown();
+            }
+        });
+        producer.start();
+
+        // A full ring is as far as it gets without the subscriber
+        assertFalse(published.await(200L, TimeUnit.MILLISECONDS));
+        assertEquals(7L, bus.cursor());
+
+        Log log = new Log();
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (log.entries.size() < 20 && System.currentTimeMillis() < deadline) {
+            sub.poll(log, 3);
+        }
+        assertTrue(published.await(10L, TimeUnit.SECONDS));
+        producer.join();
+        assertEquals(20, log.entries.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(SensorTypes.GYROSCOPE + "@" + i + ":" + i, log.entries.get(i));
+        }
+        assertEquals(0, sub.dropped());
+    }
+
+    @Test
+    public void unsubscribingReleasesAProducerBlockedOnTheSubscriber() throws InterruptedException {
+        final SampleBus bus = new SampleBus(8);
+        SampleBus.Subscription sub = bus.subscribe(SampleBus.Policy.BLOCK);
+        final CountDownLatch published = new CountDownLatch(1);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                float[] v = new float[1];
+                for (int i = 0; i < 100; i++) {
+                    bus.publish(SensorTypes.GYROSCOPE, i, 3, v, 1);
+                }
+                published.countDown();
+            }
+        });
+        producer.start();
+        assertFalse(published.await(100L, TimeUnit.MILLISECONDS));
+
+        bus.unsubscribe(sub);
+
+        assertTrue(published.await(10L, TimeUnit.SECONDS));
+        assertEquals(99L, bus.cursor());
+        assertTrue(bus.producerWaits() > 0);
+    }
+
+    @Test
+    public void gpsFixesRoundTripThroughTheRing() {
+        SampleBus bus = new SampleBus(16);
+        SampleBus.Subscription sub = bus.subscribe(SampleBus.Policy.DROP_OLDEST);
+        GpsFix fix = new GpsFix();
+        fix.elapsedRealtimeNanos = 123_456_789L;
+        fix.latitude = -33.856784123;
+        fix.longitude = 151.215297456;
+        fix.time = 1_700_000_000_123L;
+        fix.hasAltitude = true;
+        fix.altitude = 42.5;
+        fix.hasMslAltitude = true;
+        fix.mslAltitude = 7.25;
+        fix.hasAccuracy = true;
+        fix.accuracy = 3.25f;
+        bus.publish(fix);
+        // Samples around it do not disturb the fix's own columns
+        publish(bus, SensorTypes.PRESSURE, 1, 1013);
+        GpsFix bare = new GpsFix();
+        bare.elapsedRealtimeNanos = 5L;
+        bare.latitude = 1.0;
+        bare.longitude = 2.0;
+        bare.hasSpeed = true;
+        bare.speed = 1.5f;
+        bare.hasBearing = true;
+        bare.bearing = 270f;
+        bus.publish(bare);
+
+        Log log = new Log();
+        assertEquals(3, sub.poll(log, 100));
+        assertEquals(2, log.fixes.size());
+        GpsFix got = log.fixes.get(0);
+        assertEquals("gps", got.provider);
+        assertEquals(123_456_789L, got.elapsedRealtimeNanos);
+        assertEquals(-33.856784123, got.latitude, 0.0);
+        assertEquals(151.215297456, got.longitude, 0.0);
+        assertEquals(1_700_000_000_123L, got.time);
+        assertTrue(got.hasAltitude);
+        assertEquals(42.5, got.altitude, 0.0);
+        assertTrue(got.hasMslAltitude);
+        assertEquals(7.25, got.mslAltitude, 0.0);
+        assertTrue(got.hasAccuracy);
+        assertEquals(3.25f, got.accuracy, 0f);
+        assertFalse(got.hasSpeed);
+        assertFalse(got.hasBearing);
+
+        GpsFix second = log.fixes.get(1);
+        assertFalse(second.hasAltitude);
+        assertFalse(second.hasMslAltitude);
+        assertFalse(second.hasAccuracy);
+        assertTrue(second.hasSpeed);
+        assertEquals(1.5f, second.speed, 0f);
+        assertEquals(270f, second.bearing, 0f);
+        assertEquals(SensorTypes.PRESSURE + "@1:1013", log.entries.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBeAPowerOfTwo() {
+        new SampleBus(100);
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.sensor.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SensorRequestsTest {
+    /** Stands in for SensorManager: which sensors exist, what is registered, and flush support. */
+    private static final class FakeSource implements SensorRequests.Source {
+        final Set<Integer> missing = new HashSet<>();
+        final Map<Integer, int[]> registered = new HashMap<>();
+        final List<String> calls = new ArrayList<>();
+        boolean flushSupported = true;
+
+        @Override
+        public boolean register(int type, int samplingPeriodUs, int maxReportLatencyUs) {
+            calls.add("register " + type);
+            if (missing.contains(type)) {
+                return false;
+            }
+            registered.put(type, new int[]{samplingPeriodUs, maxReportLatencyUs});
+            return true;
+        }
+
+        @Override
+        public void unregister(int type) {
+            calls.add("unregister " + type);
+            registered.remove(type);
+        }
+
+        @Override
+        public int flush() {
+            calls.add("flush");
+            return flushSupported ? registered.size() : 0;
+        }
+    }
+
+    private static final class Counter implements Runnable {
+        int runs;
+
+        @Override
+        public void run() {
+            runs++;
+        }
+    }
+
+    private FakeSource source;
+    private SensorRequests requests;
+    private final Object capture = new Object();
+    private final Object screen = new Object();
+
+    @Before
+    public void setUp() {
+        source = new FakeSource();
+        requests = new SensorRequests(source);
+    }
+
+    @Test
+    public void registersEachSensorOnceForAllClients() {
+        requests.set(capture, new CaptureConfig()
+                .set(SensorTypes.PRESSURE, 0, 10_000_000)
+                .set(SensorTypes.GYROSCOPE, 5_000, 5_000_000));
+        requests.set(screen, new CaptureConfig()
+                .set(SensorTypes.GYROSCOPE, 20_000, 0));
+        requests.apply();
+
+        assertEquals(2, source.registered.size());
+        assertArrayEquals(new int[]{0, 10_000_000}, source.registered.get(SensorTypes.PRESSURE));
+        assertArrayEquals(new int[]{5_000, 0}, source.registered.get(SensorTypes.GYROSCOPE));
+        assertEquals(2, requests.registered().size());
+    }
+
+    @Test
+    public void leavesUnchangedRegistrationsAlone() {
+        requests.set(capture, new CaptureConfig()
+                .set(SensorTypes.PRESSURE, 0, 10_000_000)
+                .set(SensorTypes.GYROSCOPE, 5_000, 5_000_000));
+        requests.apply();
+        source.calls.clear();
+
+        // The screen wants the gyro without batching; the pressure is untouched
+        requests.set(screen, new CaptureConfig().set(SensorTypes.GYROSCOPE, 20_000, 0));
+        requests.apply();
+        assertEquals("[unregister " + SensorTypes.GYROSCOPE + ", register " + SensorTypes.GYROSCOPE + "]",
+                source.calls.toString());
+
+        source.calls.clear();
+        requests.apply();
+        assertTrue(source.calls.isEmpty());
+    }
+
+    @Test
+    public void unregistersWhatNoClientWantsAnyMore() {
+        requests.set(capture, new CaptureConfig().set(SensorTypes.PRESSURE, 0, 10_000_000));
+        requests.set(screen, new CaptureConfig()
+                .set(SensorTypes.PRESSURE, 20_000, 0)
+                .set(SensorTypes.ROTATION_VECTOR, 20_000, 0));
+        requests.apply();
+
+        requests.clear(screen);
+        requests.apply();
+
+        assertNull(source.registered.get(SensorTypes.ROTATION_VECTOR));
+        // Back to the capture's own settings
+        assertArrayEquals(new int[]{0, 10_000_000}, source.registered.get(SensorTypes.PRESSURE));
+
+        requests.clear(capture);
+        requests.apply();
+        assertTrue(source.registered.isEmpty());
+        assertEquals(0, requests.registered().size());
+    }
+
+    @Test
+    public void retriesAMissingSensorOnTheNextApply() {
+        source.missing.add(SensorTypes.PRESSURE);
+        requests.set(capture, new CaptureConfig().set(SensorTypes.PRESSURE, 0, 0));
+        requests.apply();
+        assertEquals(0, requests.registered().size());
+
+        source.missing.clear();
+        requests.apply();
+        assertEquals(1, requests.registered().size());
+        assertArrayEquals(new int[]{0, 0}, source.registered.get(SensorTypes.PRESSURE));
+    }
+
+    @Test
+    public void flushCompletesWhenEverySensorHasReported() {
+        requests.set(capture, new CaptureConfig()
+                .set(SensorTypes.PRESSURE, 0, 10_000_000)
+                .set(SensorTypes.GYROSCOPE, 0, 5_000_000));
+        requests.apply();
+        Counter done = new Counter();
+
+        assertTrue(requests.flush(done));
+        assertTrue(requests.isFlushing());
+        assertFalse(requests.onFlushCompleted());
+        assertEquals(0, done.runs);
+        assertTrue(requests.onFlushCompleted());
+        assertEquals(1, done.runs);
+        assertFalse(requests.isFlushing());
+
+        // A late or spurious completion does not run anything again
+        assertFalse(requests.onFlushCompleted());
+        assertEquals(1, done.runs);
+    }
+
+    @Test
+    public void flushWithNothingToWaitForCompletesAtOnce() {
+        Counter done = new Counter();
+        assertFalse(requests.flush(done));
+        assertEquals(1, done.runs);
+
+        requests.set(capture, new CaptureConfig().set(SensorTypes.GYROSCOPE, 0, 5_000_000));
+        requests.apply();
+        source.flushSupported = false;
+        assertFalse(requests.flush(done));
+        assertEquals(2, done.runs);
+        assertFalse(requests.flush(null));
+    }
+
+    @Test
+    public void timeoutCompletesAFlushSomeSensorNeverReported() {
+        requests.set(capture, new CaptureConfig()
+                .set(SensorTypes.PRESSURE, 0, 10_000_000)
+                .set(SensorTypes.GYROSCOPE, 0, 5_000_000));
+        requests.apply();
+        Counter done = new Counter();
+        requests.flush(done);
+        requests.onFlushCompleted();
+
+        requests.onFlushTimeout();
+
+        assertEquals(1, done.runs);
+        assertFalse(requests.isFlushing());
+        assertFalse(requests.onFlushCompleted());
+        assertEquals(1, done.runs);
+    }
+
+    @Test
+    public void overlappingFlushesRunEveryCallback() {
+        requests.set(capture, new CaptureConfig().set(SensorTypes.GYROSCOPE, 0, 5_000_000));
+        requests.apply();
+        Counter first = new Counter();
+        Counter second = new Counter();
+
+        requests.flush(first);
+        requests.flush(second);
+        assertTrue(requests.onFlushCompleted());
+
+        assertEquals(1, first.runs);
+        assertEquals(1, second.runs);
+    }
+
+    @Test
+    public void callbackMayStartTheNextFlush() {
+        requests.set(capture, new CaptureConfig().set(SensorTypes.GYROSCOPE, 0, 5_000_000));
+        requests.apply();
+        final Counter second = new Counter();
+        requests.flush(new Runnable() {
+            @Override
+            public void run() {
+                requests.flush(second);
+            }
+        });
+
+        requests.onFlushCompleted();
+        assertEquals(0, second.runs);
+        assertTrue(requests.isFlushing());
+        requests.onFlushCompleted();
+        assertEquals(1, second.runs);
+    }
+}
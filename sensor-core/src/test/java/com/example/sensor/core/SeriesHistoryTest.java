@@ -0,0 +1,208 @@
+package com.example.sensor.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SeriesHistoryTest {
+    private static final long MS = 1_000_000L;
+    private static final long S = 1_000L * MS;
+    private static final long[] BUCKETS = {S, 10 * S};
+    private static final int[] CAPACITIES = {50, 100};
+    private static final int RAW = 100;
+    private static final long STEP = 100 * MS;
+    // 2000 s at 10 Hz: both tiers have dropped their oldest buckets
+    private static final int SAMPLES = 20_000;
+    private static final long FIRST = 5 * S + 50 * MS;
+    private static final long LAST = FIRST + (SAMPLES - 1) * STEP;
+
+    private SeriesHistory history;
+    private final List<Long> times = new ArrayList<>();
+    private final List<Float> values = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        history = new SeriesHistory(RAW, BUCKETS, CAPACITIES);
+        Random random = new Random(7L);
+        for (int i = 0; i < SAMPLES; i++) {
+            long t = FIRST + i * STEP;
+            float v = (float) (Math.sin(i * 0.01) * 10.0 + random.nextGaussian());
+            history.add(t, v);
+            times.add(t);
+            values.add(v);
+            if (i % 1000 == 999) {
+                // Late samples are dropped and must not reach any tier
+                history.add(t - STEP / 2, 1e6f);
+            }
+        }
+    }
+
+    /** Checks every point of {@code out} against a rollup of all samples in its bucket. */
+    private void checkAgainstBruteForce(HistoryWindow out) {
+        long width = history.bucketNanos(out.tier());
+        for (int p = 0; p < out.size(); p++) {
+            long start = out.timestamp(p);
+            long end = width == 0 ? start + 1 : start + width;
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            double sum = 0.0;
+            int count = 0;
+            for (int i = 0; i < times.size(); i++) {
+                long t = times.get(i);
+                if (t >= start && t < end) {
+                    float v = values.get(i);
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                    sum += v;
+                    count++;
+                }
+            }
+            String at = "tier " + out.tier() + " at " + start;
+            assertEquals(at, count, out.count(p));
+            assertEquals(at, min, out.min(p), 0f);
+            assertEquals(at, max, out.max(p), 0f);
+            assertEquals(at, (float) (sum / count), out.mean(p), 1e-5f);
+            if (p > 0) {
+                assertTrue(at, start > out.timestamp(p - 1));
+            }
+        }
+    }
+
+    /** Checks that {@code out} holds every point overlapping [from, to) and nothing else. */
+    private void checkSpan(HistoryWindow out, long from, long to) {
+        long width = Math.max(1L, history.bucketNanos(out.tier()));
+        assertTrue(out.size() > 0);
+        assertTrue(out.timestamp(0) + width > from);
+        assertTrue(out.timestamp(out.size() - 1) < to);
+        long firstWanted = from - Math.floorMod(from, width);
+        if (out.tier() >= 0 && firstWanted >= bucketStart(out.tier())) {
+            assertEquals(firstWanted, out.timestamp(0));
+        }
+    }
+
+    /** Start of the oldest bucket still in {@code tier}. */
+    private long bucketStart(int tier) {
+        long width = BUCKETS[tier];
+        long newest = LAST - Math.floorMod(LAST, width);
+        // The open bucket plus the closed ones
+        return newest - CAPACITIES[tier] * width;
+    }
+
+    @Test
+    public void everyTierMatchesABruteForceRollup() {
+        HistoryWindow out = new HistoryWindow(16);
+        for (int tier = 0; tier < BUCKETS.length; tier++) {
+            long from = bucketStart(tier);
+            assertEquals(tier, history.query(from, LAST + 1, Integer.MAX_VALUE, out));
+            assertEquals(CAPACITIES[tier] + 1, out.size());
+            assertEquals(from, out.timestamp(0));
+            // The last point is the bucket still being filled
+            assertEquals(LAST - Math.floorMod(LAST, BUCKETS[tier]), out.timestamp(out.size() - 1));
+            checkAgainstBruteForce(out);
+        }
+    }
+
+    @Test
+    public void rawSamplesAreTheNewestAdded() {
+        HistoryWindow out = new HistoryWindow(16);
+        long from = history.rawStart();
+        assertEquals(LAST - (RAW - 1) * STEP, from);
+        assertEquals(-1, history.query(from, LAST + 1, RAW, out));
+        assertEquals(RAW, out.size());
+        for (int p = 0; p < RAW; p++) {
+            int i = SAMPLES - RAW + p;
+            assertEquals((long) times.get(i), out.timestamp(p));
+            assertEquals(values.get(i), out.mean(p), 0f);
+            assertEquals(out.min(p), out.max(p), 0f);
+            assertEquals(1, out.count(p));
+        }
+    }
+
+    @Test
+    public void queriesUseTheFinestTierCoveringTheSpan() {
+        HistoryWindow out = new HistoryWindow(16);
+        long to = LAST + 1;
+
+        long[] froms = {LAST - 5 * S, history.rawStart() - STEP, bucketStart(0), bucketStart(0) - 1, bucketStart(1)};
+        int[] expected = {-1, 0, 0, 1, 1};
+        for (int q = 0; q < froms.length; q++) {
+            assertEquals("from " + froms[q], expected[q], history.query(froms[q], to, Integer.MAX_VALUE, out));
+            checkSpan(out, froms[q], to);
+            checkAgainstBruteForce(out);
+        }
+
+        // Older than anything kept: the coarsest tier, with what it still has
+        assertEquals(1, history.query(0L, to, Integer.MAX_VALUE, out));
+        assertEquals(bucketStart(1), out.timestamp(0));
+
+        // A span in the middle of the run, well before the raw ring
+        long from = LAST - 40 * S + 300 * MS;
+        long until = LAST - 20 * S - 300 * MS;
+        assertEquals(0, history.query(from, until, Integer.MAX_VALUE, out));
+        assertEquals(20, out.size());
+        checkSpan(out, from, until);
+        checkAgainstBruteForce(out);
+    }
+
+    @Test
+    public void tooManyPointsMovesTheQueryToACoarserTier() {
+        HistoryWindow out = new HistoryWindow(16);
+        long from = LAST - 5 * S;
+        long to = LAST + 1;
+        // 51 raw samples, 6 one-second buckets, 2 ten-second ones
+        assertEquals(-1, history.query(from, to, 51, out));
+        assertEquals(51, out.size());
+        assertEquals(0, history.query(from, to, 50, out));
+        assertEquals(6, out.size());
+        checkAgainstBruteForce(out);
+        assertEquals(1, history.query(from, to, 5, out));
+        checkSpan(out, from, to);
+        checkAgainstBruteForce(out);
+        // Nothing is small enough: the coarsest tier that reaches back to from
+        assertEquals(1, history.query(from, to, 0, out));
+        assertTrue(out.size() > 0);
+    }
+
+    @Test
+    public void sensorHistoryKeepsEachAxisAndIgnoresOtherTypes() {
+        long bytes = 3 * SeriesHistory.bytesFor(RAW, CAPACITIES);
+        SensorHistory sensors = new SensorHistory(bytes + 100);
+        sensors.track(SensorTypes.ACCELEROMETER, 3, RAW, BUCKETS, CAPACITIES);
+        assertEquals(bytes, sensors.usedBytes());
+        assertEquals(bytes / 3, sensors.series(SensorTypes.ACCELEROMETER, 0).memoryBytes());
+        try {
+            sensors.track(SensorTypes.GYROSCOPE, 1, RAW, BUCKETS, CAPACITIES);
+            fail("over budget");
+        } catch (IllegalStateException expected) {
+            assertEquals(bytes, sensors.usedBytes());
+        }
+        assertNull(sensors.series(SensorTypes.GYROSCOPE, 0));
+        assertNull(sensors.series(SensorTypes.ACCELEROMETER, 3));
+
+        float[] v = new float[3];
+        for (int i = 0; i < 30; i++) {
+            v[0] = i;
+            v[1] = -i;
+            v[2] = 2 * i;
+            sensors.onSample(SensorTypes.ACCELEROMETER, i * STEP, 3, v, 3);
+            sensors.onSample(SensorTypes.GYROSCOPE, i * STEP, 3, v, 3);
+        }
+        HistoryWindow out = new HistoryWindow(4);
+        assertEquals(0, sensors.series(SensorTypes.ACCELEROMETER, 1).query(0L, 3 * S, 3, out));
+        assertEquals(3, out.size());
+        assertEquals(-9f, out.min(0), 0f);
+        assertEquals(0f, out.max(0), 0f);
+        assertEquals(-14.5f, out.mean(1), 0f);
+        assertEquals(10, out.count(2));
+        assertEquals(0, sensors.series(SensorTypes.ACCELEROMETER, 2).query(0L, 3 * S, 3, out));
+        assertEquals(58f, out.max(2), 0f);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.sensor.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SessionRecorderTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final float[] values = new float[3];
+
+    private static int count(File directory) throws IOException {
+        int n = 0;
+        try (SessionReader reader = new SessionReader(directory)) {
+            while (reader.next()) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Test
+    public void sessionsStartedInTheSameSecondGetTheirOwnDirectories() throws IOException {
+        File root = new File(folder.getRoot(), "sessions");
+        SessionRecorder first = SessionRecorder.create(root, "20260101-120000");
+        SessionRecorder second = SessionRecorder.create(root, "20260101-120000");
+        try {
+            assertNotEquals(first.directory(), second.directory());
+            assertEquals("20260101-120000", first.directory().getName());
+            assertEquals("20260101-120000-2", second.directory().getName());
+            first.append(SensorTypes.GYROSCOPE, 1L, 3, values, 3);
+            second.append(SensorTypes.PRESSURE, 2L, 3, values, 1);
+            second.append(SensorTypes.PRESSURE, 3L, 3, values, 1);
+        } finally {
+            first.close();
+            second.close();
+        }
+        assertEquals(1, count(first.directory()));
+        assertEquals(2, count(second.directory()));
+    }
+
+    @Test
+    public void refusesADirectoryThatAlreadyHoldsFiles() throws IOException {
+        File directory = folder.newFolder("session");
+        new SessionRecorder(directory).close();
+        try {
+            new SessionRecorder(directory);
+            fail("recorded over an existing session");
+        } catch (IOException expected) {
+        }
+        assertEquals(1, directory.list().length);
+    }
+
+    @Test
+    public void preallocatedSpaceReadsAsEmptyEvenOverAnOlderFile() throws IOException {
+        File directory = folder.newFolder("session");
+        long segmentBytes = SessionRecorder.HEADER_SIZE + 16 * SessionRecorder.RECORD_SIZE;
+        SessionRecorder recorder = new SessionRecorder(directory, segmentBytes,
+                SessionRecorder.DEFAULT_FORCE_INTERVAL_NANOS);
+        for (long t = 1; t <= 20; t++) {
+            recorder.append(SensorTypes.GYROSCOPE, t, 3, values, 3);
+        }
+        // An older, longer file where the second segment will go, full of non-zero bytes
+        File next = SessionRecorder.segmentFile(directory, 2);
+        byte[] junk = new byte[(int) segmentBytes * 2];
+        Arrays.fill(junk, (byte) 0x11);
+        try (FileOutputStream out = new FileOutputStream(next)) {
+            out.write(junk);
+        }
+        for (long t = 21; t <= 40; t++) {
+            recorder.append(SensorTypes.GYROSCOPE, t, 3, values, 3);
+        }
+        recorder.close();
+
+        assertEquals(3, recorder.segmentCount());
+        try (RandomAccessFile f = new RandomAccessFile(next, "r")) {
+            assertEquals(segmentBytes, f.length());
+            f.seek(SessionRecorder.HEADER_SIZE + 8 * SessionRecorder.RECORD_SIZE);
+            for (int i = 0; i < 8 * SessionRecorder.RECORD_SIZE; i++) {
+                assertEquals(0, f.read());
+            }
+        }
+        assertEquals(40, count(directory));
+        assertFalse(new File(directory, "segment-00003.bin").exists());
+        assertTrue(SessionRecorder.segmentFile(directory, 0).exists());
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.sensor.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class TelemetryCollectorTest {
+    private static final long TIMEOUT_MS = 5_000L;
+
+    private final float[] values = new float[3];
+
+    /** A frame of {@code samples} gyro samples, flipped for sending. */
+    private ByteBuffer frame(int sequence, int samples) {
+        ByteBuffer buffer = ByteBuffer.allocate(16 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        TelemetryEncoder encoder = new TelemetryEncoder();
+        encoder.begin(buffer, sequence);
+        for (int i = 0; i < samples; i++) {
+            values[0] = i * 0.01f;
+            values[1] = -i * 0.01f;
+            values[2] = 0.5f;
+            encoder.add(SensorTypes.GYROSCOPE, 1_000_000_000L + i * 5_000_000L, 3, values, 3);
+        }
+        int size = encoder.finish();
+        buffer.position(0).limit(size);
+        return buffer;
+    }
+
+    private static ByteBuffer copy(ByteBuffer frame, int length) {
+        ByteBuffer out = ByteBuffer.allocate(length);
+        ByteBuffer src = frame.duplicate();
+        src.limit(src.position() + length);
+        out.put(src);
+        out.flip();
+        return out;
+    }
+
+    private static void await(TelemetryCollector collector, long frames, long malformed) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (collector.frames() < frames || collector.malformedFrames() < malformed) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("frames " + collector.frames() + ", malformed " + collector.malformedFrames());
+            }
+            Thread.sleep(5L);
+        }
+    }
+
+    @Test
+    public void decoderRejectsTruncatedAndCorruptFrames() {
+        ByteBuffer whole = frame(1, 20);
+        int size = whole.remaining();
+        TelemetryDecoder decoder = new TelemetryDecoder();
+        SampleSink ignore = new SampleSink() {
+            @Override
+            public void onSample(int type, long timestampNanos, int accuracy, float[] values, int count) {
+            }
+
+            @Override
+            public void onLocation(GpsFix fix) {
+            }
+        };
+
+        assertEquals(20, decoder.decode(whole.duplicate(), ignore));
+        for (int length : new int[]{0, 10, TelemetryEncoder.HEADER_SIZE, size - 1}) {
+            try {
+                decoder.decode(copy(whole, length), ignore);
+                fail("decoded " + length + " of " + size + " bytes");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        // The stated size is right but the records inside are cut short
+        ByteBuffer shortened = copy(whole, size);
+        shortened.order(ByteOrder.LITTLE_ENDIAN).putInt(TelemetryEncoder.HEADER_PAYLOAD, size - TelemetryEncoder.HEADER_SIZE - 5);
+        try {
+            decoder.decode(shortened, ignore);
+            fail("decoded records past the frame's end");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(size - 5, shortened.position());
+    }
+
+    @Test
+    public void udpCollectorSkipsDamagedDatagramsAndKeepsReceiving() throws IOException, InterruptedException {
+        try (TelemetryCollector collector = new TelemetryCollector(0, TelemetryStreamer.Transport.UDP, null);
+             DatagramChannel sender = DatagramChannel.open()) {
+            collector.start();
+            InetSocketAddress to = new InetSocketAddress("127.0.0.1", collector.port());
+            ByteBuffer whole = frame(0, 50);
+
+            sender.send(copy(whole, whole.remaining() - 7), to);
+            sender.send(ByteBuffer.wrap(new byte[]{1, 2, 3}), to);
+            sender.send(ByteBuffer.wrap(new byte[64]), to);
+            await(collector, 0, 3);
+            sender.send(whole.duplicate(), to);
+            sender.send(frame(1, 30), to);
+            await(collector, 2, 3);
+
+            assertEquals(3, collector.malformedFrames());
+            assertEquals(80, collector.samples());
+            assertEquals(0, collector.lostFrames());
+            assertNull(collector.failure());
+        }
+    }
+
+    @Test
+    public void tcpCollectorDropsACorruptStreamAndAcceptsTheNextOne() throws IOException, InterruptedException {
+        try (TelemetryCollector collector = new TelemetryCollector(0, TelemetryStreamer.Transport.TCP, null)) {
+            collector.start();
+            InetSocketAddress to = new InetSocketAddress("127.0.0.1", collector.port());
+            try (SocketChannel first = SocketChannel.open(to)) {
+                first.write(frame(0, 10));
+                ByteBuffer garbage = ByteBuffer.allocate(64);
+                garbage.putInt(0, 0xDEADBEEF);
+                first.write(garbage);
+                await(collector, 1, 1);
+            }
+            try (SocketChannel second = SocketChannel.open(to)) {
+                second.write(frame(1, 10));
+                await(collector, 2, 1);
+            }
+            assertEquals(20, collector.samples());
+            assertEquals(2, collector.connections());
+            // A dropped connection is not a failure of the collector
+            assertNull(collector.failure());
+        }
+    }
+}
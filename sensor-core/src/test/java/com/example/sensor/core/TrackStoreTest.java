@@ -0,0 +1,219 @@
+package com.example.sensor.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Checks the indexed queries against a linear scan of the same track. */
+public class TrackStoreTest {
+    private static final double METERS_PER_DEGREE = 111_319.49;
+    private static final double E7 = 1e7;
+
+    private static GpsFix fix(long time, double lat, double lon) {
+        GpsFix fix = new GpsFix();
+        fix.time = time;
+        fix.elapsedRealtimeNanos = time * 1_000_000L;
+        fix.latitude = lat;
+        fix.longitude = lon;
+        fix.hasAccuracy = true;
+        fix.accuracy = 5f;
+        return fix;
+    }
+
+    /**
+     * An hour of 1 Hz walking with 2 m of noise around (lat, lon), with a few jumps of
+     * several kilometres, as after a lost fix. Returns every fix fed to {@code track}.
+     */
+    private static List<double[]> walk(TrackStore track, long seed, double lat, double lon) {
+        Random random = new Random(seed);
+        List<double[]> fixes = new ArrayList<>();
+        double heading = 0.0;
+        double scale = Math.cos(Math.toRadians(lat));
+        for (int i = 0; i < 3600; i++) {
+            if (i % 900 == 450) {
+                lat += 0.05;
+                lon -= 0.08;
+            }
+            heading += random.nextGaussian() * 0.1;
+            lat += 1.4 * Math.cos(heading) / METERS_PER_DEGREE;
+            lon += 1.4 * Math.sin(heading) / METERS_PER_DEGREE / scale;
+            double noisyLat = lat + random.nextGaussian() * 2.0 / METERS_PER_DEGREE;
+            double noisyLon = lon + random.nextGaussian() * 2.0 / METERS_PER_DEGREE / scale;
+            track.onLocation(fix(1_000_000L + i * 1000L, noisyLat, noisyLon));
+            fixes.add(new double[]{noisyLat, noisyLon});
+        }
+        return fixes;
+    }
+
+    private static long e7(double degrees) {
+        return Math.round(degrees * E7);
+    }
+
+    private static int[] bruteForceSegmentsIn(TrackStore track, double minLat, double minLon,
+                                              double maxLat, double maxLon) {
+        long qMinLat = (long) Math.floor(minLat * E7);
+        long qMinLon = (long) Math.floor(minLon * E7);
+        long qMaxLat = (long) Math.ceil(maxLat * E7);
+        long qMaxLon = (long) Math.ceil(maxLon * E7);
+        List<Integer> found = new ArrayList<>();
+        for (int s = 0; s + 1 < track.size(); s++) {
+            long lat0 = e7(track.latitude(s));
+            long lat1 = e7(track.latitude(s + 1));
+            long lon0 = e7(track.longitude(s));
+            long lon1 = e7(track.longitude(s + 1));
+            if (Math.max(lat0, lat1) >= qMinLat && Math.min(lat0, lat1) <= qMaxLat
+                    && Math.max(lon0, lon1) >= qMinLon && Math.min(lon0, lon1) <= qMaxLon) {
+                found.add(s);
+            }
+        }
+        int[] out = new int[found.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = found.get(i);
+        }
+        return out;
+    }
+
+    /** Distance, m, from the point to the closest segment, with the store's local projection. */
+    private static double bruteForceNearest(TrackStore track, double lat, double lon) {
+        long pLat = e7(lat);
+        long pLon = e7(lon);
+        double scale = Math.cos(Math.toRadians(pLat / E7));
+        double best = Double.POSITIVE_INFINITY;
+        for (int s = 0; s + 1 < track.size(); s++) {
+            double ax = (e7(track.longitude(s)) - pLon) * scale;
+            double ay = e7(track.latitude(s)) - pLat;
+            double bx = (e7(track.longitude(s + 1)) - pLon) * scale;
+            double by = e7(track.latitude(s + 1)) - pLat;
+            double dx = bx - ax;
+            double dy = by - ay;
+            double length2 = dx * dx + dy * dy;
+            double t = length2 == 0.0 ? 0.0 : Math.max(0.0, Math.min(1.0, -(ax * dx + ay * dy) / length2));
+            double cx = ax + t * dx;
+            double cy = ay + t * dy;
+            best = Math.min(best, Math.sqrt(cx * cx + cy * cy));
+        }
+        return best * METERS_PER_DEGREE / E7;
+    }
+
+    private static void checkQueries(TrackStore track, long seed, double[] bounds) {
+        Random random = new Random(seed);
+        int[] out = new int[track.size()];
+        double[] nearest = new double[3];
+        double latSpan = bounds[2] - bounds[0];
+        double lonSpan = bounds[3] - bounds[1];
+        for (int q = 0; q < 500; q++) {
+            // Mostly boxes of a few tiles, sometimes one wider than the whole track
+            double size = q % 10 == 0 ? 0.5 : random.nextDouble() * 0.03;
+            double minLat = bounds[0] + random.nextDouble() * latSpan - size / 2;
+            double minLon = bounds[1] + random.nextDouble() * lonSpan - size / 2;
+            int n = track.segmentsIn(minLat, minLon, minLat + size, minLon + size, out);
+            int[] got = Arrays.copyOf(out, n);
+            Arrays.sort(got);
+            assertArrayEquals("box " + q, bruteForceSegmentsIn(track, minLat, minLon, minLat + size, minLon + size), got);
+
+            double lat = bounds[0] + random.nextDouble() * latSpan;
+            double lon = bounds[1] + random.nextDouble() * lonSpan;
+            double radius = q % 10 == 0 ? 50_000.0 : 20.0 + random.nextDouble() * 500.0;
+            double expected = bruteForceNearest(track, lat, lon);
+            int segment = track.nearest(lat, lon, radius, nearest);
+            if (expected <= radius - 1e-6) {
+                assertTrue("nearest " + q, segment >= 0);
+                assertEquals("nearest " + q, expected, nearest[0], 1e-6);
+            } else if (expected > radius + 1e-6) {
+                assertEquals("nearest " + q, -1, segment);
+            }
+        }
+    }
+
+    @Test
+    public void queriesMatchALinearScanInTheNorthEast() {
+        TrackStore track = new TrackStore();
+        walk(track, 1L, 35.6812, 139.7671);
+        double[] bounds = new double[4];
+        assertTrue(track.bounds(bounds));
+        checkQueries(track, 2L, bounds);
+    }
+
+    @Test
+    public void queriesMatchALinearScanAcrossNegativeCoordinates() {
+        // Straddles both the equator and the prime meridian, where tile numbers go negative
+        TrackStore track = new TrackStore();
+        walk(track, 3L, -0.01, -0.02);
+        double[] bounds = new double[4];
+        assertTrue(track.bounds(bounds));
+        assertTrue(bounds[0] < 0 && bounds[1] < 0);
+        checkQueries(track, 4L, bounds);
+    }
+
+    @Test
+    public void findsWideSegmentsAndTheUnindexedTail() {
+        TrackStore track = new TrackStore(5.0, 50f, 16);
+        track.onLocation(fix(1000L, -10.0, -20.0));
+        track.onLocation(fix(2000L, -10.0, -19.999));
+        // A jump across hundreds of tiles, then the newest segment, not indexed yet
+        track.onLocation(fix(3000L, -10.5, -20.5));
+        track.onLocation(fix(4000L, -10.501, -20.499));
+        int[] out = new int[8];
+        double[] nearest = new double[3];
+
+        // Midway along the jump: only the wide segment is there
+        int n = track.segmentsIn(-10.26, -20.26, -10.24, -20.24, out);
+        assertEquals(1, n);
+        assertEquals(1, out[0]);
+        assertEquals(1, track.nearest(-10.25, -20.2495, 100.0, nearest));
+        assertEquals(0.0, nearest[0], 0.05);
+
+        n = track.segmentsIn(-10.5008, -20.4996, -10.5002, -20.4994, out);
+        assertEquals(1, n);
+        assertEquals(track.size() - 2, out[0]);
+        assertEquals(track.size() - 2, track.nearest(-10.5005, -20.4995, 10.0, nearest));
+        assertEquals(-10.5005, nearest[1], 1e-7);
+        assertEquals(-20.4995, nearest[2], 1e-7);
+    }
+
+    @Test
+    public void noDroppedFixIsFartherThanTheToleranceFromTheTrack() {
+        for (double tolerance : new double[]{2.0, 5.0, 15.0}) {
+            TrackStore track = new TrackStore(tolerance, 50f, 64);
+            List<double[]> fixes = walk(track, 5L, 48.8584, 2.2945);
+            assertEquals(3600, track.fixCount());
+            assertTrue(track.size() < track.fixCount());
+            double worst = 0.0;
+            for (double[] f : fixes) {
+                worst = Math.max(worst, bruteForceNearest(track, f[0], f[1]));
+            }
+            // The check projects at the anchor's latitude, this one at the fix's
+            assertTrue("tolerance " + tolerance + ": " + worst, worst <= tolerance * 1.001 + 0.01);
+        }
+    }
+
+    @Test
+    public void ignoresFixesNotNewerThanTheLastAndInaccurateOnes() {
+        TrackStore track = new TrackStore();
+        track.onLocation(fix(1000L, 1.0, 2.0));
+        // The same fix from the hub and from the screen's listener
+        track.onLocation(fix(1000L, 1.0, 2.0));
+        track.onLocation(fix(500L, 1.5, 2.5));
+        assertEquals(1, track.fixCount());
+        assertEquals(1, track.size());
+
+        GpsFix vague = fix(2000L, 1.1, 2.1);
+        vague.accuracy = 80f;
+        track.onLocation(vague);
+        assertEquals(1, track.fixCount());
+
+        track.onLocation(fix(3000L, 1.0001, 2.0));
+        track.onLocation(fix(3000L, 1.0002, 2.0));
+        assertEquals(2, track.fixCount());
+        assertEquals(1.0001, track.latitude(1), 1e-9);
+        assertEquals(3000L, track.time(1));
+        assertEquals(0.0001 * METERS_PER_DEGREE, track.distanceMeters(), 0.01);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.sensor.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Checks the incremental statistics against a brute-force pass over the same window. */
+public class WindowStatsTest {
+    private static final long PERIOD_NANOS = 20_000_000L;
+
+    /** What the window should hold once the first {@code end} values are in, oldest first. */
+    private static double[] window(double[] all, long[] times, int end, int capacity, long maxAgeNanos) {
+        int start = Math.max(0, end - capacity);
+        long newest = times[end - 1];
+        while (start < end - 1 && newest - times[start] > maxAgeNanos) {
+            start++;
+        }
+        return Arrays.copyOfRange(all, start, end);
+    }
+
+    private static void assertMatches(WindowStats stats, double[] window) {
+        int n = window.length;
+        double mean = 0.0;
+        for (double v : window) {
+            mean += v;
+        }
+        mean /= n;
+        double m2 = 0.0;
+        for (double v : window) {
+            m2 += (v - mean) * (v - mean);
+        }
+        double[] sorted = window.clone();
+        Arrays.sort(sorted);
+        double range = sorted[n - 1] - sorted[0];
+
+        assertEquals(n, stats.count());
+        assertEquals(mean, stats.mean(), 1e-9);
+        if (n > 1) {
+            double variance = m2 / (n - 1);
+            assertEquals(variance, stats.variance(), 1e-9 * Math.max(1.0, variance));
+        }
+        assertEquals(sorted[0], stats.min(), 0.0);
+        assertEquals(sorted[n - 1], stats.max(), 0.0);
+        // Sketch error is 1% of the distance from a reference that stays near the window
+        for (double q : new double[]{0.5, 0.9, 0.99}) {
+            double expected = sorted[(int) (q * (n - 1))];
+            assertEquals("q" + q, expected, stats.quantile(q), 0.03 * range + 1e-6);
+        }
+    }
+
+    private static void run(long seed, int capacity, long maxAgeNanos, int samples) {
+        Random random = new Random(seed);
+        double[] values = new double[samples];
+        long[] times = new long[samples];
+        WindowStats stats = new WindowStats(capacity, maxAgeNanos, new QuantileSketch());
+        double level = 1013.25;
+        long t = 1_000_000_000L;
+        for (int i = 0; i < samples; i++) {
+            level += random.nextGaussian() * 0.005;
+            // Mostly steady, now and then a pause that ages samples out of the window
+            t += random.nextInt(100) == 0 ? 50 * PERIOD_NANOS : PERIOD_NANOS;
+            values[i] = level + random.nextGaussian() * 0.02;
+            times[i] = t;
+            stats.add(t, values[i]);
+            assertMatches(stats, window(values, times, i + 1, capacity, maxAgeNanos));
+        }
+    }
+
+    @Test
+    public void matchesBruteForceOverACountWindow() {
+        run(1L, 64, Long.MAX_VALUE, 5_000);
+    }
+
+    @Test
+    public void matchesBruteForceOverAnAgeWindow() {
+        // 10 s at 50 Hz, as the pressure noise window
+        run(2L, 500, 10_000_000_000L, 5_000);
+    }
+
+    @Test
+    public void staysAccurateAfterLongRunsFarFromZero() {
+        // Many rescans of a small window with a 1013 offset: no drift in the moments
+        run(3L, 16, Long.MAX_VALUE, 50_000);
+    }
+
+    @Test
+    public void ignoresNaN() {
+        WindowStats stats = new WindowStats(8);
+        stats.add(1L, 1.0);
+        stats.add(2L, Double.NaN);
+        stats.add(3L, 3.0);
+        assertEquals(2, stats.count());
+        assertEquals(2.0, stats.mean(), 0.0);
+    }
+
+    @Test
+    public void snapshotHoldsTheSameValues() {
+        WindowStats stats = new WindowStats(100);
+        for (int i = 1; i <= 100; i++) {
+            stats.add(i, i);
+        }
+        float[] out = new float[1 + WindowStats.SNAPSHOT_SIZE];
+        stats.writeSnapshot(out, 1);
+        assertEquals(100f, out[1 + WindowStats.SNAPSHOT_COUNT], 0f);
+        assertEquals(50.5f, out[1 + WindowStats.SNAPSHOT_MEAN], 1e-4f);
+        assertEquals((float) stats.stdDev(), out[1 + WindowStats.SNAPSHOT_STDDEV], 1e-4f);
+        assertEquals(1f, out[1 + WindowStats.SNAPSHOT_MIN], 0f);
+        assertEquals(100f, out[1 + WindowStats.SNAPSHOT_MAX], 0f);
+        assertEquals((float) stats.quantile(0.9), out[1 + WindowStats.SNAPSHOT_P90], 1e-4f);
+    }
+
+    @Test
+    public void mergedSketchesAnswerForTheUnion() {
+        Random random = new Random(4L);
+        QuantileSketch a = new QuantileSketch();
+        QuantileSketch b = new QuantileSketch();
+        double[] all = new double[2000];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = Math.exp(random.nextGaussian());
+            (i % 2 == 0 ? a : b).add(all[i]);
+        }
+        a.merge(b);
+        Arrays.sort(all);
+        assertEquals(all.length, a.count());
+        for (double q : new double[]{0.01, 0.5, 0.9, 0.99}) {
+            double expected = all[(int) (q * (all.length - 1))];
+            double actual = a.quantile(q);
+            assertTrue("q" + q + ": " + actual + " vs " + expected,
+                    Math.abs(actual - expected) <= QuantileSketch.DEFAULT_RELATIVE_ACCURACY * expected + 1e-12);
+        }
+    }
+}